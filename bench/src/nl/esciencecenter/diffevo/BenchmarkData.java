@@ -0,0 +1,127 @@
+/*
+ * Copyrighted 2012-2013 Netherlands eScience Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").  
+ * You may not use this file except in compliance with the License. 
+ * For details, see the LICENCE.txt file location in the root directory of this 
+ * distribution or obtain the Apache License at the following location: 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ * 
+ * For the full license, see: LICENCE.txt (located in the root folder of this distribution). 
+ * ---
+ */
+
+
+package nl.esciencecenter.diffevo;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Locale;
+import java.util.Random;
+
+import nl.esciencecenter.diffevo.likelihoodfunctionfactories.LikelihoodFunctionRastriginModelFactory;
+
+/**
+ * Generates the parameter spaces, evaluation results and data files that the benchmarks run on, 
+ * so that every benchmark can be scaled by its parameters instead of being tied to the small example data.
+ */
+final class BenchmarkData {
+
+	private static final int N_INTERVALS = 50;
+	
+	private BenchmarkData(){
+	}
+	
+	static ParSpace createParSpace(int nPars){
+		double[] lowerBounds = new double[nPars];
+		double[] upperBounds = new double[nPars];
+		String[] parNames = new String[nPars];
+		for (int iPar=0;iPar<nPars;iPar++){
+			lowerBounds[iPar] = -5.12;
+			upperBounds[iPar] = 5.12;
+			parNames[iPar] = "par"+iPar;
+		}
+		ParSpace parSpace = new ParSpace(lowerBounds, upperBounds, parNames);
+		parSpace.divideIntoIntervals(N_INTERVALS);
+		return parSpace;
+	}
+	
+	static EvalResults createEvalResults(int nPars, int nPop, int nResults, long seed){
+		ParSpace parSpace = createParSpace(nPars);
+		Random generator = new Random(seed);
+		int nGens = (nResults+nPop-1)/nPop;
+		EvalResults evalResults = new EvalResults(nGens, nPop, parSpace, new LikelihoodFunctionRastriginModelFactory(), generator);
+		for (int iGen=0;iGen<nGens;iGen++){
+			evalResults.setnPop(iGen, nPop);
+		}
+		for (int iResult=0;iResult<nResults;iResult++){
+			double[] parameterCombination = parSpace.takeUniformRandomSample(generator);
+			double objScore = -generator.nextDouble()*100;
+			evalResults.add(new EvalResult(iResult, iResult, parameterCombination, objScore));
+		}
+		return evalResults;
+	}
+	
+	/**
+	 * Generates a draining linear tank series of nTimes steps: the columns are times, assimilate, 
+	 * forcing and the observed water level, the latter simulated with the given resistance plus noise.
+	 */
+	static double[][] createLinearTankSeries(int nTimes, double resistance, long seed){
+		Random generator = new Random(seed);
+		double[] times = new double[nTimes];
+		double[] assimilate = new double[nTimes];
+		double[] forcing = new double[nTimes];
+		double[] obs = new double[nTimes];
+		double waterlevel = 30;
+		for (int iTime=0;iTime<nTimes;iTime++){
+			times[iTime] = iTime;
+			forcing[iTime] = generator.nextDouble() < 0.1 ? generator.nextDouble()*5 : 0;
+			if (iTime>0){
+				waterlevel = waterlevel + forcing[iTime-1] - waterlevel/resistance;
+			}
+			obs[iTime] = waterlevel + generator.nextGaussian()*0.1;
+		}
+		return new double[][] {times, assimilate, forcing, obs};
+	}
+	
+	/**
+	 * Writes a temporary .eas file of nRows rows and nCols columns of random values, in the layout 
+	 * DataReader expects: the number of header lines, the header lines and comma separated rows.
+	 */
+	static File writeEasFile(int nRows, int nCols, long seed) throws IOException {
+		Random generator = new Random(seed);
+		File file = File.createTempFile("diffevo-bench", ".eas");
+		file.deleteOnExit();
+		OutputStream out = new FileOutputStream(file);
+		try {
+			StringBuilder text = new StringBuilder();
+			text.append("3\n# generated by BenchmarkData\n# \n");
+			for (int iRow=0;iRow<nRows;iRow++){
+				text.append(iRow);
+				for (int iCol=1;iCol<nCols;iCol++){
+					text.append(',').append(String.format(Locale.US, "%.6E", generator.nextGaussian()*1000));
+				}
+				text.append('\n');
+				if (text.length() > 1<<16){
+					out.write(text.toString().getBytes(Charset.forName("US-ASCII")));
+					text.setLength(0);
+				}
+			}
+			out.write(text.toString().getBytes(Charset.forName("US-ASCII")));
+		}
+		finally {
+			out.close();
+		}
+		return file;
+	}
+
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyrighted 2012-2013 Netherlands eScience Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").  
+ * You may not use this file except in compliance with the License. 
+ * For details, see the LICENCE.txt file location in the root directory of this 
+ * distribution or obtain the Apache License at the following location: 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ * 
+ * For the full license, see: LICENCE.txt (located in the root folder of this distribution). 
+ * ---
+ */
+
+
+package nl.esciencecenter.diffevo;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of reading a generated .eas file of nTimes rows, on one and on several threads, 
+ * and of reading the same data from a column store file (which is mapped, so nThreads does not apply).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DataReaderBenchmark {
+
+	private static final String[] COLUMN_NAMES = new String[] {ColumnStore.TIMES, ColumnStore.ASSIMILATE, "unused", 
+		ColumnStore.OBS, ColumnStore.FORCING};
+	
+	@Param({"100000", "1000000"})
+	public int nTimes;
+	
+	@Param({"1", "4"})
+	public int nThreads;
+	
+	private File easFile;
+	private File columnStoreFile;
+	
+	@Setup
+	public void setUp() throws IOException {
+		easFile = BenchmarkData.writeEasFile(nTimes, COLUMN_NAMES.length, 0);
+		columnStoreFile = File.createTempFile("diffevo-bench", ".cols");
+		columnStoreFile.deleteOnExit();
+		ColumnStore.convert(easFile, columnStoreFile, COLUMN_NAMES);
+	}
+	
+	@TearDown
+	public void tearDown(){
+		easFile.delete();
+		columnStoreFile.delete();
+	}
+	
+	@Benchmark
+	public double[][] readEas(){
+		return new DataReader(easFile, nThreads).getData();
+	}
+	
+	@Benchmark
+	public double[][] readColumnStore(){
+		return new DataReader(columnStoreFile, nThreads).getData();
+	}
+	
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyrighted 2012-2013 Netherlands eScience Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").  
+ * You may not use this file except in compliance with the License. 
+ * For details, see the LICENCE.txt file location in the root directory of this 
+ * distribution or obtain the Apache License at the following location: 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ * 
+ * For the full license, see: LICENCE.txt (located in the root folder of this distribution). 
+ * ---
+ */
+
+
+package nl.esciencecenter.diffevo;
+
+import java.util.concurrent.TimeUnit;
+
+import nl.esciencecenter.diffevo.likelihoodfunctionfactories.LikelihoodFunctionRastriginModelFactory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of one generation of the optimizer on the Rastrigin function, split into proposing 
+ * the offspring and accepting or rejecting them.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DiffEvoBenchmark {
+
+	// only the population sizes of the first nGens generations are recorded, later ones are not needed here
+	private static final int N_GENS = 1000;
+	
+	// the record is cleared once it holds this many results, so that it does not fill the heap
+	private static final int MAX_RECORDED_RESULTS = 1<<20;
+	
+	@Param({"50", "500"})
+	public int nPop;
+	
+	@Param({"2", "20"})
+	public int nPars;
+	
+	private DiffEvo diffEvo;
+	private EvalResults evalResults;
+	
+	@Setup(Level.Iteration)
+	public void setUp(){
+		ParSpace parSpace = BenchmarkData.createParSpace(nPars);
+		diffEvo = new DiffEvo(N_GENS, nPop, parSpace, new LikelihoodFunctionRastriginModelFactory());
+		diffEvo.initializeParents();
+		diffEvo.proposeOffSpring();
+		evalResults = diffEvo.getEvalResults();
+	}
+	
+	@Benchmark
+	public DiffEvo proposeOffSpring(){
+		diffEvo.proposeOffSpring();
+		return diffEvo;
+	}
+	
+	@Benchmark
+	public DiffEvo updateParentsWithProposals(){
+		diffEvo.updateParentsWithProposals();
+		trimRecord();
+		return diffEvo;
+	}
+	
+	@Benchmark
+	public DiffEvo generation(){
+		diffEvo.proposeOffSpring();
+		diffEvo.updateParentsWithProposals();
+		trimRecord();
+		return diffEvo;
+	}
+	
+	private void trimRecord(){
+		if (evalResults.getNumberOfEvalResults() >= MAX_RECORDED_RESULTS){
+			evalResults.getEvalResults().clear();
+			evalResults.updateSize();
+		}
+	}
+	
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyrighted 2012-2013 Netherlands eScience Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").  
+ * You may not use this file except in compliance with the License. 
+ * For details, see the LICENCE.txt file location in the root directory of this 
+ * distribution or obtain the Apache License at the following location: 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ * 
+ * For the full license, see: LICENCE.txt (located in the root folder of this distribution). 
+ * ---
+ */
+
+
+package nl.esciencecenter.diffevo;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import nl.esciencecenter.diffevo.likelihoodfunctionfactories.LikelihoodFunctionFactory;
+import nl.esciencecenter.diffevo.likelihoodfunctions.LikelihoodFunction;
+import nl.esciencecenter.diffevo.likelihoodfunctions.LikelihoodFunctionRosenbrockModel;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of evaluating a population whose evaluations mostly wait, on a pool of platform threads 
+ * sized to the number of cores and with a thread per member (virtual where the Java runtime supports it). 
+ * One operation evaluates the whole population.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LatencyBoundEvaluationBenchmark {
+
+	@Param({"64", "256"})
+	public int nPop;
+	
+	@Param({"1", "5"})
+	public long latencyMillis;
+	
+	private ExecutorService platformThreads;
+	private ExecutorService threadPerMember;
+	private ListOfParameterCombinations populationOnPlatformThreads;
+	private ListOfParameterCombinations populationOnThreadPerMember;
+	
+	@Setup
+	public void setUp(){
+		int nCores = Runtime.getRuntime().availableProcessors();
+		platformThreads = Executors.newFixedThreadPool(nCores);
+		threadPerMember = VirtualThreads.newExecutorService();
+		populationOnPlatformThreads = createPopulation();
+		populationOnPlatformThreads.setExecutorService(platformThreads, nCores);
+		populationOnThreadPerMember = createPopulation();
+		populationOnThreadPerMember.setExecutorService(threadPerMember, nPop);
+		populationOnThreadPerMember.setTaskPerMember(true);
+	}
+	
+	@TearDown
+	public void tearDown(){
+		platformThreads.shutdown();
+		threadPerMember.shutdown();
+	}
+	
+	@Benchmark
+	public ListOfParameterCombinations platformThreads(){
+		populationOnPlatformThreads.calcObjScores();
+		return populationOnPlatformThreads;
+	}
+	
+	@Benchmark
+	public ListOfParameterCombinations threadPerMember(){
+		populationOnThreadPerMember.calcObjScores();
+		return populationOnThreadPerMember;
+	}
+	
+	private ListOfParameterCombinations createPopulation(){
+		final long latencyMillis = this.latencyMillis;
+		ListOfParameterCombinations population = new ListOfParameterCombinations(nPop, 2, new LikelihoodFunctionFactory(){
+			public LikelihoodFunction create(){
+				return new LatencyBoundLikelihoodFunction(latencyMillis);
+			}
+		});
+		for (int iPop=0;iPop<nPop;iPop++){
+			population.setParameterCombination(iPop, new double[]{iPop, 1});
+		}
+		return population;
+	}
+	
+	
+	/**
+	 * The Rosenbrock function behind a fixed delay, standing in for a model that spends most of its time 
+	 * waiting on something else.
+	 */
+	private static class LatencyBoundLikelihoodFunction implements LikelihoodFunction {
+		
+		private final long latencyMillis;
+		private final LikelihoodFunction likelihoodFunction;
+		
+		LatencyBoundLikelihoodFunction(long latencyMillis){
+			this.latencyMillis = latencyMillis;
+			this.likelihoodFunction = new LikelihoodFunctionRosenbrockModel();
+		}
+		
+		public String getName(){
+			return LatencyBoundLikelihoodFunction.class.getSimpleName();
+		}
+
+		public double evaluate(double[][] obs, double[][] sim) {
+			return likelihoodFunction.evaluate(obs, sim);
+		}
+
+		public double evaluate(double[] parameterVector) {
+			try {
+				Thread.sleep(latencyMillis);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return likelihoodFunction.evaluate(parameterVector);
+		}
+	}
+	
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyrighted 2012-2013 Netherlands eScience Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").  
+ * You may not use this file except in compliance with the License. 
+ * For details, see the LICENCE.txt file location in the root directory of this 
+ * distribution or obtain the Apache License at the following location: 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ * 
+ * For the full license, see: LICENCE.txt (located in the root folder of this distribution). 
+ * ---
+ */
+
+
+package nl.esciencecenter.diffevo;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import nl.esciencecenter.diffevo.likelihoodfunctionfactories.LikelihoodFunctionCubicModelFactory;
+import nl.esciencecenter.diffevo.likelihoodfunctionfactories.LikelihoodFunctionDoubleNormalModelFactory;
+import nl.esciencecenter.diffevo.likelihoodfunctionfactories.LikelihoodFunctionRastriginModelFactory;
+import nl.esciencecenter.diffevo.likelihoodfunctionfactories.LikelihoodFunctionRosenbrockModelFactory;
+import nl.esciencecenter.diffevo.likelihoodfunctionfactories.LikelihoodFunctionSSRFactory;
+import nl.esciencecenter.diffevo.likelihoodfunctionfactories.LikelihoodFunctionSingleNormalModelFactory;
+import nl.esciencecenter.diffevo.likelihoodfunctions.LikelihoodFunction;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of every likelihood function. Rastrigin and Rosenbrock are evaluated in nPars dimensions, 
+ * the other test functions in their fixed number of parameters, and the sum of squared residuals 
+ * over a series of nTimes steps.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LikelihoodFunctionBenchmark {
+
+	@Param({"2", "20"})
+	public int nPars;
+	
+	@Param({"1000", "100000"})
+	public int nTimes;
+	
+	private LikelihoodFunction cubic;
+	private LikelihoodFunction doubleNormal;
+	private LikelihoodFunction rastrigin;
+	private LikelihoodFunction rosenbrock;
+	private LikelihoodFunction singleNormal;
+	private LikelihoodFunction ssr;
+	
+	private double[] parameterVector;
+	private double[] parameterVectorCubic;
+	private double[][] obs;
+	private double[][] sim;
+	
+	@Setup
+	public void setUp(){
+		cubic = new LikelihoodFunctionCubicModelFactory().create();
+		doubleNormal = new LikelihoodFunctionDoubleNormalModelFactory().create();
+		rastrigin = new LikelihoodFunctionRastriginModelFactory().create();
+		rosenbrock = new LikelihoodFunctionRosenbrockModelFactory().create();
+		singleNormal = new LikelihoodFunctionSingleNormalModelFactory().create();
+		ssr = new LikelihoodFunctionSSRFactory().create();
+		
+		Random generator = new Random(0);
+		parameterVector = new double[nPars];
+		for (int iPar=0;iPar<nPars;iPar++){
+			parameterVector[iPar] = generator.nextDouble()*4 - 2;
+		}
+		parameterVectorCubic = new double[] {0.5, -1.2, 2.0, 0.1};
+		
+		obs = new double[1][nTimes];
+		sim = new double[1][nTimes];
+		for (int iTime=0;iTime<nTimes;iTime++){
+			obs[0][iTime] = generator.nextGaussian();
+			sim[0][iTime] = obs[0][iTime] + generator.nextGaussian()*0.1;
+		}
+	}
+	
+	@Benchmark
+	public double cubic(){
+		return cubic.evaluate(parameterVectorCubic);
+	}
+	
+	@Benchmark
+	public double doubleNormal(){
+		return doubleNormal.evaluate(parameterVector);
+	}
+	
+	@Benchmark
+	public double rastrigin(){
+		return rastrigin.evaluate(parameterVector);
+	}
+	
+	@Benchmark
+	public double rosenbrock(){
+		return rosenbrock.evaluate(parameterVector);
+	}
+	
+	@Benchmark
+	public double singleNormal(){
+		return singleNormal.evaluate(parameterVector);
+	}
+	
+	@Benchmark
+	public double ssr(){
+		return ssr.evaluate(obs, sim);
+	}
+	
+}
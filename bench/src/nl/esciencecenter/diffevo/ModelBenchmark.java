@@ -0,0 +1,90 @@
+/*
+ * Copyrighted 2012-2013 Netherlands eScience Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").  
+ * You may not use this file except in compliance with the License. 
+ * For details, see the LICENCE.txt file location in the root directory of this 
+ * distribution or obtain the Apache License at the following location: 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ * 
+ * For the full license, see: LICENCE.txt (located in the root folder of this distribution). 
+ * ---
+ */
+
+
+package nl.esciencecenter.diffevo;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import nl.esciencecenter.diffevo.likelihoodfunctionfactories.LikelihoodFunctionSSRFactory;
+import nl.esciencecenter.diffevo.statespacemodelfactories.LinearDynamicStateSpaceModelFactory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of simulating a population of the draining linear tank model, which has a single 
+ * parameter, over a generated series of nTimes steps.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ModelBenchmark {
+
+	@Param({"10", "100"})
+	public int nPop;
+	
+	@Param({"1000", "100000"})
+	public int nTimes;
+	
+	private ListOfParameterCombinations population;
+	private double[][] obs;
+	
+	@Setup
+	public void setUp(){
+		double[][] series = BenchmarkData.createLinearTankSeries(nTimes, 150, 0);
+		double[] times = series[0];
+		double[] assimilate = series[1];
+		double[] forcing = series[2];
+		obs = new double[][] {series[3]};
+		
+		population = new ListOfParameterCombinations(nPop, 1, new LikelihoodFunctionSSRFactory(), new double[] {30}, 
+				new TimeChunks(times, assimilate), new ForcingChunks(forcing, assimilate), new LinearDynamicStateSpaceModelFactory());
+		Random generator = new Random(0);
+		for (int iPop=0;iPop<nPop;iPop++){
+			population.setParameterCombination(iPop, new double[] {10 + generator.nextDouble()*490});
+		}
+	}
+	
+	@Benchmark
+	public ListOfParameterCombinations calcModelResults(){
+		population.calcModelResults();
+		return population;
+	}
+	
+	@Benchmark
+	public ListOfParameterCombinations calcModelResultsAndObjScores(){
+		population.calcModelResultsAndObjScores(obs);
+		return population;
+	}
+	
+}
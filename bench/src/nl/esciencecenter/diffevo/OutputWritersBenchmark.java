@@ -0,0 +1,86 @@
+/*
+ * Copyrighted 2012-2013 Netherlands eScience Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").  
+ * You may not use this file except in compliance with the License. 
+ * For details, see the LICENCE.txt file location in the root directory of this 
+ * distribution or obtain the Apache License at the following location: 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ * 
+ * For the full license, see: LICENCE.txt (located in the root folder of this distribution). 
+ * ---
+ */
+
+
+package nl.esciencecenter.diffevo;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of writing N_GENS generations of nPop results to a text file and to a JSON file.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OutputWritersBenchmark {
+
+	private static final int N_GENS = 20;
+	
+	@Param({"50", "500"})
+	public int nPop;
+	
+	@Param({"2", "20"})
+	public int nPars;
+	
+	private DiffEvoOutputWriters outputWriters;
+	private File file;
+	
+	@Setup
+	public void setUp() throws IOException {
+		outputWriters = new DiffEvoOutputWriters(BenchmarkData.createEvalResults(nPars, nPop, N_GENS*nPop, 0));
+		file = File.createTempFile("diffevo-bench", ".out");
+		file.deleteOnExit();
+	}
+	
+	@TearDown
+	public void tearDown(){
+		file.delete();
+	}
+	
+	@Benchmark
+	public File writeEvalResultsToTextFile(){
+		outputWriters.writeEvalResultsToTextFile(file);
+		return file;
+	}
+	
+	@Benchmark
+	public File writeEvalResultsToJSON(){
+		outputWriters.writeEvalResultsToJSON(file);
+		return file;
+	}
+	
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyrighted 2012-2013 Netherlands eScience Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").  
+ * You may not use this file except in compliance with the License. 
+ * For details, see the LICENCE.txt file location in the root directory of this 
+ * distribution or obtain the Apache License at the following location: 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ * 
+ * For the full license, see: LICENCE.txt (located in the root folder of this distribution). 
+ * ---
+ */
+
+package nl.esciencecenter.diffevo;
+
+/**
+ * A series that is held in an array. The array is referenced, not copied.
+ */
+public class ArraySeriesSource implements SeriesSource {
+	
+	private final double[] values;
+	
+	// constructor
+	public ArraySeriesSource(double[] values){
+		this.values = values;
+	}
+	
+	public int getnValues(){
+		return values.length;
+	}
+	
+	public void read(int offset, double[] destination, int destinationOffset, int length){
+		System.arraycopy(values, offset, destination, destinationOffset, length);
+	}
+	
+	/**
+	 * Returns the array itself, which should not be modified.
+	 */
+	public double[] getSharedValues(){
+		return values;
+	}
+
+}
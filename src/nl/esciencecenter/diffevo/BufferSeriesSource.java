@@ -0,0 +1,48 @@
+/*
+ * Copyrighted 2012-2013 Netherlands eScience Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").  
+ * You may not use this file except in compliance with the License. 
+ * For details, see the LICENCE.txt file location in the root directory of this 
+ * distribution or obtain the Apache License at the following location: 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ * 
+ * For the full license, see: LICENCE.txt (located in the root folder of this distribution). 
+ * ---
+ */
+
+package nl.esciencecenter.diffevo;
+
+import java.nio.DoubleBuffer;
+
+/**
+ * A series that is read from a DoubleBuffer, typically a column of a memory-mapped ColumnStore, so that 
+ * only the parts that are being read need to be in memory.
+ */
+public class BufferSeriesSource implements SeriesSource {
+	
+	private final DoubleBuffer buffer;
+	
+	// constructor
+	public BufferSeriesSource(DoubleBuffer buffer){
+		this.buffer = buffer.slice();
+	}
+	
+	public int getnValues(){
+		return buffer.capacity();
+	}
+	
+	public void read(int offset, double[] destination, int destinationOffset, int length){
+		// each read has its own position, so that reads can run concurrently
+		DoubleBuffer view = buffer.duplicate();
+		view.position(offset);
+		view.get(destination, destinationOffset, length);
+	}
+
+}
@@ -0,0 +1,231 @@
+/*
+ * Copyrighted 2012-2013 Netherlands eScience Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").  
+ * You may not use this file except in compliance with the License. 
+ * For details, see the LICENCE.txt file location in the root directory of this 
+ * distribution or obtain the Apache License at the following location: 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ * 
+ * For the full license, see: LICENCE.txt (located in the root folder of this distribution). 
+ * ---
+ */
+
+
+package nl.esciencecenter.diffevo;
+
+/**
+ * Autocorrelation and effective sample size of the chains of a run. Each member of the population is a 
+ * chain: in every generation, EvalResults records one result per member, in the order of the members, so 
+ * that with a constant population the chain of a result is its sampleIdentifier modulo nPop. A reduction 
+ * of the population (see DiffEvo.setPopulationSizeSchedule) renumbers the members, after which the chains 
+ * can not be followed across it; the chains are therefore taken from the generations after the last 
+ * reduction. 
+ * 
+ * The autocorrelation of a chain is calculated with an FFT, in O(n log n) for a chain of length n. The
+ * integrated autocorrelation time tau follows from Geyer's (1992) initial monotone sequence estimator, and
+ * the effective sample size of a chain is n/tau.
+ */
+public class ChainDiagnostics {
+	
+	private final int nPars;
+	private final int nChains;
+	private final int nSteps;
+	private final int iGenFirst;
+	// values[iChain][iPar][iStep]
+	private final double[][][] values;
+	
+	
+	// constructor
+	public ChainDiagnostics(EvalResults evalResults){
+		this(evalResults, 0);
+	}
+	
+	
+	/**
+	 * Leaves out the generations that start before the result with sample identifier burnIn.
+	 */
+	public ChainDiagnostics(EvalResults evalResults, int burnIn){
+		
+		this.nPars = evalResults.getParSpace().getNumberOfPars();
+		int nResults = evalResults.getNumberOfEvalResults();
+		
+		// the complete generations, and the first one since the population last changed size
+		int nGensRecorded = 0;
+		int iGenFirst = 0;
+		int[] generationStarts = new int[evalResults.getnGens()];
+		int start = 0;
+		for (int iGen=0;iGen<evalResults.getnGens();iGen++){
+			int nPop = evalResults.getnPop(iGen);
+			if (start+nPop>nResults){
+				break;
+			}
+			if (iGen>0 && nPop!=evalResults.getnPop(iGen-1)){
+				iGenFirst = iGen;
+			}
+			if (evalResults.getSampleIdentifier(start)<burnIn){
+				iGenFirst = iGen+1;
+			}
+			generationStarts[iGen] = start;
+			start += nPop;
+			nGensRecorded++;
+		}
+		
+		this.iGenFirst = iGenFirst;
+		this.nSteps = Math.max(0, nGensRecorded-iGenFirst);
+		this.nChains = nSteps>0 ? evalResults.getnPop(iGenFirst) : 0;
+		this.values = new double[nChains][nPars][nSteps];
+		for (int iStep=0;iStep<nSteps;iStep++){
+			int generationStart = generationStarts[iGenFirst+iStep];
+			for (int iChain=0;iChain<nChains;iChain++){
+				EvalResult evalResult = evalResults.getEvalResult(generationStart+iChain);
+				for (int iPar=0;iPar<nPars;iPar++){
+					values[iChain][iPar][iStep] = evalResult.getParameterValue(iPar);
+				}
+			}
+		}
+	}
+	
+	
+	public int getnChains(){
+		return nChains;
+	}
+	
+	
+	public int getnSteps(){
+		return nSteps;
+	}
+	
+	
+	/**
+	 * Returns the generation at which the chains start.
+	 */
+	public int getFirstGeneration(){
+		return iGenFirst;
+	}
+	
+	
+	public double[] getChain(int iChain, int iPar){
+		return values[iChain][iPar].clone();
+	}
+	
+	
+	/**
+	 * Returns the autocorrelation of the chain at lags 0 to n-1, or NaN if the chain never moved.
+	 */
+	public double[] getAutocorrelation(int iChain, int iPar){
+		return autocorrelation(values[iChain][iPar]);
+	}
+	
+	
+	static double[] autocorrelation(double[] chain){
+		
+		int n = chain.length;
+		double mean = 0;
+		for (int i=0;i<n;i++){
+			mean += chain[i];
+		}
+		mean /= n;
+		
+		// padded to at least twice the length, so that the circular correlation equals the linear one
+		int nPadded = FFT.nextPowerOfTwo(2*n);
+		double[] re = new double[nPadded];
+		double[] im = new double[nPadded];
+		for (int i=0;i<n;i++){
+			re[i] = chain[i]-mean;
+		}
+		FFT.transform(re, im, false);
+		for (int i=0;i<nPadded;i++){
+			re[i] = re[i]*re[i]+im[i]*im[i];
+			im[i] = 0;
+		}
+		FFT.transform(re, im, true);
+		
+		double[] acf = new double[n];
+		for (int lag=0;lag<n;lag++){
+			acf[lag] = re[lag]/re[0];
+		}
+		return acf;
+	}
+	
+	
+	/**
+	 * Returns the integrated autocorrelation time of the chain, -1 + 2 times the sum of the initial 
+	 * positive, monotonically decreasing sequence of sums of pairs of autocorrelations (Geyer, 1992). It is
+	 * 1 for independent samples, and is not allowed below 1/log10(n) (as in Stan), so that strongly 
+	 * alternating chains do not get an effective sample size of more than n*log10(n). Returns NaN for 
+	 * chains of fewer than 4 steps; a chain that never moved has tau equal to its length.
+	 */
+	public double getIntegratedAutocorrelationTime(int iChain, int iPar){
+		return integratedAutocorrelationTime(values[iChain][iPar]);
+	}
+	
+	
+	static double integratedAutocorrelationTime(double[] chain){
+		
+		int n = chain.length;
+		if (n<4){
+			return Double.NaN;
+		}
+		double[] acf = autocorrelation(chain);
+		if (Double.isNaN(acf[0])){
+			return n;
+		}
+		
+		double sum = 0;
+		double previous = Double.POSITIVE_INFINITY;
+		for (int k=0;2*k+1<n;k++){
+			double pair = acf[2*k]+acf[2*k+1];
+			if (!(pair>0)){
+				break;
+			}
+			pair = Math.min(pair, previous);
+			sum += pair;
+			previous = pair;
+		}
+		return Math.max(2*sum-1, 1/Math.log10(n));
+	}
+	
+	
+	public double getEffectiveSampleSize(int iChain, int iPar){
+		return nSteps/getIntegratedAutocorrelationTime(iChain, iPar);
+	}
+	
+	
+	/**
+	 * Returns the effective sample size of parameter iPar, summed over the chains.
+	 */
+	public double getEffectiveSampleSize(int iPar){
+		double effectiveSampleSize = 0;
+		for (int iChain=0;iChain<nChains;iChain++){
+			effectiveSampleSize += getEffectiveSampleSize(iChain, iPar);
+		}
+		return effectiveSampleSize;
+	}
+	
+	
+	/**
+	 * Returns the smallest effective sample size of any parameter, or NaN if the chains are too short.
+	 */
+	public double getMinimumEffectiveSampleSize(){
+		if (nChains==0){
+			return Double.NaN;
+		}
+		double minimum = Double.POSITIVE_INFINITY;
+		for (int iPar=0;iPar<nPars;iPar++){
+			double effectiveSampleSize = getEffectiveSampleSize(iPar);
+			if (Double.isNaN(effectiveSampleSize)){
+				return Double.NaN;
+			}
+			minimum = Math.min(minimum, effectiveSampleSize);
+		}
+		return minimum;
+	}
+	
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyrighted 2012-2013 Netherlands eScience Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").  
+ * You may not use this file except in compliance with the License. 
+ * For details, see the LICENCE.txt file location in the root directory of this 
+ * distribution or obtain the Apache License at the following location: 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ * 
+ * For the full license, see: LICENCE.txt (located in the root folder of this distribution). 
+ * ---
+ */
+
+package nl.esciencecenter.diffevo;
+
+/**
+ * Divides a series into chunks that end at the times where assimilate equals 1. Consecutive chunks 
+ * share their boundary element. Since chunks are contiguous, each chunk is described by an offset 
+ * and a length into the series, so that models can read a chunk directly from the shared array 
+ * (see getSharedValues) instead of from a copy. A series that is not held in memory (see SeriesSource) 
+ * is read a window at a time instead (see SeriesWindow).
+ */
+public class Chunks {
+
+	private final SeriesSource source;
+	private final double[] values;
+	private final int nValues;
+	private final int[] chunkOffsets;
+	private final int[] chunkLengths;
+	private final int nChunks;
+	private final int maxChunkLength;
+	
+	// constructor
+	public Chunks(double[] values, double[] assimilate){
+		this(new ArraySeriesSource(values.clone()), assimilate);
+	}
+	
+	// constructor
+	public Chunks(SeriesSource source, double[] assimilate){
+		
+		this.source = source;
+		this.values = source instanceof ArraySeriesSource ? ((ArraySeriesSource) source).getSharedValues() : null;
+		this.nValues = source.getnValues();
+		
+		assimilate[0] = 0;
+		
+		int nChunks = 0;
+		for (int iValue=0;iValue<nValues;iValue++){
+			if (assimilate[iValue]==1){
+				nChunks = nChunks + 1;
+			}
+		}
+		this.nChunks = nChunks;
+		this.chunkOffsets = new int[nChunks];
+		this.chunkLengths = new int[nChunks];
+		
+		int iIndexStart = 0;
+		int iChunk = 0;
+		int maxChunkLength = 0;
+		for (int iValue=0;iValue<nValues;iValue++){
+			if (assimilate[iValue]==1){
+				chunkOffsets[iChunk] = iIndexStart;
+				chunkLengths[iChunk] = iValue-iIndexStart+1;
+				maxChunkLength = Math.max(maxChunkLength, chunkLengths[iChunk]);
+				iChunk = iChunk + 1;
+				iIndexStart = iValue;
+			}
+		}
+		this.maxChunkLength = maxChunkLength;
+	}
+	
+	public int getnChunks(){
+		return nChunks;
+	}
+	
+	public int getChunkOffset(int iChunk){
+		return chunkOffsets[iChunk];
+	}
+	
+	public int getChunkLength(int iChunk){
+		return chunkLengths[iChunk];
+	}
+	
+	public int getMaxChunkLength(){
+		return maxChunkLength;
+	}
+	
+	/**
+	 * Returns the series itself rather than a copy. Callers read chunk iChunk from index 
+	 * getChunkOffset(iChunk) onwards, and should not modify the array. Only available if the series 
+	 * is held in memory.
+	 */
+	public double[] getSharedValues(){
+		if (values==null){
+			throw new IllegalStateException("The series is not held in memory.");
+		}
+		return values;
+	}
+	
+	public boolean isInMemory(){
+		return values!=null;
+	}
+	
+	public SeriesSource getSource(){
+		return source;
+	}
+	
+	public double[] getValues(){
+		if (values!=null){
+			return values.clone();
+		}
+		double[] copy = new double[nValues];
+		source.read(0, copy, 0, nValues);
+		return copy;
+	}
+	
+	public int getnValues(){
+		return nValues;
+	}
+	
+	public int[][] getChunkIndices(){
+		int[][] chunkIndices = new int[nChunks][];
+		for (int iChunk=0;iChunk<nChunks;iChunk++){
+			chunkIndices[iChunk] = getChunkIndices(iChunk);
+		}
+		return chunkIndices;
+	}
+
+	public int[] getChunkIndices(int iChunk){
+		int chunkLength = chunkLengths[iChunk];
+		int[] indices = new int[chunkLength];
+		for (int k=0;k<chunkLength;k++){
+			indices[k] = chunkOffsets[iChunk] + k;
+		}
+		return indices;
+	}
+	
+	public double[] getChunk(int iChunk){
+		double[] chunk = new double[chunkLengths[iChunk]];
+		source.read(chunkOffsets[iChunk], chunk, 0, chunkLengths[iChunk]);
+		return chunk;
+	}
+}
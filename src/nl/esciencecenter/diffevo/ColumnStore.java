@@ -0,0 +1,286 @@
+/*
+ * Copyrighted 2012-2013 Netherlands eScience Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").  
+ * You may not use this file except in compliance with the License. 
+ * For details, see the LICENCE.txt file location in the root directory of this 
+ * distribution or obtain the Apache License at the following location: 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ * 
+ * For the full license, see: LICENCE.txt (located in the root folder of this distribution). 
+ * ---
+ */
+
+package nl.esciencecenter.diffevo;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * A binary companion to the .eas format: the same columns, stored one after the other as little-endian 
+ * doubles behind a small header, so that they can be memory-mapped instead of parsed. Opening a column 
+ * store only reads the header; the columns are mapped one by one and read on demand by the operating 
+ * system, which makes startup independent of the length of the series.
+ * 
+ * <pre>
+ * magic    8 bytes  "DIFFEVO" followed by a 0 byte
+ * version  int      1
+ * nCols    int
+ * nRows    long
+ * names    per column: int length, UTF-8 bytes
+ * padding  up to a multiple of 8 bytes
+ * columns  nCols x nRows doubles, column by column
+ * </pre>
+ * 
+ * The names identify the role of each column, e.g. "times", "assimilate", "obs" and "forcing". Each 
+ * column is mapped separately, which limits a series to 2^28 (about 2.7*10^8) rows.
+ */
+public final class ColumnStore {
+	
+	public static final String TIMES = "times";
+	public static final String ASSIMILATE = "assimilate";
+	public static final String OBS = "obs";
+	public static final String FORCING = "forcing";
+	
+	private static final byte[] MAGIC = new byte[]{'D', 'I', 'F', 'F', 'E', 'V', 'O', 0};
+	private static final int VERSION = 1;
+	private static final long MAX_ROWS = Integer.MAX_VALUE/8;
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	
+	private final String[] columnNames;
+	private final long nRows;
+	private final DoubleBuffer[] columns;
+	
+	// constructor
+	private ColumnStore(String[] columnNames, long nRows, DoubleBuffer[] columns){
+		this.columnNames = columnNames;
+		this.nRows = nRows;
+		this.columns = columns;
+	}
+	
+	
+	/**
+	 * Maps the columns of a column store file. The file can be closed (or even deleted, on most systems) 
+	 * afterwards without affecting the mapped columns.
+	 */
+	public static ColumnStore open(File file) throws IOException {
+		RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = randomAccessFile.getChannel();
+			ByteBuffer header = ByteBuffer.allocate(16+MAGIC.length).order(ByteOrder.LITTLE_ENDIAN);
+			readFully(channel, header, 0);
+			if (!hasMagic(header)){
+				throw new IOException(file+" is not a column store.");
+			}
+			int version = header.getInt(MAGIC.length);
+			if (version!=VERSION){
+				throw new IOException(file+" has column store version "+version+" instead of "+VERSION+".");
+			}
+			int nCols = header.getInt(MAGIC.length+4);
+			long nRows = header.getLong(MAGIC.length+8);
+			
+			long position = header.capacity();
+			String[] columnNames = new String[nCols];
+			ByteBuffer length = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+			for (int iCol=0;iCol<nCols;iCol++){
+				length.clear();
+				readFully(channel, length, position);
+				ByteBuffer name = ByteBuffer.allocate(length.getInt(0));
+				readFully(channel, name, position+4);
+				columnNames[iCol] = new String(name.array(), UTF8);
+				position = position+4+name.capacity();
+			}
+			long dataOffset = align(position);
+			if (dataOffset+nCols*nRows*8>channel.size()){
+				throw new IOException(file+" is shorter than its header says.");
+			}
+			
+			DoubleBuffer[] columns = new DoubleBuffer[nCols];
+			for (int iCol=0;iCol<nCols;iCol++){
+				columns[iCol] = channel.map(FileChannel.MapMode.READ_ONLY, dataOffset+iCol*nRows*8, nRows*8)
+						.order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+			}
+			return new ColumnStore(columnNames, nRows, columns);
+		}
+		finally {
+			randomAccessFile.close();
+		}
+	}
+	
+	
+	public static boolean isColumnStore(File file) throws IOException {
+		RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+		try {
+			if (randomAccessFile.length()<MAGIC.length){
+				return false;
+			}
+			ByteBuffer header = ByteBuffer.allocate(MAGIC.length);
+			readFully(randomAccessFile.getChannel(), header, 0);
+			return hasMagic(header);
+		}
+		finally {
+			randomAccessFile.close();
+		}
+	}
+	
+	
+	/**
+	 * Writes the columns, which should all have the same length, to a column store file.
+	 */
+	public static void write(File file, String[] columnNames, double[][] columns) throws IOException {
+		
+		int nCols = columns.length;
+		if (columnNames.length!=nCols){
+			throw new IllegalArgumentException("There are "+nCols+" columns, but "+columnNames.length+" names.");
+		}
+		long nRows = nCols==0 ? 0 : columns[0].length;
+		if (nRows>MAX_ROWS){
+			throw new IllegalArgumentException("A column store holds at most "+MAX_ROWS+" rows.");
+		}
+		
+		ByteBuffer header = ByteBuffer.allocate((int) align(headerSize(columnNames))).order(ByteOrder.LITTLE_ENDIAN);
+		header.put(MAGIC);
+		header.putInt(VERSION);
+		header.putInt(nCols);
+		header.putLong(nRows);
+		for (String columnName : columnNames){
+			byte[] name = columnName.getBytes(UTF8);
+			header.putInt(name.length);
+			header.put(name);
+		}
+		header.clear();
+		
+		RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+		try {
+			randomAccessFile.setLength(0);
+			FileChannel channel = randomAccessFile.getChannel();
+			writeFully(channel, header);
+			ByteBuffer buffer = ByteBuffer.allocateDirect(1<<16).order(ByteOrder.LITTLE_ENDIAN);
+			DoubleBuffer doubles = buffer.asDoubleBuffer();
+			for (int iCol=0;iCol<nCols;iCol++){
+				if (columns[iCol].length!=nRows){
+					throw new IllegalArgumentException("Column "+columnNames[iCol]+" has "+columns[iCol].length+
+							" rows instead of "+nRows+".");
+				}
+				for (int iRow=0;iRow<nRows;iRow+=doubles.capacity()){
+					int nValues = (int) Math.min(doubles.capacity(), nRows-iRow);
+					doubles.clear();
+					doubles.put(columns[iCol], iRow, nValues);
+					buffer.clear();
+					buffer.limit(nValues*8);
+					writeFully(channel, buffer);
+				}
+			}
+		}
+		finally {
+			randomAccessFile.close();
+		}
+	}
+	
+	
+	/**
+	 * Converts an .eas file into a column store, naming its columns in order.
+	 */
+	public static void convert(File easFile, File file, String[] columnNames) throws IOException {
+		write(file, columnNames, EasParser.parse(easFile).toArray());
+	}
+	
+	
+	/**
+	 * Converts an .eas file into a column store. The arguments are the .eas file, the column store file, 
+	 * and the names of the columns separated by commas, e.g. times,assimilate,obs,obs,forcing.
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length!=3){
+			System.err.println("usage: ColumnStore <file.eas> <file.ecs> <name,name,...>");
+			System.exit(1);
+		}
+		convert(new File(args[0]), new File(args[1]), args[2].split(","));
+	}
+	
+	
+	public long getnRows(){
+		return nRows;
+	}
+	
+	public int getnCols(){
+		return columns.length;
+	}
+	
+	public String[] getColumnNames(){
+		return columnNames.clone();
+	}
+	
+	/**
+	 * Returns the index of the first column with the given name, or -1 if there is none.
+	 */
+	public int getColumnIndex(String columnName){
+		return Arrays.asList(columnNames).indexOf(columnName);
+	}
+	
+	/**
+	 * Returns a read-only view of the mapped column, with its own position and limit.
+	 */
+	public DoubleBuffer getColumnBuffer(int iCol){
+		return columns[iCol].asReadOnlyBuffer();
+	}
+	
+	/**
+	 * Copies the column into a new array.
+	 */
+	public double[] getColumn(int iCol){
+		double[] column = new double[(int) nRows];
+		columns[iCol].duplicate().get(column);
+		return column;
+	}
+	
+	
+	private static long headerSize(String[] columnNames){
+		long size = MAGIC.length+16;
+		for (String columnName : columnNames){
+			size = size+4+columnName.getBytes(UTF8).length;
+		}
+		return size;
+	}
+	
+	private static long align(long position){
+		return (position+7)/8*8;
+	}
+	
+	private static boolean hasMagic(ByteBuffer header){
+		for (int i=0;i<MAGIC.length;i++){
+			if (header.get(i)!=MAGIC[i]){
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()){
+			if (channel.read(buffer, position+buffer.position())<0){
+				throw new IOException("Unexpected end of file.");
+			}
+		}
+	}
+	
+	private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()){
+			channel.write(buffer);
+		}
+	}
+
+}
@@ -1,38 +1,41 @@
 package nl.esciencecenter.diffevo;
 
 import java.io.*;
-import java.util.ArrayList;
-import java.util.Scanner;
+import java.nio.DoubleBuffer;
 
 
 public class DataReader {
 	
 	private double[][] dataArrayTransposed;
+	private ColumnStore columnStore;
 
+	/**
+	 * Reads an .eas file: the first number in the file is the number of lines to skip (including the line 
+	 * with the number), after which each line holds one comma-separated value per column. The file is 
+	 * parsed from a memory-mapped buffer straight into the column arrays (see EasParser). A column store 
+	 * file (see ColumnStore) is recognized by its header and is mapped instead of parsed; its columns are 
+	 * only copied into arrays when getData, getColumn or getRow asks for them.
+	 */
 	public DataReader(File file) {
+		this(file, 1);
+	}
+	
+	/**
+	 * Reads an .eas file on nThreads threads, each of which parses a range of the lines (see 
+	 * EasParser.parseParallel). The data are the same as those read on a single thread. 
+	 */
+	public DataReader(File file, int nThreads) {
 
-		ArrayList<double[]> dataArrayList = new ArrayList<double[]>();
 		try{
-			Scanner fileScanner = new Scanner(file);
-			int nSkipLines = fileScanner.nextInt();
-			for (int iSkipLine=0;iSkipLine<nSkipLines;iSkipLine++){
-				fileScanner.nextLine();
+			if (ColumnStore.isColumnStore(file)){
+				columnStore = ColumnStore.open(file);
+			}
+			else if (nThreads>1){
+				dataArrayTransposed = EasParser.parseParallel(file, nThreads).toArray();
+			}
+			else {
+				dataArrayTransposed = EasParser.parse(file).toArray();
 			}
-			int nLines = 0;
-			int nParts = 0;
-			while (fileScanner.hasNextLine()){
-				String line = fileScanner.nextLine();
-				String[] parts = line.split(",");
-				nParts = parts.length;
-				double[] values = new double[nParts];
-				for (int iPart=0;iPart<nParts;iPart++){
-					values[iPart] = Double.valueOf(parts[iPart]);
-				}
-				dataArrayList.add(values);
-				nLines = nLines + 1;
-			} //while
-			double[][] dataArray = dataArrayList.toArray(new double[nLines][nParts]);
-			setData(dataArray);
 		} //try
 		catch(Exception e){
 			System.out.println("Error while reading file line by line:" 
@@ -41,16 +44,55 @@ public class DataReader {
 	} //main
 
 	public double[][] getData() {
+		if (columnStore!=null){
+			double[][] data = new double[columnStore.getnCols()][];
+			for (int iCol=0;iCol<data.length;iCol++){
+				data[iCol] = columnStore.getColumn(iCol);
+			}
+			return data;
+		}
 		return dataArrayTransposed.clone();
 	} // getDataArray
 
 
 	public double[] getColumn(int iCol) {
+		if (columnStore!=null){
+			return columnStore.getColumn(iCol);
+		}
 		return dataArrayTransposed[iCol].clone();
 	} // getDataArray
+	
+	
+	/**
+	 * Returns a read-only view of a column without copying it. For a column store, this is the mapped 
+	 * file itself.
+	 */
+	public DoubleBuffer getColumnBuffer(int iCol) {
+		if (columnStore!=null){
+			return columnStore.getColumnBuffer(iCol);
+		}
+		return DoubleBuffer.wrap(dataArrayTransposed[iCol]).asReadOnlyBuffer();
+	}
+	
+	
+	/**
+	 * Returns the column store the data were mapped from, or null if they were read from an .eas file.
+	 */
+	public ColumnStore getColumnStore() {
+		return columnStore;
+	}
+	
 
 	public double[] getRow(int iRow) {
 		
+		if (columnStore!=null){
+			double[] row = new double[columnStore.getnCols()];
+			for (int iCol=0;iCol<row.length;iCol++){
+				row[iCol] = columnStore.getColumnBuffer(iCol).get(iRow);
+			}
+			return row;
+		}
+		
 		int nCols = dataArrayTransposed.length;
 		
 		double[] row = new double[nCols];
@@ -59,22 +101,4 @@ public class DataReader {
 		}
 		return row;
 	} // getDataArray
-	
-	
-	
-	
-	private void setData(double[][] dataArray) {
-		
-		int nRows = dataArray.length;
-		int nCols = dataArray[0].length;
-
-		dataArrayTransposed = new double[nCols][nRows];
-		
-		for (int iRow=0;iRow<nRows;iRow++){
-			for (int iCol=0;iCol<nCols;iCol++){
-				dataArrayTransposed[iCol][iRow] = dataArray[iRow][iCol];
-			}
-		}
-		
-	} // setDataArray
 } //DataReader
@@ -21,9 +21,15 @@ package nl.esciencecenter.diffevo;
 
 
 
+import java.io.IOException;
+import java.util.Arrays;
 import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+import nl.esciencecenter.diffevo.external.DistributedEvaluator;
 import nl.esciencecenter.diffevo.likelihoodfunctionfactories.LikelihoodFunctionFactory;
+import nl.esciencecenter.diffevo.likelihoodfunctions.IncrementalLikelihoodFunction;
 import nl.esciencecenter.diffevo.statespacemodelfactories.ModelFactory;
 
 /**
@@ -42,14 +48,33 @@ public class DiffEvo {
 	private EvalResults evalResults;
 	private Random generator;
 	private ParSpace parSpace;	
-//	private double[] initState;
 	private ForcingChunks forcingChunks;
 	private TimeChunks timeChunks;
 	private double[][] obs;
-//	private ModelFactory modelFactory;
-//	private LikelihoodFunctionFactory likelihoodFunctionFactory;
 	private final static long DEFAULT_RANDOM_SEED = 0;
 	private boolean modelIsDynamic;
+	private LikelihoodFunctionFactory likelihoodFunctionFactory;
+	private double[] initState;
+	private ModelFactory modelFactory;
+	private int nTries;
+	private int nThreads;
+	private boolean virtualThreads;
+	private ExecutorService executorService;
+	private ListOfParameterCombinations tries;
+	private ListOfParameterCombinations references;
+	private double[] logAcceptanceRatios;
+	private int nPopCurrent;
+	private int iGenCurrent;
+	private PopulationSizeSchedule populationSizeSchedule;
+	private StoppingCriterion stoppingCriterion;
+	private int[] ranking;
+	private ModelResultRetention modelResultRetention;
+	private int[] observedStates;
+	private DistributedEvaluator distributedEvaluator;
+	private int windowLength;
+	private final static int MINIMUM_POPULATION_SIZE = 4;
+	private final static double DIFFEVO_PAR_F = 0.6;
+	private final static double DIFFEVO_PAR_K = 0.4;
 	
 	
 	// constructor:
@@ -76,21 +101,45 @@ public class DiffEvo {
 		this.proposals = new ListOfParameterCombinations(nPop, nPars, likelihoodFunctionFactory);
 		this.generator = new Random();
 		this.generator.setSeed(seed);
-//		this.likelihoodFunctionFactory = likelihoodFunctionFactory;
+		this.likelihoodFunctionFactory = likelihoodFunctionFactory;
 		this.evalResults = new EvalResults(nGens, nPop, parSpace, likelihoodFunctionFactory, generator);
 		this.modelIsDynamic = false;
+		this.nTries = 1;
+		this.nThreads = 1;
+		this.virtualThreads = false;
+		this.logAcceptanceRatios = new double[nPop];
+		this.nPopCurrent = nPop;
+		this.iGenCurrent = 0;
+		this.populationSizeSchedule = null;
+		this.ranking = new int[nPop];
+		this.modelResultRetention = ModelResultRetention.TRAJECTORY;
+		this.observedStates = null;
+		this.distributedEvaluator = null;
+		this.windowLength = SeriesWindow.DEFAULT_WINDOW_LENGTH;
 	}
 
 	// constructor:
 	DiffEvo(int nGens, int nPop, ParSpace parSpace, StateSpace stateSpace, double[] initState, double[] forcing, double[] times, 
 			double[] assimilate, double[][] obs, ModelFactory modelFactory, LikelihoodFunctionFactory likelihoodFunctionFactory, long seed) {
+		// a single copy of forcing and times, shared by the chunks and the evaluation results
+		this(nGens, nPop, parSpace, stateSpace, initState, new ArraySeriesSource(forcing.clone()), new ArraySeriesSource(times.clone()), 
+				assimilate, obs, modelFactory, likelihoodFunctionFactory, seed);
+	}
+
+	// constructor:
+	/**
+	 * Reads the forcing and times through the given sources, e.g. columns of a ColumnStore, rather than 
+	 * holding them in memory. Model runners then read them a window at a time (see setWindowLength).
+	 */
+	DiffEvo(int nGens, int nPop, ParSpace parSpace, StateSpace stateSpace, double[] initState, SeriesSource forcing, SeriesSource times, 
+			double[] assimilate, double[][] obs, ModelFactory modelFactory, LikelihoodFunctionFactory likelihoodFunctionFactory, long seed) {
 		this(nGens, nPop, parSpace, likelihoodFunctionFactory, seed);
 		if (modelFactory!=null){
-//			this.initState = initState.clone();
-			this.forcingChunks = new ForcingChunks(forcing.clone(), assimilate.clone());
-			this.timeChunks = new TimeChunks(times.clone(), assimilate.clone());
+			this.initState = initState.clone();
+			this.forcingChunks = new ForcingChunks(forcing, assimilate.clone());
+			this.timeChunks = new TimeChunks(times, assimilate.clone());
 			this.obs = obs.clone();
-//			this.modelFactory = modelFactory;
+			this.modelFactory = modelFactory;
 			this.parents = new ListOfParameterCombinations(nPop, nPars, likelihoodFunctionFactory, initState, timeChunks, forcingChunks, modelFactory);
 			this.proposals = new ListOfParameterCombinations(nPop, nPars, likelihoodFunctionFactory, initState, timeChunks, forcingChunks, modelFactory);
 		}
@@ -102,33 +151,336 @@ public class DiffEvo {
 	
 	public EvalResults runOptimization(){
 		System.out.println("Starting Differential Evolution optimization...");		
-		initializeParents();
-		for (int iGen = 1;iGen<nGens;iGen++){
-			proposeOffSpring();
-			updateParentsWithProposals();
+		setUpDistributedEvaluator();
+		startWorkers();
+		try {
+			initializeParents();
+			for (int iGen = 1;iGen<nGens;iGen++){
+				reducePopulation(iGen);
+				proposeOffSpring();
+				updateParentsWithProposals();
+				if (stoppingCriterion!=null && stoppingCriterion.isMet(evalResults, iGen)){
+					break;
+				}
+			}
+		}
+		finally {
+			stopWorkers();
 		}
 		return evalResults; 
 	}
 	
 	
+	/**
+	 * Switches on multiple-try Metropolis (Liu, Liang and Wong, 2000). Each member of the population then 
+	 * generates nTries candidates per generation instead of one. One of the candidates is selected with 
+	 * probability proportional to its likelihood, after which nTries-1 reference points are drawn around 
+	 * the selected candidate in order to calculate the acceptance ratio. The 2*nTries-1 evaluations per 
+	 * member are independent, and are spread over the worker threads (see setnThreads).
+	 */
+	public void setnTries(int nTries){
+		if (nTries<1){
+			throw new IllegalArgumentException("The number of tries should be at least 1.");
+		}
+		this.nTries = nTries;
+		if (nTries>1){
+			tries = createListOfParameterCombinations(nPop*nTries);
+			references = createListOfParameterCombinations(nPop*(nTries-1));
+		}
+		else {
+			tries = null;
+			references = null;
+		}
+	}
+
+	
+	/**
+	 * Sets the number of threads used to evaluate the population. Threads are started at the beginning of
+	 * runOptimization and stopped when it returns.
+	 */
+	public void setnThreads(int nThreads){
+		if (nThreads<1){
+			throw new IllegalArgumentException("The number of threads should be at least 1.");
+		}
+		this.nThreads = nThreads;
+		this.virtualThreads = false;
+	}
+	
+	
+	/**
+	 * Evaluates every member on a thread of its own (a virtual thread where the Java runtime has them, see 
+	 * VirtualThreads), with at most maxConcurrency evaluations running at the same time. This pays off 
+	 * when the evaluations mostly wait, e.g. on an external process, so that a pool sized to the number of 
+	 * cores would leave it idle. For evaluations that keep a core busy, use setnThreads instead.
+	 */
+	public void setVirtualThreads(int maxConcurrency){
+		if (maxConcurrency<1){
+			throw new IllegalArgumentException("The concurrency limit should be at least 1.");
+		}
+		this.nThreads = maxConcurrency;
+		this.virtualThreads = true;
+	}
+	
+	
+	/**
+	 * Evaluates the populations on DistributedWorkers in other JVMs instead of in this one. The workers 
+	 * should have been started with the same model factory and likelihood function factory; the 
+	 * observations, forcing and times are sent to them at the beginning of runOptimization. Pass null to 
+	 * evaluate locally again.
+	 */
+	public void setDistributedEvaluator(DistributedEvaluator distributedEvaluator){
+		this.distributedEvaluator = distributedEvaluator;
+	}
+	
+	
+	private void setUpDistributedEvaluator(){
+		if (distributedEvaluator==null){
+			return;
+		}
+		try {
+			if (modelFactory!=null){
+				distributedEvaluator.setUp(nPars, evalResults.getInitState(), evalResults.getForcing(), evalResults.getTimes(), 
+						evalResults.getAssimilate(), obs, modelResultRetention, observedStates);
+			}
+			else {
+				distributedEvaluator.setUp(nPars, null, null, null, null, null, modelResultRetention, null);
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException("Could not set up the distributed workers.", e);
+		}
+	}
+	
+	
+	/**
+	 * Lets the population shrink over the generations, e.g. using a LinearPopulationSizeSchedule. At each
+	 * generation boundary, the worst parents are dropped until the population size prescribed by the 
+	 * schedule is reached. Storage is allocated once for the initial population size.
+	 */
+	public void setPopulationSizeSchedule(PopulationSizeSchedule populationSizeSchedule){
+		this.populationSizeSchedule = populationSizeSchedule;
+	}
+	
+	
+	/**
+	 * Sets what is kept of the simulated trajectories of a dynamic model. By default, each trajectory is 
+	 * stored in full and scored afterwards. With FINAL_STATE or NONE, each member is scored while it is 
+	 * being simulated, and the evaluation results carry only the final state or no model result at all.
+	 */
+	public void setModelResultRetention(ModelResultRetention modelResultRetention){
+		if (modelResultRetention!=ModelResultRetention.TRAJECTORY && 
+				!(likelihoodFunctionFactory.create() instanceof IncrementalLikelihoodFunction)){
+			throw new IllegalArgumentException("The likelihood function cannot be calculated incrementally, " + 
+					"so the trajectories need to be retained.");
+		}
+		this.modelResultRetention = modelResultRetention;
+		parents.setModelResultRetention(modelResultRetention);
+		proposals.setModelResultRetention(modelResultRetention);
+		if (tries!=null){
+			tries.setModelResultRetention(modelResultRetention);
+			references.setModelResultRetention(modelResultRetention);
+		}
+	}
+	
+	
+	/**
+	 * Maps the rows of obs onto the states of the model: obs[iObs] is compared with state observedStates[iObs]. 
+	 * Only these states are retained in the model results, so that for models with many states the memory 
+	 * use scales with the number of observed series rather than with the number of states. By default, 
+	 * row iObs of obs is compared with state iObs, and all states are retained.
+	 */
+	public void setObservedStates(int[] observedStates){
+		if (modelFactory==null){
+			throw new IllegalStateException("Observed states only apply to dynamic models.");
+		}
+		if (observedStates.length!=obs.length){
+			throw new IllegalArgumentException("There are "+obs.length+" rows of observations, but "+observedStates.length+" observed states.");
+		}
+		for (int iObs=0;iObs<observedStates.length;iObs++){
+			if (observedStates[iObs]<0 || observedStates[iObs]>=initState.length){
+				throw new IllegalArgumentException("Observed state "+observedStates[iObs]+" does not exist.");
+			}
+		}
+		this.observedStates = observedStates.clone();
+		parents.setObservedStates(observedStates);
+		proposals.setObservedStates(observedStates);
+		if (tries!=null){
+			tries.setObservedStates(observedStates);
+			references.setObservedStates(observedStates);
+		}
+	}
+	
+	
+	/**
+	 * Sets how many values of the forcing and times are read at a time, when these come from a 
+	 * SeriesSource that is not held in memory, or when only the observed states of a model that simulates 
+	 * all states are retained (see ListOfParameterCombinations.setWindowLength).
+	 */
+	public void setWindowLength(int windowLength){
+		this.windowLength = windowLength;
+		for (ListOfParameterCombinations listOfParameterCombinations : new ListOfParameterCombinations[]{parents, proposals, tries, references}){
+			if (listOfParameterCombinations!=null){
+				listOfParameterCombinations.setWindowLength(windowLength);
+			}
+		}
+	}
+	
+	
+	/**
+	 * Keeps marginal and pairwise histograms of the results (see OnlineHistograms) up to date during the 
+	 * run, so that another thread can follow its progress through getOnlineHistograms().getSnapshot(). 
+	 * Should be called before runOptimization.
+	 */
+	public void setOnlineHistograms(boolean enabled){
+		evalResults.setOnlineHistograms(enabled ? new OnlineHistograms(parSpace) : null);
+	}
+	
+	
+	/**
+	 * Ends the run after the first generation at which stoppingCriterion is met (e.g. an 
+	 * EffectiveSampleSizeCriterion), instead of after nGens generations. Pass null to always run all 
+	 * generations.
+	 */
+	public void setStoppingCriterion(StoppingCriterion stoppingCriterion){
+		this.stoppingCriterion = stoppingCriterion;
+	}
+	
+	
+	public OnlineHistograms getOnlineHistograms(){
+		return evalResults.getOnlineHistograms();
+	}
+	
+	
+	/**
+	 * Returns the record of results that runOptimization fills, e.g. to follow the run with a 
+	 * ProgressServer.
+	 */
+	public EvalResults getEvalResults(){
+		return evalResults;
+	}
+	
+	
+	public void reducePopulation(int iGen){
+		
+		if (populationSizeSchedule==null){
+			return;
+		}
+		int nPopNew = populationSizeSchedule.getPopulationSize(iGen, nGens, nPop);
+		nPopNew = Math.max(nPopNew, MINIMUM_POPULATION_SIZE);
+		if (nPopNew>=nPopCurrent){
+			return;
+		}
+		
+		// rank the parents from best to worst objective score (insertion sort, NaN counts as worst)
+		for (int iPop=0;iPop<nPopCurrent;iPop++){
+			int iRank = iPop;
+			while (iRank>0 && isBetter(parents.getObjScore(iPop), parents.getObjScore(ranking[iRank-1]))){
+				ranking[iRank] = ranking[iRank-1];
+				iRank--;
+			}
+			ranking[iRank] = iPop;
+		}
+		
+		// retain the best nPopNew, in their original order
+		int[] iPopsRetained = new int[nPopNew];
+		System.arraycopy(ranking, 0, iPopsRetained, 0, nPopNew);
+		Arrays.sort(iPopsRetained);
+		parents.retainMembers(iPopsRetained);
+		
+		setPopulationSize(nPopNew);
+	}
+	
+	
+	private static boolean isBetter(double objScore, double objScoreOther){
+		return objScore>objScoreOther || (Double.isNaN(objScoreOther) && !Double.isNaN(objScore));
+	}
+	
+	
+	private void setPopulationSize(int nPopNew){
+		nPopCurrent = nPopNew;
+		parents.setPopulationSize(nPopNew);
+		proposals.setPopulationSize(nPopNew);
+		if (tries!=null){
+			tries.setPopulationSize(nPopNew*nTries);
+			references.setPopulationSize(nPopNew*(nTries-1));
+		}
+	}
+	
+	
+	private ListOfParameterCombinations createListOfParameterCombinations(int nMembers){
+		if (modelFactory!=null){
+			ListOfParameterCombinations listOfParameterCombinations = 
+					new ListOfParameterCombinations(nMembers, nPars, likelihoodFunctionFactory, initState, timeChunks, forcingChunks, modelFactory);
+			listOfParameterCombinations.setModelResultRetention(modelResultRetention);
+			listOfParameterCombinations.setObservedStates(observedStates);
+			listOfParameterCombinations.setWindowLength(windowLength);
+			return listOfParameterCombinations;
+		}
+		else {
+			return new ListOfParameterCombinations(nMembers, nPars, likelihoodFunctionFactory);
+		}
+	}
+
+	
+	private void startWorkers(){
+		if (virtualThreads){
+			executorService = VirtualThreads.newExecutorService();
+		}
+		else if (nThreads>1){
+			executorService = Executors.newFixedThreadPool(nThreads);
+		}
+		setExecutorService(executorService);
+	}
+
+	
+	private void stopWorkers(){
+		if (executorService!=null){
+			executorService.shutdown();
+			executorService = null;
+		}
+		setExecutorService(null);
+	}
+
+	
+	private void setExecutorService(ExecutorService executorService){
+		for (ListOfParameterCombinations listOfParameterCombinations : new ListOfParameterCombinations[]{parents, proposals, tries, references}){
+			if (listOfParameterCombinations!=null){
+				listOfParameterCombinations.setExecutorService(executorService, nThreads);
+				listOfParameterCombinations.setTaskPerMember(virtualThreads);
+			}
+		}
+	}
+	
+	
+	private void evaluate(ListOfParameterCombinations listOfParameterCombinations){
+		if (distributedEvaluator!=null){
+			distributedEvaluator.evaluate(listOfParameterCombinations);
+		}
+		else if (modelIsDynamic){
+			// if the model in question is dynamic, generate the model prediction by running the model. Then feed the list of model
+			// predictions into a function that runs the likelihoodfunction on the prediction, yielding a list of objective scores.
+			// Unless the trajectories are retained, both steps are done in a single pass.
+			listOfParameterCombinations.calcModelResultsAndObjScores(obs);
+		}
+		else {
+			// if the model in question is not dynamic, use the likelihood function directly to calculate an objective score for each entry
+			listOfParameterCombinations.calcObjScores();
+		}
+	}
+	
+	
 	public void initializeParents(){
 		
+		iGenCurrent = 0;
+		setPopulationSize(nPop);
+		evalResults.setnPop(iGenCurrent, nPop);
+		
 		// take uniform random samples of the parameter space and add them to the parents array:
 		for (int iPop=0;iPop<nPop;iPop++){
 			double[] parameterCombination = parSpace.takeUniformRandomSample(generator);
 			parents.setParameterCombination(iPop, parameterCombination);
 		}
 
-		if (modelIsDynamic){
-			// if the model in question is dynamic, generate the model prediction by running the model. Then feed the list of model
-			// predictions into a function that runs the likelihoodfunction on the prediction, yielding a list of objective scores
-			parents.calcModelResults();
-			parents.calcObjScores(obs);
-		}
-		else {
-			// if the model in question is not dynamic, use the likelihood function directly to calculate an objective score for each entry in parents.
-			parents.calcObjScores();
-		}
+		evaluate(parents);
 		
 		// now add the initial values of parents to the record, i.e. evalResults
 		for (int iPop=0;iPop<nPop;iPop++){
@@ -147,79 +499,124 @@ public class DiffEvo {
 	}
 	
 	public void proposeOffSpring(){
+		
+		if (nTries>1){
+			proposeOffSpringMultipleTry();
+			return;
+		}
 	
-		final int nDraws = 3;
-		final double diffEvoParF = 0.6;
-		final double diffEvoParK = 0.4;
-		int[] availables = new int[nDraws];
-		boolean drawAgain = true;
-		int index;
-		double[] dist1;
-		double[] dist2;
-		double[] proposal;
+		int[] availables = new int[3];
 		double[] parent;
 		
-		// draw 3 random integer indices from [0,nPop], but not your own index and no recurrent samples
-		for (int iPop=0;iPop<nPop;iPop++){
-			availables[0] = -1;
-			availables[1] = -1;
-			availables[2] = -1;
-			for (int iDraw=0;iDraw<nDraws;iDraw++){
-				drawAgain = true;
-				index = -1;
-				while (drawAgain){
-					index = generator.nextInt(nPop);
-					drawAgain = index == iPop | index == availables[0] | index == availables[1] | index == availables[2];
-				}
-				availables[iDraw] = index;
-			}
-			
-			dist1 = calcDistance(iPop, availables, 1);
-			dist2 = calcDistance(iPop, availables, 2);
-			
+		for (int iPop=0;iPop<nPopCurrent;iPop++){
+			drawAvailables(iPop, availables);
 			parent = parents.getParameterCombination(iPop);
-
-			proposal = new double[nPars];
-			for (int iPar=0;iPar<nPars;iPar++){
-				proposal[iPar] = parent[iPar] + diffEvoParF * dist1[iPar] + diffEvoParK * dist2[iPar]; 				
-			}
-			proposals.setParameterCombination(iPop, proposal);
+			proposals.setParameterCombination(iPop, propose(parent, availables));
  		}
 		proposals = parSpace.reflectIfOutOfBounds(proposals);
 		
-		if (modelIsDynamic){
-			// if the model in question is dynamic, generate the model prediction by running the model. Then feed the list of model
-			// predictions into a function that runs the likelihoodfunction on the prediction, yielding a list of objective scores
-			proposals.calcModelResults();
-			proposals.calcObjScores(obs);
-		}
-		else {
-			// if the model in question is not dynamic, use the likelihood function directly to calculate an objective score for each entry in parents.
-			proposals.calcObjScores();
+		evaluate(proposals);
+		
+		for (int iPop=0;iPop<nPopCurrent;iPop++){
+			logAcceptanceRatios[iPop] = proposals.getObjScore(iPop) - parents.getObjScore(iPop);
 		}
 		
 	}
 	
-	private double[] calcDistance(int iPop, int[] availables, int distanceOneOrTwo){
-		int fromIndex;
-		int toIndex;
-		double[] fromPoint;
-		double[] toPoint;
-		double[] dist;
- 		
-		if (distanceOneOrTwo==1){
-			fromIndex = iPop;
-			toIndex = availables[0];
+	
+	private void proposeOffSpringMultipleTry(){
+		
+		int[] availables = new int[3];
+		double[] parent;
+		double[] candidate;
+		double[] logWeights = new double[nTries];
+		
+		// generate nTries candidates around each parent:
+		for (int iPop=0;iPop<nPopCurrent;iPop++){
+			parent = parents.getParameterCombination(iPop);
+			for (int iTry=0;iTry<nTries;iTry++){
+				drawAvailables(iPop, availables);
+				tries.setParameterCombination(iPop*nTries+iTry, propose(parent, availables));
+			}
+		}
+		tries = parSpace.reflectIfOutOfBounds(tries);
+		evaluate(tries);
+		
+		// select one candidate per parent, with probability proportional to its likelihood, and 
+		// generate the reference points around the selected candidate:
+		for (int iPop=0;iPop<nPopCurrent;iPop++){
+			for (int iTry=0;iTry<nTries;iTry++){
+				logWeights[iTry] = tries.getObjScore(iPop*nTries+iTry);
+			}
+			int iTrySelected = drawProportionally(logWeights);
+			int iSelected = iPop*nTries+iTrySelected;
+			
+			candidate = tries.getParameterCombination(iSelected);
+			proposals.setParameterCombination(iPop, candidate);
+			proposals.setObjScore(iPop, tries.getObjScore(iSelected));
+			if (modelIsDynamic){
+				proposals.setModelResults(iPop, tries.getModelResult(iSelected));
+			}
+			logAcceptanceRatios[iPop] = logSumExp(logWeights);
+			
+			for (int iReference=0;iReference<nTries-1;iReference++){
+				drawAvailables(iPop, availables);
+				references.setParameterCombination(iPop*(nTries-1)+iReference, propose(candidate, availables));
+			}
 		}
-		else{
-			fromIndex = availables[1];
-			toIndex = availables[2];
+		references = parSpace.reflectIfOutOfBounds(references);
+		evaluate(references);
+		
+		// the parent itself is the last reference point:
+		for (int iPop=0;iPop<nPopCurrent;iPop++){
+			for (int iReference=0;iReference<nTries-1;iReference++){
+				logWeights[iReference] = references.getObjScore(iPop*(nTries-1)+iReference);
+			}
+			logWeights[nTries-1] = parents.getObjScore(iPop);
+			logAcceptanceRatios[iPop] = logAcceptanceRatios[iPop] - logSumExp(logWeights);
 		}
+	}
+	
+	
+	private void drawAvailables(int iPop, int[] availables){
 		
-		fromPoint = parents.getParameterCombination(fromIndex);
-		toPoint = parents.getParameterCombination(toIndex);
+		final int nDraws = availables.length;
+		boolean drawAgain = true;
+		int index;
 		
-		dist = new double[nPars];
+		// draw 3 random integer indices from [0,nPop], but not your own index and no recurrent samples
+		for (int iDraw=0;iDraw<nDraws;iDraw++){
+			availables[iDraw] = -1;
+		}
+		for (int iDraw=0;iDraw<nDraws;iDraw++){
+			drawAgain = true;
+			index = -1;
+			while (drawAgain){
+				index = generator.nextInt(nPopCurrent);
+				drawAgain = index == iPop | index == availables[0] | index == availables[1] | index == availables[2];
+			}
+			availables[iDraw] = index;
+		}
+	}
+	
+	
+	private double[] propose(double[] base, int[] availables){
+
+		double[] dist1 = calcDistance(base, availables[0]);
+		double[] dist2 = calcDistance(parents.getParameterCombination(availables[1]), availables[2]);
+		
+		double[] proposal = new double[nPars];
+		for (int iPar=0;iPar<nPars;iPar++){
+			proposal[iPar] = base[iPar] + DIFFEVO_PAR_F * dist1[iPar] + DIFFEVO_PAR_K * dist2[iPar]; 				
+		}
+		return proposal;
+	}
+	
+	
+	private double[] calcDistance(double[] fromPoint, int toIndex){
+
+		double[] toPoint = parents.getParameterCombination(toIndex);
+		double[] dist = new double[nPars];
 
 		for (int iPar=0;iPar<nPars;iPar++){
 			dist[iPar] = fromPoint[iPar]-toPoint[iPar];
@@ -227,24 +624,64 @@ public class DiffEvo {
 		
 		return dist;
 	}
+	
+	
+	private int drawProportionally(double[] logWeights){
+		
+		int nWeights = logWeights.length;
+		double logSum = logSumExp(logWeights);
+		if (Double.isInfinite(logSum) || Double.isNaN(logSum)){
+			// none of the weights is usable, fall back to a uniform draw
+			return generator.nextInt(nWeights);
+		}
+		double u = generator.nextDouble();
+		double cumulative = 0;
+		for (int iWeight=0;iWeight<nWeights;iWeight++){
+			cumulative = cumulative + Math.exp(logWeights[iWeight] - logSum);
+			if (u<cumulative){
+				return iWeight;
+			}
+		}
+		return nWeights-1;
+	}
+	
+	
+	private static double logSumExp(double[] logValues){
+		
+		double max = Double.NEGATIVE_INFINITY;
+		for (double logValue : logValues){
+			if (logValue>max){
+				max = logValue;
+			}
+		}
+		if (Double.isInfinite(max)){
+			return max;
+		}
+		double sum = 0;
+		for (double logValue : logValues){
+			sum = sum + Math.exp(logValue - max);
+		}
+		return max + Math.log(sum);
+	}
 
+	
 	public void updateParentsWithProposals(){
-		double scoreParent;
-		double scoreProposal;
 		int nModelEvals = evalResults.getNumberOfEvalResults();
+		iGenCurrent = iGenCurrent + 1;
+		if (iGenCurrent<nGens){
+			evalResults.setnPop(iGenCurrent, nPopCurrent);
+		}
 
 		double logOfUnifRandDraw;
 		double[] parameterCombination;
 		double objScore;
 		double[][] sim = null;
 		
-		for (int iPop=0;iPop<nPop;iPop++){
-			scoreParent = parents.getObjScore(iPop);
-			scoreProposal = proposals.getObjScore(iPop);
+		for (int iPop=0;iPop<nPopCurrent;iPop++){
 			logOfUnifRandDraw = Math.log(generator.nextDouble());
 			int sampleIdentifier = nModelEvals+iPop;
 			int firstOccurrence = -1;
-			if (scoreProposal-scoreParent >= logOfUnifRandDraw){
+			if (logAcceptanceRatios[iPop] >= logOfUnifRandDraw){
 				// accept proposal
 				parameterCombination = proposals.getParameterCombination(iPop);
 				objScore = proposals.getObjScore(iPop);
@@ -273,7 +710,7 @@ public class DiffEvo {
 			// add most recent sample to the record array evalResults:
 			EvalResult evalResult;
 			if (modelIsDynamic){
-				evalResult = new EvalResult(sampleIdentifier, firstOccurrence, parameterCombination.clone(), objScore, sim.clone());
+				evalResult = new EvalResult(sampleIdentifier, firstOccurrence, parameterCombination.clone(), objScore, sim);
 			}
 			else {
 				evalResult = new EvalResult(sampleIdentifier, firstOccurrence, parameterCombination.clone(), objScore);
@@ -83,9 +83,6 @@ public class DiffEvoOutputWriters {
 	public void writeEvalResultsToJSON(File file){
 		
 		int nResults;
-		int sampleCounter;
-		double[] parameterVector; 
-		double objScore;
 
 		StringBuilder stringBuild = new StringBuilder();
 		stringBuild.append("[\n");
@@ -94,27 +91,10 @@ public class DiffEvoOutputWriters {
 		nResults = evalResults.getNumberOfEvalResults();
 		for (int iResult=0;iResult<nResults;iResult++){
 			
-			// sampleCounter part
-			sampleCounter = evalResults.getSampleIdentifier(iResult);
-			// parameterVector part
-			parameterVector = evalResults.getParameterCombination(iResult);
-			// objScore part
-			objScore = evalResults.getObjScore(iResult);
-			
 			if (iResult>0){
 				stringBuild.append(",\n");
 			}
-			
-			stringBuild.append("{\"s\":"+sampleCounter+",\"p\":[");
-			for (int iPar=0;iPar<nPars;iPar++){
-				if (iPar>0){
-					stringBuild.append(",");
-				}
-				stringBuild.append(parameterVector[iPar]);
-			}
-			
-			stringBuild.append("],\"o\":"+objScore);			
-			stringBuild.append("}");
+			appendJSON(stringBuild, evalResults.getEvalResult(iResult), nPars);
 		}
 		
 		stringBuild.append("\n]\n");
@@ -131,7 +111,34 @@ public class DiffEvoOutputWriters {
 		}
 	}
 	
-
+	
+	/**
+	 * Appends evalResult as {"s":sampleIdentifier,"p":[parameters],"o":objScore}, the format of 
+	 * writeEvalResultsToJSON. Values that JSON can not represent (NaN and infinities) are written as null.
+	 */
+	static void appendJSON(StringBuilder stringBuild, EvalResult evalResult, int nPars){
+		
+		stringBuild.append("{\"s\":").append(evalResult.getSampleIdentifier()).append(",\"p\":[");
+		for (int iPar=0;iPar<nPars;iPar++){
+			if (iPar>0){
+				stringBuild.append(",");
+			}
+			appendJSON(stringBuild, evalResult.getParameterValue(iPar));
+		}
+		stringBuild.append("],\"o\":");
+		appendJSON(stringBuild, evalResult.getObjScore());
+		stringBuild.append("}");
+	}
+	
+	
+	private static void appendJSON(StringBuilder stringBuild, double value){
+		if (Double.isNaN(value) || Double.isInfinite(value)){
+			stringBuild.append("null");
+		}
+		else {
+			stringBuild.append(value);
+		}
+	}
 	
 	
 }
@@ -8,11 +8,21 @@ import java.awt.Rectangle;
 import java.awt.Toolkit;
 import java.awt.event.ComponentAdapter;
 import java.awt.event.ComponentEvent;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.swing.JFrame;
 
 import org.jfree.chart.ChartFactory;
 import org.jfree.chart.ChartPanel;
+import org.jfree.chart.ChartUtilities;
 import org.jfree.chart.JFreeChart;
 import org.jfree.chart.axis.NumberAxis;
 import org.jfree.chart.labels.StandardXYToolTipGenerator;
@@ -33,6 +43,7 @@ import org.jfree.ui.RectangleInsets;
 
 public class DiffEvoVisualization {
 	
+	public static final int DEFAULT_MAX_SCATTER_POINTS = 20000;
 	
 	private EvalResults evalResults;
 	private ParSpace parSpace;
@@ -40,6 +51,8 @@ public class DiffEvoVisualization {
 	private Font labelFont;
 	private int nPars;
 	private String modelName;
+	private Histograms histograms;
+	private int maxScatterPoints;
 
 	
 	public DiffEvoVisualization(EvalResults evalResults){
@@ -50,63 +63,54 @@ public class DiffEvoVisualization {
 		this.labelFont = new Font("Ubuntu",Font.ROMAN_BASELINE,20);
 		this.nPars = evalResults.getParSpace().getNumberOfDimensions();
 		this.modelName = evalResults.getModelName();
+		this.maxScatterPoints = DEFAULT_MAX_SCATTER_POINTS;
 		
 	}
 	
-	private int[][] calcResponseSurface(int iParRow,int iParCol){
-		
-		int nResults = evalResults.getNumberOfEvalResults();
-		int iResult;
-		int iPar;
-		int iRowResponseSurface;
-		int iColResponseSurface; 
-		int nRowsResponseSurface = parSpace.getBinBounds(iParRow).length-1;
-		int nColsResponseSurface = parSpace.getBinBounds(iParCol).length-1;
-		int[][] responseSurfaceIndices = new int[nResults][2];
-		int[][] responseSurface = new int[nRowsResponseSurface][nColsResponseSurface];
-	    double[] parameterVector;
-
-	    for (iResult=0;iResult<nResults;iResult++){
-			parameterVector = evalResults.getParameterCombination(iResult);
-			
-			int k=0;
-			while (k<2){
-				if (k==0){
-					iPar = iParRow;
-				}
-				else {
-					iPar = iParCol;
-				}
-
-				double[] binBounds = parSpace.getBinBounds(iPar);
-				
-				int nBinBounds = binBounds.length;
-				for (int iBinBound=0; iBinBound<nBinBounds;iBinBound++){
-					if (binBounds[iBinBound]>parameterVector[iPar]){
-						responseSurfaceIndices[iResult][k] = iBinBound-1;
-						break;
-					}
-				}
-
-				
-				k = k + 1;
-				
+	
+	/**
+	 * Sets the number of results above which scatter plots show a selection of the points (see 
+	 * Downsampling): for the plots against the evaluation number, maxScatterPoints points chosen by 
+	 * largest-triangle-three-buckets; for the plots of parameter against parameter, one point per cell of a 
+	 * grid of about maxScatterPoints cells. 
+	 */
+	public void setMaxScatterPoints(int maxScatterPoints){
+		if (maxScatterPoints<3){
+			throw new IllegalArgumentException("At least 3 points should be shown.");
+		}
+		this.maxScatterPoints = maxScatterPoints;
+	}
+	
+	private Histograms getHistograms(){
+		// built once for all charts, and again only if results have been added since:
+		if (histograms==null || histograms.getnResults()!=evalResults.getNumberOfEvalResults()){
+			OnlineHistograms onlineHistograms = evalResults.getOnlineHistograms();
+			if (onlineHistograms!=null){
+				histograms = onlineHistograms.getSnapshot();
+			}
+			else {
+				histograms = Histograms.calculate(evalResults, Runtime.getRuntime().availableProcessors());
 			}
 		}
-
-	    for (iResult=0;iResult<nResults;iResult++){
-	    	iRowResponseSurface = responseSurfaceIndices[iResult][0];
-	    	iColResponseSurface = responseSurfaceIndices[iResult][1];
-	    	responseSurface[iRowResponseSurface][iColResponseSurface] += 1;
-	    }
-	    
-	    return responseSurface;
+		return histograms;
+	}
+	
+	private int[][] calcResponseSurface(int iParRow,int iParCol){
+		return getHistograms().getPair(iParRow, iParCol);
 	} // calcResponseSurface
 
 	
 	
 	
 	public void scatterEvalObj(){
+		showInFrame(createChartEvalObj(), "diffevo scatter");
+	}
+
+	public void scatterEvalPar(int iPar){
+		showInFrame(createChartEvalPar(iPar), "diffevo scatter");
+	}
+	
+	private JFreeChart createChartEvalObj(){
 		
 		Color markerFillColor = new Color(255,128, 0);
 		
@@ -116,11 +120,11 @@ public class DiffEvoVisualization {
         Boolean showLegend = false;
         Boolean showTooltips = true;
         
-		scatter(data,"eval-obj", markerFillColor,xAxisLabel,yAxisLabel, showLegend, showTooltips);
+		return createChartScatter(data,"eval-obj", new Color[]{markerFillColor},xAxisLabel,yAxisLabel, showLegend, showTooltips);
 		
 	}
 
-	public void scatterEvalPar(int iPar){
+	private JFreeChart createChartEvalPar(int iPar){
 		
 		Color markerFillColor = new Color(0,128, 255);
 		
@@ -130,7 +134,7 @@ public class DiffEvoVisualization {
         Boolean showLegend = false;
         Boolean showTooltips = true;
         
-		scatter(data,"eval-par"+iPar, markerFillColor,xAxisLabel,yAxisLabel, showLegend, showTooltips);
+		return createChartScatter(data,"eval-par"+iPar, new Color[]{markerFillColor},xAxisLabel,yAxisLabel, showLegend, showTooltips);
 		
 	}
 	
@@ -148,17 +152,17 @@ public class DiffEvoVisualization {
 	
 	public void scatter(XYDataset data,String figureName, Color[] markerFillColor, String xAxisLabel, 
 			String yAxisLabel, Boolean showLegend, Boolean showTooltips){
+		showInFrame(createChartScatter(data, figureName, markerFillColor, xAxisLabel, yAxisLabel, showLegend, showTooltips), 
+				"diffevo scatter");
+	}
+	
+	
+	private JFreeChart createChartScatter(XYDataset data,String figureName, Color[] markerFillColor, String xAxisLabel, 
+			String yAxisLabel, Boolean showLegend, Boolean showTooltips){
 		
 		RectangleInsets padding = new RectangleInsets(50,50,50,50);
 		
 		Rectangle marker = new Rectangle(-3,-3,6,6);
-		
-		java.awt.Dimension screenSize = Toolkit.getDefaultToolkit().getScreenSize();
-		java.awt.Dimension defaultWindowSize = new java.awt.Dimension();
-		defaultWindowSize.width = (int) (screenSize.width*0.8);
-		defaultWindowSize.height = (int) (screenSize.height*0.8); 
-		
-		java.awt.Dimension preferredSize = new java.awt.Dimension(defaultWindowSize);
 
         // create a chart...
         JFreeChart chart = ChartFactory.createXYLineChart(figureName,
@@ -202,9 +206,22 @@ public class DiffEvoVisualization {
         	renderer.setSeriesPaint(iSeries, markerFillColor[iSeries]);
         }                
         
+        return chart;
+	}
+	
+	
+	private void showInFrame(JFreeChart chart, String title){
+		
+		java.awt.Dimension screenSize = Toolkit.getDefaultToolkit().getScreenSize();
+		java.awt.Dimension defaultWindowSize = new java.awt.Dimension();
+		defaultWindowSize.width = (int) (screenSize.width*0.8);
+		defaultWindowSize.height = (int) (screenSize.height*0.8); 
+		
+		java.awt.Dimension preferredSize = new java.awt.Dimension(defaultWindowSize);
+		
         final ChartPanel panel = new ChartPanel(chart);
         
-        JFrame frame = new JFrame("diffevo scatter");
+        JFrame frame = new JFrame(title);
         frame.addComponentListener(new ComponentAdapter() {
             @Override
             public void componentResized(ComponentEvent e) {
@@ -225,13 +242,16 @@ public class DiffEvoVisualization {
 	private XYDataset createDatasetEvalObj(){
 		
 		int nResults = evalResults.getNumberOfEvalResults();
-		XYSeries series = new XYSeries("eval-obj");
+		double[] x = new double[nResults];
+		double[] y = new double[nResults];
 		for (int iResult=0;iResult<nResults;iResult++){
-			series.add(evalResults.getSampleIdentifier(iResult),evalResults.getObjScore(iResult));
+			EvalResult evalResult = evalResults.getEvalResult(iResult);
+			x[iResult] = evalResult.getSampleIdentifier();
+			y[iResult] = evalResult.getObjScore();
 		}
 		
 		XYSeriesCollection dataset = new XYSeriesCollection();
-		dataset.addSeries(series);
+		dataset.addSeries(createSeriesAgainstEval("eval-obj", x, y));
 		return dataset;
 	}
 
@@ -239,45 +259,56 @@ public class DiffEvoVisualization {
 	private XYDataset createDatasetEvalPar(int iPar){
 		
 		int nResults = evalResults.getNumberOfEvalResults();
-		XYSeries series = new XYSeries("eval-par"+iPar);
+		double[] x = new double[nResults];
+		double[] y = new double[nResults];
 		for (int iResult=0;iResult<nResults;iResult++){
-			double[] parameterVector = evalResults.getParameterCombination(iResult);
-			series.add(evalResults.getSampleIdentifier(iResult),parameterVector[iPar]);
+			EvalResult evalResult = evalResults.getEvalResult(iResult);
+			x[iResult] = evalResult.getSampleIdentifier();
+			y[iResult] = evalResult.getParameterValue(iPar);
 		}
 		
 		XYSeriesCollection dataset = new XYSeriesCollection();
-		dataset.addSeries(series);
+		dataset.addSeries(createSeriesAgainstEval("eval-par"+iPar, x, y));
 		return dataset;
 	}
 	
 	
+	private XYSeries createSeriesAgainstEval(String key, double[] x, double[] y){
+		
+		int[] selected;
+		if (x.length>maxScatterPoints){
+			selected = Downsampling.largestTriangleThreeBuckets(x, y, maxScatterPoints);
+		}
+		else {
+			selected = Downsampling.all(x.length);
+		}
+		return createSeries(key, x, y, selected);
+	}
+	
+	
+	private static XYSeries createSeries(String key, double[] x, double[] y, int[] selected){
+		// scatter plots do not need their points sorted, and sorting while adding is slow for many points
+		XYSeries series = new XYSeries(key, false, true);
+		for (int i : selected){
+			series.add(x[i], y[i], false);
+		}
+		return series;
+	}
+	
+	
 	
 	public void matrixOfScatterParPar(){
 		
 		if (nPars>1){
-		RectangleInsets padding = new RectangleInsets(10,10,10,10);
 		java.awt.Dimension screenSize = Toolkit.getDefaultToolkit().getScreenSize();
 		java.awt.Dimension defaultWindowSize = new java.awt.Dimension();
 		defaultWindowSize.width = (int) (screenSize.width*0.8);
 		defaultWindowSize.height = (int) (screenSize.height*0.8); 
 		java.awt.Dimension preferredSize = new java.awt.Dimension(defaultWindowSize);
 		
-		Color markerFillColor = new Color(255,128, 0);
-		Rectangle marker = new Rectangle(-2,-2,4,4);
-		
-		int nResults = evalResults.getNumberOfEvalResults();
-		
-		NumberAxis[] allAxes = new NumberAxis[nPars];
-		for (int iPar=0;iPar<nPars;iPar++){
-			allAxes[iPar] = new NumberAxis(parSpace.getParName(iPar));
-			allAxes[iPar].setAxisLinePaint(Color.BLACK);
-			allAxes[iPar].setLabelPaint(Color.BLACK);
-			allAxes[iPar].setTickLabelPaint(Color.BLACK);
-		}
+		NumberAxis[] allAxes = createAxes();
 
-		StandardXYToolTipGenerator ttG = new StandardXYToolTipGenerator();
-		XYLineAndShapeRenderer renderer = new XYLineAndShapeRenderer();
-		renderer.setBaseToolTipGenerator(ttG);
+		XYLineAndShapeRenderer renderer = createRendererParPar();
 
 		JFrame frame = new JFrame(modelName+" // matrixOfScatterParPar // "+getName());
 
@@ -285,76 +316,12 @@ public class DiffEvoVisualization {
         
         for (int iRow=0;iRow<nPars-1;iRow++){
         	for (int iCol=1;iCol<nPars;iCol++){
-
-				XYSeries series = new XYSeries("("+parSpace.getParName(iCol)+","+parSpace.getParName(iRow)+")");
-				for (int iResult=0;iResult<nResults;iResult++){
-					double[] parameterVector = evalResults.getParameterCombination(iResult);
-					series.add(parameterVector[iCol],parameterVector[iRow]);
-				}
-
-				XYSeriesCollection xycoll = new XYSeriesCollection();
-				xycoll.addSeries(series);
-				XYDataset xydataset = (XYDataset) xycoll;
-				XYPlot subplot = new XYPlot(xydataset, allAxes[iCol], allAxes[iRow], renderer);
-		        subplot.setOutlinePaint(Color.BLACK);
-		        subplot.setOutlineVisible(true);
-		        subplot.setOutlineStroke(allAxes[0].getAxisLineStroke());
-		        subplot.setRangePannable(true);
-		        subplot.setDomainPannable(true);
-		        subplot.setDomainGridlinePaint(Color.BLACK);
-		        subplot.setRangeGridlinePaint(Color.BLACK);
-		        
-		        ///
-
-		        subplot.setBackgroundPaint(Color.WHITE);
-		        
-		        subplot.getDomainAxis().setLabelPaint(Color.BLACK);
-		        subplot.getDomainAxis().setTickLabelPaint(Color.BLACK);
-		        subplot.getDomainAxis().setAxisLinePaint(Color.BLACK);
-		        subplot.getDomainAxis().setTickMarkPaint(Color.BLACK);
-		        subplot.getDomainAxis().setLabelFont(labelFont);
-		        subplot.getDomainAxis().setTickLabelFont(tickFont);
-		        
-		        subplot.getRangeAxis().setLabelPaint(Color.BLACK);
-		        subplot.getRangeAxis().setTickLabelPaint(Color.BLACK);
-		        subplot.getRangeAxis().setAxisLinePaint(Color.BLACK);
-		        subplot.getRangeAxis().setTickMarkPaint(Color.BLACK);
-		        subplot.getRangeAxis().setLabelFont(labelFont);
-		        subplot.getRangeAxis().setTickLabelFont(tickFont);
-
-
-		        ///
-
-				JFreeChart chart = new JFreeChart("",JFreeChart.DEFAULT_TITLE_FONT, subplot, false);
-				
-		        renderer.setBaseLinesVisible(false);
-		        renderer.setBaseShapesFilled(true);
-		        renderer.setSeriesShapesVisible(0, true);
-		        renderer.setSeriesShape(0, marker);
-		        renderer.setSeriesPaint(0, markerFillColor);
-				
-		        chart.setBackgroundPaint(Color.LIGHT_GRAY);
-		        chart.getTitle().setFont(labelFont);
-		        chart.setPadding(padding);
-		        
 		        if (iCol>iRow){
-			        final ChartPanel chartPanel = new ChartPanel(chart);
-			        chartPanel.setBackground(Color.LIGHT_GRAY);
-					frame.add(chartPanel,iRow*(nPars-1)+iCol-1);
-			        frame.addComponentListener(new ComponentAdapter() {
-			            @Override
-			            public void componentResized(ComponentEvent e) {
-			                chartPanel.setMaximumDrawHeight(e.getComponent().getHeight()/(nPars-1));
-			                chartPanel.setMaximumDrawWidth(e.getComponent().getWidth()/(nPars-1));
-			                chartPanel.setMinimumDrawWidth(e.getComponent().getWidth()/(nPars-1));
-			                chartPanel.setMinimumDrawHeight(e.getComponent().getHeight()/(nPars-1));
-			            }
-			        });        
+		        	JFreeChart chart = createChartParPar(iRow, iCol, allAxes[iCol], allAxes[iRow], renderer);
+		        	addToMatrix(frame, chart, iRow*(nPars-1)+iCol-1, nPars-1, nPars-1);
 		        }
 		        else {
-			        final ChartPanel chartPanel = new ChartPanel(null);
-			        chartPanel.setBackground(Color.LIGHT_GRAY);
-					frame.add(chartPanel,iRow*(nPars-1)+iCol-1);
+		        	addToMatrix(frame, null, iRow*(nPars-1)+iCol-1, nPars-1, nPars-1);
 		        }
 			}
 		}
@@ -367,6 +334,120 @@ public class DiffEvoVisualization {
 			System.out.println("The model "+modelName+" only has one parameter.");
 		}
 	}
+	
+	
+	private NumberAxis[] createAxes(){
+		NumberAxis[] allAxes = new NumberAxis[nPars];
+		for (int iPar=0;iPar<nPars;iPar++){
+			allAxes[iPar] = new NumberAxis(parSpace.getParName(iPar));
+			allAxes[iPar].setAxisLinePaint(Color.BLACK);
+			allAxes[iPar].setLabelPaint(Color.BLACK);
+			allAxes[iPar].setTickLabelPaint(Color.BLACK);
+		}
+		return allAxes;
+	}
+	
+	
+	private XYLineAndShapeRenderer createRendererParPar(){
+		StandardXYToolTipGenerator ttG = new StandardXYToolTipGenerator();
+		XYLineAndShapeRenderer renderer = new XYLineAndShapeRenderer();
+		renderer.setBaseToolTipGenerator(ttG);
+		return renderer;
+	}
+	
+	
+	private void addToMatrix(JFrame frame, JFreeChart chart, int index, final int nRows, final int nCols){
+		final ChartPanel chartPanel = new ChartPanel(chart);
+		chartPanel.setBackground(Color.LIGHT_GRAY);
+		frame.add(chartPanel,index);
+		if (chart!=null){
+			frame.addComponentListener(new ComponentAdapter() {
+				@Override
+				public void componentResized(ComponentEvent e) {
+					chartPanel.setMaximumDrawHeight(e.getComponent().getHeight()/nRows);
+					chartPanel.setMaximumDrawWidth(e.getComponent().getWidth()/nCols);
+					chartPanel.setMinimumDrawWidth(e.getComponent().getWidth()/nCols);
+					chartPanel.setMinimumDrawHeight(e.getComponent().getHeight()/nRows);
+				}
+			});
+		}
+	}
+	
+	
+	private JFreeChart createChartParPar(int iRow, int iCol, NumberAxis xAxis, NumberAxis yAxis, XYLineAndShapeRenderer renderer){
+		
+		RectangleInsets padding = new RectangleInsets(10,10,10,10);
+		Color markerFillColor = new Color(255,128, 0);
+		Rectangle marker = new Rectangle(-2,-2,4,4);
+		
+		int nResults = evalResults.getNumberOfEvalResults();
+		double[] x = new double[nResults];
+		double[] y = new double[nResults];
+		for (int iResult=0;iResult<nResults;iResult++){
+			EvalResult evalResult = evalResults.getEvalResult(iResult);
+			x[iResult] = evalResult.getParameterValue(iCol);
+			y[iResult] = evalResult.getParameterValue(iRow);
+		}
+		
+		int[] selected;
+		if (nResults>maxScatterPoints){
+			int nCells = (int) Math.sqrt(maxScatterPoints);
+			selected = Downsampling.gridBin(x, y, parSpace.getLowerBound(iCol), parSpace.getUpperBound(iCol), 
+					parSpace.getLowerBound(iRow), parSpace.getUpperBound(iRow), nCells, nCells);
+		}
+		else {
+			selected = Downsampling.all(nResults);
+		}
+		XYSeries series = createSeries("("+parSpace.getParName(iCol)+","+parSpace.getParName(iRow)+")", x, y, selected);
+
+		XYSeriesCollection xycoll = new XYSeriesCollection();
+		xycoll.addSeries(series);
+		XYDataset xydataset = (XYDataset) xycoll;
+		XYPlot subplot = new XYPlot(xydataset, xAxis, yAxis, renderer);
+        subplot.setOutlinePaint(Color.BLACK);
+        subplot.setOutlineVisible(true);
+        subplot.setOutlineStroke(xAxis.getAxisLineStroke());
+        subplot.setRangePannable(true);
+        subplot.setDomainPannable(true);
+        subplot.setDomainGridlinePaint(Color.BLACK);
+        subplot.setRangeGridlinePaint(Color.BLACK);
+        
+        subplot.setBackgroundPaint(Color.WHITE);
+        
+        styleAxes(subplot);
+
+		JFreeChart chart = new JFreeChart("",JFreeChart.DEFAULT_TITLE_FONT, subplot, false);
+		
+        renderer.setBaseLinesVisible(false);
+        renderer.setBaseShapesFilled(true);
+        renderer.setSeriesShapesVisible(0, true);
+        renderer.setSeriesShape(0, marker);
+        renderer.setSeriesPaint(0, markerFillColor);
+		
+        chart.setBackgroundPaint(Color.LIGHT_GRAY);
+        chart.getTitle().setFont(labelFont);
+        chart.setPadding(padding);
+        
+        return chart;
+	}
+	
+	
+	private void styleAxes(XYPlot plot){
+		
+        plot.getDomainAxis().setLabelPaint(Color.BLACK);
+        plot.getDomainAxis().setTickLabelPaint(Color.BLACK);
+        plot.getDomainAxis().setAxisLinePaint(Color.BLACK);
+        plot.getDomainAxis().setTickMarkPaint(Color.BLACK);
+        plot.getDomainAxis().setLabelFont(labelFont);
+        plot.getDomainAxis().setTickLabelFont(tickFont);
+        
+        plot.getRangeAxis().setLabelPaint(Color.BLACK);
+        plot.getRangeAxis().setTickLabelPaint(Color.BLACK);
+        plot.getRangeAxis().setAxisLinePaint(Color.BLACK);
+        plot.getRangeAxis().setTickMarkPaint(Color.BLACK);
+        plot.getRangeAxis().setLabelFont(labelFont);
+        plot.getRangeAxis().setTickLabelFont(tickFont);
+	}
 
 	
 	
@@ -374,128 +455,25 @@ public class DiffEvoVisualization {
 		
 		if (nPars>1){
 		
-		RectangleInsets padding = new RectangleInsets(0,0,0,0);
 		java.awt.Dimension screenSize = Toolkit.getDefaultToolkit().getScreenSize();
 		java.awt.Dimension defaultWindowSize = new java.awt.Dimension();
 		defaultWindowSize.width = (int) (screenSize.width*0.8);
 		defaultWindowSize.height = (int) (screenSize.height*0.8); 
 		java.awt.Dimension preferredSize = new java.awt.Dimension(defaultWindowSize);
 		
-		
-		NumberAxis[] allAxes = new NumberAxis[nPars];
-		for (int iPar=0;iPar<nPars;iPar++){
-			allAxes[iPar] = new NumberAxis(parSpace.getParName(iPar));
-			allAxes[iPar].setAxisLinePaint(Color.BLACK);
-			allAxes[iPar].setLabelPaint(Color.BLACK);
-			allAxes[iPar].setTickLabelPaint(Color.BLACK);
-		}
+		NumberAxis[] allAxes = createAxes();
 
 		JFrame frame = new JFrame(modelName+" // matrixOfHeatMap //"+getName());
         frame.setLayout(new GridLayout(nPars-1,nPars-1));
         
         for (int iRow=0;iRow<nPars-1;iRow++){
         	for (int iCol=1;iCol<nPars;iCol++){
-        		
-		        if (iCol>iRow){        		
-
-		        	/*
-		        	Calculate the response surface of parameter parSpace[iRow] and parSpace[iCol] using 
-		        	parSpace.getResponseSurfaceBinBounds[iRow] and parSpace.getResponseSurfaceBinBounds[iCol]
-		        	 */
-		        	
-		        	int[][] responseSurface = calcResponseSurface(iRow, iCol);
-		        	
-		        	int responseSurfaceMin = 0;
-		        	int responseSurfaceMax = 0;	        	
-		        		        	
-		        	double[] xBinBounds = parSpace.getBinBounds(iCol);
-		        	double[] yBinBounds = parSpace.getBinBounds(iRow);
-		        	int nBinsX = xBinBounds.length-1;
-		        	int nBinsY = yBinBounds.length-1;
-		        	
-		        	DefaultXYZDataset dataset = new DefaultXYZDataset();
-		        	double[][] data = new double[3][nBinsY*nBinsX];
-
-		        	int iData=0;
-		        	for (int iBinX=0;iBinX<nBinsX;iBinX++){
-		        		for (int iBinY=0;iBinY<nBinsY;iBinY++){
-
-		        			if (responseSurface[iBinY][iBinX]>responseSurfaceMax){
-			        			responseSurfaceMax = responseSurface[iBinY][iBinX];		        				
-		        			}
-		        			if (responseSurface[iBinY][iBinX]<responseSurfaceMin){
-			        			responseSurfaceMin = responseSurface[iBinY][iBinX];		        				
-		        			}
-
-		        			double xBlock = (xBinBounds[iBinX]+xBinBounds[iBinX+1])/2;
-		        			double yBlock = (yBinBounds[iBinY]+yBinBounds[iBinY+1])/2;
-		        			
-		        			data[0][iData] = xBlock;
-		        			data[1][iData] = yBlock;
-		        			data[2][iData] = responseSurface[iBinY][iBinX];
-		        			
-		        			iData++;
-
-		        		}
-	        			dataset.addSeries(0,data);
-		        	}
-		        	
-	        	    // http://stackoverflow.com/questions/8441269/jfreechart-to-represent-3d-data-in-a-2d-graph-using-colourmaps
-        			XYBlockRenderer renderer = new XYBlockRenderer();
-        			PaintScale scale = new GrayPaintScale(responseSurfaceMin, responseSurfaceMax);
-      			    renderer.setPaintScale(scale);
-        			renderer.setBlockHeight(parSpace.getResolution(iRow));
-        			renderer.setBlockWidth(parSpace.getResolution(iCol));
-
-		        	XYPlot subplot = new XYPlot(dataset, allAxes[iCol], allAxes[iRow], renderer);
-
-		        	subplot.setOutlinePaint(Color.BLACK);
-		        	subplot.setOutlineVisible(true);
-		        	subplot.setOutlineStroke(allAxes[0].getAxisLineStroke());
-		        	subplot.setRangePannable(true);
-		        	subplot.setDomainPannable(true);
-		        	subplot.setDomainGridlinePaint(Color.BLACK);
-		        	subplot.setRangeGridlinePaint(Color.BLACK);
-		        	
-			        
-			        subplot.getDomainAxis().setLabelPaint(Color.BLACK);
-			        subplot.getDomainAxis().setTickLabelPaint(Color.BLACK);
-			        subplot.getDomainAxis().setAxisLinePaint(Color.BLACK);
-			        subplot.getDomainAxis().setTickMarkPaint(Color.BLACK);
-			        subplot.getDomainAxis().setLabelFont(labelFont);
-			        subplot.getDomainAxis().setTickLabelFont(tickFont);
-			        
-			        subplot.getRangeAxis().setLabelPaint(Color.BLACK);
-			        subplot.getRangeAxis().setTickLabelPaint(Color.BLACK);
-			        subplot.getRangeAxis().setAxisLinePaint(Color.BLACK);
-			        subplot.getRangeAxis().setTickMarkPaint(Color.BLACK);
-			        subplot.getRangeAxis().setLabelFont(labelFont);
-			        subplot.getRangeAxis().setTickLabelFont(tickFont);		        	
-
-		        	JFreeChart chart = new JFreeChart("",JFreeChart.DEFAULT_TITLE_FONT, subplot, false);
-
-		        	chart.setBackgroundPaint(Color.LIGHT_GRAY);
-		        	chart.getTitle().setFont(labelFont);
-		        	chart.setPadding(padding);
-
-
-			        final ChartPanel chartPanel = new ChartPanel(chart);
-			        chartPanel.setBackground(Color.LIGHT_GRAY);
-					frame.add(chartPanel,iRow*(nPars-1)+iCol-1);
-			        frame.addComponentListener(new ComponentAdapter() {
-			            @Override
-			            public void componentResized(ComponentEvent e) {
-			                chartPanel.setMaximumDrawHeight(e.getComponent().getHeight()/(nPars-1));
-			                chartPanel.setMaximumDrawWidth(e.getComponent().getWidth()/(nPars-1));
-			                chartPanel.setMinimumDrawWidth(e.getComponent().getWidth()/(nPars-1));
-			                chartPanel.setMinimumDrawHeight(e.getComponent().getHeight()/(nPars-1));
-			            }
-			        });        
+		        if (iCol>iRow){
+		        	JFreeChart chart = createChartHeatmap(iRow, iCol, allAxes[iCol], allAxes[iRow]);
+		        	addToMatrix(frame, chart, iRow*(nPars-1)+iCol-1, nPars-1, nPars-1);
 		        }
 		        else {
-			        final ChartPanel chartPanel = new ChartPanel(null);
-			        chartPanel.setBackground(Color.LIGHT_GRAY);
-					frame.add(chartPanel,iRow*(nPars-1)+iCol-1);
+		        	addToMatrix(frame, null, iRow*(nPars-1)+iCol-1, nPars-1, nPars-1);
 		        }
         	}
         }
@@ -510,131 +488,98 @@ public class DiffEvoVisualization {
 		
 		
 	}
-
-	public int[] calcHistogram(int iPar){
+	
+	
+	private JFreeChart createChartHeatmap(int iRow, int iCol, NumberAxis xAxis, NumberAxis yAxis){
 		
+		RectangleInsets padding = new RectangleInsets(0,0,0,0);
 
-		int nResults = evalResults.getNumberOfEvalResults();
-		int nBins = parSpace.getnBins(iPar);
-		int[] histogram = new int[nBins];
-	    double[] parameterVector;
-		double[] binBounds = parSpace.getBinBounds(iPar);
-		int nBinBounds = binBounds.length;
-		
-	    for (int iResult=0;iResult<nResults;iResult++){
-			parameterVector = evalResults.getParameterCombination(iResult);
-			for (int iBinBound=0; iBinBound<nBinBounds;iBinBound++){
-				if (binBounds[iBinBound]>parameterVector[iPar]){
-					histogram[iBinBound-1]++;
-					break;
-				}
-			}
-	    }
-	    
-	    return histogram;		
-		
+    	/*
+    	Calculate the response surface of parameter parSpace[iRow] and parSpace[iCol] using 
+    	parSpace.getResponseSurfaceBinBounds[iRow] and parSpace.getResponseSurfaceBinBounds[iCol]
+    	 */
+    	
+    	int[][] responseSurface = calcResponseSurface(iRow, iCol);
+    	
+    	int responseSurfaceMin = 0;
+    	int responseSurfaceMax = 0;	        	
+    		        	
+    	double[] xBinBounds = parSpace.getBinBounds(iCol);
+    	double[] yBinBounds = parSpace.getBinBounds(iRow);
+    	int nBinsX = xBinBounds.length-1;
+    	int nBinsY = yBinBounds.length-1;
+    	
+    	DefaultXYZDataset dataset = new DefaultXYZDataset();
+    	double[][] data = new double[3][nBinsY*nBinsX];
+
+    	int iData=0;
+    	for (int iBinX=0;iBinX<nBinsX;iBinX++){
+    		for (int iBinY=0;iBinY<nBinsY;iBinY++){
+
+    			if (responseSurface[iBinY][iBinX]>responseSurfaceMax){
+        			responseSurfaceMax = responseSurface[iBinY][iBinX];		        				
+    			}
+    			if (responseSurface[iBinY][iBinX]<responseSurfaceMin){
+        			responseSurfaceMin = responseSurface[iBinY][iBinX];		        				
+    			}
+
+    			double xBlock = (xBinBounds[iBinX]+xBinBounds[iBinX+1])/2;
+    			double yBlock = (yBinBounds[iBinY]+yBinBounds[iBinY+1])/2;
+    			
+    			data[0][iData] = xBlock;
+    			data[1][iData] = yBlock;
+    			data[2][iData] = responseSurface[iBinY][iBinX];
+    			
+    			iData++;
+
+    		}
+    	}
+		dataset.addSeries(0,data);
+    	
+	    // http://stackoverflow.com/questions/8441269/jfreechart-to-represent-3d-data-in-a-2d-graph-using-colourmaps
+		XYBlockRenderer renderer = new XYBlockRenderer();
+		PaintScale scale = new GrayPaintScale(responseSurfaceMin, responseSurfaceMax);
+	    renderer.setPaintScale(scale);
+		renderer.setBlockHeight(parSpace.getResolution(iRow));
+		renderer.setBlockWidth(parSpace.getResolution(iCol));
+
+    	XYPlot subplot = new XYPlot(dataset, xAxis, yAxis, renderer);
+
+    	subplot.setOutlinePaint(Color.BLACK);
+    	subplot.setOutlineVisible(true);
+    	subplot.setOutlineStroke(xAxis.getAxisLineStroke());
+    	subplot.setRangePannable(true);
+    	subplot.setDomainPannable(true);
+    	subplot.setDomainGridlinePaint(Color.BLACK);
+    	subplot.setRangeGridlinePaint(Color.BLACK);
+    	
+    	styleAxes(subplot);
+
+    	JFreeChart chart = new JFreeChart("",JFreeChart.DEFAULT_TITLE_FONT, subplot, false);
+
+    	chart.setBackgroundPaint(Color.LIGHT_GRAY);
+    	chart.getTitle().setFont(labelFont);
+    	chart.setPadding(padding);
+    	
+    	return chart;
+	}
+
+	public int[] calcHistogram(int iPar){
+		return getHistograms().getMarginal(iPar);
 	}
 	
 	public void margHist(){
 		
-		RectangleInsets padding = new RectangleInsets(10,50,10,50);
-		
 		java.awt.Dimension screenSize = Toolkit.getDefaultToolkit().getScreenSize();
 		java.awt.Dimension defaultWindowSize = new java.awt.Dimension();
 		defaultWindowSize.width = (int) (screenSize.width*0.8);
 		defaultWindowSize.height = (int) (screenSize.height*0.8); 
 		java.awt.Dimension preferredSize = new java.awt.Dimension(defaultWindowSize);
-		
-		boolean showTooltips = true;
-		boolean showURLs = false;
-		boolean showLegend = false;
-		Color barFillColor = new Color(255,128, 0);
-		Color barOutlineColor = Color.BLACK;
 
 		JFrame frame = new JFrame(modelName+" // margHist // "+getName());
         frame.setLayout(new GridLayout(nPars,1));
         for (int iPar=0;iPar<nPars;iPar++){
-        
-        	int[] histogram = calcHistogram(iPar);
-        	int nBins = parSpace.getnBins(iPar);
-        	double[] binBounds = parSpace.getBinBounds(iPar);
-        	
-        	XYSeries series = new XYSeries("histogram");
-        	for (int iBin=0;iBin<nBins;iBin++){
-        		series.add((binBounds[iBin]+binBounds[iBin+1])/2,histogram[iBin]);
-        	}
-
-        	XYSeriesCollection xycoll = new XYSeriesCollection();
-        	xycoll.addSeries(series);
-        	
-        	double barWidth = parSpace.getResolution(iPar);
-        	xycoll.setIntervalWidth(barWidth);
-        	
-            JFreeChart chart = ChartFactory.createXYBarChart(
-                    "",
-                    parSpace.getParName(iPar),
-                    false,
-                    "count",
-                    xycoll,
-                    PlotOrientation.VERTICAL,
-                    showLegend,
-                    showTooltips,
-                    showURLs);
-            
-            chart.setBackgroundPaint(Color.LIGHT_GRAY);
-            chart.getTitle().setFont(labelFont);
-            chart.setPadding(padding);
-            
-            XYPlot plot = chart.getXYPlot();
-
-            plot.setBackgroundPaint(Color.WHITE);
-            plot.setRangeGridlinePaint(Color.BLACK);
-            plot.setDomainGridlinePaint(Color.BLACK);
-            
-            plot.getDomainAxis().setLabelPaint(Color.BLACK);
-            plot.getDomainAxis().setTickLabelPaint(Color.BLACK);
-            plot.getDomainAxis().setAxisLinePaint(Color.BLACK);
-            plot.getDomainAxis().setTickMarkPaint(Color.BLACK);
-            plot.getDomainAxis().setLabelFont(labelFont);
-            plot.getDomainAxis().setTickLabelFont(tickFont);
-            
-            plot.getRangeAxis().setLabelPaint(Color.BLACK);
-            plot.getRangeAxis().setTickLabelPaint(Color.BLACK);
-            plot.getRangeAxis().setAxisLinePaint(Color.BLACK);
-            plot.getRangeAxis().setTickMarkPaint(Color.BLACK);
-            plot.getRangeAxis().setLabelFont(labelFont);
-            plot.getRangeAxis().setTickLabelFont(tickFont);
-
-        	plot.setOutlinePaint(Color.BLACK);
-        	plot.setOutlineVisible(true);
-        	plot.setOutlineStroke(plot.getDomainAxis().getAxisLineStroke());
-        	plot.setRangePannable(true);
-        	plot.setDomainPannable(true);
-        	plot.setDomainGridlinePaint(Color.BLACK);
-        	plot.setRangeGridlinePaint(Color.BLACK);
-        	
-        	XYItemRenderer renderer = plot.getRenderer(0); 
-        	renderer.setSeriesPaint(0,barFillColor);
-        	renderer.setSeriesOutlinePaint(0,barOutlineColor);
-        	
-        	XYBarRenderer brenderer = (XYBarRenderer) renderer;
-        	StandardXYBarPainter painter = new StandardXYBarPainter();
-        	brenderer.setBarPainter(painter);
-        	
-        	
-        	
-	        final ChartPanel chartPanel = new ChartPanel(chart);
-	        chartPanel.setBackground(Color.LIGHT_GRAY);
-			frame.add(chartPanel,iPar);
-	        frame.addComponentListener(new ComponentAdapter() {
-	            @Override
-	            public void componentResized(ComponentEvent e) {
-	            		chartPanel.setMaximumDrawHeight(e.getComponent().getHeight()/nPars);
-	            		chartPanel.setMaximumDrawWidth(e.getComponent().getWidth());
-	            		chartPanel.setMinimumDrawWidth(e.getComponent().getWidth());
-	            		chartPanel.setMinimumDrawHeight(e.getComponent().getHeight()/nPars);
-	            }
-	        });        
+        	addToMatrix(frame, createChartMargHist(iPar), iPar, nPars, 1);
         }
         
         frame.setSize(preferredSize.width, preferredSize.height);
@@ -642,6 +587,164 @@ public class DiffEvoVisualization {
         frame.setVisible(true);        
 	}
 	
+	
+	private JFreeChart createChartMargHist(int iPar){
+		
+		RectangleInsets padding = new RectangleInsets(10,50,10,50);
+		
+		boolean showTooltips = true;
+		boolean showURLs = false;
+		boolean showLegend = false;
+		Color barFillColor = new Color(255,128, 0);
+		Color barOutlineColor = Color.BLACK;
+    
+    	int[] histogram = calcHistogram(iPar);
+    	int nBins = parSpace.getnBins(iPar);
+    	double[] binBounds = parSpace.getBinBounds(iPar);
+    	
+    	XYSeries series = new XYSeries("histogram");
+    	for (int iBin=0;iBin<nBins;iBin++){
+    		series.add((binBounds[iBin]+binBounds[iBin+1])/2,histogram[iBin]);
+    	}
+
+    	XYSeriesCollection xycoll = new XYSeriesCollection();
+    	xycoll.addSeries(series);
+    	
+    	double barWidth = parSpace.getResolution(iPar);
+    	xycoll.setIntervalWidth(barWidth);
+    	
+        JFreeChart chart = ChartFactory.createXYBarChart(
+                "",
+                parSpace.getParName(iPar),
+                false,
+                "count",
+                xycoll,
+                PlotOrientation.VERTICAL,
+                showLegend,
+                showTooltips,
+                showURLs);
+        
+        chart.setBackgroundPaint(Color.LIGHT_GRAY);
+        chart.getTitle().setFont(labelFont);
+        chart.setPadding(padding);
+        
+        XYPlot plot = chart.getXYPlot();
+
+        plot.setBackgroundPaint(Color.WHITE);
+        plot.setRangeGridlinePaint(Color.BLACK);
+        plot.setDomainGridlinePaint(Color.BLACK);
+        
+        styleAxes(plot);
+
+    	plot.setOutlinePaint(Color.BLACK);
+    	plot.setOutlineVisible(true);
+    	plot.setOutlineStroke(plot.getDomainAxis().getAxisLineStroke());
+    	plot.setRangePannable(true);
+    	plot.setDomainPannable(true);
+    	plot.setDomainGridlinePaint(Color.BLACK);
+    	plot.setRangeGridlinePaint(Color.BLACK);
+    	
+    	XYItemRenderer renderer = plot.getRenderer(0); 
+    	renderer.setSeriesPaint(0,barFillColor);
+    	renderer.setSeriesOutlinePaint(0,barOutlineColor);
+    	
+    	XYBarRenderer brenderer = (XYBarRenderer) renderer;
+    	StandardXYBarPainter painter = new StandardXYBarPainter();
+    	brenderer.setBarPainter(painter);
+    	
+    	return chart;
+	}
+	
+	
+	/**
+	 * Writes every chart that the other methods show in frames to a PNG file of width by height pixels in
+	 * directory, without opening any windows, so that it also works on machines without a display (with 
+	 * -Djava.awt.headless=true). The charts of a matrix are written to files of their own. Charts are 
+	 * independent of each other, and are rendered on nThreads threads. Returns the files written.  
+	 */
+	public List<File> writeCharts(final File directory, final int width, final int height, int nThreads) throws IOException {
+		
+		if (!directory.isDirectory() && !directory.mkdirs()){
+			throw new IOException("Could not create directory "+directory+".");
+		}
+		
+		// the histograms are shared by the heatmaps and the marginal histograms
+		getHistograms();
+		
+		List<Callable<File>> tasks = new ArrayList<Callable<File>>();
+		tasks.add(new Callable<File>(){
+			public File call() throws IOException {
+				return writeChart(createChartEvalObj(), new File(directory, "eval-obj.png"), width, height);
+			}
+		});
+		for (int iPar=0;iPar<nPars;iPar++){
+			final int iParFinal = iPar;
+			tasks.add(new Callable<File>(){
+				public File call() throws IOException {
+					return writeChart(createChartEvalPar(iParFinal), new File(directory, "eval-par"+iParFinal+".png"), width, height);
+				}
+			});
+			tasks.add(new Callable<File>(){
+				public File call() throws IOException {
+					return writeChart(createChartMargHist(iParFinal), new File(directory, "margHist-par"+iParFinal+".png"), width, height);
+				}
+			});
+		}
+		for (int iRow=0;iRow<nPars-1;iRow++){
+			for (int iCol=iRow+1;iCol<nPars;iCol++){
+				final int iRowFinal = iRow;
+				final int iColFinal = iCol;
+				final String suffix = "-par"+iRow+"-par"+iCol+".png";
+				// each chart gets axes and a renderer of its own, as JFreeChart objects are not thread-safe
+				tasks.add(new Callable<File>(){
+					public File call() throws IOException {
+						NumberAxis[] allAxes = createAxes();
+						JFreeChart chart = createChartParPar(iRowFinal, iColFinal, allAxes[iColFinal], allAxes[iRowFinal], 
+								createRendererParPar());
+						return writeChart(chart, new File(directory, "scatterParPar"+suffix), width, height);
+					}
+				});
+				tasks.add(new Callable<File>(){
+					public File call() throws IOException {
+						NumberAxis[] allAxes = createAxes();
+						JFreeChart chart = createChartHeatmap(iRowFinal, iColFinal, allAxes[iColFinal], allAxes[iRowFinal]);
+						return writeChart(chart, new File(directory, "heatmapParPar"+suffix), width, height);
+					}
+				});
+			}
+		}
+		
+		ExecutorService executorService = Executors.newFixedThreadPool(Math.max(1, nThreads));
+		try {
+			List<Future<File>> futures = executorService.invokeAll(tasks);
+			List<File> files = new ArrayList<File>();
+			for (Future<File> future : futures){
+				files.add(future.get());
+			}
+			return files;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while writing the charts.", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException){
+				throw (IOException) e.getCause();
+			}
+			if (e.getCause() instanceof RuntimeException){
+				throw (RuntimeException) e.getCause();
+			}
+			throw new IOException(e.getCause());
+		}
+		finally {
+			executorService.shutdown();
+		}
+	}
+	
+	
+	private static File writeChart(JFreeChart chart, File file, int width, int height) throws IOException {
+		ChartUtilities.saveChartAsPNG(file, chart, width, height);
+		return file;
+	}
+	
 	private String getName(){
 		return DiffEvoVisualization.class.getSimpleName();
 	}
@@ -0,0 +1,139 @@
+/*
+ * Copyrighted 2012-2013 Netherlands eScience Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").  
+ * You may not use this file except in compliance with the License. 
+ * For details, see the LICENCE.txt file location in the root directory of this 
+ * distribution or obtain the Apache License at the following location: 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ * 
+ * For the full license, see: LICENCE.txt (located in the root folder of this distribution). 
+ * ---
+ */
+
+
+package nl.esciencecenter.diffevo;
+
+import java.util.Arrays;
+
+/**
+ * Selects the points of a scatter plot that are worth drawing when there are too many to draw them all.
+ * 
+ * For series against the evaluation number, largestTriangleThreeBuckets keeps the shape of the series: 
+ * the points are divided into buckets, and of every bucket the point is kept that forms the largest 
+ * triangle with the point kept in the previous bucket and the average of the next bucket (Steinarsson, 
+ * 2013, Downsampling time series for visual representation). 
+ * 
+ * For parameter against parameter, gridBin divides the plot into a grid of cells about the size of a 
+ * marker, and keeps the first point in every occupied cell; drawn with markers, the result looks the 
+ * same as all points. 
+ * 
+ * Both return the indices of the points that are kept, in increasing order, after a single pass over 
+ * the points.
+ */
+final class Downsampling {
+
+	private Downsampling(){
+	}
+	
+	
+	static int[] largestTriangleThreeBuckets(double[] x, double[] y, int nSelected){
+		
+		int nPoints = x.length;
+		if (nSelected>=nPoints || nSelected<3){
+			return all(nPoints);
+		}
+		
+		int[] selected = new int[nSelected];
+		selected[0] = 0;
+		selected[nSelected-1] = nPoints-1;
+		
+		// the points between the first and the last are divided over nSelected-2 buckets
+		double bucketSize = (double) (nPoints-2)/(nSelected-2);
+		int iPrevious = 0;
+		for (int iBucket=0;iBucket<nSelected-2;iBucket++){
+			
+			int start = 1+(int) (iBucket*bucketSize);
+			int end = 1+(int) ((iBucket+1)*bucketSize);
+			
+			// average of the next bucket, or the last point when there is none
+			int nextStart = end;
+			int nextEnd = iBucket+1<nSelected-2 ? 1+(int) ((iBucket+2)*bucketSize) : nPoints;
+			nextEnd = Math.min(nextEnd, nPoints);
+			double xAverage = 0;
+			double yAverage = 0;
+			for (int i=nextStart;i<nextEnd;i++){
+				xAverage += x[i];
+				yAverage += y[i];
+			}
+			xAverage /= nextEnd-nextStart;
+			yAverage /= nextEnd-nextStart;
+			
+			double xPrevious = x[iPrevious];
+			double yPrevious = y[iPrevious];
+			int iLargest = start;
+			double largestArea = -1;
+			for (int i=start;i<end;i++){
+				// twice the area of the triangle; NaN never counts as larger
+				double area = Math.abs((xPrevious-xAverage)*(y[i]-yPrevious)-(xPrevious-x[i])*(yAverage-yPrevious));
+				if (area>largestArea){
+					largestArea = area;
+					iLargest = i;
+				}
+			}
+			selected[iBucket+1] = iLargest;
+			iPrevious = iLargest;
+		}
+		return selected;
+	}
+	
+	
+	/**
+	 * Keeps the first point of every occupied cell of an nCellsX by nCellsY grid over [xMin, xMax] by 
+	 * [yMin, yMax]. Points outside the grid, or with a NaN coordinate, are all kept.
+	 */
+	static int[] gridBin(double[] x, double[] y, double xMin, double xMax, double yMin, double yMax, 
+			int nCellsX, int nCellsY){
+		
+		int nPoints = x.length;
+		boolean[] occupied = new boolean[nCellsX*nCellsY];
+		int[] selected = new int[Math.min(nPoints, 64)];
+		int nSelected = 0;
+		double xScale = nCellsX/(xMax-xMin);
+		double yScale = nCellsY/(yMax-yMin);
+		
+		for (int i=0;i<nPoints;i++){
+			boolean keep = true;
+			if (x[i]>=xMin && x[i]<=xMax && y[i]>=yMin && y[i]<=yMax){
+				int iCellX = Math.min((int) ((x[i]-xMin)*xScale), nCellsX-1);
+				int iCellY = Math.min((int) ((y[i]-yMin)*yScale), nCellsY-1);
+				int iCell = iCellY*nCellsX+iCellX;
+				keep = !occupied[iCell];
+				occupied[iCell] = true;
+			}
+			if (keep){
+				if (nSelected==selected.length){
+					selected = Arrays.copyOf(selected, Math.min(nPoints, 2*selected.length));
+				}
+				selected[nSelected++] = i;
+			}
+		}
+		return Arrays.copyOf(selected, nSelected);
+	}
+	
+	
+	static int[] all(int nPoints){
+		int[] selected = new int[nPoints];
+		for (int i=0;i<nPoints;i++){
+			selected[i] = i;
+		}
+		return selected;
+	}
+	
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyrighted 2012-2013 Netherlands eScience Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").  
+ * You may not use this file except in compliance with the License. 
+ * For details, see the LICENCE.txt file location in the root directory of this 
+ * distribution or obtain the Apache License at the following location: 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ * 
+ * For the full license, see: LICENCE.txt (located in the root folder of this distribution). 
+ * ---
+ */
+
+package nl.esciencecenter.diffevo;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Column arrays that grow as rows are added, used by EasParser. The number of columns is fixed by the 
+ * first row.
+ */
+final class EasColumns {
+	
+	private static final int INITIAL_CAPACITY = 1024;
+	
+	private double[][] columns;
+	private int nRows;
+	
+	// constructor
+	EasColumns(){
+		this.columns = null;
+		this.nRows = 0;
+	}
+	
+	void addRow(double[] row, int nValues) throws IOException {
+		if (columns==null){
+			columns = new double[nValues][INITIAL_CAPACITY];
+		}
+		if (nValues!=columns.length){
+			throw new IOException("Data line "+(nRows+1)+" has "+nValues+" values instead of "+columns.length+".");
+		}
+		if (nRows==columns[0].length){
+			for (int iCol=0;iCol<columns.length;iCol++){
+				double[] column = new double[2*nRows];
+				System.arraycopy(columns[iCol], 0, column, 0, nRows);
+				columns[iCol] = column;
+			}
+		}
+		for (int iCol=0;iCol<nValues;iCol++){
+			columns[iCol][nRows] = row[iCol];
+		}
+		nRows++;
+	}
+	
+	int getnRows(){
+		return nRows;
+	}
+	
+	int getnCols(){
+		return columns==null ? 0 : columns.length;
+	}
+	
+	/**
+	 * Joins the rows of the parts, in order, into one set of columns. Parts without rows are skipped.
+	 */
+	static EasColumns concatenate(List<EasColumns> parts) throws IOException {
+		int nCols = -1;
+		int nRows = 0;
+		for (EasColumns part : parts){
+			if (part.nRows==0){
+				continue;
+			}
+			if (nCols>=0 && part.getnCols()!=nCols){
+				throw new IOException("Data line "+(nRows+1)+" has "+part.getnCols()+" values instead of "+nCols+".");
+			}
+			nCols = part.getnCols();
+			nRows = nRows+part.nRows;
+		}
+		EasColumns joined = new EasColumns();
+		if (nCols<0){
+			return joined;
+		}
+		joined.columns = new double[nCols][nRows];
+		int iRowStart = 0;
+		for (EasColumns part : parts){
+			for (int iCol=0;iCol<part.getnCols();iCol++){
+				System.arraycopy(part.columns[iCol], 0, joined.columns[iCol], iRowStart, part.nRows);
+			}
+			iRowStart = iRowStart+part.nRows;
+		}
+		joined.nRows = nRows;
+		return joined;
+	}
+	
+	/**
+	 * Returns the columns, trimmed to the number of rows.
+	 */
+	double[][] toArray(){
+		int nCols = getnCols();
+		double[][] trimmed = new double[nCols][];
+		for (int iCol=0;iCol<nCols;iCol++){
+			if (columns[iCol].length==nRows){
+				trimmed[iCol] = columns[iCol];
+			}
+			else {
+				trimmed[iCol] = new double[nRows];
+				System.arraycopy(columns[iCol], 0, trimmed[iCol], 0, nRows);
+			}
+		}
+		return trimmed;
+	}
+
+}
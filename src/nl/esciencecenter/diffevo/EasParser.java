@@ -0,0 +1,430 @@
+/*
+ * Copyrighted 2012-2013 Netherlands eScience Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").  
+ * You may not use this file except in compliance with the License. 
+ * For details, see the LICENCE.txt file location in the root directory of this 
+ * distribution or obtain the Apache License at the following location: 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ * 
+ * For the full license, see: LICENCE.txt (located in the root folder of this distribution). 
+ * ---
+ */
+
+package nl.esciencecenter.diffevo;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Reads .eas files straight from a memory-mapped FileChannel. The first number in the file is the number 
+ * of lines to skip, counting the line that holds the number itself; every line after that holds one 
+ * comma-separated value per column. The values are parsed from the bytes without creating Strings, and 
+ * go directly into growing column arrays. Values may be padded with whitespace, as in lineartank.eas. 
+ * The results are the same as those of Double.valueOf: values with at most 15 or 16 significant digits 
+ * and a small exponent are converted exactly by a single multiplication or division; anything else (long 
+ * mantissas, NaN, Infinity, hexadecimal) falls back to Double.parseDouble.
+ */
+final class EasParser {
+	
+	private static final int SEGMENT_SIZE = 1<<28;
+	private static final int MIN_RANGE_SIZE = 1<<20;
+	private static final int HEADER_SEARCH_SIZE = 1<<20;
+	private static final long MAX_EXACT_MANTISSA = 1L<<53;
+	private static final double[] POWERS_OF_TEN = new double[]{1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 
+		1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+	private static final Charset LATIN1 = Charset.forName("ISO-8859-1");
+	
+	private EasParser(){
+	}
+	
+	
+	static EasColumns parse(File file) throws IOException {
+		return parse(file, SEGMENT_SIZE);
+	}
+	
+	
+	/**
+	 * Parses the file, mapping at most segmentSize bytes at a time. Each segment ends after its last line 
+	 * terminator, which may be a lone '\r', and the next one starts there.
+	 */
+	static EasColumns parse(File file, int segmentSize) throws IOException {
+		
+		RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = randomAccessFile.getChannel();
+			long size = channel.size();
+			EasColumns columns = new EasColumns();
+			long position = 0;
+			boolean isFirstSegment = true;
+			while (position<size || isFirstSegment){
+				int length = (int) Math.min(segmentSize, size-position);
+				ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+				boolean isLastSegment = position+length==size;
+				int start = 0;
+				if (isFirstSegment){
+					start = skipHeader(buffer, 0, length);
+					isFirstSegment = false;
+				}
+				int end = isLastSegment ? length : afterLastLineTerminator(buffer, start, length);
+				if (end<0){
+					throw new IOException("A line of "+file+" is longer than "+segmentSize+" bytes.");
+				}
+				parseLines(buffer, start, end, columns);
+				position = position+end;
+			}
+			return columns;
+		}
+		finally {
+			randomAccessFile.close();
+		}
+	}
+	
+	
+	/**
+	 * Parses the file on nThreads threads. The data lines are divided into byte ranges of at least 
+	 * MIN_RANGE_SIZE bytes that start and end at line boundaries; each range is parsed into columns of its 
+	 * own, and the columns are concatenated in order at the end. The result is the same as that of parse.
+	 */
+	static EasColumns parseParallel(File file, int nThreads) throws IOException {
+		return parseParallel(file, nThreads, MIN_RANGE_SIZE);
+	}
+	
+	
+	static EasColumns parseParallel(final File file, int nThreads, int minRangeSize) throws IOException {
+		
+		RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+		try {
+			final FileChannel channel = randomAccessFile.getChannel();
+			long size = channel.size();
+			
+			ByteBuffer head = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, HEADER_SEARCH_SIZE));
+			long dataStart = skipHeader(head, 0, head.limit());
+			
+			long nBytes = size-dataStart;
+			long nRanges = Math.max(1, Math.min(nThreads, nBytes/minRangeSize));
+			nRanges = Math.max(nRanges, (nBytes+SEGMENT_SIZE-1)/SEGMENT_SIZE);
+			List<Long> boundaries = new ArrayList<Long>();
+			boundaries.add(dataStart);
+			for (long iRange=1;iRange<nRanges;iRange++){
+				long boundary = afterNextLineTerminator(channel, dataStart+nBytes*iRange/nRanges);
+				if (boundary>boundaries.get(boundaries.size()-1) && boundary<size){
+					boundaries.add(boundary);
+				}
+			}
+			boundaries.add(size);
+			
+			ExecutorService executorService = Executors.newFixedThreadPool(Math.max(1, nThreads));
+			try {
+				List<Future<EasColumns>> futures = new ArrayList<Future<EasColumns>>();
+				for (int iRange=0;iRange<boundaries.size()-1;iRange++){
+					final long start = boundaries.get(iRange);
+					final long end = boundaries.get(iRange+1);
+					if (end-start>SEGMENT_SIZE){
+						throw new IOException("A line of "+file+" is longer than "+SEGMENT_SIZE+" bytes.");
+					}
+					futures.add(executorService.submit(new Callable<EasColumns>(){
+						public EasColumns call() throws IOException {
+							ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end-start);
+							EasColumns columns = new EasColumns();
+							parseLines(buffer, 0, buffer.limit(), columns);
+							return columns;
+						}
+					}));
+				}
+				List<EasColumns> parts = new ArrayList<EasColumns>();
+				for (Future<EasColumns> future : futures){
+					parts.add(getResult(future));
+				}
+				return EasColumns.concatenate(parts);
+			}
+			finally {
+				executorService.shutdown();
+			}
+		}
+		finally {
+			randomAccessFile.close();
+		}
+	}
+	
+	
+	private static EasColumns getResult(Future<EasColumns> future) throws IOException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while parsing.", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException){
+				throw (IOException) e.getCause();
+			}
+			if (e.getCause() instanceof RuntimeException){
+				throw (RuntimeException) e.getCause();
+			}
+			throw new IOException(e.getCause());
+		}
+	}
+	
+	
+	/**
+	 * Returns the position just after the first line terminator ("\n", "\r\n" or a lone '\r', as in 
+	 * findLineEnd) at or after position, or the size of the file if there is none. A "\r\n" is never 
+	 * split, so that the next range does not start with an empty line.
+	 */
+	private static long afterNextLineTerminator(FileChannel channel, long position) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(1<<16);
+		long bufferStart = position;
+		boolean isAfterCarriageReturn = false;
+		while (true){
+			buffer.clear();
+			int nRead = channel.read(buffer, bufferStart);
+			if (nRead<=0){
+				return channel.size();
+			}
+			for (int i=0;i<nRead;i++){
+				byte b = buffer.get(i);
+				if (isAfterCarriageReturn){
+					return b=='\n' ? bufferStart+i+1 : bufferStart+i;
+				}
+				if (b=='\n'){
+					return bufferStart+i+1;
+				}
+				isAfterCarriageReturn = b=='\r';
+			}
+			bufferStart = bufferStart+nRead;
+		}
+	}
+	
+	
+	/**
+	 * Returns the position of the first data line: skips leading whitespace, reads the number of lines 
+	 * to skip, and skips that many lines, the first of which is the remainder of the line with the number.
+	 */
+	static int skipHeader(ByteBuffer buffer, int from, int to) throws IOException {
+		int position = from;
+		while (position<to && isWhitespace(buffer.get(position))){
+			position++;
+		}
+		int start = position;
+		if (position<to && buffer.get(position)=='+'){
+			position++;
+		}
+		int nSkipLines = 0;
+		while (position<to && isDigit(buffer.get(position))){
+			nSkipLines = nSkipLines*10+(buffer.get(position)-'0');
+			position++;
+		}
+		if (position==start || (position<to && !isWhitespace(buffer.get(position)))){
+			throw new IOException("The file does not start with the number of lines to skip.");
+		}
+		for (int iSkipLine=0;iSkipLine<nSkipLines;iSkipLine++){
+			int lineEnd = findLineEnd(buffer, position, to);
+			if (lineEnd==to){
+				throw new IOException("The file ends within its "+nSkipLines+" header lines.");
+			}
+			position = skipLineTerminator(buffer, lineEnd, to);
+		}
+		return position;
+	}
+	
+	
+	/**
+	 * Parses the lines in [from, to) into the columns. Text after the last line terminator counts as a 
+	 * line, but a terminator at the end does not start an empty one.
+	 */
+	static void parseLines(ByteBuffer buffer, int from, int to, EasColumns columns) throws IOException {
+		double[] row = new double[16];
+		int position = from;
+		while (position<to){
+			int lineEnd = findLineEnd(buffer, position, to);
+			int nValues = 0;
+			int nEmptyFields = 0;
+			int fieldStart = position;
+			for (int p=position;p<=lineEnd;p++){
+				if (p<lineEnd && buffer.get(p)!=','){
+					continue;
+				}
+				int valueStart = fieldStart;
+				int valueEnd = p;
+				// like String.split, trailing empty fields are dropped, and other empty fields are an error
+				if (valueStart==valueEnd){
+					nEmptyFields++;
+				}
+				else {
+					if (nEmptyFields>0){
+						throw new NumberFormatException("empty String");
+					}
+					if (nValues==row.length){
+						double[] rowLarger = new double[2*row.length];
+						System.arraycopy(row, 0, rowLarger, 0, nValues);
+						row = rowLarger;
+					}
+					row[nValues] = parseDouble(buffer, valueStart, valueEnd);
+					nValues++;
+				}
+				fieldStart = p+1;
+			}
+			if (nValues==0){
+				throw new NumberFormatException("empty String");
+			}
+			columns.addRow(row, nValues);
+			position = skipLineTerminator(buffer, lineEnd, to);
+		}
+	}
+	
+	
+	/**
+	 * Parses the characters in [from, to) like Double.parseDouble does.
+	 */
+	static double parseDouble(ByteBuffer buffer, int from, int to){
+		
+		int start = from;
+		int end = to;
+		while (start<end && isWhitespace(buffer.get(start))){
+			start++;
+		}
+		while (end>start && isWhitespace(buffer.get(end-1))){
+			end--;
+		}
+		
+		int position = start;
+		boolean isNegative = false;
+		if (position<end && (buffer.get(position)=='-' || buffer.get(position)=='+')){
+			isNegative = buffer.get(position)=='-';
+			position++;
+		}
+		long mantissa = 0;
+		int exponent = 0;
+		boolean hasDigits = false;
+		boolean isExact = true;
+		while (position<end && isDigit(buffer.get(position))){
+			hasDigits = true;
+			if (mantissa<MAX_EXACT_MANTISSA){
+				mantissa = mantissa*10+(buffer.get(position)-'0');
+			}
+			else {
+				isExact = false;
+			}
+			position++;
+		}
+		if (position<end && buffer.get(position)=='.'){
+			position++;
+			while (position<end && isDigit(buffer.get(position))){
+				hasDigits = true;
+				if (mantissa<MAX_EXACT_MANTISSA){
+					mantissa = mantissa*10+(buffer.get(position)-'0');
+					exponent--;
+				}
+				else {
+					isExact = false;
+				}
+				position++;
+			}
+		}
+		if (hasDigits && position<end && (buffer.get(position)=='e' || buffer.get(position)=='E')){
+			position++;
+			boolean isExponentNegative = false;
+			if (position<end && (buffer.get(position)=='-' || buffer.get(position)=='+')){
+				isExponentNegative = buffer.get(position)=='-';
+				position++;
+			}
+			int exponentDigitsStart = position;
+			int explicitExponent = 0;
+			while (position<end && isDigit(buffer.get(position))){
+				if (explicitExponent<100000){
+					explicitExponent = explicitExponent*10+(buffer.get(position)-'0');
+				}
+				position++;
+			}
+			if (position==exponentDigitsStart){
+				hasDigits = false;
+			}
+			exponent = exponent+(isExponentNegative ? -explicitExponent : explicitExponent);
+		}
+		
+		if (hasDigits && isExact && position==end && mantissa<=MAX_EXACT_MANTISSA && 
+				exponent>=-22 && exponent<=22){
+			// both operands are exact, so the single rounding of the multiplication or division is correct
+			double value = exponent<0 ? mantissa/POWERS_OF_TEN[-exponent] : mantissa*POWERS_OF_TEN[exponent];
+			return isNegative ? -value : value;
+		}
+		return Double.parseDouble(toString(buffer, from, to));
+	}
+	
+	
+	private static String toString(ByteBuffer buffer, int from, int to){
+		byte[] bytes = new byte[to-from];
+		for (int i=0;i<bytes.length;i++){
+			bytes[i] = buffer.get(from+i);
+		}
+		return new String(bytes, LATIN1);
+	}
+	
+	
+	/**
+	 * Returns the position of the first line terminator at or after from, or to if there is none.
+	 */
+	static int findLineEnd(ByteBuffer buffer, int from, int to){
+		int position = from;
+		while (position<to){
+			byte b = buffer.get(position);
+			if (b=='\n' || b=='\r'){
+				return position;
+			}
+			position++;
+		}
+		return to;
+	}
+	
+	
+	static int skipLineTerminator(ByteBuffer buffer, int lineEnd, int to){
+		if (lineEnd<to && buffer.get(lineEnd)=='\r' && lineEnd+1<to && buffer.get(lineEnd+1)=='\n'){
+			return lineEnd+2;
+		}
+		return Math.min(lineEnd+1, to);
+	}
+	
+	
+	/**
+	 * Returns the position just after the last line terminator in [from, to), or -1 if there is none. A 
+	 * '\r' at to-1 does not count, since it may be the first half of a "\r\n".
+	 */
+	static int afterLastLineTerminator(ByteBuffer buffer, int from, int to){
+		for (int position=to-1;position>=from;position--){
+			byte b = buffer.get(position);
+			if (b=='\n' || (b=='\r' && position<to-1)){
+				return position+1;
+			}
+		}
+		return -1;
+	}
+	
+	
+	private static boolean isDigit(byte b){
+		return b>='0' && b<='9';
+	}
+	
+	
+	private static boolean isWhitespace(byte b){
+		// the same as String.trim
+		return b>=0 && b<=' ';
+	}
+
+}
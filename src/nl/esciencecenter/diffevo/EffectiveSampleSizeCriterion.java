@@ -0,0 +1,64 @@
+/*
+ * Copyrighted 2012-2013 Netherlands eScience Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").  
+ * You may not use this file except in compliance with the License. 
+ * For details, see the LICENCE.txt file location in the root directory of this 
+ * distribution or obtain the Apache License at the following location: 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ * 
+ * For the full license, see: LICENCE.txt (located in the root folder of this distribution). 
+ * ---
+ */
+
+
+package nl.esciencecenter.diffevo;
+
+/**
+ * Stops a run once every parameter has at least a given effective sample size after the burn-in (see 
+ * ChainDiagnostics). The diagnostics are calculated every checkInterval generations only, as each time 
+ * they cover all results so far.
+ */
+public class EffectiveSampleSizeCriterion implements StoppingCriterion {
+	
+	private final double minEffectiveSampleSize;
+	private final int burnIn;
+	private final int checkInterval;
+	private double lastEffectiveSampleSize;
+	
+	
+	// constructor
+	public EffectiveSampleSizeCriterion(double minEffectiveSampleSize, int burnIn, int checkInterval){
+		if (checkInterval<1){
+			throw new IllegalArgumentException("The check interval should be at least 1.");
+		}
+		this.minEffectiveSampleSize = minEffectiveSampleSize;
+		this.burnIn = burnIn;
+		this.checkInterval = checkInterval;
+		this.lastEffectiveSampleSize = Double.NaN;
+	}
+	
+	
+	public boolean isMet(EvalResults evalResults, int iGen){
+		if (iGen%checkInterval!=0){
+			return false;
+		}
+		lastEffectiveSampleSize = new ChainDiagnostics(evalResults, burnIn).getMinimumEffectiveSampleSize();
+		return lastEffectiveSampleSize>=minEffectiveSampleSize;
+	}
+	
+	
+	/**
+	 * Returns the smallest effective sample size of any parameter at the last check.
+	 */
+	public double getLastEffectiveSampleSize(){
+		return lastEffectiveSampleSize;
+	}
+
+}
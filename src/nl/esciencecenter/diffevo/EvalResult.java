@@ -36,7 +36,7 @@ public class EvalResult {
 
 	public EvalResult(int sampleIdentifier, int firstOccurrence, double[] parameterCombination, double objScore, double[][] modelResult) {
 		this(sampleIdentifier,firstOccurrence,parameterCombination,objScore);
-		this.modelResult = modelResult.clone();
+		setModelResult(modelResult);
 	}
 
 	
@@ -53,16 +53,21 @@ public class EvalResult {
 		return parameterCombination.clone();
 	}
 
+	// get one parameter value without copying the whole parameter combination:
+	public double getParameterValue(int iPar) {
+		return parameterCombination[iPar];
+	}
+
 	public double getObjScore() {
 		return objScore;
 	}
 
 	public double[][] getModelResult() {
-		return modelResult.clone();
+		return modelResult==null ? null : modelResult.clone();
 	}
 
 	public void setModelResult(double[][] modelResult) {
-		this.modelResult = modelResult.clone();
+		this.modelResult = modelResult==null ? null : modelResult.clone();
 	}
 	
 }
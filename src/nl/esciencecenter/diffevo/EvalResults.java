@@ -20,8 +20,10 @@
 package nl.esciencecenter.diffevo;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import nl.esciencecenter.diffevo.likelihoodfunctionfactories.LikelihoodFunctionFactory;
 import nl.esciencecenter.diffevo.likelihoodfunctions.LikelihoodFunction;
@@ -36,8 +38,8 @@ public class EvalResults {
 	private final int nPop;
 	private final StateSpace stateSpace;
 	private final double[] initState;
-	private final double[] forcing;
-	private final double[] times;
+	private final SeriesSource forcing;
+	private final SeriesSource times;
 	private final double[] assimilate;
 	private final double[][] obs;
 	private final ModelFactory modelFactory;
@@ -45,6 +47,10 @@ public class EvalResults {
 	private final Random generator;
 	private final String modelName;
 	private int nResults;
+	private final int[] populationSizes;
+	private OnlineHistograms onlineHistograms;
+	// copied on write, so that a listener can be removed from another thread while results are being added
+	private final List<EvalResultsListener> listeners = new CopyOnWriteArrayList<EvalResultsListener>();
 	
 	// constructor
 	public EvalResults(int nGens, int nPop, ParSpace parSpace, LikelihoodFunctionFactory likelihoodFunctionFactory, Random generator){
@@ -67,6 +73,8 @@ public class EvalResults {
 		this.obs = null;
 		
 		this.listOfEvalResult= new ArrayList<EvalResult>();
+		this.populationSizes = new int[nGens];
+		Arrays.fill(populationSizes, nPop);
 		updateSize();
 		
 	}
@@ -74,33 +82,101 @@ public class EvalResults {
 	// constructor
 	public EvalResults(int nGens, int nPop, ParSpace parSpace, StateSpace stateSpace, double[] initState, double[] forcing, double[] times, 
 			double[] assimilate, double[][] obs, ModelFactory modelFactory, LikelihoodFunctionFactory likelihoodFunctionFactory, Random generator){
+		this(nGens, nPop, parSpace, stateSpace, initState, new ArraySeriesSource(forcing.clone()), new ArraySeriesSource(times.clone()), 
+				assimilate, obs, modelFactory, likelihoodFunctionFactory, generator);
+	}
+	
+	// constructor
+	/**
+	 * Keeps a reference to the forcing and times sources instead of a copy of the series.
+	 */
+	public EvalResults(int nGens, int nPop, ParSpace parSpace, StateSpace stateSpace, double[] initState, SeriesSource forcing, 
+			SeriesSource times, double[] assimilate, double[][] obs, ModelFactory modelFactory, 
+			LikelihoodFunctionFactory likelihoodFunctionFactory, Random generator){
 		
 		this.nGens = nGens;
 		this.nPop = nPop;
 		this.parSpace = parSpace;
 		this.stateSpace = stateSpace;
 
-		Model model = modelFactory.create(initState, new double[parSpace.getNumberOfPars()], forcing, times);
+		Model model = modelFactory.create(initState, new double[parSpace.getNumberOfPars()], getLeadingValues(forcing), getLeadingValues(times));
 		this.modelName = model.getName();
 		this.modelFactory = modelFactory;
 		this.likelihoodFunctionFactory = likelihoodFunctionFactory;
 		this.generator = generator;
 
 		this.initState = initState.clone();
-		this.forcing = forcing.clone();
-		this.times = times.clone();
+		this.forcing = forcing;
+		this.times = times;
 		this.assimilate = assimilate.clone();
 		this.obs = obs.clone();
 		
 		this.listOfEvalResult= new ArrayList<EvalResult>();
+		this.populationSizes = new int[nGens];
+		Arrays.fill(populationSizes, nPop);
 		updateSize();
 
 	}
 	
 	
+	/**
+	 * Returns the series if it is held in memory, and otherwise its first two values, which are enough to 
+	 * create a model for its name.
+	 */
+	private static double[] getLeadingValues(SeriesSource source){
+		if (source instanceof ArraySeriesSource){
+			return ((ArraySeriesSource) source).getSharedValues();
+		}
+		double[] values = new double[Math.min(2, source.getnValues())];
+		source.read(0, values, 0, values.length);
+		return values;
+	}
+	
+	
 	public void add(EvalResult evalResult){
 		listOfEvalResult.add(evalResult);
 		updateSize();
+		for (EvalResultsListener listener : listeners){
+			listener.evalResultAdded(evalResult);
+		}
+	}
+	
+	
+	/**
+	 * Tells listener about every result that is added from now on; the results that are already there are 
+	 * passed to it first. Must be called from the thread that adds the results, or before any are added.
+	 */
+	public void addListener(EvalResultsListener listener){
+		for (EvalResult evalResult : listOfEvalResult){
+			listener.evalResultAdded(evalResult);
+		}
+		listeners.add(listener);
+	}
+	
+	/**
+	 * Stops telling listener about new results. Unlike addListener, this may be called from any thread; a 
+	 * result that is being added at the same time may still reach the listener.
+	 */
+	public void removeListener(EvalResultsListener listener){
+		listeners.remove(listener);
+	}
+	
+	
+	/**
+	 * Keeps onlineHistograms up to date with every result that is added from now on (see addListener). 
+	 */
+	public void setOnlineHistograms(OnlineHistograms onlineHistograms){
+		if (this.onlineHistograms!=null){
+			removeListener(this.onlineHistograms);
+		}
+		if (onlineHistograms!=null){
+			addListener(onlineHistograms);
+		}
+		this.onlineHistograms = onlineHistograms;
+	}
+	
+	public OnlineHistograms getOnlineHistograms(){
+		return onlineHistograms;
 	}
 
 	
@@ -153,6 +229,18 @@ public class EvalResults {
 		return nPop;
 	}
 
+	/**
+	 * Population size in generation iGen. This is equal to getnPop() unless DiffEvo was 
+	 * given a PopulationSizeSchedule.
+	 */
+	public int getnPop(int iGen) {
+		return populationSizes[iGen];
+	}
+
+	public void setnPop(int iGen, int nPop) {
+		this.populationSizes[iGen] = nPop;
+	}
+
 	public StateSpace getStateSpace() {
 		return stateSpace;
 	}
@@ -162,11 +250,25 @@ public class EvalResults {
 	}
 
 	public double[] getForcing() {
-		return forcing.clone();
+		return readAll(forcing);
 	}
 
 	public double[] getTimes() {
-		return times.clone();
+		return readAll(times);
+	}
+	
+	public SeriesSource getForcingSource() {
+		return forcing;
+	}
+
+	public SeriesSource getTimesSource() {
+		return times;
+	}
+	
+	private static double[] readAll(SeriesSource source) {
+		double[] values = new double[source.getnValues()];
+		source.read(0, values, 0, values.length);
+		return values;
 	}
 
 	public double[] getAssimilate() {
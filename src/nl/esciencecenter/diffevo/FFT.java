@@ -0,0 +1,101 @@
+/*
+ * Copyrighted 2012-2013 Netherlands eScience Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").  
+ * You may not use this file except in compliance with the License. 
+ * For details, see the LICENCE.txt file location in the root directory of this 
+ * distribution or obtain the Apache License at the following location: 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ * 
+ * For the full license, see: LICENCE.txt (located in the root folder of this distribution). 
+ * ---
+ */
+
+
+package nl.esciencecenter.diffevo;
+
+/**
+ * In-place radix-2 fast Fourier transform of complex data (Cooley and Tukey, 1965), in O(n log n).
+ */
+final class FFT {
+
+	private FFT(){
+	}
+	
+	
+	static int nextPowerOfTwo(int n){
+		int powerOfTwo = 1;
+		while (powerOfTwo<n){
+			powerOfTwo <<= 1;
+		}
+		return powerOfTwo;
+	}
+	
+	
+	/**
+	 * Transforms the complex values (re[i], im[i]), whose number should be a power of two. The inverse 
+	 * transform includes the division by the number of values.
+	 */
+	static void transform(double[] re, double[] im, boolean inverse){
+		
+		int n = re.length;
+		if (Integer.bitCount(n)>1){
+			throw new IllegalArgumentException("The number of values should be a power of two.");
+		}
+		
+		// bit-reversal permutation
+		for (int i=1, j=0;i<n;i++){
+			int bit = n>>1;
+			for (;(j&bit)!=0;bit>>=1){
+				j ^= bit;
+			}
+			j ^= bit;
+			if (i<j){
+				double tmp = re[i]; re[i] = re[j]; re[j] = tmp;
+				tmp = im[i]; im[i] = im[j]; im[j] = tmp;
+			}
+		}
+		
+		// twiddle factors exp(-+2*pi*i*k/n), from a table rather than by repeated multiplication, which 
+		// would lose accuracy for long transforms
+		double[] cos = new double[n/2];
+		double[] sin = new double[n/2];
+		for (int k=0;k<n/2;k++){
+			cos[k] = Math.cos(2*Math.PI*k/n);
+			sin[k] = (inverse ? 1 : -1)*Math.sin(2*Math.PI*k/n);
+		}
+		
+		// butterflies of increasing length
+		for (int length=2;length<=n;length<<=1){
+			int step = n/length;
+			for (int start=0;start<n;start+=length){
+				for (int k=0;k<length/2;k++){
+					int even = start+k;
+					int odd = even+length/2;
+					double uRe = cos[k*step];
+					double uIm = sin[k*step];
+					double tRe = re[odd]*uRe-im[odd]*uIm;
+					double tIm = re[odd]*uIm+im[odd]*uRe;
+					re[odd] = re[even]-tRe;
+					im[odd] = im[even]-tIm;
+					re[even] += tRe;
+					im[even] += tIm;
+				}
+			}
+		}
+		
+		if (inverse){
+			for (int i=0;i<n;i++){
+				re[i] /= n;
+				im[i] /= n;
+			}
+		}
+	}
+	
+}
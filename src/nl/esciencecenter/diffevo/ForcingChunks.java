@@ -19,69 +19,20 @@
 
 package nl.esciencecenter.diffevo;
 
-public class ForcingChunks {
+public class ForcingChunks extends Chunks {
 
-	private double[] forcing;
-	private int[][] chunkIndices;
-	private int nChunks;
-	
 	// constructor
 	public ForcingChunks(double[] forcing, double[] assimilate){
-		
-		// TODO make superclass Chunks
-		
-		this.forcing = forcing.clone();
-		assimilate[0] = 0;
-		int nTimes =  forcing.length;
-		for (int iTime=0;iTime<nTimes;iTime++){
-			if (assimilate[iTime]==1){
-				this.nChunks = this.nChunks + 1;
-			}
-		}
-	
-		int iIndexStart = 0;
-		int iIndexEnd = 0;
-		int iChunk = 0;
-		this.chunkIndices = new int[nChunks][];
-		for (int iTime=0;iTime<nTimes;iTime++){
-			iIndexEnd = iTime;			
-			if (assimilate[iTime]==1){
-				int nIndices = iIndexEnd-iIndexStart+1;
-				int[] tmp = new int[nIndices];
-				for (int iIndex=iIndexStart;iIndex<=iIndexEnd;iIndex++){
-					tmp[iIndex-iIndexStart] = iIndex;
-				}
-				this.chunkIndices[iChunk] = tmp;
-				iChunk = iChunk + 1;
-				iIndexStart = iIndexEnd;
-			}
-		}
+		super(forcing, assimilate);
 	}
 	
-	public double[] getForcing(){
-		return forcing.clone();
-	}
-
-	public int getnChunks(){
-		return nChunks;
+	// constructor
+	public ForcingChunks(SeriesSource forcing, double[] assimilate){
+		super(forcing, assimilate);
 	}
 	
-	public int[][] getChunkIndices(){
-		return chunkIndices.clone();
+	public double[] getForcing(){
+		return getValues();
 	}
 
-	public int[] getChunkIndices(int iChunk){
-		return chunkIndices[iChunk];
-	}
-	
-	public double[] getChunk(int iChunk){
-		int chunkSize = chunkIndices[iChunk].length;
-		double[] forcingChunk = new double[chunkSize];
-		for (int k=0;k<chunkSize;k++){
-			forcingChunk[k] = forcing[chunkIndices[iChunk][k]]; 
-		}
-		return forcingChunk;
-	}
 }
-
-
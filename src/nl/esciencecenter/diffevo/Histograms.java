@@ -0,0 +1,250 @@
+/*
+ * Copyrighted 2012-2013 Netherlands eScience Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").  
+ * You may not use this file except in compliance with the License. 
+ * For details, see the LICENCE.txt file location in the root directory of this 
+ * distribution or obtain the Apache License at the following location: 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ * 
+ * For the full license, see: LICENCE.txt (located in the root folder of this distribution). 
+ * ---
+ */
+
+
+package nl.esciencecenter.diffevo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Counts of evaluation results per bin of the parameter space: one marginal histogram for every 
+ * parameter, and one two-dimensional histogram for every pair of parameters. The bins are those of 
+ * ParSpace (see divideIntoIntervals); a result is counted in a histogram only if the values involved 
+ * lie within [lower bound, upper bound) (see ParSpace.getBinIndex). 
+ * 
+ * Each result is binned once per parameter, after which all histograms are updated from those bin 
+ * indices, so that the whole set is built in a single pass over the results. calculate divides that 
+ * pass over several threads, each with histograms of its own, and adds them up at the end. 
+ */
+public class Histograms {
+	
+	private final ParSpace parSpace;
+	private final int nPars;
+	private final int[] nBins;
+	private final int[][] marginals;
+	// two-dimensional histograms of pairs iParRow<iParCol, in row-major order, at index getPairIndex:
+	private final int[][] pairs;
+	private final int[] binIndices;
+	private int nResults;
+	
+	
+	// constructor
+	public Histograms(ParSpace parSpace){
+		this.parSpace = parSpace;
+		this.nPars = parSpace.getNumberOfPars();
+		this.nBins = new int[nPars];
+		this.marginals = new int[nPars][];
+		for (int iPar=0;iPar<nPars;iPar++){
+			nBins[iPar] = parSpace.getnBins(iPar);
+			marginals[iPar] = new int[nBins[iPar]];
+		}
+		this.pairs = new int[nPars*(nPars-1)/2][];
+		for (int iParRow=0;iParRow<nPars;iParRow++){
+			for (int iParCol=iParRow+1;iParCol<nPars;iParCol++){
+				pairs[getPairIndex(iParRow, iParCol)] = new int[nBins[iParRow]*nBins[iParCol]];
+			}
+		}
+		this.binIndices = new int[nPars];
+		this.nResults = 0;
+	}
+	
+	
+	// constructor (from counts that have been made elsewhere, see OnlineHistograms)
+	Histograms(ParSpace parSpace, int[][] marginals, int[][] pairs, int nResults){
+		this.parSpace = parSpace;
+		this.nPars = parSpace.getNumberOfPars();
+		this.nBins = new int[nPars];
+		for (int iPar=0;iPar<nPars;iPar++){
+			nBins[iPar] = parSpace.getnBins(iPar);
+		}
+		this.marginals = marginals;
+		this.pairs = pairs;
+		this.binIndices = new int[nPars];
+		this.nResults = nResults;
+	}
+	
+	
+	/**
+	 * Builds the histograms of all results in evalResults on nThreads threads.
+	 */
+	public static Histograms calculate(EvalResults evalResults, int nThreads){
+		
+		final List<EvalResult> results = evalResults.getEvalResults();
+		final ParSpace parSpace = evalResults.getParSpace();
+		int nResults = results.size();
+		int nSlices = Math.max(1, Math.min(nThreads, nResults));
+		
+		if (nSlices==1){
+			Histograms histograms = new Histograms(parSpace);
+			histograms.addAll(results, 0, nResults);
+			return histograms;
+		}
+		
+		ExecutorService executorService = Executors.newFixedThreadPool(nSlices);
+		try {
+			List<Future<Histograms>> futures = new ArrayList<Future<Histograms>>();
+			for (int iSlice=0;iSlice<nSlices;iSlice++){
+				final int from = (int) ((long) nResults*iSlice/nSlices);
+				final int to = (int) ((long) nResults*(iSlice+1)/nSlices);
+				futures.add(executorService.submit(new Callable<Histograms>(){
+					public Histograms call(){
+						Histograms histograms = new Histograms(parSpace);
+						histograms.addAll(results, from, to);
+						return histograms;
+					}
+				}));
+			}
+			Histograms histograms = getResult(futures.get(0));
+			for (int iSlice=1;iSlice<nSlices;iSlice++){
+				histograms.add(getResult(futures.get(iSlice)));
+			}
+			return histograms;
+		}
+		finally {
+			executorService.shutdown();
+		}
+	}
+	
+	
+	private static Histograms getResult(Future<Histograms> future){
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while calculating the histograms.", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException){
+				throw (RuntimeException) e.getCause();
+			}
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+	
+	
+	private void addAll(List<EvalResult> results, int from, int to){
+		for (int iResult=from;iResult<to;iResult++){
+			add(results.get(iResult));
+		}
+	}
+	
+	
+	public void add(EvalResult evalResult){
+		
+		for (int iPar=0;iPar<nPars;iPar++){
+			int iBin = parSpace.getBinIndex(iPar, evalResult.getParameterValue(iPar));
+			binIndices[iPar] = iBin;
+			if (iBin>=0){
+				marginals[iPar][iBin]++;
+			}
+		}
+		
+		int iPair = 0;
+		for (int iParRow=0;iParRow<nPars;iParRow++){
+			int iBinRow = binIndices[iParRow];
+			if (iBinRow<0){
+				iPair += nPars-1-iParRow;
+				continue;
+			}
+			for (int iParCol=iParRow+1;iParCol<nPars;iParCol++){
+				int iBinCol = binIndices[iParCol];
+				if (iBinCol>=0){
+					pairs[iPair][iBinRow*nBins[iParCol]+iBinCol]++;
+				}
+				iPair++;
+			}
+		}
+		nResults++;
+	}
+	
+	
+	/**
+	 * Adds the counts of other, which must have been built over the same bins, to these histograms.
+	 */
+	public void add(Histograms other){
+		if (other.parSpace!=parSpace){
+			throw new IllegalArgumentException("Histograms over different parameter spaces can not be added.");
+		}
+		for (int iPar=0;iPar<nPars;iPar++){
+			addCounts(marginals[iPar], other.marginals[iPar]);
+		}
+		for (int iPair=0;iPair<pairs.length;iPair++){
+			addCounts(pairs[iPair], other.pairs[iPair]);
+		}
+		nResults += other.nResults;
+	}
+	
+	
+	private static void addCounts(int[] counts, int[] otherCounts){
+		for (int i=0;i<counts.length;i++){
+			counts[i] += otherCounts[i];
+		}
+	}
+	
+	
+	private int getPairIndex(int iParRow, int iParCol){
+		return getPairIndex(nPars, iParRow, iParCol);
+	}
+	
+	
+	static int getPairIndex(int nPars, int iParRow, int iParCol){
+		// pairs (0,1)...(0,nPars-1) come first, then (1,2)...(1,nPars-1), and so on:
+		return iParRow*(2*nPars-iParRow-1)/2+(iParCol-iParRow-1);
+	}
+	
+	
+	public int getnResults(){
+		return nResults;
+	}
+	
+	
+	public int[] getMarginal(int iPar){
+		return marginals[iPar].clone();
+	}
+	
+	
+	/**
+	 * Returns the two-dimensional histogram of parameters iParRow and iParCol, with the bins of iParRow
+	 * along the rows and those of iParCol along the columns.
+	 */
+	public int[][] getPair(int iParRow, int iParCol){
+		if (iParRow==iParCol){
+			throw new IllegalArgumentException("A pair consists of two different parameters.");
+		}
+		boolean transposed = iParRow>iParCol;
+		int iParLow = Math.min(iParRow, iParCol);
+		int iParHigh = Math.max(iParRow, iParCol);
+		int[] counts = pairs[getPairIndex(iParLow, iParHigh)];
+		int nRows = nBins[iParRow];
+		int nCols = nBins[iParCol];
+		int[][] pair = new int[nRows][nCols];
+		for (int iRow=0;iRow<nRows;iRow++){
+			for (int iCol=0;iCol<nCols;iCol++){
+				pair[iRow][iCol] = transposed ? counts[iCol*nRows+iRow] : counts[iRow*nCols+iCol];
+			}
+		}
+		return pair;
+	}
+	
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyrighted 2012-2013 Netherlands eScience Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").  
+ * You may not use this file except in compliance with the License. 
+ * For details, see the LICENCE.txt file location in the root directory of this 
+ * distribution or obtain the Apache License at the following location: 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ * 
+ * For the full license, see: LICENCE.txt (located in the root folder of this distribution). 
+ * ---
+ */
+
+package nl.esciencecenter.diffevo;
+
+/**
+ * Linear population size reduction as used in L-SHADE (Tanabe and Fukunaga, 2014): the population 
+ * shrinks linearly from its initial size in the first generation to nPopMin in the last generation.
+ */
+public class LinearPopulationSizeSchedule implements PopulationSizeSchedule {
+
+	private final int nPopMin;
+	
+	public LinearPopulationSizeSchedule(int nPopMin){
+		this.nPopMin = nPopMin;
+	}
+	
+	@Override
+	public int getPopulationSize(int iGen, int nGens, int nPopInitial) {
+		if (nGens<2){
+			return nPopInitial;
+		}
+		double fraction = (double) iGen/(nGens-1);
+		return (int) Math.round(nPopInitial + (nPopMin - nPopInitial) * fraction);
+	}
+	
+	public int getnPopMin() {
+		return nPopMin;
+	}
+
+}
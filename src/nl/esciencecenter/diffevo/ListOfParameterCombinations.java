@@ -19,10 +19,26 @@
 
 package nl.esciencecenter.diffevo;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
 import nl.esciencecenter.diffevo.likelihoodfunctionfactories.LikelihoodFunctionFactory;
+import nl.esciencecenter.diffevo.likelihoodfunctions.IncrementalLikelihoodFunction;
 import nl.esciencecenter.diffevo.likelihoodfunctions.LikelihoodFunction;
+import nl.esciencecenter.diffevo.statespacemodelfactories.BatchModelFactory;
 import nl.esciencecenter.diffevo.statespacemodelfactories.ModelFactory;
+import nl.esciencecenter.diffevo.statespacemodelfactories.ReusableModelFactory;
+import nl.esciencecenter.diffevo.statespacemodels.BatchModel;
 import nl.esciencecenter.diffevo.statespacemodels.Model;
+import nl.esciencecenter.diffevo.statespacemodels.PartiallyObservedModel;
+import nl.esciencecenter.diffevo.statespacemodels.ReusableModel;
+import nl.esciencecenter.diffevo.statespacemodels.TabulatingModel;
 
 public class ListOfParameterCombinations{
 
@@ -37,6 +53,12 @@ public class ListOfParameterCombinations{
 	private double[][][] modelResults;
 	private LikelihoodFunctionFactory likelihoodFunctionFactory;
 	private int[] firstOccurrence;
+	private ExecutorService executorService;
+	private int nWorkers;
+	private boolean taskPerMember;
+	private int windowLength;
+	private ModelResultRetention modelResultRetention;
+	private int[] observedStates;
 
 	// constructor
 	public ListOfParameterCombinations(int nPop, int nPars, LikelihoodFunctionFactory likelihoodFunctionFactory){
@@ -47,6 +69,12 @@ public class ListOfParameterCombinations{
 		this.likelihoodFunctionFactory = likelihoodFunctionFactory;
 		this.objScores = new double[nPop];
 		this.firstOccurrence = new int[nPop];
+		this.executorService = null;
+		this.nWorkers = 1;
+		this.taskPerMember = false;
+		this.windowLength = SeriesWindow.DEFAULT_WINDOW_LENGTH;
+		this.modelResultRetention = ModelResultRetention.TRAJECTORY;
+		this.observedStates = null;
 		
 		double[] parameterCombinationNan = new double[nPars];
 		for (int iPar=0;iPar<nPars;iPar++){
@@ -65,94 +93,663 @@ public class ListOfParameterCombinations{
 
 		this(nPop,nPars, likelihoodFunctionFactory);
 		
-		int nStates = initState.length;
-		int nTimes = timeChunks.getnTimes();
-		modelResults = new double[nPop][nStates][nTimes];
-		for (int iPop=0;iPop<nPop;iPop++){
+		this.initState = initState.clone();
+		this.timeChunks = timeChunks;
+		this.forcingChunks = forcingChunks;
+		this.modelFactory = modelFactory;
+		allocateModelResults();
+	}
+	
+	
+	private void allocateModelResults() {
+		
+		int nMembers = objScores.length;
+		int nStates = getnRetainedStates();
+		int nTimes;
+		switch (modelResultRetention){
+		case TRAJECTORY:
+			nTimes = timeChunks.getnTimes();
+			break;
+		case FINAL_STATE:
+			nTimes = 1;
+			break;
+		default:
+			modelResults = null;
+			return;
+		}
+		modelResults = new double[nMembers][nStates][nTimes];
+		for (int iPop=0;iPop<nMembers;iPop++){
 			for (int iState=0;iState<nStates;iState++){
 				for (int iTime=0;iTime<nTimes;iTime++){
 					modelResults[iPop][iState][iTime] = Double.NaN;
 				}
 			}
-			objScores[iPop] = Double.NaN;
 		}
-		this.initState = initState.clone();
-		this.timeChunks = timeChunks;
-		this.forcingChunks = forcingChunks;
-		this.modelFactory = modelFactory;
+	}
+	
+	
+	/**
+	 * Sets what is kept of the simulations of a dynamic model (see ModelResultRetention). Any model results 
+	 * that were stored before are discarded.
+	 */
+	public void setModelResultRetention(ModelResultRetention modelResultRetention) {
+		this.modelResultRetention = modelResultRetention;
+		if (modelFactory!=null){
+			allocateModelResults();
+		}
+	}
+	
+	
+	/**
+	 * Limits the model results to the given states, so that row iObserved of a model result holds state 
+	 * observedStates[iObserved]. The rows of the model results then line up with the rows of obs. Passing 
+	 * null retains all states. Any model results that were stored before are discarded.
+	 */
+	public void setObservedStates(int[] observedStates) {
+		this.observedStates = observedStates==null ? null : observedStates.clone();
+		if (modelFactory!=null){
+			allocateModelResults();
+		}
+	}
+	
+	
+	private int getnRetainedStates() {
+		return observedStates==null ? initState.length : observedStates.length;
+	}
+	
+	
+	/**
+	 * Returns the rows of sim that hold the retained states. The rows are not copied.
+	 */
+	private double[][] selectRetainedStates(double[][] sim) {
+		if (observedStates==null){
+			return sim;
+		}
+		double[][] selected = new double[observedStates.length][];
+		for (int iObserved=0;iObserved<observedStates.length;iObserved++){
+			selected[iObserved] = sim[observedStates[iObserved]];
+		}
+		return selected;
 	}
 	
 	public void calcModelResults() {
 
+		if (modelFactory instanceof BatchModelFactory){
+			calcModelResultsBatched(null);
+		}
+		else if (modelFactory!=null){
+			forEachMember(new MemberEvaluatorFactory(){
+				public MemberEvaluator create(){
+					final ModelRunner modelRunner = new ModelRunner();
+					return new MemberEvaluator(){
+						public void evaluate(int iPop){
+							modelRunner.calcModelResult(iPop);
+						}
+					};
+				}
+			});
+		}
+		
+	} // calcModelResults()
+	
+	
+	/**
+	 * Simulates the population in blocks of consecutive members, one block per worker task, using a 
+	 * BatchModel that steps all members of a block through time together. Unless the full trajectories are 
+	 * retained, the members are also scored against obs.
+	 */
+	private void calcModelResultsBatched(final double[][] obs) {
+		
+		final int nMembers = nPop;
+		final int nTasks = executorService==null ? 1 : Math.max(1, Math.min(nWorkers, nMembers));
+		List<Runnable> tasks = new ArrayList<Runnable>(nTasks);
+		for (int iTask=0;iTask<nTasks;iTask++){
+			final int iPopStart = (int) ((long) iTask * nMembers / nTasks);
+			final int iPopEnd = (int) ((long) (iTask+1) * nMembers / nTasks);
+			tasks.add(new Runnable(){
+				public void run(){
+					calcModelResultsBatched(iPopStart, iPopEnd, obs);
+				}
+			});
+		}
+		runTasks(tasks);
+	}
+	
+	
+	private void calcModelResultsBatched(int iPopStart, int iPopEnd, double[][] obs) {
+
 		int nStates = initState.length;
-		int nTimes = timeChunks.getnTimes();
+		int nRetainedStates = getnRetainedStates();
+		int nChunks = timeChunks.getnChunks();
+		int nMembers = iPopEnd - iPopStart;
+		boolean retainTrajectories = modelResultRetention==ModelResultRetention.TRAJECTORY;
+		
+		BatchModel batchModel = ((BatchModelFactory) modelFactory).createBatch(nStates, nPars);
+		
+		double[][] states = new double[nStates][nMembers];
+		double[][] parameters = new double[nPars][nMembers];
+		for (int iMember=0;iMember<nMembers;iMember++){
+			for (int iState=0;iState<nStates;iState++){
+				states[iState][iMember] = initState[iState];
+			}
+			for (int iPar=0;iPar<nPars;iPar++){
+				parameters[iPar][iMember] = parameterCombinations[iPopStart+iMember][iPar];
+			}
+		}
+		
+		// with retained trajectories, each chunk is written straight into the members' trajectories; 
+		// otherwise into a buffer of one chunk, which is scored before the next chunk overwrites it
+		double[][][] sims = retainTrajectories ? allocateBatchTrajectories(nMembers) : 
+			new double[nMembers][nStates][timeChunks.getMaxChunkLength()];
+		IncrementalLikelihoodFunction[] likelihoodFunctions = null;
+		if (!retainTrajectories){
+			likelihoodFunctions = new IncrementalLikelihoodFunction[nMembers];
+			for (int iMember=0;iMember<nMembers;iMember++){
+				likelihoodFunctions[iMember] = createIncrementalLikelihoodFunction();
+				likelihoodFunctions[iMember].reset();
+			}
+		}
 
-		if (modelFactory!=null){
-			int nChunks = timeChunks.getnChunks();
+		SeriesWindow window = new SeriesWindow(timeChunks, forcingChunks, windowLength);
+		for (int iChunk=0;iChunk<nChunks;iChunk++){
+			int offset = timeChunks.getChunkOffset(iChunk);
+			int nIndices = timeChunks.getChunkLength(iChunk);
+			int iWindowStart = window.moveTo(iChunk);
+			int iSimStart = retainTrajectories ? offset : 0;
+			batchModel.evaluate(states, parameters, nMembers, window.getForcing(), window.getTimes(), iWindowStart, nIndices, sims, iSimStart);
+			if (!retainTrajectories){
+				// the first element of a chunk is its initial state, which has already been scored
+				for (int iMember=0;iMember<nMembers;iMember++){
+					likelihoodFunctions[iMember].accumulate(obs, offset+1, selectRetainedStates(sims[iMember]), 1, nIndices-1);
+				}
+			}
+		}
+		
+		for (int iMember=0;iMember<nMembers;iMember++){
+			if (retainTrajectories){
+				double[][] sim = selectRetainedStates(sims[iMember]);
+				for (int iState=0;iState<nRetainedStates;iState++){
+					sim[iState][0] = Double.NaN;
+				}
+				setModelResults(iPopStart+iMember, sim);
+			}
+			else {
+				setObjScore(iPopStart+iMember, likelihoodFunctions[iMember].getObjScore());
+				if (modelResultRetention==ModelResultRetention.FINAL_STATE){
+					double[][] finalState = new double[nRetainedStates][1];
+					for (int iState=0;iState<nRetainedStates;iState++){
+						finalState[iState][0] = states[observedStates==null ? iState : observedStates[iState]][iMember];
+					}
+					setModelResults(iPopStart+iMember, finalState);
+				}
+			}
+		}
+	}
+	
+	
+	/**
+	 * Allocates the trajectories a BatchModel writes into for a block of nMembers members. Only the rows 
+	 * of the retained states get their own array; the states that are not retained all share a single 
+	 * scratch row, since a BatchModel has to write them but nobody reads them back.
+	 */
+	private double[][][] allocateBatchTrajectories(int nMembers) {
+		
+		int nStates = initState.length;
+		int nTimes = timeChunks.getnTimes();
+		boolean[] retained = new boolean[nStates];
+		for (int iState=0;iState<nStates;iState++){
+			retained[iState] = observedStates==null;
+		}
+		if (observedStates!=null){
+			for (int iObserved=0;iObserved<observedStates.length;iObserved++){
+				retained[observedStates[iObserved]] = true;
+			}
+		}
+		double[] scratch = null;
+		double[][][] sims = new double[nMembers][nStates][];
+		for (int iMember=0;iMember<nMembers;iMember++){
+			for (int iState=0;iState<nStates;iState++){
+				if (retained[iState]){
+					sims[iMember][iState] = new double[nTimes];
+				}
+				else {
+					if (scratch==null){
+						scratch = new double[nTimes];
+					}
+					sims[iMember][iState] = scratch;
+				}
+			}
+		}
+		return sims;
+	}
+	
+	
+	/**
+	 * Runs the model for one member at a time. If the model factory can create reusable models, each runner 
+	 * holds on to one model instance, which it reuses for all chunks of all members. Reusable models read 
+	 * each chunk directly from the shared times and forcing arrays, and write directly into the member's 
+	 * simulation array, so nothing is copied per chunk. When the trajectories are not retained, reusable 
+	 * models write into a buffer that belongs to the runner instead, and each chunk is scored right after 
+	 * it has been simulated. 
+	 * 
+	 * If only the observed states are retained, a PartiallyObservedModel writes out just those states. Any 
+	 * other reusable model writes all states into a work array of the runner, from which the observed rows 
+	 * are copied; so that this array does not grow with the length of the series, the runner then reads the 
+	 * series through a SeriesWindow even if it is held in memory.
+	 * 
+	 * If the times and forcing are not held in memory, each runner reads them through a SeriesWindow, and 
+	 * reusable models write into a work array the size of the window, from which each chunk is copied into 
+	 * the member's simulation array (if the trajectories are retained) and scored. Whenever the window moves, 
+	 * a TabulatingModel is told that its arrays have new contents.
+	 */
+	private class ModelRunner {
+		
+		private final int nStates;
+		private final int nRetainedStates;
+		private final ReusableModel reusableModel;
+		private final PartiallyObservedModel partiallyObservedModel;
+		private final double[] state;
+		private double[][] buffer;
+		private final SeriesWindow window;
+		private double[][] windowBuffer;
+		
+		ModelRunner(){
+			this.nStates = initState.length;
+			this.nRetainedStates = getnRetainedStates();
+			this.state = new double[nStates];
+			if (modelFactory instanceof ReusableModelFactory){
+				this.reusableModel = ((ReusableModelFactory) modelFactory).createReusable(nStates, nPars);
+			}
+			else {
+				this.reusableModel = null;
+			}
+			if (observedStates!=null && reusableModel instanceof PartiallyObservedModel){
+				this.partiallyObservedModel = (PartiallyObservedModel) reusableModel;
+				this.partiallyObservedModel.setObservedStates(observedStates);
+			}
+			else {
+				this.partiallyObservedModel = null;
+			}
+			this.buffer = null;
+			// all states of a window rather than of the whole series, if only some of them are retained
+			boolean isCopying = observedStates!=null && reusableModel!=null && partiallyObservedModel==null;
+			this.window = new SeriesWindow(timeChunks, forcingChunks, windowLength, isCopying);
+			this.windowBuffer = null;
+		}
+		
+		void calcModelResult(int iPop) {
 
-			for (int iPop=0;iPop<nPop;iPop++){
-				double[] parameterVector = parameterCombinations[iPop];
-				double[] state = new double[initState.length];
-				System.arraycopy(initState, 0, state, 0, nStates);
+			int nTimes = timeChunks.getnTimes();
 
-				double[][] sim = new double[nStates][nTimes];
-				for (int iState=0;iState<nStates;iState++){
-					sim[iState][0] = Double.NaN;
+			double[][] sim = new double[nRetainedStates][nTimes];
+			simulate(iPop, sim, null, null);
+			for (int iState=0;iState<nRetainedStates;iState++){
+				sim[iState][0] = Double.NaN;
+			}
+			setModelResults(iPop, sim); 
+			
+		} // calcModelResult()
+		
+		void calcModelResultAndObjScore(int iPop, double[][] obs, IncrementalLikelihoodFunction likelihoodFunction) {
+			
+			if (reusableModel!=null && buffer==null && window.isInMemory()){
+				buffer = new double[nRetainedStates][timeChunks.getnTimes()];
+			}
+			likelihoodFunction.reset();
+			simulate(iPop, buffer, obs, likelihoodFunction);
+			setObjScore(iPop, likelihoodFunction.getObjScore());
+			if (modelResultRetention==ModelResultRetention.FINAL_STATE){
+				// a new array, since the rows of a stored model result may be shared with other lists
+				double[][] finalState = new double[nRetainedStates][1];
+				for (int iState=0;iState<nRetainedStates;iState++){
+					finalState[iState][0] = state[observedStates==null ? iState : observedStates[iState]];
 				}
-				for (int iChunk=0;iChunk<nChunks;iChunk++){
-					double[] times = timeChunks.getChunk(iChunk);
-					double[] forcing = forcingChunks.getChunk(iChunk);
-					int[] indices = timeChunks.getChunkIndices(iChunk);
-					int nIndices = indices.length;
+				setModelResults(iPop, finalState);
+			}
+		} // calcModelResultAndObjScore()
+		
+		/**
+		 * Runs the model over all chunks. The retained states are written into sim if it is not null; if 
+		 * likelihoodFunction is not null, each chunk is added to it. On return, state holds the final state. 
+		 */
+		private void simulate(int iPop, double[][] sim, double[][] obs, IncrementalLikelihoodFunction likelihoodFunction) {
+			
+			int nChunks = timeChunks.getnChunks();
 
-					Model model = modelFactory.create(state, parameterVector, forcing, times);
-					double[][] simChunk = model.evaluate();
+			double[] parameterVector = parameterCombinations[iPop];
+			System.arraycopy(initState, 0, state, 0, nStates);
 
-					for (int iState=0;iState<nStates;iState++){
-						for (int iIndex=1;iIndex<nIndices;iIndex++){
-							sim[iState][indices[iIndex]] = simChunk[iState][iIndex];
+			for (int iChunk=0;iChunk<nChunks;iChunk++){
+				int offset = timeChunks.getChunkOffset(iChunk);
+				int nIndices = timeChunks.getChunkLength(iChunk);
+				int iWindowStart = window.moveTo(iChunk);
+				if (window.isNewStretch() && reusableModel instanceof TabulatingModel){
+					// the window reads each stretch into the same arrays as an earlier one
+					((TabulatingModel) reusableModel).seriesChanged();
+				}
+				double[] forcing = window.getForcing();
+				double[] times = window.getTimes();
+				double[][] simChunk;
+				int iSimStart;
+				
+				if (partiallyObservedModel!=null){
+					simChunk = window.isInMemory() ? sim : getWindowBuffer(nRetainedStates);
+					partiallyObservedModel.reset(state, parameterVector, forcing, times, iWindowStart, nIndices);
+					partiallyObservedModel.evaluate(simChunk);
+					partiallyObservedModel.getFinalState(state);
+					iSimStart = iWindowStart;
+				}
+				else {
+					// simulate all states
+					if (reusableModel!=null){
+						if (!window.isInMemory()){
+							simChunk = getWindowBuffer(nStates);
+						}
+						else {
+							simChunk = sim;
 						}
-						state[iState] = simChunk[iState][nIndices-1];
+						reusableModel.reset(state, parameterVector, forcing, times, iWindowStart, nIndices);
+						reusableModel.evaluate(simChunk);
+						iSimStart = iWindowStart;
+					}
+					else {
+						Model model = modelFactory.create(state, parameterVector, Arrays.copyOfRange(forcing, iWindowStart, iWindowStart+nIndices), 
+								Arrays.copyOfRange(times, iWindowStart, iWindowStart+nIndices));
+						simChunk = model.evaluate();
+						iSimStart = 0;
+					}
+					for (int iState=0;iState<nStates;iState++){
+						state[iState] = simChunk[iState][iSimStart+nIndices-1];
 					}
-				}//iChunk
-				setModelResults(iPop, sim); 
-			} //iPop
+					
+					// keep the retained states
+					simChunk = selectRetainedStates(simChunk);
+				}
+				if (sim!=null && simChunk[0]!=sim[0]){
+					for (int iState=0;iState<nRetainedStates;iState++){
+						System.arraycopy(simChunk[iState], iSimStart+1, sim[iState], offset+1, nIndices-1);
+					}
+					simChunk = sim;
+					iSimStart = offset;
+				}
+				if (likelihoodFunction!=null){
+					// the first element of a chunk is its initial state, which has already been scored
+					likelihoodFunction.accumulate(obs, offset+1, simChunk, iSimStart+1, nIndices-1);
+				}
+			}//iChunk
+		} // simulate()
+		
+		private double[][] getWindowBuffer(int nRows) {
+			if (windowBuffer==null){
+				windowBuffer = new double[nRows][window.getCapacity()];
+			}
+			return windowBuffer;
 		}
+	}
+	
+	
+	/**
+	 * Runs the model and calculates the objective score of every member in a single pass, without storing 
+	 * the trajectories. What is kept of the simulations depends on the ModelResultRetention. With 
+	 * TRAJECTORY retention, this is the same as calcModelResults() followed by calcObjScores(obs).
+	 */
+	public void calcModelResultsAndObjScores(final double[][] obs) {
 		
-	} // calcModelResults()
+		if (modelResultRetention==ModelResultRetention.TRAJECTORY){
+			calcModelResults();
+			calcObjScores(obs);
+		}
+		else if (modelFactory instanceof BatchModelFactory){
+			calcModelResultsBatched(obs);
+		}
+		else {
+			forEachMember(new MemberEvaluatorFactory(){
+				public MemberEvaluator create(){
+					final ModelRunner modelRunner = new ModelRunner();
+					final IncrementalLikelihoodFunction likelihoodFunction = createIncrementalLikelihoodFunction();
+					return new MemberEvaluator(){
+						public void evaluate(int iPop){
+							modelRunner.calcModelResultAndObjScore(iPop, obs, likelihoodFunction);
+						}
+					};
+				}
+			});
+		}
+	} // calcModelResultsAndObjScores()
+	
+	
+	private IncrementalLikelihoodFunction createIncrementalLikelihoodFunction() {
+		LikelihoodFunction likelihoodFunction = likelihoodFunctionFactory.create();
+		if (!(likelihoodFunction instanceof IncrementalLikelihoodFunction)){
+			throw new IllegalStateException(likelihoodFunction.getName()+" cannot be calculated incrementally, " + 
+					"so the trajectories need to be retained.");
+		}
+		return (IncrementalLikelihoodFunction) likelihoodFunction;
+	}
 	
 	
 	public void calcObjScores() {
 		
 		// model is not dynamic
 
-		LikelihoodFunction likelihoodFunction = likelihoodFunctionFactory.create();
-		double objScore;
-		
-		for (int iPop=0;iPop<nPop;iPop++){
-			double[] parameterVector = getParameterCombination(iPop);
-			objScore = likelihoodFunction.evaluate(parameterVector);
-			setObjScore(iPop, objScore);
-		} //iPop
+		forEachMember(new MemberEvaluatorFactory(){
+			public MemberEvaluator create(){
+				final LikelihoodFunction likelihoodFunction = likelihoodFunctionFactory.create();
+				return new MemberEvaluator(){
+					public void evaluate(int iPop){
+						double[] parameterVector = getParameterCombination(iPop);
+						double objScore = likelihoodFunction.evaluate(parameterVector);
+						setObjScore(iPop, objScore);
+					}
+				};
+			}
+		});
 	} // calcObjScores()
 	
 	
 	
-	public void calcObjScores(double[][] obs) {
+	public void calcObjScores(final double[][] obs) {
 		
 		// model is dynamic
 		
-		LikelihoodFunction likelihoodFunction = likelihoodFunctionFactory.create();
-		double objScore;
+		forEachMember(new MemberEvaluatorFactory(){
+			public MemberEvaluator create(){
+				final LikelihoodFunction likelihoodFunction = likelihoodFunctionFactory.create();
+				return new MemberEvaluator(){
+					public void evaluate(int iPop){
+						double[][] sim = getModelResult(iPop);
+						double objScore = likelihoodFunction.evaluate(obs, sim);
+						setObjScore(iPop, objScore);
+					}
+				};
+			}
+		});
+	} // calcObjScores()
+	
+	
+	/**
+	 * Runs the evaluator for every member of the population. Without an executor service the members are 
+	 * evaluated in order on the calling thread. With an executor service, the population is divided over
+	 * nWorkers tasks, each of which creates its own evaluator (and thereby its own likelihood function 
+	 * instance), so that evaluators never need to be thread-safe.
+	 */
+	private void forEachMember(final MemberEvaluatorFactory memberEvaluatorFactory) {
+
+		final int nMembers = nPop;
+		final int nTasks = Math.min(nWorkers, nMembers);
+		
+		if (executorService!=null && taskPerMember){
+			forEachMemberAsTask(memberEvaluatorFactory);
+			return;
+		}
+		if (executorService==null || nTasks<2){
+			MemberEvaluator memberEvaluator = memberEvaluatorFactory.create();
+			for (int iPop=0;iPop<nMembers;iPop++){
+				memberEvaluator.evaluate(iPop);
+			}
+			return;
+		}
+		
+		List<Runnable> tasks = new ArrayList<Runnable>(nTasks);
+		for (int iTask=0;iTask<nTasks;iTask++){
+			final int iPopFirst = iTask;
+			tasks.add(new Runnable(){
+				public void run(){
+					MemberEvaluator memberEvaluator = memberEvaluatorFactory.create();
+					for (int iPop=iPopFirst;iPop<nMembers;iPop+=nTasks){
+						memberEvaluator.evaluate(iPop);
+					}
+				}
+			});
+		}
+		runTasks(tasks);
+	} // forEachMember()
+	
+	
+	/**
+	 * Submits every member as a separate task, with at most nWorkers of them running at any time. The 
+	 * evaluators are pooled, so that no more than nWorkers of them are created, and each is used by one 
+	 * task at a time. This suits evaluations that spend most of their time waiting, on an executor service 
+	 * that starts a (virtual) thread per task.
+	 */
+	private void forEachMemberAsTask(final MemberEvaluatorFactory memberEvaluatorFactory) {
 		
+		final Semaphore semaphore = new Semaphore(nWorkers);
+		final ConcurrentLinkedQueue<MemberEvaluator> memberEvaluators = new ConcurrentLinkedQueue<MemberEvaluator>();
+		List<Future<?>> futures = new ArrayList<Future<?>>(nPop);
 		for (int iPop=0;iPop<nPop;iPop++){
-			double[][] sim = getModelResult(iPop);
-			objScore = likelihoodFunction.evaluate(obs, sim);
-			setObjScore(iPop, objScore);
-		} //iPop
-	} // calcObjScores()
+			final int iPopTask = iPop;
+			try {
+				semaphore.acquire();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while evaluating the population.", e);
+			}
+			futures.add(executorService.submit(new Runnable(){
+				public void run(){
+					try {
+						MemberEvaluator memberEvaluator = memberEvaluators.poll();
+						if (memberEvaluator==null){
+							memberEvaluator = memberEvaluatorFactory.create();
+						}
+						memberEvaluator.evaluate(iPopTask);
+						memberEvaluators.add(memberEvaluator);
+					}
+					finally {
+						semaphore.release();
+					}
+				}
+			}));
+		}
+		awaitAll(futures);
+	} // forEachMemberAsTask()
+	
+	
+	/**
+	 * Runs the tasks on the executor service if there is one, or else on the calling thread, and returns 
+	 * when all of them have finished.
+	 */
+	private void runTasks(List<Runnable> tasks) {
+		
+		if (executorService==null){
+			for (Runnable task : tasks){
+				task.run();
+			}
+			return;
+		}
+		
+		List<Future<?>> futures = new ArrayList<Future<?>>(tasks.size());
+		for (Runnable task : tasks){
+			futures.add(executorService.submit(task));
+		}
+		awaitAll(futures);
+	} // runTasks()
+	
+	
+	private static void awaitAll(List<Future<?>> futures) {
+		for (Future<?> future : futures){
+			try {
+				future.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while evaluating the population.", e);
+			} catch (ExecutionException e) {
+				throw new IllegalStateException("Evaluation of a population member failed.", e.getCause());
+			}
+		}
+	}
+	
 	
+	/**
+	 * Shrinks the population to the members with the given indices, which should be in ascending order. The 
+	 * retained members are moved to the front of the list; the storage itself is not reallocated.
+	 */
+	public void retainMembers(int[] iPopsRetained){
+		
+		int nRetained = iPopsRetained.length;
+		for (int iRetained=0;iRetained<nRetained;iRetained++){
+			int iPop = iPopsRetained[iRetained];
+			if (iPop!=iRetained){
+				double[] parameterCombination = parameterCombinations[iRetained];
+				parameterCombinations[iRetained] = parameterCombinations[iPop];
+				parameterCombinations[iPop] = parameterCombination;
+				objScores[iRetained] = objScores[iPop];
+				firstOccurrence[iRetained] = firstOccurrence[iPop];
+				if (modelResults!=null){
+					double[][] modelResult = modelResults[iRetained];
+					modelResults[iRetained] = modelResults[iPop];
+					modelResults[iPop] = modelResult;
+				}
+			}
+		}
+		setPopulationSize(nRetained);
+	}
+	
+	
+	public void setPopulationSize(int nPop){
+		if (nPop>objScores.length){
+			throw new IllegalArgumentException("Population size "+nPop+" exceeds the capacity of "+objScores.length+".");
+		}
+		this.nPop = nPop;
+	}
+	
+	
+	public void setExecutorService(ExecutorService executorService, int nWorkers){
+		this.executorService = executorService;
+		this.nWorkers = nWorkers;
+	}
 	
+	
+	/**
+	 * Makes every member a task of its own on the executor service, instead of dividing the population 
+	 * over nWorkers tasks. nWorkers then limits how many members are evaluated at the same time. Meant for 
+	 * an executor service from VirtualThreads, when the evaluations are latency-bound.
+	 */
+	public void setTaskPerMember(boolean taskPerMember){
+		this.taskPerMember = taskPerMember;
+	}
+	
+	
+	/**
+	 * Sets how many values of the times and forcing each model runner reads at a time, when these are not 
+	 * held in memory (see SeriesSource), or when only some of the states of a model that simulates all of 
+	 * them are retained. A window is never shorter than the longest chunk.
+	 */
+	public void setWindowLength(int windowLength){
+		if (windowLength<1){
+			throw new IllegalArgumentException("The window length should be at least 1.");
+		}
+		this.windowLength = windowLength;
+	}
+	
+	
+	private interface MemberEvaluator {
+		void evaluate(int iPop);
+	}
+	
+	private interface MemberEvaluatorFactory {
+		MemberEvaluator create();
+	}
 
 	
 	public int getNumberOfPars(){
@@ -180,11 +777,13 @@ public class ListOfParameterCombinations{
 	}
 
 	public double[][] getModelResult(int iPop) {
-		return modelResults[iPop].clone();
+		return modelResults==null ? null : modelResults[iPop].clone();
 	}
 
 	public void setModelResults(int iPop, double[][] modelResult) {
-		this.modelResults[iPop] = modelResult.clone();
+		if (modelResults!=null){
+			this.modelResults[iPop] = modelResult.clone();
+		}
 	}
 	
 	public int getFirstOccurrence(int iPop){
@@ -0,0 +1,35 @@
+/*
+ * Copyrighted 2012-2013 Netherlands eScience Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").  
+ * You may not use this file except in compliance with the License. 
+ * For details, see the LICENCE.txt file location in the root directory of this 
+ * distribution or obtain the Apache License at the following location: 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ * 
+ * For the full license, see: LICENCE.txt (located in the root folder of this distribution). 
+ * ---
+ */
+
+package nl.esciencecenter.diffevo;
+
+/**
+ * Determines what DiffEvo keeps of the simulated trajectories of a dynamic model. With TRAJECTORY, each 
+ * member's complete simulation is stored and scored afterwards. With FINAL_STATE and NONE, the likelihood 
+ * is accumulated chunk by chunk while the model runs, so the trajectories never need to be stored; this 
+ * requires a likelihood function that implements IncrementalLikelihoodFunction. FINAL_STATE keeps only the 
+ * state at the last time, as a model result of nStates rows by 1 column. NONE keeps no model result at all.
+ */
+public enum ModelResultRetention {
+	
+	TRAJECTORY,
+	FINAL_STATE,
+	NONE
+
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyrighted 2012-2013 Netherlands eScience Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").  
+ * You may not use this file except in compliance with the License. 
+ * For details, see the LICENCE.txt file location in the root directory of this 
+ * distribution or obtain the Apache License at the following location: 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ * 
+ * For the full license, see: LICENCE.txt (located in the root folder of this distribution). 
+ * ---
+ */
+
+
+package nl.esciencecenter.diffevo;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Marginal and pairwise histograms (see Histograms) that are kept up to date while results come in, so 
+ * that a run can be monitored without scanning all results again. Results are added by a single thread,
+ * the optimizer's (see DiffEvo.setOnlineHistograms); any other thread can take a snapshot at any time.
+ *  
+ * The optimizer never waits for readers: every addition is bracketed by two increments of a version 
+ * number, which is odd while the addition is in progress. A reader copies the counts and accepts the copy 
+ * only if the version was even before and unchanged after, and otherwise tries again; the snapshot is 
+ * therefore always the exact histograms after some number of results.
+ */
+public class OnlineHistograms implements EvalResultsListener {
+	
+	private final ParSpace parSpace;
+	private final int nPars;
+	private final int[] nBins;
+	private final AtomicIntegerArray[] marginals;
+	private final AtomicIntegerArray[] pairs;
+	private final AtomicInteger nResults;
+	private final AtomicInteger version;
+	private final int[] binIndices;
+	
+	
+	// constructor
+	public OnlineHistograms(ParSpace parSpace){
+		this.parSpace = parSpace;
+		this.nPars = parSpace.getNumberOfPars();
+		this.nBins = new int[nPars];
+		this.marginals = new AtomicIntegerArray[nPars];
+		for (int iPar=0;iPar<nPars;iPar++){
+			nBins[iPar] = parSpace.getnBins(iPar);
+			marginals[iPar] = new AtomicIntegerArray(nBins[iPar]);
+		}
+		this.pairs = new AtomicIntegerArray[nPars*(nPars-1)/2];
+		for (int iParRow=0;iParRow<nPars;iParRow++){
+			for (int iParCol=iParRow+1;iParCol<nPars;iParCol++){
+				pairs[Histograms.getPairIndex(nPars, iParRow, iParCol)] = new AtomicIntegerArray(nBins[iParRow]*nBins[iParCol]);
+			}
+		}
+		this.nResults = new AtomicInteger(0);
+		this.version = new AtomicInteger(0);
+		this.binIndices = new int[nPars];
+	}
+	
+	
+	/**
+	 * Counts evalResult in the histograms. Must only be called from one thread at a time.
+	 */
+	public void add(EvalResult evalResult){
+		
+		int v = version.get();
+		version.set(v+1);
+		
+		for (int iPar=0;iPar<nPars;iPar++){
+			int iBin = parSpace.getBinIndex(iPar, evalResult.getParameterValue(iPar));
+			binIndices[iPar] = iBin;
+			if (iBin>=0){
+				increment(marginals[iPar], iBin);
+			}
+		}
+		
+		int iPair = 0;
+		for (int iParRow=0;iParRow<nPars;iParRow++){
+			int iBinRow = binIndices[iParRow];
+			if (iBinRow<0){
+				iPair += nPars-1-iParRow;
+				continue;
+			}
+			for (int iParCol=iParRow+1;iParCol<nPars;iParCol++){
+				int iBinCol = binIndices[iParCol];
+				if (iBinCol>=0){
+					increment(pairs[iPair], iBinRow*nBins[iParCol]+iBinCol);
+				}
+				iPair++;
+			}
+		}
+		nResults.lazySet(nResults.get()+1);
+		
+		version.set(v+2);
+	}
+	
+	
+	public void evalResultAdded(EvalResult evalResult){
+		add(evalResult);
+	}
+	
+	
+	private static void increment(AtomicIntegerArray counts, int i){
+		// there is only one writer, so no compare-and-set is needed
+		counts.lazySet(i, counts.get(i)+1);
+	}
+	
+	
+	public int getnResults(){
+		return nResults.get();
+	}
+	
+	
+	/**
+	 * Returns a copy of the histograms as they were after a whole number of results (see getnResults of 
+	 * the copy). May be called from any thread.
+	 */
+	public Histograms getSnapshot(){
+		
+		int[][] marginalsCopy = new int[nPars][];
+		for (int iPar=0;iPar<nPars;iPar++){
+			marginalsCopy[iPar] = new int[marginals[iPar].length()];
+		}
+		int[][] pairsCopy = new int[pairs.length][];
+		for (int iPair=0;iPair<pairs.length;iPair++){
+			pairsCopy[iPair] = new int[pairs[iPair].length()];
+		}
+		
+		while (true){
+			int v = version.get();
+			if ((v&1)==0){
+				for (int iPar=0;iPar<nPars;iPar++){
+					copy(marginals[iPar], marginalsCopy[iPar]);
+				}
+				for (int iPair=0;iPair<pairs.length;iPair++){
+					copy(pairs[iPair], pairsCopy[iPair]);
+				}
+				int nResultsCopy = nResults.get();
+				if (version.get()==v){
+					return new Histograms(parSpace, marginalsCopy, pairsCopy, nResultsCopy);
+				}
+			}
+			Thread.yield();
+		}
+	}
+	
+	
+	private static void copy(AtomicIntegerArray counts, int[] dest){
+		for (int i=0;i<dest.length;i++){
+			dest[i] = counts.get(i);
+		}
+	}
+
+}
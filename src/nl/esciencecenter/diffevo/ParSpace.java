@@ -92,6 +92,32 @@ public class ParSpace extends Space {
 	}
 
 	
+	/**
+	 * Returns the index of the bin of parameter iPar that value falls in, or -1 if value lies outside 
+	 * [lower bound, upper bound) or is NaN. Since the bins are of equal width, the index follows from the 
+	 * value directly; it is then checked against the bin bounds themselves, so that values on or next to
+	 * a bound end up in the same bin as they would with a search over getBinBounds.
+	 */
+	public int getBinIndex(int iPar, double value){
+		double[] binBounds = getBinBounds(iPar);
+		int nBins = binBounds.length-1;
+		if (!(value>=binBounds[0] && value<binBounds[nBins])){
+			return -1;
+		}
+		int iBin = (int) ((value-binBounds[0])/(binBounds[nBins]-binBounds[0])*nBins);
+		if (iBin>=nBins){
+			iBin = nBins-1;
+		}
+		while (iBin>0 && binBounds[iBin]>value){
+			iBin--;
+		}
+		while (iBin<nBins-1 && binBounds[iBin+1]<=value){
+			iBin++;
+		}
+		return iBin;
+	}
+
+	
 	public double[] takeUniformRandomSample(Random generator){
 		
 		int nPars = getNumberOfPars();
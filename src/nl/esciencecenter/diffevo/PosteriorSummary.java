@@ -0,0 +1,273 @@
+/*
+ * Copyrighted 2012-2013 Netherlands eScience Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").  
+ * You may not use this file except in compliance with the License. 
+ * For details, see the LICENCE.txt file location in the root directory of this 
+ * distribution or obtain the Apache License at the following location: 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ * 
+ * For the full license, see: LICENCE.txt (located in the root folder of this distribution). 
+ * ---
+ */
+
+
+package nl.esciencecenter.diffevo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Summary statistics of the parameter samples of a run: their means and covariances, updated per sample 
+ * with Welford's algorithm, and their quantiles, estimated per parameter with a TDigest. Every query 
+ * takes constant time, however many samples there are. 
+ * 
+ * Samples with a sample identifier below burnIn are left out, so that the summary describes the posterior
+ * after the chains have converged. A summary can be kept up to date during the run by adding it as a 
+ * listener to the EvalResults (see DiffEvo.getEvalResults and EvalResults.addListener), or be calculated 
+ * afterwards (see calculate). Summaries of different parts of the samples, e.g. of different threads or 
+ * runs, can be added up (see add(PosteriorSummary); Chan, Golub and LeVeque, 1979). A summary is not 
+ * thread-safe: it should be queried from the thread that adds samples to it, or after it is complete.
+ */
+public class PosteriorSummary implements EvalResultsListener {
+	
+	private final int nPars;
+	private final int burnIn;
+	private long nSamples;
+	private final double[] means;
+	// sums of products of deviations from the means, of which the covariances follow
+	private final double[][] comoments;
+	private final TDigest[] digests;
+	private final double[] deltas;
+	
+	
+	// constructor
+	public PosteriorSummary(int nPars){
+		this(nPars, 0);
+	}
+	
+	
+	// constructor
+	public PosteriorSummary(int nPars, int burnIn){
+		this(nPars, burnIn, TDigest.DEFAULT_COMPRESSION);
+	}
+	
+	
+	// constructor
+	public PosteriorSummary(int nPars, int burnIn, double compression){
+		this.nPars = nPars;
+		this.burnIn = burnIn;
+		this.nSamples = 0;
+		this.means = new double[nPars];
+		this.comoments = new double[nPars][nPars];
+		this.digests = new TDigest[nPars];
+		for (int iPar=0;iPar<nPars;iPar++){
+			digests[iPar] = new TDigest(compression);
+		}
+		this.deltas = new double[nPars];
+	}
+	
+	
+	/**
+	 * Summarizes the results in evalResults on nThreads threads.
+	 */
+	public static PosteriorSummary calculate(EvalResults evalResults, final int burnIn, int nThreads){
+		
+		final List<EvalResult> results = evalResults.getEvalResults();
+		final int nPars = evalResults.getParSpace().getNumberOfPars();
+		int nResults = results.size();
+		int nSlices = Math.max(1, Math.min(nThreads, nResults));
+		
+		if (nSlices==1){
+			PosteriorSummary posteriorSummary = new PosteriorSummary(nPars, burnIn);
+			posteriorSummary.addAll(results, 0, nResults);
+			return posteriorSummary;
+		}
+		
+		ExecutorService executorService = Executors.newFixedThreadPool(nSlices);
+		try {
+			List<Future<PosteriorSummary>> futures = new ArrayList<Future<PosteriorSummary>>();
+			for (int iSlice=0;iSlice<nSlices;iSlice++){
+				final int from = (int) ((long) nResults*iSlice/nSlices);
+				final int to = (int) ((long) nResults*(iSlice+1)/nSlices);
+				futures.add(executorService.submit(new Callable<PosteriorSummary>(){
+					public PosteriorSummary call(){
+						PosteriorSummary posteriorSummary = new PosteriorSummary(nPars, burnIn);
+						posteriorSummary.addAll(results, from, to);
+						return posteriorSummary;
+					}
+				}));
+			}
+			PosteriorSummary posteriorSummary = getResult(futures.get(0));
+			for (int iSlice=1;iSlice<nSlices;iSlice++){
+				posteriorSummary.add(getResult(futures.get(iSlice)));
+			}
+			return posteriorSummary;
+		}
+		finally {
+			executorService.shutdown();
+		}
+	}
+	
+	
+	private static PosteriorSummary getResult(Future<PosteriorSummary> future){
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while summarizing the results.", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException){
+				throw (RuntimeException) e.getCause();
+			}
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+	
+	
+	private void addAll(List<EvalResult> results, int from, int to){
+		for (int iResult=from;iResult<to;iResult++){
+			add(results.get(iResult));
+		}
+	}
+	
+	
+	public void evalResultAdded(EvalResult evalResult){
+		add(evalResult);
+	}
+	
+	
+	/**
+	 * Adds the parameter combination of evalResult, unless it is part of the burn-in or has a NaN 
+	 * parameter.
+	 */
+	public void add(EvalResult evalResult){
+		
+		if (evalResult.getSampleIdentifier()<burnIn){
+			return;
+		}
+		for (int iPar=0;iPar<nPars;iPar++){
+			if (Double.isNaN(evalResult.getParameterValue(iPar))){
+				return;
+			}
+		}
+		
+		nSamples++;
+		for (int iPar=0;iPar<nPars;iPar++){
+			double value = evalResult.getParameterValue(iPar);
+			deltas[iPar] = value-means[iPar];
+			means[iPar] += deltas[iPar]/nSamples;
+			digests[iPar].add(value);
+		}
+		// the deviation from the old mean times that from the new mean
+		for (int iPar=0;iPar<nPars;iPar++){
+			for (int jPar=iPar;jPar<nPars;jPar++){
+				comoments[iPar][jPar] += deltas[iPar]*(evalResult.getParameterValue(jPar)-means[jPar]);
+			}
+		}
+	}
+	
+	
+	/**
+	 * Adds the samples summarized by other to this summary. Both must have the same burn-in, so that the 
+	 * result leaves out the same samples as a single summary of all of them would.
+	 */
+	public void add(PosteriorSummary other){
+		
+		if (other.nPars!=nPars){
+			throw new IllegalArgumentException("Summaries of different numbers of parameters can not be added.");
+		}
+		if (other.burnIn!=burnIn){
+			throw new IllegalArgumentException("Summaries with different burn-ins can not be added.");
+		}
+		if (other.nSamples==0){
+			return;
+		}
+		long nTotal = nSamples+other.nSamples;
+		double fraction = (double) other.nSamples/nTotal;
+		double weight = (double) nSamples*other.nSamples/nTotal;
+		for (int iPar=0;iPar<nPars;iPar++){
+			deltas[iPar] = other.means[iPar]-means[iPar];
+		}
+		for (int iPar=0;iPar<nPars;iPar++){
+			for (int jPar=iPar;jPar<nPars;jPar++){
+				comoments[iPar][jPar] += other.comoments[iPar][jPar]+deltas[iPar]*deltas[jPar]*weight;
+			}
+			means[iPar] += deltas[iPar]*fraction;
+			digests[iPar].add(other.digests[iPar]);
+		}
+		nSamples = nTotal;
+	}
+	
+	
+	public int getBurnIn(){
+		return burnIn;
+	}
+	
+	
+	public long getnSamples(){
+		return nSamples;
+	}
+	
+	
+	public double getMean(int iPar){
+		return nSamples==0 ? Double.NaN : means[iPar];
+	}
+	
+	
+	public double[] getMeans(){
+		double[] meansCopy = new double[nPars];
+		for (int iPar=0;iPar<nPars;iPar++){
+			meansCopy[iPar] = getMean(iPar);
+		}
+		return meansCopy;
+	}
+	
+	
+	/**
+	 * Returns the sample covariance (with n-1 in the denominator) of parameters iPar and jPar, or NaN if 
+	 * there are fewer than two samples.
+	 */
+	public double getCovariance(int iPar, int jPar){
+		if (nSamples<2){
+			return Double.NaN;
+		}
+		return (iPar<=jPar ? comoments[iPar][jPar] : comoments[jPar][iPar])/(nSamples-1);
+	}
+	
+	
+	public double[][] getCovariance(){
+		double[][] covariance = new double[nPars][nPars];
+		for (int iPar=0;iPar<nPars;iPar++){
+			for (int jPar=0;jPar<nPars;jPar++){
+				covariance[iPar][jPar] = getCovariance(iPar, jPar);
+			}
+		}
+		return covariance;
+	}
+	
+	
+	public double getVariance(int iPar){
+		return getCovariance(iPar, iPar);
+	}
+	
+	
+	/**
+	 * Returns the estimated q-quantile of parameter iPar (see TDigest).
+	 */
+	public double getQuantile(int iPar, double q){
+		return digests[iPar].getQuantile(q);
+	}
+	
+}
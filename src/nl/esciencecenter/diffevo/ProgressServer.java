@@ -0,0 +1,299 @@
+/*
+ * Copyrighted 2012-2013 Netherlands eScience Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").  
+ * You may not use this file except in compliance with the License. 
+ * For details, see the LICENCE.txt file location in the root directory of this 
+ * distribution or obtain the Apache License at the following location: 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ * 
+ * For the full license, see: LICENCE.txt (located in the root folder of this distribution). 
+ * ---
+ */
+
+
+package nl.esciencecenter.diffevo;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Serves the results of a run over HTTP while it is in progress, using the HTTP server that comes with the
+ * JDK. The server answers:
+ * 
+ *   /evalresults.json              all results so far, in the format of 
+ *                                  DiffEvoOutputWriters.writeEvalResultsToJSON 
+ *   /evalresults?since=s           only the results with a sample identifier greater than s, in the same
+ *                                  format; without since, all results
+ *   /evalresults?since=s&format=binary
+ *                                  the same results as big-endian binary: the number of results and the 
+ *                                  number of parameters as ints, then per result the sample identifier 
+ *                                  as an int, the parameters and the objective score as doubles
+ *   /anything-else                 the file of that name in the pages directory, e.g. the D3 pages in out/
+ *   
+ * A page that polls /evalresults with the last sample identifier it has seen only ever receives new 
+ * results, so that following a long run does not cost more as the run goes on.
+ * 
+ * The server listens to the EvalResults (see EvalResultsListener) and keeps its own list of the results, 
+ * which the optimizer only holds a lock on while it appends a result; requests copy the part they need 
+ * and encode it without holding the lock.
+ */
+public class ProgressServer implements EvalResultsListener {
+	
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	
+	private final EvalResults evalResults;
+	private final File pagesDirectory;
+	private final int nPars;
+	private final List<EvalResult> published;
+	private HttpServer server;
+	private ExecutorService executorService;
+	
+	
+	// constructor
+	public ProgressServer(EvalResults evalResults, File pagesDirectory){
+		this.evalResults = evalResults;
+		this.pagesDirectory = pagesDirectory;
+		this.nPars = evalResults.getParSpace().getNumberOfPars();
+		this.published = new ArrayList<EvalResult>();
+	}
+	
+	
+	/**
+	 * Starts listening on port of the loopback address only (0 picks a free port, see getPort), so that the 
+	 * results can not be reached from other machines. Must be called before runOptimization, or from the 
+	 * thread that runs it.
+	 */
+	public void start(int port) throws IOException {
+		start(null, port);
+	}
+	
+	
+	/**
+	 * Starts listening on port of host, e.g. "0.0.0.0" for all interfaces, which makes the results and the 
+	 * pages directory available to anyone who can reach this machine. A host of null means the loopback 
+	 * address. Must be called before runOptimization, or from the thread that runs it.
+	 */
+	public void start(String host, int port) throws IOException {
+		if (server!=null){
+			throw new IllegalStateException("The server has been started already.");
+		}
+		InetSocketAddress address = host==null ? new InetSocketAddress(InetAddress.getLoopbackAddress(), port) : 
+			new InetSocketAddress(host, port);
+		evalResults.addListener(this);
+		server = HttpServer.create(address, 0);
+		server.createContext("/", new HttpHandler(){
+			public void handle(HttpExchange exchange) throws IOException {
+				try {
+					respond(exchange);
+				}
+				finally {
+					exchange.close();
+				}
+			}
+		});
+		executorService = Executors.newFixedThreadPool(2, new ThreadFactory(){
+			public Thread newThread(Runnable runnable){
+				Thread thread = new Thread(runnable, "progress-server");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		server.setExecutor(executorService);
+		server.start();
+	}
+	
+	
+	public int getPort(){
+		return server.getAddress().getPort();
+	}
+	
+	
+	/**
+	 * Stops the server; this may be done from any thread, also while the optimization is running.
+	 */
+	public void stop(){
+		if (server!=null){
+			server.stop(0);
+			executorService.shutdown();
+			evalResults.removeListener(this);
+			server = null;
+		}
+	}
+	
+	
+	public void evalResultAdded(EvalResult evalResult){
+		synchronized (published){
+			published.add(evalResult);
+		}
+	}
+	
+	
+	/**
+	 * Returns the results with a sample identifier greater than since. Sample identifiers increase in the 
+	 * order in which results are added, so the first of them is found by bisection.
+	 */
+	List<EvalResult> getResultsSince(int since){
+		synchronized (published){
+			int lo = 0;
+			int hi = published.size();
+			while (lo<hi){
+				int mid = (lo+hi)>>>1;
+				if (published.get(mid).getSampleIdentifier()<=since){
+					lo = mid+1;
+				}
+				else {
+					hi = mid;
+				}
+			}
+			return new ArrayList<EvalResult>(published.subList(lo, published.size()));
+		}
+	}
+	
+	
+	private void respond(HttpExchange exchange) throws IOException {
+		
+		if (!"GET".equals(exchange.getRequestMethod())){
+			send(exchange, 405, "text/plain", "Only GET is supported.\n".getBytes(UTF8));
+			return;
+		}
+		
+		URI uri = exchange.getRequestURI();
+		String path = uri.getPath();
+		if (path.equals("/evalresults.json")){
+			send(exchange, 200, "application/json", encodeJSON(getResultsSince(Integer.MIN_VALUE)));
+		}
+		else if (path.equals("/evalresults")){
+			String since = getQueryParameter(uri, "since");
+			String format = getQueryParameter(uri, "format");
+			List<EvalResult> results;
+			try {
+				results = getResultsSince(since==null ? Integer.MIN_VALUE : Integer.parseInt(since));
+			} catch (NumberFormatException e) {
+				send(exchange, 400, "text/plain", ("Not a sample identifier: "+since+"\n").getBytes(UTF8));
+				return;
+			}
+			if ("binary".equals(format)){
+				send(exchange, 200, "application/octet-stream", encodeBinary(results));
+			}
+			else {
+				send(exchange, 200, "application/json", encodeJSON(results));
+			}
+		}
+		else {
+			sendFile(exchange, path.equals("/") ? "/index.html" : path);
+		}
+	}
+	
+	
+	private static String getQueryParameter(URI uri, String name){
+		String query = uri.getQuery();
+		if (query==null){
+			return null;
+		}
+		for (String pair : query.split("&")){
+			int iEquals = pair.indexOf('=');
+			if (iEquals>0 && pair.substring(0, iEquals).equals(name)){
+				return pair.substring(iEquals+1);
+			}
+		}
+		return null;
+	}
+	
+	
+	private byte[] encodeJSON(List<EvalResult> results){
+		StringBuilder stringBuild = new StringBuilder(results.size()*(24+nPars*20)+4);
+		stringBuild.append("[\n");
+		for (int iResult=0;iResult<results.size();iResult++){
+			if (iResult>0){
+				stringBuild.append(",\n");
+			}
+			DiffEvoOutputWriters.appendJSON(stringBuild, results.get(iResult), nPars);
+		}
+		stringBuild.append("\n]\n");
+		return stringBuild.toString().getBytes(UTF8);
+	}
+	
+	
+	private byte[] encodeBinary(List<EvalResult> results) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(8+results.size()*(4+8*(nPars+1)));
+		DataOutputStream output = new DataOutputStream(bytes);
+		output.writeInt(results.size());
+		output.writeInt(nPars);
+		for (EvalResult evalResult : results){
+			output.writeInt(evalResult.getSampleIdentifier());
+			for (int iPar=0;iPar<nPars;iPar++){
+				output.writeDouble(evalResult.getParameterValue(iPar));
+			}
+			output.writeDouble(evalResult.getObjScore());
+		}
+		output.flush();
+		return bytes.toByteArray();
+	}
+	
+	
+	private void sendFile(HttpExchange exchange, String path) throws IOException {
+		
+		File file = new File(pagesDirectory, path.substring(1)).getCanonicalFile();
+		// only files within the pages directory are served
+		if (!file.getPath().startsWith(pagesDirectory.getCanonicalPath()+File.separator) || !file.isFile()){
+			send(exchange, 404, "text/plain", ("Not found: "+path+"\n").getBytes(UTF8));
+			return;
+		}
+		send(exchange, 200, getContentType(file.getName()), Files.readAllBytes(file.toPath()));
+	}
+	
+	
+	private static String getContentType(String name){
+		if (name.endsWith(".html") || name.endsWith(".htm")){
+			return "text/html; charset=utf-8";
+		}
+		if (name.endsWith(".js")){
+			return "application/javascript";
+		}
+		if (name.endsWith(".json")){
+			return "application/json";
+		}
+		if (name.endsWith(".css")){
+			return "text/css";
+		}
+		if (name.endsWith(".png")){
+			return "image/png";
+		}
+		return "application/octet-stream";
+	}
+	
+	
+	private static void send(HttpExchange exchange, int status, String contentType, byte[] body) throws IOException {
+		exchange.getResponseHeaders().set("Content-Type", contentType);
+		exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+		exchange.sendResponseHeaders(status, body.length);
+		OutputStream output = exchange.getResponseBody();
+		output.write(body);
+		output.close();
+	}
+
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyrighted 2012-2013 Netherlands eScience Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").  
+ * You may not use this file except in compliance with the License. 
+ * For details, see the LICENCE.txt file location in the root directory of this 
+ * distribution or obtain the Apache License at the following location: 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ * 
+ * For the full license, see: LICENCE.txt (located in the root folder of this distribution). 
+ * ---
+ */
+
+package nl.esciencecenter.diffevo;
+
+/**
+ * A series of values, such as the times or the forcing of a calibration, that is read on demand instead of 
+ * being held in an array. This lets Chunks and EvalResults refer to a long series on disk or in a mapped 
+ * file (see BufferSeriesSource) without copying it onto the heap. Implementations should allow concurrent 
+ * reads.
+ */
+public interface SeriesSource {
+	
+	int getnValues();
+	
+	/**
+	 * Copies the length values starting at offset into destination, starting at destinationOffset.
+	 */
+	void read(int offset, double[] destination, int destinationOffset, int length);
+
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyrighted 2012-2013 Netherlands eScience Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").  
+ * You may not use this file except in compliance with the License. 
+ * For details, see the LICENCE.txt file location in the root directory of this 
+ * distribution or obtain the Apache License at the following location: 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ * 
+ * For the full license, see: LICENCE.txt (located in the root folder of this distribution). 
+ * ---
+ */
+
+package nl.esciencecenter.diffevo;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Gives a model runner access to the times and forcing of one chunk at a time. If both series are held in 
+ * memory, the window is simply the shared arrays. Otherwise, the window holds a stretch of windowLength 
+ * values (or of the longest chunk, if that is longer) copied from the sources, and while the runner works 
+ * on it, the next stretch is read in the background. After the last chunk, the first stretch is read 
+ * again, ready for the next member.
+ * 
+ * The stretches are read into two buffers in turn (and the last, shorter stretch into a third one of its 
+ * own length), so that reading the series does not allocate anything once the buffers are there. Since a 
+ * buffer gets new contents while remaining the same array, isNewStretch tells whether moveTo has moved the 
+ * window, after which a model that keeps tables of the times or forcing (see TabulatingModel) has to be 
+ * told. A window belongs to a single thread.
+ */
+final class SeriesWindow {
+	
+	static final int DEFAULT_WINDOW_LENGTH = 1<<16;
+	
+	private static final ExecutorService PREFETCHER = Executors.newCachedThreadPool(new ThreadFactory(){
+		public Thread newThread(Runnable runnable){
+			Thread thread = new Thread(runnable, "diffevo-series-prefetcher");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+	
+	private final TimeChunks timeChunks;
+	private final ForcingChunks forcingChunks;
+	private final boolean isInMemory;
+	private final int windowLength;
+	private final Stretch[] buffers;
+	private Stretch tail;
+	private Stretch current;
+	private Future<Stretch> next;
+	private int iChunkNext;
+	private boolean isNewStretch;
+	
+	// constructor
+	SeriesWindow(TimeChunks timeChunks, ForcingChunks forcingChunks, int windowLength){
+		this(timeChunks, forcingChunks, windowLength, false);
+	}
+	
+	/**
+	 * If isCopying, stretches are copied into the window even if the series are held in memory, so that a 
+	 * runner can do with work arrays the size of the window rather than of the series.
+	 */
+	SeriesWindow(TimeChunks timeChunks, ForcingChunks forcingChunks, int windowLength, boolean isCopying){
+		this.timeChunks = timeChunks;
+		this.forcingChunks = forcingChunks;
+		this.isInMemory = !isCopying && timeChunks.isInMemory() && forcingChunks.isInMemory();
+		this.windowLength = Math.max(windowLength, timeChunks.getMaxChunkLength());
+		this.buffers = new Stretch[2];
+		this.tail = null;
+		if (isInMemory){
+			this.current = new Stretch(timeChunks.getSharedValues(), forcingChunks.getSharedValues());
+			this.current.setStart(0);
+		}
+		else {
+			this.current = null;
+		}
+		this.next = null;
+		this.iChunkNext = -1;
+		this.isNewStretch = false;
+	}
+	
+	boolean isInMemory(){
+		return isInMemory;
+	}
+	
+	/**
+	 * Makes sure that chunk iChunk is in the window, and returns the index of its first element in 
+	 * getTimes() and getForcing(). 
+	 */
+	int moveTo(int iChunk){
+		int offset = timeChunks.getChunkOffset(iChunk);
+		isNewStretch = false;
+		if (current!=null && offset>=current.start && offset+timeChunks.getChunkLength(iChunk)<=current.end){
+			return offset-current.start;
+		}
+		if (next!=null && iChunkNext==iChunk){
+			current = waitFor(next);
+		}
+		else {
+			if (next!=null){
+				// the buffer that is being read into may be the one needed now
+				waitFor(next);
+			}
+			current = read(getFreeBuffer(offset), offset);
+		}
+		next = null;
+		isNewStretch = true;
+		prefetchAfter(iChunk);
+		return offset-current.start;
+	}
+	
+	/**
+	 * Tells whether the last call to moveTo read a stretch into the window, i.e. whether the contents of 
+	 * getTimes() and getForcing() have changed, even if the arrays are the same as before.
+	 */
+	boolean isNewStretch(){
+		return isNewStretch;
+	}
+	
+	double[] getTimes(){
+		return current.times;
+	}
+	
+	double[] getForcing(){
+		return current.forcing;
+	}
+	
+	/**
+	 * Returns the largest number of values the window can hold.
+	 */
+	int getCapacity(){
+		return isInMemory ? timeChunks.getnValues() : windowLength;
+	}
+	
+	
+	/**
+	 * Starts reading the stretch that begins with the first chunk after iChunk that does not fit in the 
+	 * current stretch, or with the first chunk if all remaining chunks fit.
+	 */
+	private void prefetchAfter(int iChunk){
+		int nChunks = timeChunks.getnChunks();
+		int iChunkFirstOutside = iChunk;
+		while (iChunkFirstOutside<nChunks && 
+				timeChunks.getChunkOffset(iChunkFirstOutside)+timeChunks.getChunkLength(iChunkFirstOutside)<=current.end){
+			iChunkFirstOutside++;
+		}
+		if (iChunkFirstOutside==nChunks){
+			iChunkFirstOutside = 0;
+			if (current.start==0){
+				// everything fits in one stretch, which stays
+				next = null;
+				iChunkNext = -1;
+				return;
+			}
+		}
+		final int offset = timeChunks.getChunkOffset(iChunkFirstOutside);
+		final Stretch buffer = getFreeBuffer(offset);
+		iChunkNext = iChunkFirstOutside;
+		next = PREFETCHER.submit(new Callable<Stretch>(){
+			public Stretch call(){
+				return read(buffer, offset);
+			}
+		});
+	}
+	
+	
+	/**
+	 * Returns the buffer to read the stretch that begins at start into: the one of the two full-length 
+	 * buffers that is not in use, or the tail buffer if the stretch runs to the end of the series and is 
+	 * shorter. Two consecutive stretches are never both shorter, since a shorter one ends the series.
+	 */
+	private Stretch getFreeBuffer(int start){
+		int length = Math.min(windowLength, timeChunks.getnValues()-start);
+		if (length<windowLength){
+			if (tail==null || tail.times.length!=length){
+				tail = new Stretch(new double[length], new double[length]);
+			}
+			return tail;
+		}
+		int iBuffer = buffers[0]==current ? 1 : 0;
+		if (buffers[iBuffer]==null){
+			buffers[iBuffer] = new Stretch(new double[windowLength], new double[windowLength]);
+		}
+		return buffers[iBuffer];
+	}
+	
+	
+	private Stretch read(Stretch buffer, int start){
+		int length = buffer.times.length;
+		timeChunks.getSource().read(start, buffer.times, 0, length);
+		forcingChunks.getSource().read(start, buffer.forcing, 0, length);
+		buffer.setStart(start);
+		return buffer;
+	}
+	
+	
+	private static Stretch waitFor(Future<Stretch> future){
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while reading the series.", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Could not read the series.", e.getCause());
+		}
+	}
+	
+	
+	private static class Stretch {
+		
+		final double[] times;
+		final double[] forcing;
+		int start;
+		int end;
+		
+		Stretch(double[] times, double[] forcing){
+			this.times = times;
+			this.forcing = forcing;
+		}
+		
+		void setStart(int start){
+			this.start = start;
+			this.end = start+times.length;
+		}
+	}
+
+}
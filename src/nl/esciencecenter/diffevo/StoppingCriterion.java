@@ -0,0 +1,34 @@
+/*
+ * Copyrighted 2012-2013 Netherlands eScience Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").  
+ * You may not use this file except in compliance with the License. 
+ * For details, see the LICENCE.txt file location in the root directory of this 
+ * distribution or obtain the Apache License at the following location: 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ * 
+ * For the full license, see: LICENCE.txt (located in the root folder of this distribution). 
+ * ---
+ */
+
+
+package nl.esciencecenter.diffevo;
+
+/**
+ * Decides whether DiffEvo can stop before it has run all of its generations (see 
+ * DiffEvo.setStoppingCriterion). It is asked after every generation.
+ */
+public interface StoppingCriterion {
+	
+	/**
+	 * Returns true if the results of generations 0 to iGen suffice.
+	 */
+	boolean isMet(EvalResults evalResults, int iGen);
+
+}
@@ -0,0 +1,316 @@
+/*
+ * Copyrighted 2012-2013 Netherlands eScience Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").  
+ * You may not use this file except in compliance with the License. 
+ * For details, see the LICENCE.txt file location in the root directory of this 
+ * distribution or obtain the Apache License at the following location: 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ * 
+ * For the full license, see: LICENCE.txt (located in the root folder of this distribution). 
+ * ---
+ */
+
+
+package nl.esciencecenter.diffevo;
+
+import java.util.Arrays;
+
+/**
+ * Estimates quantiles of a stream of values in constant memory (Dunning and Ertl, 2019, Computing 
+ * extremely accurate quantiles using t-digests). The values are summarized by centroids, a mean with a 
+ * weight each, that are small near the tails and larger in the middle: a centroid may span at most one 
+ * unit of the scale k(q) = compression/(2*pi)*asin(2*q-1), so that there are at most about compression/2
+ * centroids, and the extreme quantiles are estimated most accurately. 
+ * 
+ * New values are collected in a buffer and merged into the centroids when it is full. Digests of parts of a
+ * stream can be merged into a digest of the whole (see add(TDigest)).
+ */
+public class TDigest {
+	
+	public static final double DEFAULT_COMPRESSION = 100;
+	
+	private final double compression;
+	private double[] means;
+	private double[] weights;
+	private int nCentroids;
+	private double[] bufferMeans;
+	private double[] bufferWeights;
+	private int nBuffered;
+	private double[] mergedMeans;
+	private double[] mergedWeights;
+	private double totalWeight;
+	private double min;
+	private double max;
+	
+	
+	// constructor
+	public TDigest(){
+		this(DEFAULT_COMPRESSION);
+	}
+	
+	
+	// constructor
+	public TDigest(double compression){
+		if (compression<10){
+			throw new IllegalArgumentException("The compression should be at least 10.");
+		}
+		this.compression = compression;
+		int capacity = (int) Math.ceil(2*compression)+10;
+		this.means = new double[capacity];
+		this.weights = new double[capacity];
+		this.nCentroids = 0;
+		this.bufferMeans = new double[5*capacity];
+		this.bufferWeights = new double[5*capacity];
+		this.nBuffered = 0;
+		this.mergedMeans = new double[capacity+bufferMeans.length];
+		this.mergedWeights = new double[capacity+bufferMeans.length];
+		this.totalWeight = 0;
+		this.min = Double.POSITIVE_INFINITY;
+		this.max = Double.NEGATIVE_INFINITY;
+	}
+	
+	
+	public void add(double value){
+		add(value, 1);
+	}
+	
+	
+	public void add(double value, double weight){
+		if (Double.isNaN(value)){
+			throw new IllegalArgumentException("NaN can not be added to a t-digest.");
+		}
+		if (nBuffered==bufferMeans.length){
+			merge();
+		}
+		bufferMeans[nBuffered] = value;
+		bufferWeights[nBuffered] = weight;
+		nBuffered++;
+		totalWeight += weight;
+		min = Math.min(min, value);
+		max = Math.max(max, value);
+	}
+	
+	
+	/**
+	 * Adds all values of other to this digest.
+	 */
+	public void add(TDigest other){
+		other.merge();
+		for (int iCentroid=0;iCentroid<other.nCentroids;iCentroid++){
+			if (nBuffered==bufferMeans.length){
+				merge();
+			}
+			bufferMeans[nBuffered] = other.means[iCentroid];
+			bufferWeights[nBuffered] = other.weights[iCentroid];
+			nBuffered++;
+		}
+		totalWeight += other.totalWeight;
+		min = Math.min(min, other.min);
+		max = Math.max(max, other.max);
+	}
+	
+	
+	public double getTotalWeight(){
+		return totalWeight;
+	}
+	
+	
+	int getnCentroids(){
+		merge();
+		return nCentroids;
+	}
+	
+	
+	private void merge(){
+		
+		if (nBuffered==0){
+			return;
+		}
+		
+		// the centroids are in order of their means already; once the buffer is too, both are merged in one pass
+		sortBuffer(0, nBuffered-1);
+		int n = nCentroids+nBuffered;
+		if (mergedMeans.length<n){
+			mergedMeans = new double[n];
+			mergedWeights = new double[n];
+		}
+		int iCentroid = 0;
+		int iBuffered = 0;
+		double total = 0;
+		for (int i=0;i<n;i++){
+			if (iBuffered==nBuffered || (iCentroid<nCentroids && means[iCentroid]<=bufferMeans[iBuffered])){
+				mergedMeans[i] = means[iCentroid];
+				mergedWeights[i] = weights[iCentroid];
+				iCentroid++;
+			}
+			else {
+				mergedMeans[i] = bufferMeans[iBuffered];
+				mergedWeights[i] = bufferWeights[iBuffered];
+				iBuffered++;
+			}
+			total += mergedWeights[i];
+		}
+		
+		// merge neighbours for as long as the merged centroid spans at most one unit of k
+		nCentroids = 0;
+		double mean = mergedMeans[0];
+		double weight = mergedWeights[0];
+		double weightBefore = 0;
+		double weightLimit = total*getQuantileOfScale(getScale(0)+1);
+		for (int i=1;i<n;i++){
+			double nextMean = mergedMeans[i];
+			double nextWeight = mergedWeights[i];
+			double proposedWeight = weight+nextWeight;
+			if (weightBefore+proposedWeight<=weightLimit){
+				mean += (nextMean-mean)*nextWeight/proposedWeight;
+				weight = proposedWeight;
+			}
+			else {
+				addCentroid(mean, weight);
+				weightBefore += weight;
+				weightLimit = total*getQuantileOfScale(getScale(weightBefore/total)+1);
+				mean = nextMean;
+				weight = nextWeight;
+			}
+		}
+		addCentroid(mean, weight);
+		nBuffered = 0;
+	}
+	
+	
+	/**
+	 * Sorts the buffered values from iLow to iHigh (inclusive) by their means, moving their weights along: 
+	 * a quicksort on the primitive arrays, which leaves short ranges to an insertion sort.
+	 */
+	private void sortBuffer(int iLow, int iHigh){
+		
+		while (iHigh-iLow>=16){
+			// the median of the first, middle and last value as the pivot
+			int iMid = (iLow+iHigh)>>>1;
+			if (bufferMeans[iMid]<bufferMeans[iLow]){
+				swapBuffered(iLow, iMid);
+			}
+			if (bufferMeans[iHigh]<bufferMeans[iLow]){
+				swapBuffered(iLow, iHigh);
+			}
+			if (bufferMeans[iHigh]<bufferMeans[iMid]){
+				swapBuffered(iMid, iHigh);
+			}
+			double pivot = bufferMeans[iMid];
+			int i = iLow;
+			int j = iHigh;
+			while (i<=j){
+				while (bufferMeans[i]<pivot){
+					i++;
+				}
+				while (bufferMeans[j]>pivot){
+					j--;
+				}
+				if (i<=j){
+					swapBuffered(i, j);
+					i++;
+					j--;
+				}
+			}
+			// recurse into the smaller part, and go on with the larger one
+			if (j-iLow<iHigh-i){
+				sortBuffer(iLow, j);
+				iLow = i;
+			}
+			else {
+				sortBuffer(i, iHigh);
+				iHigh = j;
+			}
+		}
+		
+		for (int i=iLow+1;i<=iHigh;i++){
+			double mean = bufferMeans[i];
+			double weight = bufferWeights[i];
+			int j = i-1;
+			while (j>=iLow && bufferMeans[j]>mean){
+				bufferMeans[j+1] = bufferMeans[j];
+				bufferWeights[j+1] = bufferWeights[j];
+				j--;
+			}
+			bufferMeans[j+1] = mean;
+			bufferWeights[j+1] = weight;
+		}
+	}
+	
+	
+	private void swapBuffered(int i, int j){
+		double mean = bufferMeans[i];
+		bufferMeans[i] = bufferMeans[j];
+		bufferMeans[j] = mean;
+		double weight = bufferWeights[i];
+		bufferWeights[i] = bufferWeights[j];
+		bufferWeights[j] = weight;
+	}
+	
+	
+	private double getScale(double q){
+		return compression/(2*Math.PI)*Math.asin(2*q-1);
+	}
+	
+	
+	private double getQuantileOfScale(double k){
+		if (k>=compression/4){
+			return 1;
+		}
+		return (Math.sin(k*2*Math.PI/compression)+1)/2;
+	}
+	
+	
+	private void addCentroid(double mean, double weight){
+		if (nCentroids==means.length){
+			means = Arrays.copyOf(means, 2*nCentroids);
+			weights = Arrays.copyOf(weights, 2*nCentroids);
+		}
+		means[nCentroids] = mean;
+		weights[nCentroids] = weight;
+		nCentroids++;
+	}
+	
+	
+	/**
+	 * Returns the estimated q-quantile (0<=q<=1), or NaN if no values have been added. Between the centers 
+	 * of neighbouring centroids, and between the outer centroids and the minimum or maximum, the estimate 
+	 * is interpolated linearly.
+	 */
+	public double getQuantile(double q){
+		
+		if (q<0 || q>1){
+			throw new IllegalArgumentException("A quantile should be between 0 and 1.");
+		}
+		merge();
+		if (nCentroids==0){
+			return Double.NaN;
+		}
+		if (nCentroids==1){
+			return means[0];
+		}
+		
+		double index = q*totalWeight;
+		if (index<weights[0]/2){
+			return min+(means[0]-min)*index/(weights[0]/2);
+		}
+		double weightSoFar = weights[0]/2;
+		for (int iCentroid=0;iCentroid<nCentroids-1;iCentroid++){
+			double dw = (weights[iCentroid]+weights[iCentroid+1])/2;
+			if (index<weightSoFar+dw){
+				return means[iCentroid]+(means[iCentroid+1]-means[iCentroid])*(index-weightSoFar)/dw;
+			}
+			weightSoFar += dw;
+		}
+		double lastHalf = weights[nCentroids-1]/2;
+		return means[nCentroids-1]+(max-means[nCentroids-1])*Math.min(1, (index-weightSoFar)/lastHalf);
+	}
+	
+}
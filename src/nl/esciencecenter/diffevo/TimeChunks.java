@@ -19,74 +19,24 @@
 
 package nl.esciencecenter.diffevo;
 
-public class TimeChunks {
+public class TimeChunks extends Chunks {
 
-	private double[] times;
-	private int nTimes; 
-	private int[][] chunkIndices;
-	private int nChunks;
-	
 	// constructor
 	public TimeChunks(double[] times, double[] assimilate){
-		
-		this.times = times.clone();
-		this.nTimes =  times.length;
-		
-		assimilate[0] = 0;
-		
-		for (int iTime=0;iTime<nTimes;iTime++){
-			if (assimilate[iTime]==1){
-				this.nChunks = nChunks + 1;
-			}
-		}
-		
-		int iIndexStart = 0;
-		int iIndexEnd = 0;
-		int iChunk = 0;
-		this.chunkIndices = new int[nChunks][];
-		for (int iTime=0;iTime<nTimes;iTime++){
-			iIndexEnd = iTime;			
-			if (assimilate[iTime]==1){
-				int nIndices = iIndexEnd-iIndexStart+1;
-				int[] tmp = new int[nIndices];
-				for (int iIndex=iIndexStart;iIndex<=iIndexEnd;iIndex++){
-					tmp[iIndex-iIndexStart] = iIndex;
-				}
-				this.chunkIndices[iChunk] = tmp;
-				iChunk = iChunk + 1;
-				iIndexStart = iIndexEnd;
-			}
-		}
+		super(times, assimilate);
 	}
 	
-	public double[] getTimes(){
-		return times.clone();
+	// constructor
+	public TimeChunks(SeriesSource times, double[] assimilate){
+		super(times, assimilate);
 	}
 	
-	public int getnTimes(){
-		return nTimes;
-	}
-
-	public int getnChunks(){
-		return nChunks;
+	public double[] getTimes(){
+		return getValues();
 	}
 	
-	public int[][] getChunkIndices(){
-		return chunkIndices.clone();
+	public int getnTimes(){
+		return getnValues();
 	}
 
-	public int[] getChunkIndices(int iChunk){
-		return chunkIndices[iChunk].clone();
-	}
-	
-	public double[] getChunk(int iChunk){
-		int chunkSize = chunkIndices[iChunk].length;
-		double[] timesChunk = new double[chunkSize];
-		for (int k=0;k<chunkSize;k++){
-			timesChunk[k] = times[chunkIndices[iChunk][k]]; 
-		}
-		return timesChunk.clone();
-	}
 }
-
-
@@ -0,0 +1,70 @@
+/*
+ * Copyrighted 2012-2013 Netherlands eScience Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").  
+ * You may not use this file except in compliance with the License. 
+ * For details, see the LICENCE.txt file location in the root directory of this 
+ * distribution or obtain the Apache License at the following location: 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ * 
+ * For the full license, see: LICENCE.txt (located in the root folder of this distribution). 
+ * ---
+ */
+
+package nl.esciencecenter.diffevo;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Creates executor services that start a new thread for every task. On a Java runtime with virtual threads 
+ * (Java 21 and up) these are virtual threads, which cost next to nothing while they wait; the runtime is 
+ * looked up by reflection, so that the code still compiles and runs on older versions. On older runtimes,
+ * a cached pool of daemon platform threads is used instead. Either way, the number of tasks running at 
+ * the same time should be limited by the caller (see ListOfParameterCombinations.setTaskPerMember).
+ */
+public final class VirtualThreads {
+	
+	private static final Method NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR = findVirtualThreadPerTaskExecutor();
+	
+	private VirtualThreads(){
+	}
+	
+	private static Method findVirtualThreadPerTaskExecutor(){
+		try {
+			return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+		} catch (NoSuchMethodException e) {
+			return null;
+		}
+	}
+	
+	public static boolean isSupported(){
+		return NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR!=null;
+	}
+	
+	public static ExecutorService newExecutorService(){
+		if (NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR!=null){
+			try {
+				return (ExecutorService) NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR.invoke(null);
+			} catch (Exception e) {
+				// e.g. disabled as a preview feature; fall back to platform threads
+			}
+		}
+		return Executors.newCachedThreadPool(new ThreadFactory(){
+			public Thread newThread(Runnable runnable){
+				Thread thread = new Thread(runnable, "diffevo-evaluator");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+}
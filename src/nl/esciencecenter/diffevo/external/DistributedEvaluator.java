@@ -0,0 +1,583 @@
+/*
+ * Copyrighted 2012-2013 Netherlands eScience Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").  
+ * You may not use this file except in compliance with the License. 
+ * For details, see the LICENCE.txt file location in the root directory of this 
+ * distribution or obtain the Apache License at the following location: 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ * 
+ * For the full license, see: LICENCE.txt (located in the root folder of this distribution). 
+ * ---
+ */
+
+package nl.esciencecenter.diffevo.external;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import nl.esciencecenter.diffevo.ListOfParameterCombinations;
+import nl.esciencecenter.diffevo.ModelResultRetention;
+
+/**
+ * Evaluates populations on DistributedWorkers running in other JVMs, possibly on other machines (workers 
+ * listen on the loopback address only, unless started with a host, see DistributedWorker.start). The 
+ * population is cut into batches of parameter vectors, and each worker is kept busy with up to 
+ * pipelineDepth batches at a time, so that it can start on the next batch while the result of the 
+ * previous one is still underway. Once all batches have been handed out, a worker that runs dry takes over 
+ * the last batch queued at another worker that has not been duplicated yet; whichever copy comes back 
+ * first is used. When a connection breaks, or a worker does not answer within the timeout, the worker is 
+ * dropped and its unfinished batches go back to the front of the queue for the remaining workers. 
+ */
+public class DistributedEvaluator {
+	
+	private static final int DEFAULT_PIPELINE_DEPTH = 2;
+	private static final int DEFAULT_TIMEOUT_MILLIS = 60000;
+	private static final int BATCHES_PER_WORKER = 4;
+	
+	private final List<InetSocketAddress> addresses;
+	private final List<Connection> connections;
+	private int batchSize;
+	private int pipelineDepth;
+	private int timeoutMillis;
+	private int nWorkersLost;
+	private int nSetupsPending;
+	private int nextRequestId;
+	private ListOfParameterCombinations current;
+	private final Deque<Batch> pending;
+	private final Map<Integer, Batch> batches;
+	private int nBatchesRemaining;
+	private String errorMessage;
+	
+	// constructor:
+	public DistributedEvaluator(List<InetSocketAddress> addresses){
+		if (addresses.isEmpty()){
+			throw new IllegalArgumentException("At least one worker address is needed.");
+		}
+		this.addresses = new ArrayList<InetSocketAddress>(addresses);
+		this.connections = new ArrayList<Connection>();
+		this.batchSize = 0;
+		this.pipelineDepth = DEFAULT_PIPELINE_DEPTH;
+		this.timeoutMillis = DEFAULT_TIMEOUT_MILLIS;
+		this.nWorkersLost = 0;
+		this.nextRequestId = 0;
+		this.pending = new ArrayDeque<Batch>();
+		this.batches = new HashMap<Integer, Batch>();
+	}
+	
+	/**
+	 * Sets the number of members per batch. By default (0), the population is cut into about 
+	 * BATCHES_PER_WORKER batches per worker, which leaves room for stealing without making the batches 
+	 * so small that the round trips dominate.
+	 */
+	public void setBatchSize(int batchSize){
+		if (batchSize<0){
+			throw new IllegalArgumentException("The batch size should not be negative.");
+		}
+		this.batchSize = batchSize;
+	}
+	
+	/**
+	 * Sets the number of batches that may be outstanding at a single worker.
+	 */
+	public void setPipelineDepth(int pipelineDepth){
+		if (pipelineDepth<1){
+			throw new IllegalArgumentException("The pipeline depth should be at least 1.");
+		}
+		this.pipelineDepth = pipelineDepth;
+	}
+	
+	/**
+	 * Sets how long a worker with outstanding batches may stay silent before it is considered lost. The 
+	 * timeout should comfortably exceed the time needed to evaluate pipelineDepth batches.
+	 */
+	public void setTimeoutMillis(int timeoutMillis){
+		if (timeoutMillis<1){
+			throw new IllegalArgumentException("The timeout should be positive.");
+		}
+		this.timeoutMillis = timeoutMillis;
+	}
+	
+	public synchronized int getnWorkersLost(){
+		return nWorkersLost;
+	}
+	
+	public synchronized int getnWorkersAlive(){
+		int nAlive = 0;
+		for (Connection connection : connections){
+			if (connection.alive){
+				nAlive++;
+			}
+		}
+		return nAlive;
+	}
+	
+	
+	/**
+	 * Connects to the workers (the first time it is called) and sends them the calibration data. For a 
+	 * model that is not dynamic, initState should be null and the remaining arguments are ignored. Workers 
+	 * that cannot be reached count as lost; an IOException is thrown only if none of them can be reached.
+	 */
+	public synchronized void setUp(int nPars, double[] initState, double[] forcing, double[] times, double[] assimilate, 
+			double[][] obs, ModelResultRetention modelResultRetention, int[] observedStates) throws IOException {
+		
+		boolean isDynamic = initState!=null;
+		if (isDynamic){
+			long nValues = (long) initState.length+forcing.length+times.length+assimilate.length;
+			for (int iObs=0;iObs<obs.length;iObs++){
+				nValues += obs[iObs].length;
+			}
+			if (nValues>DistributedProtocol.MAX_SETUP_VALUES){
+				throw new IllegalArgumentException("The calibration data holds "+nValues+" numbers, more than the "+
+						DistributedProtocol.MAX_SETUP_VALUES+" that a worker accepts.");
+			}
+		}
+		
+		if (connections.isEmpty()){
+			connect();
+		}
+		
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream message = new DataOutputStream(bytes);
+		message.writeInt(DistributedProtocol.SETUP);
+		message.writeInt(DistributedProtocol.VERSION);
+		message.writeInt(nPars);
+		message.writeBoolean(isDynamic);
+		if (isDynamic){
+			ExternalModelProtocol.writeArray(message, initState);
+			ExternalModelProtocol.writeArray(message, forcing);
+			ExternalModelProtocol.writeArray(message, times);
+			ExternalModelProtocol.writeArray(message, assimilate);
+			message.writeInt(obs.length);
+			for (int iObs=0;iObs<obs.length;iObs++){
+				ExternalModelProtocol.writeArray(message, obs[iObs]);
+			}
+			message.writeInt(modelResultRetention.ordinal());
+			if (observedStates==null){
+				message.writeInt(-1);
+			}
+			else {
+				message.writeInt(observedStates.length);
+				for (int iObserved=0;iObserved<observedStates.length;iObserved++){
+					message.writeInt(observedStates[iObserved]);
+				}
+			}
+		}
+		message.flush();
+		byte[] setup = bytes.toByteArray();
+		
+		errorMessage = null;
+		nSetupsPending = 0;
+		for (Connection connection : connections){
+			if (connection.alive){
+				try {
+					connection.out.write(setup);
+					connection.out.flush();
+					connection.nSetupsPending++;
+					nSetupsPending++;
+				} catch (IOException e) {
+					lose(connection);
+				}
+			}
+		}
+		while (nSetupsPending>0 && errorMessage==null){
+			waitForReader();
+		}
+		throwIfFailed();
+	}
+	
+	
+	private void connect() throws IOException {
+		IOException lastException = null;
+		for (InetSocketAddress address : addresses){
+			Connection connection = new Connection();
+			connections.add(connection);
+			try {
+				connection.open(address);
+				connection.startReader();
+			} catch (IOException e) {
+				lastException = e;
+				connection.alive = false;
+				nWorkersLost++;
+			}
+		}
+		if (getnWorkersAlive()==0){
+			throw new IOException("None of the workers could be reached.", lastException);
+		}
+	}
+	
+	
+	/**
+	 * Evaluates all members of the list on the workers, and stores their objective scores and model 
+	 * results in it. Returns when every member has been evaluated.
+	 */
+	public synchronized void evaluate(ListOfParameterCombinations listOfParameterCombinations){
+		
+		int nPop = listOfParameterCombinations.getPopulationSize();
+		int nAlive = getnWorkersAlive();
+		errorMessage = null;
+		throwIfFailed();
+		int nMembersPerBatch = batchSize>0 ? batchSize : Math.max(1, (nPop+BATCHES_PER_WORKER*nAlive-1)/(BATCHES_PER_WORKER*nAlive));
+		int nPars = listOfParameterCombinations.getNumberOfPars();
+		if (nPars>0){
+			// within what a worker accepts in one request
+			nMembersPerBatch = Math.min(nMembersPerBatch, Math.max(1, DistributedProtocol.MAX_BATCH_VALUES/nPars));
+		}
+		
+		current = listOfParameterCombinations;
+		pending.clear();
+		batches.clear();
+		nBatchesRemaining = 0;
+		for (int iPopFirst=0;iPopFirst<nPop;iPopFirst+=nMembersPerBatch){
+			int nMembers = Math.min(nMembersPerBatch, nPop-iPopFirst);
+			double[][] parameterCombinations = new double[nMembers][];
+			for (int iMember=0;iMember<nMembers;iMember++){
+				parameterCombinations[iMember] = listOfParameterCombinations.getParameterCombination(iPopFirst+iMember);
+			}
+			Batch batch = new Batch(nextRequestId++, iPopFirst, parameterCombinations);
+			pending.addLast(batch);
+			batches.put(batch.requestId, batch);
+			nBatchesRemaining++;
+		}
+		
+		try {
+			dispatch();
+			while (nBatchesRemaining>0 && errorMessage==null){
+				waitForReader();
+			}
+			throwIfFailed();
+		}
+		finally {
+			current = null;
+			pending.clear();
+			batches.clear();
+		}
+	}
+	
+	
+	private void waitForReader(){
+		if (getnWorkersAlive()==0){
+			throwIfFailed();
+		}
+		try {
+			wait();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for the workers.", e);
+		}
+	}
+	
+	
+	private void throwIfFailed(){
+		if (errorMessage!=null){
+			String message = errorMessage;
+			errorMessage = null;
+			throw new IllegalStateException("A worker failed: "+message);
+		}
+		if (getnWorkersAlive()==0){
+			throw new IllegalStateException("All "+connections.size()+" workers have been lost.");
+		}
+	}
+	
+	
+	/**
+	 * Hands out batches until every live worker has pipelineDepth batches outstanding or there is nothing 
+	 * left to hand out. Pending batches go first; after that, a worker with room takes over the last 
+	 * batch queued at another worker, as long as that batch is not running in duplicate already.
+	 */
+	private void dispatch(){
+		boolean dispatched = true;
+		while (dispatched && current!=null){
+			dispatched = false;
+			for (Connection connection : connections){
+				if (!connection.alive || connection.inFlight.size()>=pipelineDepth){
+					continue;
+				}
+				Batch batch = nextPending();
+				if (batch==null){
+					batch = steal(connection);
+				}
+				if (batch==null){
+					continue;
+				}
+				send(connection, batch);
+				dispatched = true;
+			}
+		}
+	}
+	
+	
+	private Batch nextPending(){
+		while (!pending.isEmpty()){
+			Batch batch = pending.pollFirst();
+			if (!batch.done){
+				return batch;
+			}
+		}
+		return null;
+	}
+	
+	
+	private Batch steal(Connection thief){
+		for (Connection victim : connections){
+			if (victim==thief || !victim.alive){
+				continue;
+			}
+			for (int iInFlight=victim.inFlight.size()-1;iInFlight>=0;iInFlight--){
+				Batch batch = victim.inFlight.get(iInFlight);
+				if (!batch.done && batch.nCopies==1 && batches.get(batch.requestId)==batch){
+					return batch;
+				}
+			}
+		}
+		return null;
+	}
+	
+	
+	private void send(Connection connection, Batch batch){
+		batch.nCopies++;
+		connection.inFlight.add(batch);
+		try {
+			DataOutputStream out = connection.out;
+			out.writeInt(DistributedProtocol.EVALUATE);
+			out.writeInt(batch.requestId);
+			out.writeInt(batch.parameterCombinations.length);
+			out.writeInt(batch.parameterCombinations[0].length);
+			for (double[] parameterCombination : batch.parameterCombinations){
+				for (double parameterValue : parameterCombination){
+					out.writeDouble(parameterValue);
+				}
+			}
+			out.flush();
+		} catch (IOException e) {
+			lose(connection);
+		}
+	}
+	
+	
+	/**
+	 * Drops a worker and puts its unfinished batches back at the front of the queue, unless another worker 
+	 * is running a copy of them.
+	 */
+	private void lose(Connection connection){
+		if (!connection.alive){
+			return;
+		}
+		connection.alive = false;
+		connection.close();
+		nWorkersLost++;
+		nSetupsPending -= connection.nSetupsPending;
+		connection.nSetupsPending = 0;
+		for (int iInFlight=connection.inFlight.size()-1;iInFlight>=0;iInFlight--){
+			Batch batch = connection.inFlight.get(iInFlight);
+			batch.nCopies--;
+			if (!batch.done && batch.nCopies==0 && batches.get(batch.requestId)==batch){
+				pending.addFirst(batch);
+			}
+		}
+		connection.inFlight.clear();
+		notifyAll();
+	}
+	
+	
+	private synchronized void onSetupOk(Connection connection){
+		connection.nSetupsPending--;
+		nSetupsPending--;
+		notifyAll();
+	}
+	
+	
+	private synchronized void onResult(Connection connection, int requestId, double[] objScores, double[][][] modelResults){
+		Batch batch = removeInFlight(connection, requestId);
+		if (batch!=null && !batch.done && batches.get(requestId)==batch){
+			for (int iMember=0;iMember<objScores.length;iMember++){
+				current.setObjScore(batch.iPopFirst+iMember, objScores[iMember]);
+				if (modelResults!=null){
+					current.setModelResults(batch.iPopFirst+iMember, modelResults[iMember]);
+				}
+			}
+			batch.done = true;
+			nBatchesRemaining--;
+		}
+		dispatch();
+		notifyAll();
+	}
+	
+	
+	private synchronized void onError(Connection connection, String message){
+		// the replies come in the order of the requests, and a setup is only sent after the batches in flight
+		if (!connection.inFlight.isEmpty()){
+			Batch batch = connection.inFlight.remove(0);
+			batch.nCopies--;
+			// a failed duplicate of a batch from an earlier population is ignored
+			if (batches.get(batch.requestId)==batch){
+				errorMessage = message;
+			}
+		}
+		else if (connection.nSetupsPending>0){
+			connection.nSetupsPending--;
+			nSetupsPending--;
+			errorMessage = message;
+		}
+		notifyAll();
+	}
+	
+	
+	private synchronized void onLost(Connection connection){
+		lose(connection);
+		dispatch();
+	}
+	
+	
+	private synchronized boolean isIdle(Connection connection){
+		return connection.inFlight.isEmpty() && connection.nSetupsPending==0;
+	}
+	
+	
+	private static Batch removeInFlight(Connection connection, int requestId){
+		for (int iInFlight=0;iInFlight<connection.inFlight.size();iInFlight++){
+			Batch batch = connection.inFlight.get(iInFlight);
+			if (batch.requestId==requestId){
+				connection.inFlight.remove(iInFlight);
+				batch.nCopies--;
+				return batch;
+			}
+		}
+		return null;
+	}
+	
+	
+	/**
+	 * Closes the connections; the workers keep running and accept new connections.
+	 */
+	public synchronized void close(){
+		for (Connection connection : connections){
+			connection.alive = false;
+			connection.close();
+		}
+		connections.clear();
+		notifyAll();
+	}
+	
+	
+	private class Connection {
+		
+		private Socket socket;
+		private DataInputStream in;
+		private DataOutputStream out;
+		private boolean alive;
+		private int nSetupsPending;
+		private final List<Batch> inFlight;
+		
+		Connection(){
+			this.inFlight = new ArrayList<Batch>();
+		}
+		
+		void open(InetSocketAddress address) throws IOException {
+			socket = new Socket();
+			socket.connect(address, timeoutMillis);
+			socket.setTcpNoDelay(true);
+			socket.setSoTimeout(timeoutMillis);
+			in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+			alive = true;
+		}
+		
+		void startReader(){
+			Thread reader = new Thread(new Runnable(){
+				public void run(){
+					read();
+				}
+			}, "distributed-evaluator-reader");
+			reader.setDaemon(true);
+			reader.start();
+		}
+		
+		private void read(){
+			try {
+				while (true){
+					int messageType;
+					try {
+						messageType = in.readInt();
+					} catch (SocketTimeoutException e) {
+						if (isIdle(this)){
+							continue;
+						}
+						throw e;
+					}
+					if (messageType==DistributedProtocol.SETUP_OK){
+						onSetupOk(this);
+					}
+					else if (messageType==DistributedProtocol.RESULT){
+						int requestId = in.readInt();
+						double[] objScores = ExternalModelProtocol.readArray(in);
+						double[][][] modelResults = null;
+						if (in.readBoolean()){
+							modelResults = new double[objScores.length][][];
+							for (int iMember=0;iMember<objScores.length;iMember++){
+								modelResults[iMember] = ExternalModelProtocol.readMatrix(in);
+							}
+						}
+						onResult(this, requestId, objScores, modelResults);
+					}
+					else if (messageType==DistributedProtocol.ERROR){
+						onError(this, ExternalModelProtocol.readMessage(in));
+					}
+					else {
+						throw new IOException("Unknown message type "+messageType+".");
+					}
+				}
+			} catch (IOException e) {
+				onLost(this);
+			}
+		}
+		
+		void close(){
+			if (socket!=null){
+				try {
+					socket.close();
+				} catch (IOException e) {
+					// ignore
+				}
+			}
+		}
+	}
+	
+	
+	private static class Batch {
+		
+		final int requestId;
+		final int iPopFirst;
+		final double[][] parameterCombinations;
+		int nCopies;
+		boolean done;
+		
+		Batch(int requestId, int iPopFirst, double[][] parameterCombinations){
+			this.requestId = requestId;
+			this.iPopFirst = iPopFirst;
+			this.parameterCombinations = parameterCombinations;
+			this.nCopies = 0;
+			this.done = false;
+		}
+	}
+
+}
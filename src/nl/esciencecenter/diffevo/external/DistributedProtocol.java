@@ -0,0 +1,57 @@
+/*
+ * Copyrighted 2012-2013 Netherlands eScience Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").  
+ * You may not use this file except in compliance with the License. 
+ * For details, see the LICENCE.txt file location in the root directory of this 
+ * distribution or obtain the Apache License at the following location: 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ * 
+ * For the full license, see: LICENCE.txt (located in the root folder of this distribution). 
+ * ---
+ */
+
+package nl.esciencecenter.diffevo.external;
+
+/**
+ * The messages between a DistributedEvaluator and its DistributedWorkers, framed like the 
+ * ExternalModelProtocol (big-endian, arrays prefixed by their length).
+ * 
+ * <pre>
+ * SETUP version, nPars, isDynamic, [initState, forcing, times, assimilate, nObsRows, obs rows..., retention, 
+ *       nObservedStates, observedStates...]           reply: SETUP_OK or ERROR, message
+ * EVALUATE requestId, nMembers, nPars, parameter vectors  
+ *                                                      reply: RESULT requestId, objScores, hasModelResults, 
+ *                                                             [model result per member]
+ *                                                          or ERROR, message
+ * </pre>
+ * 
+ * Requests are pipelined: the evaluator may send several EVALUATE messages before the first RESULT comes 
+ * back, and the worker answers them in order. A worker answers a SETUP of another version with ERROR and 
+ * closes the connection, since it can not tell where the message ends; it does the same, without the 
+ * ERROR, for requests larger than the limits below.
+ */
+final class DistributedProtocol {
+	
+	static final int VERSION = 1;
+	static final int SETUP = 11;
+	static final int SETUP_OK = 12;
+	static final int EVALUATE = 13;
+	static final int RESULT = 14;
+	static final int ERROR = 15;
+	
+	// the most numbers that the arrays of a SETUP may hold together
+	static final int MAX_SETUP_VALUES = 1<<26;
+	// the most parameter values in an EVALUATE
+	static final int MAX_BATCH_VALUES = 1<<22;
+	
+	private DistributedProtocol(){
+	}
+
+}
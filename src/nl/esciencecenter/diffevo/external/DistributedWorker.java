@@ -0,0 +1,401 @@
+/*
+ * Copyrighted 2012-2013 Netherlands eScience Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").  
+ * You may not use this file except in compliance with the License. 
+ * For details, see the LICENCE.txt file location in the root directory of this 
+ * distribution or obtain the Apache License at the following location: 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ * 
+ * For the full license, see: LICENCE.txt (located in the root folder of this distribution). 
+ * ---
+ */
+
+package nl.esciencecenter.diffevo.external;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import nl.esciencecenter.diffevo.ForcingChunks;
+import nl.esciencecenter.diffevo.ListOfParameterCombinations;
+import nl.esciencecenter.diffevo.ModelResultRetention;
+import nl.esciencecenter.diffevo.TimeChunks;
+import nl.esciencecenter.diffevo.likelihoodfunctionfactories.LikelihoodFunctionFactory;
+import nl.esciencecenter.diffevo.statespacemodelfactories.ModelFactory;
+
+/**
+ * Evaluates batches of parameter vectors for a DistributedEvaluator on another JVM. The worker holds the 
+ * model factory and the likelihood function factory, which are code; the observations, forcing and times 
+ * are sent by the evaluator when it connects. Each connection is served by its own pair of threads: one 
+ * reads requests as soon as they arrive, so that pipelined requests never block the evaluator, and the 
+ * other evaluates them in order, using nThreads threads per batch. The worker only listens on the loopback 
+ * address unless it is started on another host address; anyone who can connect can have it evaluate.
+ */
+public class DistributedWorker {
+	
+	private final ModelFactory modelFactory;
+	private final LikelihoodFunctionFactory likelihoodFunctionFactory;
+	private final int nThreads;
+	private ServerSocket serverSocket;
+	private ExecutorService executorService;
+	
+	public DistributedWorker(ModelFactory modelFactory, LikelihoodFunctionFactory likelihoodFunctionFactory, int nThreads){
+		this.modelFactory = modelFactory;
+		this.likelihoodFunctionFactory = likelihoodFunctionFactory;
+		this.nThreads = nThreads;
+	}
+	
+	/**
+	 * Starts listening on the given port (0 for any free port) of the loopback address only, so that only 
+	 * evaluators on this machine can connect, and returns the port.
+	 */
+	public int start(int port) throws IOException {
+		return start(null, port);
+	}
+	
+	/**
+	 * Starts listening on the given port (0 for any free port) of host, e.g. "0.0.0.0" for all interfaces, 
+	 * and returns the port. A host of null means the loopback address.
+	 */
+	public int start(String host, int port) throws IOException {
+		InetSocketAddress address = host==null ? new InetSocketAddress(InetAddress.getLoopbackAddress(), port) : 
+			new InetSocketAddress(host, port);
+		serverSocket = new ServerSocket();
+		serverSocket.bind(address);
+		if (nThreads>1){
+			executorService = Executors.newFixedThreadPool(nThreads);
+		}
+		Thread acceptor = new Thread(new Runnable(){
+			public void run(){
+				accept();
+			}
+		}, "distributed-worker-acceptor");
+		acceptor.setDaemon(true);
+		acceptor.start();
+		return serverSocket.getLocalPort();
+	}
+	
+	public void stop(){
+		try {
+			serverSocket.close();
+		} catch (IOException e) {
+			// already closed
+		}
+		if (executorService!=null){
+			executorService.shutdown();
+		}
+	}
+	
+	private void accept(){
+		while (!serverSocket.isClosed()){
+			final Socket socket;
+			try {
+				socket = serverSocket.accept();
+			} catch (IOException e) {
+				return;
+			}
+			Thread handler = new Thread(new Runnable(){
+				public void run(){
+					try {
+						new Session(socket).run();
+					} catch (IOException e) {
+						// the evaluator went away
+					} finally {
+						try {
+							socket.close();
+						} catch (IOException e) {
+							// ignore
+						}
+					}
+				}
+			}, "distributed-worker-session");
+			handler.setDaemon(true);
+			handler.start();
+		}
+	}
+	
+	
+	/**
+	 * One connection: the requests that have been received but not yet evaluated, and the calibration 
+	 * data of the most recent SETUP. 
+	 */
+	private class Session {
+		
+		private final Socket socket;
+		private final DataInputStream in;
+		private final DataOutputStream out;
+		private final LinkedBlockingQueue<Request> requests;
+		private Setup setup;
+		private int nSetupValuesLeft;
+		
+		Session(Socket socket) throws IOException {
+			this.socket = socket;
+			socket.setTcpNoDelay(true);
+			this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+			this.requests = new LinkedBlockingQueue<Request>();
+		}
+		
+		void run() throws IOException {
+			
+			Thread reader = new Thread(new Runnable(){
+				public void run(){
+					read();
+				}
+			}, "distributed-worker-reader");
+			reader.setDaemon(true);
+			reader.start();
+			
+			while (true){
+				Request request;
+				try {
+					request = requests.take();
+				} catch (InterruptedException e) {
+					return;
+				}
+				if (request.isEndOfStream()){
+					return;
+				}
+				if (request.errorMessage!=null){
+					out.writeInt(DistributedProtocol.ERROR);
+					ExternalModelProtocol.writeMessage(out, request.errorMessage);
+					out.flush();
+					continue;
+				}
+				try {
+					if (request.setup!=null){
+						// applied in turn, so that requests received before it are still evaluated with the old data
+						setup = request.setup;
+						out.writeInt(DistributedProtocol.SETUP_OK);
+					}
+					else {
+						evaluate(request);
+					}
+				} catch (RuntimeException e) {
+					out.writeInt(DistributedProtocol.ERROR);
+					ExternalModelProtocol.writeMessage(out, String.valueOf(e));
+				}
+				out.flush();
+			}
+		}
+		
+		/**
+		 * Queues the requests as they arrive. Whatever ends the stream, whether the evaluator going away or 
+		 * a message that can not be made sense of, ends the session, so that run() and the socket are 
+		 * released.
+		 */
+		private void read(){
+			try {
+				while (true){
+					int messageType = in.readInt();
+					if (messageType==DistributedProtocol.SETUP){
+						int version = in.readInt();
+						if (version!=DistributedProtocol.VERSION){
+							// the rest of the message can not be read, so this ends the session
+							requests.add(new Request("The evaluator speaks protocol version "+version+
+									", this worker version "+DistributedProtocol.VERSION+"."));
+							return;
+						}
+						requests.add(new Request(readSetup()));
+					}
+					else if (messageType==DistributedProtocol.EVALUATE){
+						int requestId = in.readInt();
+						int nMembers = in.readInt();
+						int nParsRequest = in.readInt();
+						if (nMembers<0 || nParsRequest<0 || (long) nMembers*nParsRequest>DistributedProtocol.MAX_BATCH_VALUES){
+							throw new IOException("Invalid batch size "+nMembers+" x "+nParsRequest+".");
+						}
+						double[][] parameterCombinations = new double[nMembers][nParsRequest];
+						for (int iMember=0;iMember<nMembers;iMember++){
+							for (int iPar=0;iPar<nParsRequest;iPar++){
+								parameterCombinations[iMember][iPar] = in.readDouble();
+							}
+						}
+						requests.add(new Request(requestId, parameterCombinations));
+					}
+					else {
+						throw new IOException("Unknown message type "+messageType+".");
+					}
+				}
+			} catch (IOException e) {
+				// the evaluator went away, or sent something that is not a request
+			} finally {
+				requests.add(Request.END_OF_STREAM);
+				try {
+					socket.shutdownInput();
+				} catch (IOException e2) {
+					// ignore
+				}
+			}
+		}
+		
+		private Setup readSetup() throws IOException {
+			Setup setup = new Setup();
+			setup.nPars = in.readInt();
+			if (setup.nPars<0 || setup.nPars>DistributedProtocol.MAX_BATCH_VALUES){
+				throw new IOException("Invalid number of parameters "+setup.nPars+".");
+			}
+			setup.isDynamic = in.readBoolean();
+			if (setup.isDynamic){
+				nSetupValuesLeft = DistributedProtocol.MAX_SETUP_VALUES;
+				setup.initState = readSetupArray();
+				double[] forcing = readSetupArray();
+				double[] times = readSetupArray();
+				double[] assimilate = readSetupArray();
+				if (times.length==0 || forcing.length!=times.length || assimilate.length!=times.length){
+					throw new IOException("Invalid series lengths: "+times.length+" times, "+forcing.length+
+							" forcing values and "+assimilate.length+" assimilate flags.");
+				}
+				int nObsRows = in.readInt();
+				if (nObsRows<0 || nObsRows>nSetupValuesLeft){
+					throw new IOException("Invalid number of observation rows "+nObsRows+".");
+				}
+				setup.obs = new double[nObsRows][];
+				for (int iObs=0;iObs<nObsRows;iObs++){
+					setup.obs[iObs] = readSetupArray();
+				}
+				int retention = in.readInt();
+				if (retention<0 || retention>=ModelResultRetention.values().length){
+					throw new IOException("Unknown model result retention "+retention+".");
+				}
+				setup.modelResultRetention = ModelResultRetention.values()[retention];
+				int nObservedStates = in.readInt();
+				if (nObservedStates<-1 || nObservedStates>setup.initState.length){
+					throw new IOException("Invalid number of observed states "+nObservedStates+".");
+				}
+				setup.observedStates = null;
+				if (nObservedStates>=0){
+					setup.observedStates = new int[nObservedStates];
+					for (int iObserved=0;iObserved<nObservedStates;iObserved++){
+						setup.observedStates[iObserved] = in.readInt();
+					}
+				}
+				setup.timeChunks = new TimeChunks(times, assimilate.clone());
+				setup.forcingChunks = new ForcingChunks(forcing, assimilate.clone());
+			}
+			return setup;
+		}
+		
+		private double[] readSetupArray() throws IOException {
+			double[] values = ExternalModelProtocol.readArray(in, nSetupValuesLeft);
+			nSetupValuesLeft -= values.length;
+			return values;
+		}
+		
+		private void evaluate(Request request) throws IOException {
+			
+			int nMembers = request.parameterCombinations.length;
+			if (setup==null){
+				throw new IllegalStateException("Evaluation requested before setup.");
+			}
+			boolean isDynamic = setup.isDynamic;
+			if (isDynamic && modelFactory==null){
+				throw new IllegalStateException("This worker has no model factory.");
+			}
+			
+			ListOfParameterCombinations listOfParameterCombinations;
+			if (isDynamic){
+				listOfParameterCombinations = new ListOfParameterCombinations(nMembers, setup.nPars, likelihoodFunctionFactory, 
+						setup.initState, setup.timeChunks, setup.forcingChunks, modelFactory);
+				listOfParameterCombinations.setModelResultRetention(setup.modelResultRetention);
+				listOfParameterCombinations.setObservedStates(setup.observedStates);
+			}
+			else {
+				listOfParameterCombinations = new ListOfParameterCombinations(nMembers, setup.nPars, likelihoodFunctionFactory);
+			}
+			listOfParameterCombinations.setExecutorService(executorService, nThreads);
+			for (int iMember=0;iMember<nMembers;iMember++){
+				listOfParameterCombinations.setParameterCombination(iMember, request.parameterCombinations[iMember]);
+			}
+			
+			if (isDynamic){
+				listOfParameterCombinations.calcModelResultsAndObjScores(setup.obs);
+			}
+			else {
+				listOfParameterCombinations.calcObjScores();
+			}
+			
+			out.writeInt(DistributedProtocol.RESULT);
+			out.writeInt(request.requestId);
+			double[] objScores = new double[nMembers];
+			for (int iMember=0;iMember<nMembers;iMember++){
+				objScores[iMember] = listOfParameterCombinations.getObjScore(iMember);
+			}
+			ExternalModelProtocol.writeArray(out, objScores);
+			boolean hasModelResults = isDynamic && setup.modelResultRetention!=ModelResultRetention.NONE;
+			out.writeBoolean(hasModelResults);
+			if (hasModelResults){
+				for (int iMember=0;iMember<nMembers;iMember++){
+					ExternalModelProtocol.writeMatrix(out, listOfParameterCombinations.getModelResult(iMember));
+				}
+			}
+		}
+	}
+	
+	
+	private static class Setup {
+		int nPars;
+		boolean isDynamic;
+		double[] initState;
+		TimeChunks timeChunks;
+		ForcingChunks forcingChunks;
+		double[][] obs;
+		ModelResultRetention modelResultRetention;
+		int[] observedStates;
+	}
+	
+	
+	private static class Request {
+		
+		static final Request END_OF_STREAM = new Request(-1, null);
+		final int requestId;
+		final double[][] parameterCombinations;
+		final Setup setup;
+		final String errorMessage;
+		
+		Request(int requestId, double[][] parameterCombinations){
+			this.requestId = requestId;
+			this.parameterCombinations = parameterCombinations;
+			this.setup = null;
+			this.errorMessage = null;
+		}
+		
+		Request(Setup setup){
+			this.requestId = -1;
+			this.parameterCombinations = null;
+			this.setup = setup;
+			this.errorMessage = null;
+		}
+		
+		/**
+		 * A request that could not be read, answered with ERROR.
+		 */
+		Request(String errorMessage){
+			this.requestId = -1;
+			this.parameterCombinations = null;
+			this.setup = null;
+			this.errorMessage = errorMessage;
+		}
+		
+		boolean isEndOfStream(){
+			return this==END_OF_STREAM;
+		}
+	}
+
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyrighted 2012-2013 Netherlands eScience Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").  
+ * You may not use this file except in compliance with the License. 
+ * For details, see the LICENCE.txt file location in the root directory of this 
+ * distribution or obtain the Apache License at the following location: 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ * 
+ * For the full license, see: LICENCE.txt (located in the root folder of this distribution). 
+ * ---
+ */
+
+package nl.esciencecenter.diffevo.external;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+/**
+ * The binary protocol between a WorkerPool and its worker processes. Every message starts with a 32-bit 
+ * message type; all numbers are big-endian, as written by DataOutputStream. Arrays are written as their 
+ * length followed by their elements; a matrix as its number of rows and columns followed by its elements, 
+ * row by row. A message is written as the number of bytes of its UTF-8 encoding followed by those bytes; 
+ * messages longer than MAX_MESSAGE_LENGTH bytes are cut off.
+ * 
+ * <pre>
+ * PING                                          reply: PONG, protocol version
+ * EVALUATE initState, parameterVector, forcing, times
+ *                                               reply: STATUS_OK, simulated[nStates][nTimes]
+ *                                                   or STATUS_ERROR, message
+ * SHUTDOWN                                      no reply; the worker exits
+ * </pre>
+ */
+final class ExternalModelProtocol {
+	
+	static final int VERSION = 2;
+	static final int PING = 1;
+	static final int PONG = 2;
+	static final int EVALUATE = 3;
+	static final int SHUTDOWN = 4;
+	static final int STATUS_OK = 0;
+	static final int STATUS_ERROR = 1;
+	static final int MAX_MESSAGE_LENGTH = 1<<20;
+	
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	
+	private ExternalModelProtocol(){
+	}
+	
+	static void writeArray(DataOutputStream out, double[] values) throws IOException {
+		out.writeInt(values.length);
+		for (int i=0;i<values.length;i++){
+			out.writeDouble(values[i]);
+		}
+	}
+	
+	static double[] readArray(DataInputStream in) throws IOException {
+		return readArray(in, Integer.MAX_VALUE);
+	}
+	
+	static double[] readArray(DataInputStream in, int maxLength) throws IOException {
+		int n = in.readInt();
+		if (n<0 || n>maxLength){
+			throw new IOException("Invalid array length "+n+".");
+		}
+		double[] values = new double[n];
+		for (int i=0;i<n;i++){
+			values[i] = in.readDouble();
+		}
+		return values;
+	}
+	
+	static void writeMatrix(DataOutputStream out, double[][] values) throws IOException {
+		int nRows = values.length;
+		int nCols = nRows==0 ? 0 : values[0].length;
+		out.writeInt(nRows);
+		out.writeInt(nCols);
+		for (int iRow=0;iRow<nRows;iRow++){
+			for (int iCol=0;iCol<nCols;iCol++){
+				out.writeDouble(values[iRow][iCol]);
+			}
+		}
+	}
+	
+	static double[][] readMatrix(DataInputStream in) throws IOException {
+		int nRows = in.readInt();
+		int nCols = in.readInt();
+		if (nRows<0 || nCols<0){
+			throw new IOException("Invalid matrix size "+nRows+" x "+nCols+".");
+		}
+		double[][] values = new double[nRows][nCols];
+		for (int iRow=0;iRow<nRows;iRow++){
+			for (int iCol=0;iCol<nCols;iCol++){
+				values[iRow][iCol] = in.readDouble();
+			}
+		}
+		return values;
+	}
+
+	static void writeMessage(DataOutputStream out, String message) throws IOException {
+		byte[] bytes = message.getBytes(UTF8);
+		int length = bytes.length;
+		if (length>MAX_MESSAGE_LENGTH){
+			// cut off before a character, not in the middle of one
+			length = MAX_MESSAGE_LENGTH;
+			while (length>0 && (bytes[length] & 0xC0)==0x80){
+				length--;
+			}
+		}
+		out.writeInt(length);
+		out.write(bytes, 0, length);
+	}
+	
+	static String readMessage(DataInputStream in) throws IOException {
+		int length = in.readInt();
+		if (length<0 || length>MAX_MESSAGE_LENGTH){
+			throw new IOException("Invalid message length "+length+".");
+		}
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, UTF8);
+	}
+
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyrighted 2012-2013 Netherlands eScience Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").  
+ * You may not use this file except in compliance with the License. 
+ * For details, see the LICENCE.txt file location in the root directory of this 
+ * distribution or obtain the Apache License at the following location: 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ * 
+ * For the full license, see: LICENCE.txt (located in the root folder of this distribution). 
+ * ---
+ */
+
+package nl.esciencecenter.diffevo.external;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+/**
+ * The worker side of the ExternalModelProtocol, for models written in Java. A legacy executable can be 
+ * wrapped by implementing evaluate and calling serve from main, which answers requests on stdin and stdout
+ * until the pool shuts the worker down or closes its stdin. Executables in other languages implement the 
+ * same protocol directly.
+ */
+public abstract class ExternalModelWorker {
+	
+	/**
+	 * Simulates the model, returning simulated[nStates][nTimes]. Exceptions are reported back to the pool, 
+	 * after which the worker carries on with the next request.
+	 */
+	protected abstract double[][] evaluate(double[] initState, double[] parameterVector, double[] forcing, double[] times);
+	
+	/**
+	 * Serves requests on the standard streams. Anything the model prints to System.out is redirected to 
+	 * System.err, so that it does not corrupt the protocol.
+	 */
+	public void serve() throws IOException {
+		PrintStream stdout = System.out;
+		System.setOut(System.err);
+		serve(System.in, stdout);
+	}
+	
+	public void serve(InputStream inputStream, OutputStream outputStream) throws IOException {
+		
+		DataInputStream in = new DataInputStream(new BufferedInputStream(inputStream));
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(outputStream));
+		
+		while (true){
+			int messageType;
+			try {
+				messageType = in.readInt();
+			} catch (EOFException e) {
+				return;
+			}
+			switch (messageType){
+			case ExternalModelProtocol.PING:
+				out.writeInt(ExternalModelProtocol.PONG);
+				out.writeInt(ExternalModelProtocol.VERSION);
+				break;
+			case ExternalModelProtocol.EVALUATE:
+				double[] initState = ExternalModelProtocol.readArray(in);
+				double[] parameterVector = ExternalModelProtocol.readArray(in);
+				double[] forcing = ExternalModelProtocol.readArray(in);
+				double[] times = ExternalModelProtocol.readArray(in);
+				double[][] simulated;
+				try {
+					simulated = evaluate(initState, parameterVector, forcing, times);
+				} catch (RuntimeException e) {
+					out.writeInt(ExternalModelProtocol.STATUS_ERROR);
+					ExternalModelProtocol.writeMessage(out, String.valueOf(e.getMessage()));
+					break;
+				}
+				out.writeInt(ExternalModelProtocol.STATUS_OK);
+				ExternalModelProtocol.writeMatrix(out, simulated);
+				break;
+			case ExternalModelProtocol.SHUTDOWN:
+				return;
+			default:
+				throw new IOException("Unknown message type "+messageType+".");
+			}
+			out.flush();
+		}
+	}
+
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyrighted 2012-2013 Netherlands eScience Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").  
+ * You may not use this file except in compliance with the License. 
+ * For details, see the LICENCE.txt file location in the root directory of this 
+ * distribution or obtain the Apache License at the following location: 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ * 
+ * For the full license, see: LICENCE.txt (located in the root folder of this distribution). 
+ * ---
+ */
+
+package nl.esciencecenter.diffevo.external;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A pool of long-lived worker processes that run an external model, started as they are first needed and
+ * reused for all later evaluations. Each evaluation borrows an idle worker, or waits for one if nWorkers 
+ * are already busy, so the pool can be used from several threads at once. The workers talk the 
+ * ExternalModelProtocol over their stdin and stdout; their stderr goes to the stderr of this process.
+ * 
+ * Every new worker has to answer a ping before it is used. A worker that crashes is replaced, and the 
+ * evaluation is tried once more on another worker. A worker that does not reply within the timeout is 
+ * killed and replaced too, but the evaluation is not repeated, since a model that hangs on a parameter 
+ * vector is likely to hang again. Errors that the model reports itself are passed on without a restart. 
+ * All failures surface as an IllegalStateException. Workers also exit by themselves when this process 
+ * ends, as their stdin is then closed.
+ */
+public class WorkerPool {
+	
+	private static final int MAX_ATTEMPTS = 2;
+	private static final long POLL_INTERVAL_MILLIS = 100;
+	private final List<String> command;
+	private final int nWorkers;
+	private final long timeoutMillis;
+	private final LinkedBlockingQueue<WorkerProcess> idleWorkers;
+	private final ScheduledExecutorService scheduler;
+	private int nStarted;
+	private int nRestarts;
+	private boolean closed;
+	
+	public WorkerPool(List<String> command, int nWorkers, long timeoutMillis){
+		if (nWorkers<1){
+			throw new IllegalArgumentException("The number of workers should be at least 1.");
+		}
+		this.command = new ArrayList<String>(command);
+		this.nWorkers = nWorkers;
+		this.timeoutMillis = timeoutMillis;
+		this.idleWorkers = new LinkedBlockingQueue<WorkerProcess>();
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory(){
+			public Thread newThread(Runnable runnable){
+				Thread thread = new Thread(runnable, "worker-pool-timer");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		this.nStarted = 0;
+		this.nRestarts = 0;
+		this.closed = false;
+	}
+	
+	public double[][] evaluate(double[] initState, double[] parameterVector, double[] forcing, double[] times){
+		
+		IOException lastException = null;
+		for (int iAttempt=0;iAttempt<MAX_ATTEMPTS;iAttempt++){
+			WorkerProcess worker = borrow();
+			try {
+				double[][] simulated = worker.evaluate(initState, parameterVector, forcing, times);
+				release(worker);
+				return simulated;
+			} catch (WorkerProcess.WorkerErrorException e) {
+				release(worker);
+				throw new IllegalStateException("External model failed: "+e.getMessage(), e);
+			} catch (IOException e) {
+				discard(worker);
+				if (worker.hasTimedOut()){
+					throw new IllegalStateException("External model did not reply within "+timeoutMillis+" ms.", e);
+				}
+				lastException = e;
+			}
+		}
+		throw new IllegalStateException("External model worker crashed.", lastException);
+	}
+	
+	/**
+	 * Pings the idle workers, and discards those that do not reply. Returns the number of workers that were
+	 * discarded; they are replaced when they are next needed.
+	 */
+	public int checkHealth(){
+		List<WorkerProcess> workers = new ArrayList<WorkerProcess>();
+		idleWorkers.drainTo(workers);
+		int nDiscarded = 0;
+		for (WorkerProcess worker : workers){
+			try {
+				worker.ping();
+				release(worker);
+			} catch (IOException e) {
+				discard(worker);
+				nDiscarded++;
+			}
+		}
+		return nDiscarded;
+	}
+	
+	private WorkerProcess borrow(){
+		
+		while (true){
+			synchronized (this){
+				if (closed){
+					throw new IllegalStateException("The worker pool has been closed.");
+				}
+			}
+			WorkerProcess worker = idleWorkers.poll();
+			if (worker==null){
+				// start a new worker if there is room for one, which is also the case after a busy worker was discarded
+				boolean startWorker = false;
+				synchronized (this){
+					if (nStarted<nWorkers){
+						nStarted++;
+						startWorker = true;
+					}
+				}
+				if (startWorker){
+					return startWorker();
+				}
+				try {
+					worker = idleWorkers.poll(POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IllegalStateException("Interrupted while waiting for a worker.", e);
+				}
+			}
+			if (worker!=null){
+				if (worker.isAlive()){
+					return worker;
+				}
+				discard(worker);
+			}
+		}
+	}
+	
+	private WorkerProcess startWorker(){
+		WorkerProcess worker = null;
+		try {
+			worker = new WorkerProcess(command, scheduler, timeoutMillis);
+			worker.ping();
+			return worker;
+		} catch (IOException e) {
+			if (worker!=null){
+				worker.destroy();
+			}
+			synchronized (this){
+				nStarted--;
+			}
+			throw new IllegalStateException("Could not start external model worker "+command+".", e);
+		}
+	}
+	
+	private void release(WorkerProcess worker){
+		boolean shutdown;
+		synchronized (this){
+			shutdown = closed;
+			if (shutdown){
+				nStarted--;
+			}
+		}
+		if (shutdown){
+			worker.shutdown();
+		}
+		else {
+			idleWorkers.add(worker);
+		}
+	}
+	
+	private void discard(WorkerProcess worker){
+		worker.destroy();
+		synchronized (this){
+			nStarted--;
+			nRestarts++;
+		}
+	}
+	
+	/**
+	 * Returns the number of workers that had to be discarded because they crashed, hung or failed a health check.
+	 */
+	public synchronized int getnRestarts(){
+		return nRestarts;
+	}
+	
+	public synchronized int getnStarted(){
+		return nStarted;
+	}
+	
+	/**
+	 * Shuts down the idle workers; busy workers are shut down when their evaluation has finished.
+	 */
+	public void close(){
+		synchronized (this){
+			closed = true;
+		}
+		List<WorkerProcess> workers = new ArrayList<WorkerProcess>();
+		idleWorkers.drainTo(workers);
+		for (WorkerProcess worker : workers){
+			synchronized (this){
+				nStarted--;
+			}
+			worker.shutdown();
+		}
+		scheduler.shutdownNow();
+	}
+
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyrighted 2012-2013 Netherlands eScience Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").  
+ * You may not use this file except in compliance with the License. 
+ * For details, see the LICENCE.txt file location in the root directory of this 
+ * distribution or obtain the Apache License at the following location: 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ * 
+ * For the full license, see: LICENCE.txt (located in the root folder of this distribution). 
+ * ---
+ */
+
+package nl.esciencecenter.diffevo.external;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.ProcessBuilder.Redirect;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One worker process of a WorkerPool. A request that does not get its reply within the timeout kills the 
+ * process, which makes the blocked read fail. A WorkerProcess is used by one thread at a time.
+ */
+class WorkerProcess {
+	
+	private final Process process;
+	private final DataInputStream in;
+	private final DataOutputStream out;
+	private final ScheduledExecutorService scheduler;
+	private final long timeoutMillis;
+	private volatile boolean timedOut;
+	
+	WorkerProcess(List<String> command, ScheduledExecutorService scheduler, long timeoutMillis) throws IOException {
+		ProcessBuilder processBuilder = new ProcessBuilder(command);
+		processBuilder.redirectError(Redirect.INHERIT);
+		this.process = processBuilder.start();
+		this.in = new DataInputStream(new BufferedInputStream(process.getInputStream()));
+		this.out = new DataOutputStream(new BufferedOutputStream(process.getOutputStream()));
+		this.scheduler = scheduler;
+		this.timeoutMillis = timeoutMillis;
+		this.timedOut = false;
+	}
+	
+	boolean isAlive(){
+		return process.isAlive();
+	}
+	
+	boolean hasTimedOut(){
+		return timedOut;
+	}
+	
+	void ping() throws IOException {
+		ScheduledFuture<?> timer = startTimer();
+		try {
+			out.writeInt(ExternalModelProtocol.PING);
+			out.flush();
+			int reply = in.readInt();
+			int version = in.readInt();
+			if (reply!=ExternalModelProtocol.PONG || version!=ExternalModelProtocol.VERSION){
+				throw new IOException("Worker does not speak protocol version "+ExternalModelProtocol.VERSION+".");
+			}
+		}
+		finally {
+			timer.cancel(false);
+		}
+	}
+	
+	/**
+	 * Returns the simulation, or throws a WorkerErrorException if the model reported an error, or an 
+	 * IOException if the worker died or timed out.
+	 */
+	double[][] evaluate(double[] initState, double[] parameterVector, double[] forcing, double[] times) throws IOException {
+		ScheduledFuture<?> timer = startTimer();
+		try {
+			out.writeInt(ExternalModelProtocol.EVALUATE);
+			ExternalModelProtocol.writeArray(out, initState);
+			ExternalModelProtocol.writeArray(out, parameterVector);
+			ExternalModelProtocol.writeArray(out, forcing);
+			ExternalModelProtocol.writeArray(out, times);
+			out.flush();
+			int status = in.readInt();
+			if (status==ExternalModelProtocol.STATUS_ERROR){
+				throw new WorkerErrorException(ExternalModelProtocol.readMessage(in));
+			}
+			if (status!=ExternalModelProtocol.STATUS_OK){
+				throw new IOException("Unknown status "+status+".");
+			}
+			return ExternalModelProtocol.readMatrix(in);
+		}
+		finally {
+			timer.cancel(false);
+		}
+	}
+	
+	private ScheduledFuture<?> startTimer(){
+		return scheduler.schedule(new Runnable(){
+			public void run(){
+				timedOut = true;
+				process.destroyForcibly();
+			}
+		}, timeoutMillis, TimeUnit.MILLISECONDS);
+	}
+	
+	void shutdown(){
+		try {
+			out.writeInt(ExternalModelProtocol.SHUTDOWN);
+			out.close();
+			if (!process.waitFor(1, TimeUnit.SECONDS)){
+				process.destroyForcibly();
+			}
+		} catch (IOException e) {
+			process.destroyForcibly();
+		} catch (InterruptedException e) {
+			process.destroyForcibly();
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	void destroy(){
+		process.destroyForcibly();
+	}
+	
+	
+	static class WorkerErrorException extends IOException {
+		private static final long serialVersionUID = 1L;
+		WorkerErrorException(String message){
+			super(message);
+		}
+	}
+
+}
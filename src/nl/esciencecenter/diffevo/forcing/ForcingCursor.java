@@ -0,0 +1,53 @@
+/*
+ * Copyrighted 2012-2013 Netherlands eScience Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").  
+ * You may not use this file except in compliance with the License. 
+ * For details, see the LICENCE.txt file location in the root directory of this 
+ * distribution or obtain the Apache License at the following location: 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ * 
+ * For the full license, see: LICENCE.txt (located in the root folder of this distribution). 
+ * ---
+ */
+
+package nl.esciencecenter.diffevo.forcing;
+
+/**
+ * Evaluates a ForcingTable while remembering the interval of the previous lookup, so that a model that 
+ * steps forward through time finds each value in constant amortized time. A cursor holds mutable state, 
+ * and belongs to a single model instance.
+ */
+public class ForcingCursor {
+	
+	private final ForcingTable forcingTable;
+	private int iInterval;
+	
+	public ForcingCursor(ForcingTable forcingTable){
+		this.forcingTable = forcingTable;
+		this.iInterval = 0;
+	}
+	
+	/**
+	 * Moves the cursor to the given interval, e.g. to the start of a chunk.
+	 */
+	public void reset(int iInterval){
+		this.iInterval = iInterval;
+	}
+	
+	public double getValue(double time){
+		iInterval = forcingTable.locate(time, iInterval);
+		return forcingTable.getValue(iInterval, time);
+	}
+	
+	public ForcingTable getForcingTable(){
+		return forcingTable;
+	}
+
+}
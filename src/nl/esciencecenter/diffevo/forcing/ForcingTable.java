@@ -0,0 +1,175 @@
+/*
+ * Copyrighted 2012-2013 Netherlands eScience Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").  
+ * You may not use this file except in compliance with the License. 
+ * For details, see the LICENCE.txt file location in the root directory of this 
+ * distribution or obtain the Apache License at the following location: 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ * 
+ * For the full license, see: LICENCE.txt (located in the root folder of this distribution). 
+ * ---
+ */
+
+package nl.esciencecenter.diffevo.forcing;
+
+/**
+ * A forcing series that can be evaluated at any time. The polynomial coefficients of every interval are 
+ * calculated once, when the table is made; after that the table is read-only, and can be shared by any 
+ * number of threads. Lookups go through a ForcingCursor, one per model instance. 
+ * 
+ * Before the first time, the forcing equals the first value; from the last time onwards, it equals the 
+ * last value. With STEP interpolation, forcing[iTime] applies from times[iTime] up to, but not including, 
+ * times[iTime+1].
+ */
+public class ForcingTable {
+	
+	private final double[] times;
+	private final double[] forcing;
+	private final double[] knots;
+	private final double[] values;
+	private final double[] c1;
+	private final double[] c2;
+	private final double[] c3;
+	private final int nIntervals;
+	private final Interpolation interpolation;
+	
+	/**
+	 * Makes the table for forcing[iTime] given at times[iTime]. The times should be strictly increasing.
+	 */
+	public ForcingTable(double[] times, double[] forcing, Interpolation interpolation){
+		
+		if (times.length!=forcing.length){
+			throw new IllegalArgumentException("The forcing has "+forcing.length+" values for "+times.length+" times.");
+		}
+		this.times = times;
+		this.forcing = forcing;
+		this.knots = times.clone();
+		this.values = forcing.clone();
+		this.interpolation = interpolation;
+		this.nIntervals = Math.max(0, times.length-1);
+		this.c1 = new double[nIntervals];
+		this.c2 = new double[nIntervals];
+		this.c3 = new double[nIntervals];
+		
+		switch (interpolation){
+		case LINEAR:
+			for (int i=0;i<nIntervals;i++){
+				c1[i] = (values[i+1]-values[i])/(knots[i+1]-knots[i]);
+			}
+			break;
+		case SPLINE:
+			calcSplineCoefficients();
+			break;
+		default:
+			break;
+		}
+	}
+	
+	private void calcSplineCoefficients(){
+		
+		int n = knots.length;
+		if (n<3){
+			for (int i=0;i<nIntervals;i++){
+				c1[i] = (values[i+1]-values[i])/(knots[i+1]-knots[i]);
+			}
+			return;
+		}
+		
+		// second derivatives of the natural spline, which are zero at both ends, from the tridiagonal system
+		// h[i-1] m[i-1] + 2 (h[i-1]+h[i]) m[i] + h[i] m[i+1] = 6 (slope[i] - slope[i-1]), solved by the Thomas algorithm
+		double[] h = new double[nIntervals];
+		double[] slopes = new double[nIntervals];
+		for (int i=0;i<nIntervals;i++){
+			h[i] = knots[i+1]-knots[i];
+			slopes[i] = (values[i+1]-values[i])/h[i];
+		}
+		double[] m = new double[n];
+		double[] diagonal = new double[n];
+		double[] rhs = new double[n];
+		for (int i=1;i<n-1;i++){
+			diagonal[i] = 2*(h[i-1]+h[i]);
+			rhs[i] = 6*(slopes[i]-slopes[i-1]);
+			if (i>1){
+				double factor = h[i-1]/diagonal[i-1];
+				diagonal[i] = diagonal[i] - factor * h[i-1];
+				rhs[i] = rhs[i] - factor * rhs[i-1];
+			}
+		}
+		for (int i=n-2;i>=1;i--){
+			m[i] = (rhs[i] - h[i] * m[i+1])/diagonal[i];
+		}
+		
+		for (int i=0;i<nIntervals;i++){
+			c1[i] = slopes[i] - h[i] * (2*m[i] + m[i+1])/6;
+			c2[i] = m[i]/2;
+			c3[i] = (m[i+1]-m[i])/(6*h[i]);
+		}
+	}
+	
+	public boolean isFor(double[] times, double[] forcing){
+		return this.times==times && this.forcing==forcing;
+	}
+	
+	public Interpolation getInterpolation(){
+		return interpolation;
+	}
+	
+	public int getnIntervals(){
+		return nIntervals;
+	}
+	
+	public ForcingCursor createCursor(){
+		return new ForcingCursor(this);
+	}
+	
+	/**
+	 * Returns the index of the interval that contains time, starting the search at iIntervalHint. The search 
+	 * walks forward from the hint, which is cheap when successive times increase slowly, and falls back on 
+	 * bisection when time lies before the hint.
+	 */
+	int locate(double time, int iIntervalHint){
+		
+		if (nIntervals==0){
+			return 0;
+		}
+		int iInterval = Math.min(Math.max(iIntervalHint, 0), nIntervals-1);
+		if (time<knots[iInterval]){
+			int iLow = 0;
+			int iHigh = iInterval;
+			while (iLow<iHigh){
+				int iMid = (iLow+iHigh+1) >>> 1;
+				if (knots[iMid]<=time){
+					iLow = iMid;
+				}
+				else {
+					iHigh = iMid-1;
+				}
+			}
+			return iLow;
+		}
+		while (iInterval<nIntervals-1 && time>=knots[iInterval+1]){
+			iInterval++;
+		}
+		return iInterval;
+	}
+	
+	double getValue(int iInterval, double time){
+		
+		if (nIntervals==0 || time<=knots[0]){
+			return values[0];
+		}
+		if (time>=knots[nIntervals]){
+			return values[nIntervals];
+		}
+		double dt = time - knots[iInterval];
+		return values[iInterval] + dt * (c1[iInterval] + dt * (c2[iInterval] + dt * c3[iInterval]));
+	}
+	
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyrighted 2012-2013 Netherlands eScience Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").  
+ * You may not use this file except in compliance with the License. 
+ * For details, see the LICENCE.txt file location in the root directory of this 
+ * distribution or obtain the Apache License at the following location: 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ * 
+ * For the full license, see: LICENCE.txt (located in the root folder of this distribution). 
+ * ---
+ */
+
+package nl.esciencecenter.diffevo.forcing;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Shares the ForcingTable of a times and forcing array between the reusable models of a factory, which 
+ * typically run on different worker threads, so that the table of the shared arrays of a TimeChunks and a 
+ * ForcingChunks is built only once. Tables are read-only, so the cache publishes them without locking; 
+ * threads that miss at the same time may each build a table, of which the last one is kept. A model holds 
+ * on to the table it used last, and only asks the cache when it is reset to different arrays.
+ */
+public class ForcingTableCache {
+	
+	private final Interpolation interpolation;
+	private final AtomicReference<ForcingTable> forcingTable;
+	
+	public ForcingTableCache(Interpolation interpolation){
+		this.interpolation = interpolation;
+		this.forcingTable = new AtomicReference<ForcingTable>();
+	}
+	
+	public ForcingTable get(double[] times, double[] forcing){
+		ForcingTable table = forcingTable.get();
+		if (table==null || !table.isFor(times, forcing)){
+			table = new ForcingTable(times, forcing, interpolation);
+			forcingTable.set(table);
+		}
+		return table;
+	}
+	
+	public Interpolation getInterpolation(){
+		return interpolation;
+	}
+
+}
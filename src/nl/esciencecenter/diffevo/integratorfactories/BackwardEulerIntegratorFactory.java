@@ -0,0 +1,25 @@
+package nl.esciencecenter.diffevo.integratorfactories;
+
+import nl.esciencecenter.diffevo.integrators.BackwardEulerIntegrator;
+import nl.esciencecenter.diffevo.integrators.Integrator;
+
+
+public class BackwardEulerIntegratorFactory implements IntegratorFactory{
+
+	private final double maxStepSize;
+	
+	public BackwardEulerIntegratorFactory(){
+		this(Double.POSITIVE_INFINITY);
+	}
+
+	public BackwardEulerIntegratorFactory(double maxStepSize){
+		this.maxStepSize = maxStepSize;
+	}
+
+	public Integrator create() {
+		Integrator integrator = new BackwardEulerIntegrator(maxStepSize);
+
+		return integrator;
+	}
+
+}
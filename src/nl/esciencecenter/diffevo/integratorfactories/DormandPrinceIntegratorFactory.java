@@ -0,0 +1,27 @@
+package nl.esciencecenter.diffevo.integratorfactories;
+
+import nl.esciencecenter.diffevo.integrators.DormandPrinceIntegrator;
+import nl.esciencecenter.diffevo.integrators.Integrator;
+
+
+public class DormandPrinceIntegratorFactory implements IntegratorFactory{
+
+	private final double relTol;
+	private final double absTol;
+	
+	public DormandPrinceIntegratorFactory(){
+		this(1e-6, 1e-9);
+	}
+
+	public DormandPrinceIntegratorFactory(double relTol, double absTol){
+		this.relTol = relTol;
+		this.absTol = absTol;
+	}
+
+	public Integrator create() {
+		Integrator integrator = new DormandPrinceIntegrator(relTol, absTol);
+
+		return integrator;
+	}
+
+}
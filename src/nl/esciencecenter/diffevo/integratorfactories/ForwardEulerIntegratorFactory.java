@@ -0,0 +1,15 @@
+package nl.esciencecenter.diffevo.integratorfactories;
+
+import nl.esciencecenter.diffevo.integrators.ForwardEulerIntegrator;
+import nl.esciencecenter.diffevo.integrators.Integrator;
+
+
+public class ForwardEulerIntegratorFactory implements IntegratorFactory{
+
+	public Integrator create() {
+		Integrator integrator = new ForwardEulerIntegrator();
+
+		return integrator;
+	}
+
+}
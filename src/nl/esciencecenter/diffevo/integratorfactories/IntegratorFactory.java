@@ -0,0 +1,9 @@
+package nl.esciencecenter.diffevo.integratorfactories;
+
+import nl.esciencecenter.diffevo.integrators.Integrator;
+
+public interface IntegratorFactory {
+	
+	Integrator create();
+
+}
@@ -0,0 +1,25 @@
+package nl.esciencecenter.diffevo.integratorfactories;
+
+import nl.esciencecenter.diffevo.integrators.Integrator;
+import nl.esciencecenter.diffevo.integrators.RungeKutta4Integrator;
+
+
+public class RungeKutta4IntegratorFactory implements IntegratorFactory{
+
+	private final double maxStepSize;
+	
+	public RungeKutta4IntegratorFactory(){
+		this(Double.POSITIVE_INFINITY);
+	}
+
+	public RungeKutta4IntegratorFactory(double maxStepSize){
+		this.maxStepSize = maxStepSize;
+	}
+
+	public Integrator create() {
+		Integrator integrator = new RungeKutta4Integrator(maxStepSize);
+
+		return integrator;
+	}
+
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyrighted 2012-2013 Netherlands eScience Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").  
+ * You may not use this file except in compliance with the License. 
+ * For details, see the LICENCE.txt file location in the root directory of this 
+ * distribution or obtain the Apache License at the following location: 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ * 
+ * For the full license, see: LICENCE.txt (located in the root folder of this distribution). 
+ * ---
+ */
+
+package nl.esciencecenter.diffevo.integrators;
+
+/**
+ * Implicit (backward) Euler for stiff systems. Each step solves x1 = x0 + h * f(t1,x1) by Newton 
+ * iteration. The Jacobian is taken from the system if it implements JacobianOdeSystem, and is otherwise 
+ * approximated by forward differences. Being L-stable, the method stays stable for any step size, so 
+ * maxStepSize only needs to be chosen with accuracy in mind.
+ */
+public class BackwardEulerIntegrator implements Integrator {
+
+	private static final int DEFAULT_MAX_ITERATIONS = 20;
+	
+	private final double maxStepSize;
+	private final double tolerance;
+	private final int maxIterations;
+	private double[] derivatives;
+	private double[] derivativesPerturbed;
+	private double[] stateOld;
+	private double[] residual;
+	private double[][] jacobian;
+	private double[][] matrix;
+	private int[] pivots;
+	
+	public BackwardEulerIntegrator(){
+		// one step per output interval
+		this(Double.POSITIVE_INFINITY);
+	}
+
+	public BackwardEulerIntegrator(double maxStepSize){
+		this(maxStepSize, 1e-10, DEFAULT_MAX_ITERATIONS);
+	}
+
+	public BackwardEulerIntegrator(double maxStepSize, double tolerance, int maxIterations){
+		this.maxStepSize = maxStepSize;
+		this.tolerance = tolerance;
+		this.maxIterations = maxIterations;
+		allocate(0);
+	}
+	
+	private void allocate(int nStates){
+		derivatives = new double[nStates];
+		derivativesPerturbed = new double[nStates];
+		stateOld = new double[nStates];
+		residual = new double[nStates];
+		jacobian = new double[nStates][nStates];
+		matrix = new double[nStates][nStates];
+		pivots = new int[nStates];
+	}
+
+	public String getName(){
+		return BackwardEulerIntegrator.class.getSimpleName();
+	}
+	
+	@Override
+	public void integrate(OdeSystem system, double[] state, double[] times, int iTimeStart, int nTimes, double[][] simulated) {
+		
+		int nStates = system.getnStates();
+		if (derivatives.length<nStates){
+			allocate(nStates);
+		}
+		
+		for (int iState=0;iState<nStates;iState++){
+			simulated[iState][iTimeStart] = state[iState];
+		}
+		
+		int iTimeEnd = iTimeStart + nTimes - 1;
+		for (int iTime=iTimeStart;iTime<iTimeEnd;iTime++){
+			double interval = times[iTime+1]-times[iTime];
+			int nSteps = Math.max(1, (int) Math.ceil(interval/maxStepSize));
+			double stepSize = interval/nSteps;
+			for (int iStep=0;iStep<nSteps;iStep++){
+				step(system, times[iTime] + (iStep+1)*stepSize, state, stepSize, nStates);
+			}
+			for (int iState=0;iState<nStates;iState++){
+				simulated[iState][iTime+1] = state[iState];
+			}
+		}
+	}
+	
+	private void step(OdeSystem system, double timeNew, double[] state, double h, int nStates){
+		
+		System.arraycopy(state, 0, stateOld, 0, nStates);
+		
+		// explicit Euler predictor
+		system.calcDerivatives(timeNew - h, state, derivatives);
+		for (int i=0;i<nStates;i++){
+			state[i] = stateOld[i] + h * derivatives[i];
+		}
+		
+		for (int iIteration=0;iIteration<maxIterations;iIteration++){
+			
+			// residual of x1 - x0 - h * f(t1,x1) = 0
+			system.calcDerivatives(timeNew, state, derivatives);
+			for (int i=0;i<nStates;i++){
+				residual[i] = -(state[i] - stateOld[i] - h * derivatives[i]);
+			}
+			
+			// Newton matrix I - h * J
+			calcJacobian(system, timeNew, state, nStates);
+			for (int i=0;i<nStates;i++){
+				for (int j=0;j<nStates;j++){
+					matrix[i][j] = (i==j ? 1.0 : 0.0) - h * jacobian[i][j];
+				}
+			}
+			LinearSolver.decompose(matrix, pivots, nStates);
+			LinearSolver.solve(matrix, pivots, residual, nStates);
+			
+			double norm = 0;
+			for (int i=0;i<nStates;i++){
+				state[i] = state[i] + residual[i];
+				norm = Math.max(norm, Math.abs(residual[i])/(1.0 + Math.abs(state[i])));
+			}
+			if (norm<=tolerance){
+				return;
+			}
+		}
+		throw new IllegalStateException("Newton iteration did not converge at time "+timeNew+".");
+	}
+	
+	private void calcJacobian(OdeSystem system, double time, double[] state, int nStates){
+		
+		if (system instanceof JacobianOdeSystem){
+			((JacobianOdeSystem) system).calcJacobian(time, state, jacobian);
+			return;
+		}
+		
+		// forward differences; derivatives already holds f(time,state)
+		for (int j=0;j<nStates;j++){
+			double stateOriginal = state[j];
+			double delta = Math.sqrt(Math.ulp(1.0)) * Math.max(1.0, Math.abs(stateOriginal));
+			state[j] = stateOriginal + delta;
+			system.calcDerivatives(time, state, derivativesPerturbed);
+			state[j] = stateOriginal;
+			for (int i=0;i<nStates;i++){
+				jacobian[i][j] = (derivativesPerturbed[i] - derivatives[i])/delta;
+			}
+		}
+	}
+
+}
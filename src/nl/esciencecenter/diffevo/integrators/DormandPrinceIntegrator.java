@@ -0,0 +1,207 @@
+/*
+ * Copyrighted 2012-2013 Netherlands eScience Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").  
+ * You may not use this file except in compliance with the License. 
+ * For details, see the LICENCE.txt file location in the root directory of this 
+ * distribution or obtain the Apache License at the following location: 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ * 
+ * For the full license, see: LICENCE.txt (located in the root folder of this distribution). 
+ * ---
+ */
+
+package nl.esciencecenter.diffevo.integrators;
+
+/**
+ * Adaptive explicit Runge-Kutta method of order 5(4) by Dormand and Prince (1980). The internal step size 
+ * is controlled by the local error estimate only: steps are shortened to land exactly on output times, but
+ * the step size that the error control proposed is carried over to the next output interval. Densely 
+ * sampled output times therefore do not force small steps, and sparse output times do not force large ones.
+ */
+public class DormandPrinceIntegrator implements Integrator {
+
+	private static final double C2 = 1.0/5, C3 = 3.0/10, C4 = 4.0/5, C5 = 8.0/9;
+	private static final double A21 = 1.0/5;
+	private static final double A31 = 3.0/40, A32 = 9.0/40;
+	private static final double A41 = 44.0/45, A42 = -56.0/15, A43 = 32.0/9;
+	private static final double A51 = 19372.0/6561, A52 = -25360.0/2187, A53 = 64448.0/6561, A54 = -212.0/729;
+	private static final double A61 = 9017.0/3168, A62 = -355.0/33, A63 = 46732.0/5247, A64 = 49.0/176, A65 = -5103.0/18656;
+	private static final double A71 = 35.0/384, A73 = 500.0/1113, A74 = 125.0/192, A75 = -2187.0/6784, A76 = 11.0/84;
+	private static final double E1 = 71.0/57600, E3 = -71.0/16695, E4 = 71.0/1920, E5 = -17253.0/339200, E6 = 22.0/525, E7 = -1.0/40;
+	
+	private static final double SAFETY = 0.9;
+	private static final double MIN_FACTOR = 0.2;
+	private static final double MAX_FACTOR = 10.0;
+	private static final int DEFAULT_MAX_STEPS = 100000;
+	
+	private final double relTol;
+	private final double absTol;
+	private final int maxSteps;
+	private double[] k1, k2, k3, k4, k5, k6, k7;
+	private double[] stateTmp;
+	private double[] stateNew;
+	private int nStepsAccepted;
+	private int nStepsRejected;
+	
+	public DormandPrinceIntegrator(){
+		this(1e-6, 1e-9);
+	}
+
+	public DormandPrinceIntegrator(double relTol, double absTol){
+		this(relTol, absTol, DEFAULT_MAX_STEPS);
+	}
+
+	public DormandPrinceIntegrator(double relTol, double absTol, int maxSteps){
+		this.relTol = relTol;
+		this.absTol = absTol;
+		this.maxSteps = maxSteps;
+		allocate(0);
+	}
+	
+	private void allocate(int nStates){
+		k1 = new double[nStates];
+		k2 = new double[nStates];
+		k3 = new double[nStates];
+		k4 = new double[nStates];
+		k5 = new double[nStates];
+		k6 = new double[nStates];
+		k7 = new double[nStates];
+		stateTmp = new double[nStates];
+		stateNew = new double[nStates];
+	}
+
+	public String getName(){
+		return DormandPrinceIntegrator.class.getSimpleName();
+	}
+	
+	@Override
+	public void integrate(OdeSystem system, double[] state, double[] times, int iTimeStart, int nTimes, double[][] simulated) {
+		
+		int nStates = system.getnStates();
+		if (k1.length<nStates){
+			allocate(nStates);
+		}
+		nStepsAccepted = 0;
+		nStepsRejected = 0;
+		
+		for (int iState=0;iState<nStates;iState++){
+			simulated[iState][iTimeStart] = state[iState];
+		}
+		if (nTimes<2){
+			return;
+		}
+		
+		int iTimeEnd = iTimeStart + nTimes - 1;
+		double time = times[iTimeStart];
+		system.calcDerivatives(time, state, k1);
+		double h = calcInitialStepSize(state, nStates, times[iTimeStart+1]-time);
+		
+		for (int iTime=iTimeStart;iTime<iTimeEnd;iTime++){
+			double timeOutput = times[iTime+1];
+			while (time<timeOutput){
+				if (nStepsAccepted+nStepsRejected>=maxSteps){
+					throw new IllegalStateException("Maximum number of steps ("+maxSteps+") exceeded at time "+time+".");
+				}
+				boolean clipped = time + h >= timeOutput;
+				double hStep = clipped ? timeOutput - time : h;
+				
+				double err = step(system, time, state, hStep, nStates);
+				double factor = err==0 ? MAX_FACTOR : Math.min(MAX_FACTOR, Math.max(MIN_FACTOR, SAFETY * Math.pow(err, -0.2)));
+				if (err<=1.0){
+					time = clipped ? timeOutput : time + hStep;
+					System.arraycopy(stateNew, 0, state, 0, nStates);
+					// first same as last: the last stage is the first stage of the next step
+					double[] tmp = k1;
+					k1 = k7;
+					k7 = tmp;
+					nStepsAccepted++;
+					// a step that was shortened to reach the output time does not shrink the step size
+					h = clipped ? Math.max(h, hStep * factor) : hStep * factor;
+				}
+				else {
+					nStepsRejected++;
+					h = hStep * Math.min(1.0, factor);
+				}
+			}
+			for (int iState=0;iState<nStates;iState++){
+				simulated[iState][iTime+1] = state[iState];
+			}
+		}
+	}
+	
+	private double calcInitialStepSize(double[] state, int nStates, double interval){
+		double d0 = 0;
+		double d1 = 0;
+		for (int iState=0;iState<nStates;iState++){
+			double scale = absTol + relTol * Math.abs(state[iState]);
+			d0 = d0 + Math.pow(state[iState]/scale, 2);
+			d1 = d1 + Math.pow(k1[iState]/scale, 2);
+		}
+		d0 = Math.sqrt(d0/Math.max(1, nStates));
+		d1 = Math.sqrt(d1/Math.max(1, nStates));
+		double h;
+		if (d0<1e-5 || d1<1e-5){
+			h = 1e-6 * interval;
+		}
+		else {
+			h = 0.01 * d0/d1;
+		}
+		return Math.min(h, interval);
+	}
+	
+	/**
+	 * Takes one step of size h from state, writing the result to stateNew. Returns the scaled error norm; 
+	 * the step is acceptable when the norm does not exceed 1.
+	 */
+	private double step(OdeSystem system, double time, double[] state, double h, int nStates){
+
+		for (int i=0;i<nStates;i++){
+			stateTmp[i] = state[i] + h * A21 * k1[i];
+		}
+		system.calcDerivatives(time + C2 * h, stateTmp, k2);
+		for (int i=0;i<nStates;i++){
+			stateTmp[i] = state[i] + h * (A31 * k1[i] + A32 * k2[i]);
+		}
+		system.calcDerivatives(time + C3 * h, stateTmp, k3);
+		for (int i=0;i<nStates;i++){
+			stateTmp[i] = state[i] + h * (A41 * k1[i] + A42 * k2[i] + A43 * k3[i]);
+		}
+		system.calcDerivatives(time + C4 * h, stateTmp, k4);
+		for (int i=0;i<nStates;i++){
+			stateTmp[i] = state[i] + h * (A51 * k1[i] + A52 * k2[i] + A53 * k3[i] + A54 * k4[i]);
+		}
+		system.calcDerivatives(time + C5 * h, stateTmp, k5);
+		for (int i=0;i<nStates;i++){
+			stateTmp[i] = state[i] + h * (A61 * k1[i] + A62 * k2[i] + A63 * k3[i] + A64 * k4[i] + A65 * k5[i]);
+		}
+		system.calcDerivatives(time + h, stateTmp, k6);
+		for (int i=0;i<nStates;i++){
+			stateNew[i] = state[i] + h * (A71 * k1[i] + A73 * k3[i] + A74 * k4[i] + A75 * k5[i] + A76 * k6[i]);
+		}
+		system.calcDerivatives(time + h, stateNew, k7);
+		
+		double sum = 0;
+		for (int i=0;i<nStates;i++){
+			double err = h * (E1 * k1[i] + E3 * k3[i] + E4 * k4[i] + E5 * k5[i] + E6 * k6[i] + E7 * k7[i]);
+			double scale = absTol + relTol * Math.max(Math.abs(state[i]), Math.abs(stateNew[i]));
+			sum = sum + Math.pow(err/scale, 2);
+		}
+		return Math.sqrt(sum/Math.max(1, nStates));
+	}
+
+	public int getnStepsAccepted() {
+		return nStepsAccepted;
+	}
+
+	public int getnStepsRejected() {
+		return nStepsRejected;
+	}
+
+}
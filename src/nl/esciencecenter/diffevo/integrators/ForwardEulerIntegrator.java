@@ -0,0 +1,60 @@
+/*
+ * Copyrighted 2012-2013 Netherlands eScience Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").  
+ * You may not use this file except in compliance with the License. 
+ * For details, see the LICENCE.txt file location in the root directory of this 
+ * distribution or obtain the Apache License at the following location: 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ * 
+ * For the full license, see: LICENCE.txt (located in the root folder of this distribution). 
+ * ---
+ */
+
+package nl.esciencecenter.diffevo.integrators;
+
+/**
+ * Explicit (forward) Euler, taking exactly one step per output interval.
+ */
+public class ForwardEulerIntegrator implements Integrator {
+
+	private double[] derivatives;
+	
+	public ForwardEulerIntegrator(){
+		this.derivatives = new double[0];
+	}
+	
+	public String getName(){
+		return ForwardEulerIntegrator.class.getSimpleName();
+	}
+
+	@Override
+	public void integrate(OdeSystem system, double[] state, double[] times, int iTimeStart, int nTimes, double[][] simulated) {
+		
+		int nStates = system.getnStates();
+		if (derivatives.length<nStates){
+			derivatives = new double[nStates];
+		}
+		
+		for (int iState=0;iState<nStates;iState++){
+			simulated[iState][iTimeStart] = state[iState];
+		}
+		
+		int iTimeEnd = iTimeStart + nTimes - 1;
+		for (int iTime=iTimeStart;iTime<iTimeEnd;iTime++){
+			double timeStep = times[iTime+1]-times[iTime];
+			system.calcDerivatives(times[iTime], state, derivatives);
+			for (int iState=0;iState<nStates;iState++){
+				state[iState] = state[iState] + derivatives[iState] * timeStep;
+				simulated[iState][iTime+1] = state[iState];
+			}
+		}
+	}
+
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyrighted 2012-2013 Netherlands eScience Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").  
+ * You may not use this file except in compliance with the License. 
+ * For details, see the LICENCE.txt file location in the root directory of this 
+ * distribution or obtain the Apache License at the following location: 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ * 
+ * For the full license, see: LICENCE.txt (located in the root folder of this distribution). 
+ * ---
+ */
+
+package nl.esciencecenter.diffevo.integrators;
+
+/**
+ * Integrates an OdeSystem over a series of output times. Implementations keep their work arrays between 
+ * calls, so an Integrator instance should not be shared between threads.
+ */
+public interface Integrator {
+	
+	/**
+	 * Integrates the system from times[iTimeStart] to times[iTimeStart+nTimes-1]. On entry, state holds 
+	 * the state at times[iTimeStart]; on exit, it holds the state at the last output time. The state at 
+	 * each output time is written to simulated[iState][iTime], for iTime from iTimeStart to 
+	 * iTimeStart+nTimes-1.
+	 */
+	void integrate(OdeSystem system, double[] state, double[] times, int iTimeStart, int nTimes, double[][] simulated);
+	
+	String getName();
+
+}
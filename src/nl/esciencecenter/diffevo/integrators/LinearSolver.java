@@ -0,0 +1,85 @@
+/*
+ * Copyrighted 2012-2013 Netherlands eScience Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").  
+ * You may not use this file except in compliance with the License. 
+ * For details, see the LICENCE.txt file location in the root directory of this 
+ * distribution or obtain the Apache License at the following location: 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ * 
+ * For the full license, see: LICENCE.txt (located in the root folder of this distribution). 
+ * ---
+ */
+
+package nl.esciencecenter.diffevo.integrators;
+
+/**
+ * In-place LU decomposition with partial pivoting, used by the implicit integrators. Works on the 
+ * leading n x n block of the arrays it is given, so callers can keep their work arrays.
+ */
+final class LinearSolver {
+	
+	private LinearSolver(){
+	}
+	
+	static void decompose(double[][] a, int[] pivots, int n){
+		for (int k=0;k<n;k++){
+			int iPivot = k;
+			double max = Math.abs(a[k][k]);
+			for (int i=k+1;i<n;i++){
+				if (Math.abs(a[i][k])>max){
+					max = Math.abs(a[i][k]);
+					iPivot = i;
+				}
+			}
+			if (max==0){
+				throw new IllegalStateException("Singular matrix.");
+			}
+			pivots[k] = iPivot;
+			if (iPivot!=k){
+				double[] row = a[k];
+				a[k] = a[iPivot];
+				a[iPivot] = row;
+			}
+			for (int i=k+1;i<n;i++){
+				a[i][k] = a[i][k]/a[k][k];
+				double factor = a[i][k];
+				for (int j=k+1;j<n;j++){
+					a[i][j] = a[i][j] - factor * a[k][j];
+				}
+			}
+		}
+	}
+
+	static void solve(double[][] lu, int[] pivots, double[] b, int n){
+		for (int k=0;k<n;k++){
+			int iPivot = pivots[k];
+			if (iPivot!=k){
+				double tmp = b[k];
+				b[k] = b[iPivot];
+				b[iPivot] = tmp;
+			}
+		}
+		for (int i=1;i<n;i++){
+			double sum = b[i];
+			for (int j=0;j<i;j++){
+				sum = sum - lu[i][j] * b[j];
+			}
+			b[i] = sum;
+		}
+		for (int i=n-1;i>=0;i--){
+			double sum = b[i];
+			for (int j=i+1;j<n;j++){
+				sum = sum - lu[i][j] * b[j];
+			}
+			b[i] = sum/lu[i][i];
+		}
+	}
+
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyrighted 2012-2013 Netherlands eScience Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").  
+ * You may not use this file except in compliance with the License. 
+ * For details, see the LICENCE.txt file location in the root directory of this 
+ * distribution or obtain the Apache License at the following location: 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ * 
+ * For the full license, see: LICENCE.txt (located in the root folder of this distribution). 
+ * ---
+ */
+
+package nl.esciencecenter.diffevo.integrators;
+
+/**
+ * Matrix exponential by scaling and squaring with a diagonal Pade approximant of degree 6 (Golub and 
+ * Van Loan, Matrix Computations, algorithm 11.3.1). Like the Integrators, an instance keeps its work 
+ * arrays and should not be shared between threads.
+ */
+public class MatrixExponential {
+	
+	private static final int PADE_DEGREE = 6;
+	private int n;
+	private double[][] scaled;
+	private double[][] power;
+	private double[][] numerator;
+	private double[][] denominator;
+	private double[][] tmp;
+	private double[] column;
+	private int[] pivots;
+	
+	public MatrixExponential(){
+		allocate(0);
+	}
+	
+	private void allocate(int n){
+		this.n = n;
+		scaled = new double[n][n];
+		power = new double[n][n];
+		numerator = new double[n][n];
+		denominator = new double[n][n];
+		tmp = new double[n][n];
+		column = new double[n];
+		pivots = new int[n];
+	}
+	
+	/**
+	 * Writes exp(matrix * scale) into result. Only the leading n x n blocks of matrix and result are used.
+	 */
+	public void calculate(double[][] matrix, double scale, int n, double[][] result){
+		
+		if (this.n!=n){
+			allocate(n);
+		}
+		
+		double norm = 0;
+		for (int i=0;i<n;i++){
+			double rowSum = 0;
+			for (int j=0;j<n;j++){
+				rowSum = rowSum + Math.abs(matrix[i][j] * scale);
+			}
+			norm = Math.max(norm, rowSum);
+		}
+		
+		// scale the matrix so that its norm is at most 1/2:
+		int nSquarings = 0;
+		if (norm>0.5){
+			nSquarings = Math.getExponent(norm) + 2;
+		}
+		double factor = Math.scalb(scale, -nSquarings);
+		for (int i=0;i<n;i++){
+			for (int j=0;j<n;j++){
+				scaled[i][j] = matrix[i][j] * factor;
+				power[i][j] = i==j ? 1 : 0;
+				numerator[i][j] = power[i][j];
+				denominator[i][j] = power[i][j];
+			}
+		}
+		
+		double c = 1;
+		for (int k=1;k<=PADE_DEGREE;k++){
+			c = c * (PADE_DEGREE-k+1) / ((2*PADE_DEGREE-k+1) * k);
+			multiply(scaled, power, tmp);
+			double[][] swap = power;
+			power = tmp;
+			tmp = swap;
+			double sign = k%2==0 ? 1 : -1;
+			for (int i=0;i<n;i++){
+				for (int j=0;j<n;j++){
+					numerator[i][j] = numerator[i][j] + c * power[i][j];
+					denominator[i][j] = denominator[i][j] + sign * c * power[i][j];
+				}
+			}
+		}
+		
+		// solve denominator * result = numerator, one column at a time:
+		LinearSolver.decompose(denominator, pivots, n);
+		for (int j=0;j<n;j++){
+			for (int i=0;i<n;i++){
+				column[i] = numerator[i][j];
+			}
+			LinearSolver.solve(denominator, pivots, column, n);
+			for (int i=0;i<n;i++){
+				result[i][j] = column[i];
+			}
+		}
+		
+		// undo the scaling:
+		for (int iSquaring=0;iSquaring<nSquarings;iSquaring++){
+			multiply(result, result, tmp);
+			for (int i=0;i<n;i++){
+				System.arraycopy(tmp[i], 0, result[i], 0, n);
+			}
+		}
+	}
+	
+	private void multiply(double[][] left, double[][] right, double[][] product){
+		for (int i=0;i<n;i++){
+			for (int j=0;j<n;j++){
+				double sum = 0;
+				for (int k=0;k<n;k++){
+					sum = sum + left[i][k] * right[k][j];
+				}
+				product[i][j] = sum;
+			}
+		}
+	}
+
+}
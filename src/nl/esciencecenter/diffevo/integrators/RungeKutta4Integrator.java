@@ -0,0 +1,103 @@
+/*
+ * Copyrighted 2012-2013 Netherlands eScience Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").  
+ * You may not use this file except in compliance with the License. 
+ * For details, see the LICENCE.txt file location in the root directory of this 
+ * distribution or obtain the Apache License at the following location: 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ * 
+ * For the full license, see: LICENCE.txt (located in the root folder of this distribution). 
+ * ---
+ */
+
+package nl.esciencecenter.diffevo.integrators;
+
+/**
+ * Classical fourth-order Runge-Kutta with a fixed step size. Each output interval is divided into the 
+ * smallest number of equal steps that are no larger than maxStepSize.
+ */
+public class RungeKutta4Integrator implements Integrator {
+
+	private final double maxStepSize;
+	private double[] k1;
+	private double[] k2;
+	private double[] k3;
+	private double[] k4;
+	private double[] stateTmp;
+	
+	public RungeKutta4Integrator(){
+		// one step per output interval
+		this(Double.POSITIVE_INFINITY);
+	}
+
+	public RungeKutta4Integrator(double maxStepSize){
+		this.maxStepSize = maxStepSize;
+		allocate(0);
+	}
+	
+	private void allocate(int nStates){
+		k1 = new double[nStates];
+		k2 = new double[nStates];
+		k3 = new double[nStates];
+		k4 = new double[nStates];
+		stateTmp = new double[nStates];
+	}
+	
+	public String getName(){
+		return RungeKutta4Integrator.class.getSimpleName();
+	}
+
+	@Override
+	public void integrate(OdeSystem system, double[] state, double[] times, int iTimeStart, int nTimes, double[][] simulated) {
+		
+		int nStates = system.getnStates();
+		if (k1.length<nStates){
+			allocate(nStates);
+		}
+		
+		for (int iState=0;iState<nStates;iState++){
+			simulated[iState][iTimeStart] = state[iState];
+		}
+		
+		int iTimeEnd = iTimeStart + nTimes - 1;
+		for (int iTime=iTimeStart;iTime<iTimeEnd;iTime++){
+			double interval = times[iTime+1]-times[iTime];
+			int nSteps = Math.max(1, (int) Math.ceil(interval/maxStepSize));
+			double stepSize = interval/nSteps;
+			for (int iStep=0;iStep<nSteps;iStep++){
+				step(system, times[iTime] + iStep*stepSize, state, stepSize, nStates);
+			}
+			for (int iState=0;iState<nStates;iState++){
+				simulated[iState][iTime+1] = state[iState];
+			}
+		}
+	}
+	
+	private void step(OdeSystem system, double time, double[] state, double h, int nStates){
+		
+		system.calcDerivatives(time, state, k1);
+		for (int iState=0;iState<nStates;iState++){
+			stateTmp[iState] = state[iState] + 0.5 * h * k1[iState];
+		}
+		system.calcDerivatives(time + 0.5 * h, stateTmp, k2);
+		for (int iState=0;iState<nStates;iState++){
+			stateTmp[iState] = state[iState] + 0.5 * h * k2[iState];
+		}
+		system.calcDerivatives(time + 0.5 * h, stateTmp, k3);
+		for (int iState=0;iState<nStates;iState++){
+			stateTmp[iState] = state[iState] + h * k3[iState];
+		}
+		system.calcDerivatives(time + h, stateTmp, k4);
+		for (int iState=0;iState<nStates;iState++){
+			state[iState] = state[iState] + h/6 * (k1[iState] + 2*k2[iState] + 2*k3[iState] + k4[iState]);
+		}
+	}
+
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyrighted 2012-2013 Netherlands eScience Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").  
+ * You may not use this file except in compliance with the License. 
+ * For details, see the LICENCE.txt file location in the root directory of this 
+ * distribution or obtain the Apache License at the following location: 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ * 
+ * For the full license, see: LICENCE.txt (located in the root folder of this distribution). 
+ * ---
+ */
+
+package nl.esciencecenter.diffevo.likelihoodfunctions;
+
+/**
+ * A likelihood function for dynamic models that can be calculated from consecutive pieces of the 
+ * simulation, so that the simulation does not have to be stored in full before it is scored.
+ */
+public interface IncrementalLikelihoodFunction extends LikelihoodFunction {
+	
+	/**
+	 * Starts the calculation of a new objective score.
+	 */
+	void reset();
+	
+	/**
+	 * Adds the residuals between obs[iState][iObsStart+i] and sim[iState][iSimStart+i], for i from 0 to nTimes-1.
+	 */
+	void accumulate(double[][] obs, int iObsStart, double[][] sim, int iSimStart, int nTimes);
+	
+	/**
+	 * Returns the objective score of everything that was accumulated since the last reset.
+	 */
+	double getObjScore();
+
+}
@@ -19,10 +19,13 @@
 
 package nl.esciencecenter.diffevo.likelihoodfunctions;
 
-public class LikelihoodFunctionSSR implements LikelihoodFunction {
+public class LikelihoodFunctionSSR implements IncrementalLikelihoodFunction {
 
+	private double ssr;
+	private int nObs;
 	
 	public LikelihoodFunctionSSR(){
+		reset();
 	}
 
 	public String getName(){
@@ -32,23 +35,39 @@ public class LikelihoodFunctionSSR implements LikelihoodFunction {
 	@Override
 	public double evaluate(double[][] obs, double[][] sim) {
 		
-		int nStates = obs.length;
 		int nTimes = obs[0].length;
-		double ssr = 0;
+		reset();
+		accumulate(obs, 1, sim, 1, nTimes-1);
+		return getObjScore();
+	}
+
+	@Override
+	public double evaluate(double[] parameterVector) {
+		return 0;
+	}
+
+	@Override
+	public void reset() {
+		ssr = 0;
+		nObs = 0;
+	}
+
+	@Override
+	public void accumulate(double[][] obs, int iObsStart, double[][] sim, int iSimStart, int nTimes) {
+		
+		int nStates = obs.length;
 		for (int iState=0;iState<nStates;iState++){
-			for (int iTime=1;iTime<nTimes;iTime++){
-				ssr = ssr + Math.pow(obs[iState][iTime] - sim[iState][iTime], 2);
+			for (int i=0;i<nTimes;i++){
+				ssr = ssr + Math.pow(obs[iState][iObsStart+i] - sim[iState][iSimStart+i], 2);
 			}
 		}
-		
-		int nObs = (nTimes-1) * nStates;
-		// return the objective score:
-		return -(1.0/2) * nObs * Math.log(ssr);
+		nObs = nObs + nTimes * nStates;
 	}
 
 	@Override
-	public double evaluate(double[] parameterVector) {
-		return 0;
+	public double getObjScore() {
+		// return the objective score:
+		return -(1.0/2) * nObs * Math.log(ssr);
 	}
 	
 }
@@ -0,0 +1,9 @@
+package nl.esciencecenter.diffevo.statespacemodelfactories;
+
+import nl.esciencecenter.diffevo.statespacemodels.BatchModel;
+
+public interface BatchModelFactory extends ModelFactory {
+	
+	BatchModel createBatch(int nStates, int nPars);
+
+}
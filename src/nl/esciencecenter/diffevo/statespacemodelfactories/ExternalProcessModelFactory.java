@@ -0,0 +1,57 @@
+/*
+ * Copyrighted 2012-2013 Netherlands eScience Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").  
+ * You may not use this file except in compliance with the License. 
+ * For details, see the LICENCE.txt file location in the root directory of this 
+ * distribution or obtain the Apache License at the following location: 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ * 
+ * For the full license, see: LICENCE.txt (located in the root folder of this distribution). 
+ * ---
+ */
+
+package nl.esciencecenter.diffevo.statespacemodelfactories;
+
+import java.util.List;
+
+import nl.esciencecenter.diffevo.external.WorkerPool;
+import nl.esciencecenter.diffevo.statespacemodels.ExternalProcessModel;
+import nl.esciencecenter.diffevo.statespacemodels.Model;
+
+/**
+ * Creates models that are run by an external executable, e.g. a legacy model that has been given a main 
+ * loop that speaks the protocol of ExternalModelWorker. The executable is started at most nWorkers times, 
+ * and every process is reused for many evaluations; call close when the calibration is done. For parallel
+ * evaluation, use as many threads in DiffEvo as there are workers. 
+ */
+public class ExternalProcessModelFactory implements ModelFactory {
+	
+	private final WorkerPool workerPool;
+	private final String name;
+	
+	public ExternalProcessModelFactory(List<String> command, int nWorkers, long timeoutMillis){
+		this.workerPool = new WorkerPool(command, nWorkers, timeoutMillis);
+		this.name = command.get(command.size()-1);
+	}
+
+	public Model create(double[] state,double[] parameterVector, double[] forcing, double[] times) {
+		Model model = new ExternalProcessModel(workerPool, name, state, parameterVector, forcing, times);
+
+		return model;
+	}
+	
+	public WorkerPool getWorkerPool(){
+		return workerPool;
+	}
+	
+	public void close(){
+		workerPool.close();
+	}
+}
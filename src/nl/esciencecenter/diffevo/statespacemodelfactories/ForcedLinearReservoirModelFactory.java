@@ -0,0 +1,58 @@
+/*
+ * Copyrighted 2012-2013 Netherlands eScience Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").  
+ * You may not use this file except in compliance with the License. 
+ * For details, see the LICENCE.txt file location in the root directory of this 
+ * distribution or obtain the Apache License at the following location: 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ * 
+ * For the full license, see: LICENCE.txt (located in the root folder of this distribution). 
+ * ---
+ */
+
+package nl.esciencecenter.diffevo.statespacemodelfactories;
+
+import nl.esciencecenter.diffevo.forcing.ForcingTableCache;
+import nl.esciencecenter.diffevo.forcing.Interpolation;
+import nl.esciencecenter.diffevo.integratorfactories.IntegratorFactory;
+import nl.esciencecenter.diffevo.integratorfactories.RungeKutta4IntegratorFactory;
+import nl.esciencecenter.diffevo.statespacemodels.ForcedLinearReservoirModel;
+import nl.esciencecenter.diffevo.statespacemodels.Model;
+import nl.esciencecenter.diffevo.statespacemodels.ReusableModel;
+
+public class ForcedLinearReservoirModelFactory implements ReusableModelFactory {
+	
+	private final IntegratorFactory integratorFactory;
+	private final Interpolation interpolation;
+	private final ForcingTableCache forcingTableCache;
+	
+	public ForcedLinearReservoirModelFactory(){
+		this(new RungeKutta4IntegratorFactory(), Interpolation.LINEAR);
+	}
+
+	public ForcedLinearReservoirModelFactory(IntegratorFactory integratorFactory, Interpolation interpolation){
+		this.integratorFactory = integratorFactory;
+		this.interpolation = interpolation;
+		// shared by all reusable models, so that the forcing table of the shared arrays is built only once
+		this.forcingTableCache = new ForcingTableCache(interpolation);
+	}
+
+	public Model create(double[] state,double[] parameterVector, double[] forcing, double[] times) {
+		Model model = new ForcedLinearReservoirModel(state, parameterVector, forcing, times, integratorFactory.create(), interpolation);
+
+		return model;
+	}
+
+	public ReusableModel createReusable(int nStates, int nPars) {
+		ReusableModel model = new ForcedLinearReservoirModel(nStates, nPars, integratorFactory.create(), forcingTableCache);
+
+		return model;
+	}
+}
@@ -0,0 +1,23 @@
+package nl.esciencecenter.diffevo.statespacemodelfactories;
+
+import nl.esciencecenter.diffevo.statespacemodels.BatchModel;
+import nl.esciencecenter.diffevo.statespacemodels.LinearDynamicStateSpaceBatchModel;
+import nl.esciencecenter.diffevo.statespacemodels.LinearDynamicStateSpaceModel;
+import nl.esciencecenter.diffevo.statespacemodels.Model;
+
+
+
+public class LinearDynamicStateSpaceBatchModelFactory implements BatchModelFactory{
+
+	public Model create(double[] state,double[] parameterVector, double[] forcing, double[] times) {
+		Model model = new LinearDynamicStateSpaceModel(state, parameterVector, forcing, times);
+
+		return model;
+	}
+
+	public BatchModel createBatch(int nStates, int nPars) {
+		BatchModel model = new LinearDynamicStateSpaceBatchModel();
+
+		return model;
+	}
+}
@@ -1,15 +1,34 @@
 package nl.esciencecenter.diffevo.statespacemodelfactories;
 
+import nl.esciencecenter.diffevo.integratorfactories.ForwardEulerIntegratorFactory;
+import nl.esciencecenter.diffevo.integratorfactories.IntegratorFactory;
 import nl.esciencecenter.diffevo.statespacemodels.LinearDynamicStateSpaceModel;
 import nl.esciencecenter.diffevo.statespacemodels.Model;
+import nl.esciencecenter.diffevo.statespacemodels.ReusableModel;
 
 
 
-public class LinearDynamicStateSpaceModelFactory implements ModelFactory{
+public class LinearDynamicStateSpaceModelFactory implements ReusableModelFactory{
+
+	private final IntegratorFactory integratorFactory;
+	
+	public LinearDynamicStateSpaceModelFactory(){
+		this(new ForwardEulerIntegratorFactory());
+	}
+
+	public LinearDynamicStateSpaceModelFactory(IntegratorFactory integratorFactory){
+		this.integratorFactory = integratorFactory;
+	}
 
 	public Model create(double[] state,double[] parameterVector, double[] forcing, double[] times) {
-		Model model = new LinearDynamicStateSpaceModel(state, parameterVector, forcing, times);
+		Model model = new LinearDynamicStateSpaceModel(state, parameterVector, forcing, times, integratorFactory.create());
+
+		return model;
+	}
+
+	public ReusableModel createReusable(int nStates, int nPars) {
+		ReusableModel model = new LinearDynamicStateSpaceModel(nStates, nPars, integratorFactory.create());
 
 		return model;
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyrighted 2012-2013 Netherlands eScience Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").  
+ * You may not use this file except in compliance with the License. 
+ * For details, see the LICENCE.txt file location in the root directory of this 
+ * distribution or obtain the Apache License at the following location: 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ * 
+ * For the full license, see: LICENCE.txt (located in the root folder of this distribution). 
+ * ---
+ */
+
+package nl.esciencecenter.diffevo.statespacemodelfactories;
+
+import nl.esciencecenter.diffevo.statespacemodels.LinearTimeInvariantModel;
+import nl.esciencecenter.diffevo.statespacemodels.LinearTimeInvariantSystem;
+import nl.esciencecenter.diffevo.statespacemodels.Model;
+import nl.esciencecenter.diffevo.statespacemodels.ReusableModel;
+import nl.esciencecenter.diffevo.statespacemodels.TimeStepTableCache;
+
+public class LinearTimeInvariantModelFactory implements ReusableModelFactory {
+	
+	private final LinearTimeInvariantSystem system;
+	private final TimeStepTableCache timeStepTableCache;
+	
+	public LinearTimeInvariantModelFactory(LinearTimeInvariantSystem system){
+		this.system = system;
+		this.timeStepTableCache = new TimeStepTableCache();
+	}
+
+	public Model create(double[] state,double[] parameterVector, double[] forcing, double[] times) {
+		Model model = new LinearTimeInvariantModel(state, parameterVector, forcing, times, system);
+
+		return model;
+	}
+
+	public ReusableModel createReusable(int nStates, int nPars) {
+		ReusableModel model = new LinearTimeInvariantModel(system, nPars, timeStepTableCache);
+
+		return model;
+	}
+}
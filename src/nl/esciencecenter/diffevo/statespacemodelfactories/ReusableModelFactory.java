@@ -0,0 +1,9 @@
+package nl.esciencecenter.diffevo.statespacemodelfactories;
+
+import nl.esciencecenter.diffevo.statespacemodels.ReusableModel;
+
+public interface ReusableModelFactory extends ModelFactory {
+	
+	ReusableModel createReusable(int nStates, int nPars);
+
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyrighted 2012-2013 Netherlands eScience Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").  
+ * You may not use this file except in compliance with the License. 
+ * For details, see the LICENCE.txt file location in the root directory of this 
+ * distribution or obtain the Apache License at the following location: 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ * 
+ * For the full license, see: LICENCE.txt (located in the root folder of this distribution). 
+ * ---
+ */
+
+package nl.esciencecenter.diffevo.statespacemodelfactories;
+
+import nl.esciencecenter.diffevo.integratorfactories.BackwardEulerIntegratorFactory;
+import nl.esciencecenter.diffevo.integratorfactories.ForwardEulerIntegratorFactory;
+import nl.esciencecenter.diffevo.integratorfactories.IntegratorFactory;
+import nl.esciencecenter.diffevo.statespacemodels.Model;
+import nl.esciencecenter.diffevo.statespacemodels.ReusableModel;
+import nl.esciencecenter.diffevo.statespacemodels.SparseLinearModel;
+import nl.esciencecenter.diffevo.statespacemodels.SparseLinearSystem;
+
+public class SparseLinearModelFactory implements ReusableModelFactory {
+	
+	private final SparseLinearSystem system;
+	private final IntegratorFactory integratorFactory;
+	
+	public SparseLinearModelFactory(SparseLinearSystem system){
+		this(system, new ForwardEulerIntegratorFactory());
+	}
+
+	public SparseLinearModelFactory(SparseLinearSystem system, IntegratorFactory integratorFactory){
+		// refused here already, rather than by every model the factory creates (see SparseLinearModel)
+		if (integratorFactory instanceof BackwardEulerIntegratorFactory){
+			throw new IllegalArgumentException("A sparse model can not use an implicit integrator; use an explicit integrator.");
+		}
+		this.system = system;
+		this.integratorFactory = integratorFactory;
+	}
+
+	public Model create(double[] state,double[] parameterVector, double[] forcing, double[] times) {
+		Model model = new SparseLinearModel(state, parameterVector, forcing, times, system, integratorFactory.create());
+
+		return model;
+	}
+
+	public ReusableModel createReusable(int nStates, int nPars) {
+		ReusableModel model = new SparseLinearModel(system, nPars, integratorFactory.create());
+
+		return model;
+	}
+}
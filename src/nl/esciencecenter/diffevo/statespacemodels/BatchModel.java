@@ -0,0 +1,42 @@
+/*
+ * Copyrighted 2012-2013 Netherlands eScience Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").  
+ * You may not use this file except in compliance with the License. 
+ * For details, see the LICENCE.txt file location in the root directory of this 
+ * distribution or obtain the Apache License at the following location: 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ * 
+ * For the full license, see: LICENCE.txt (located in the root folder of this distribution). 
+ * ---
+ */
+
+package nl.esciencecenter.diffevo.statespacemodels;
+
+/**
+ * A model that advances a whole batch of population members through time together. States and 
+ * parameters are laid out member-minor, i.e. states[iState][iMember] and parameters[iPar][iMember], so 
+ * that the innermost loop of an implementation runs over contiguous arrays of members, which the JIT 
+ * compiler can vectorize. For cheap models this avoids the per-member call overhead and the scattered 
+ * memory access of evaluating one Model per member.
+ */
+public interface BatchModel {
+	
+	/**
+	 * Simulates members 0 to nMembers-1 over the nTimes elements of times and forcing starting at 
+	 * iTimeStart. On entry, states holds the initial states; on exit, it holds the states at the last 
+	 * time. The state of member iMember at times[iTimeStart+i] is written to 
+	 * simulated[iMember][iState][iSimStart+i], so that simulated can be a buffer the size of one chunk.
+	 */
+	void evaluate(double[][] states, double[][] parameters, int nMembers, double[] forcing, double[] times, 
+			int iTimeStart, int nTimes, double[][][] simulated, int iSimStart);
+	
+	String getName();
+
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyrighted 2012-2013 Netherlands eScience Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").  
+ * You may not use this file except in compliance with the License. 
+ * For details, see the LICENCE.txt file location in the root directory of this 
+ * distribution or obtain the Apache License at the following location: 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ * 
+ * For the full license, see: LICENCE.txt (located in the root folder of this distribution). 
+ * ---
+ */
+
+package nl.esciencecenter.diffevo.statespacemodels;
+
+import java.util.Arrays;
+
+/**
+ * A sparse matrix in compressed sparse row format. The entries of row iRow are stored at positions 
+ * rowPointers[iRow] up to rowPointers[iRow+1] of columnIndices and values, with increasing column indices. 
+ * The sparsity pattern is fixed when the matrix is made; the values can be overwritten in place, so that 
+ * a model can update its matrix for every parameter vector without allocating anything.
+ */
+public class CsrMatrix {
+	
+	private final int nRows;
+	private final int nCols;
+	private final int[] rowPointers;
+	private final int[] columnIndices;
+	private final double[] values;
+	
+	public CsrMatrix(int nRows, int nCols, int[] rowPointers, int[] columnIndices){
+		if (rowPointers.length!=nRows+1 || rowPointers[0]!=0 || rowPointers[nRows]!=columnIndices.length){
+			throw new IllegalArgumentException("The row pointers do not match the number of rows and entries.");
+		}
+		for (int iRow=0;iRow<nRows;iRow++){
+			for (int iEntry=rowPointers[iRow];iEntry<rowPointers[iRow+1];iEntry++){
+				int iCol = columnIndices[iEntry];
+				if (iCol<0 || iCol>=nCols || (iEntry>rowPointers[iRow] && iCol<=columnIndices[iEntry-1])){
+					throw new IllegalArgumentException("Row "+iRow+" has invalid or unsorted column indices.");
+				}
+			}
+		}
+		this.nRows = nRows;
+		this.nCols = nCols;
+		this.rowPointers = rowPointers.clone();
+		this.columnIndices = columnIndices.clone();
+		this.values = new double[columnIndices.length];
+	}
+	
+	/**
+	 * Makes the sparsity pattern from a list of (row, column) positions, which may be in any order and 
+	 * may contain duplicates.
+	 */
+	public static CsrMatrix fromPositions(int nRows, int nCols, int[] rows, int[] cols){
+		
+		int[] rowPointers = new int[nRows+1];
+		int[][] colsPerRow = new int[nRows][];
+		int[] nColsPerRow = new int[nRows];
+		for (int iPosition=0;iPosition<rows.length;iPosition++){
+			nColsPerRow[rows[iPosition]]++;
+		}
+		for (int iRow=0;iRow<nRows;iRow++){
+			colsPerRow[iRow] = new int[nColsPerRow[iRow]];
+			nColsPerRow[iRow] = 0;
+		}
+		for (int iPosition=0;iPosition<rows.length;iPosition++){
+			int iRow = rows[iPosition];
+			colsPerRow[iRow][nColsPerRow[iRow]++] = cols[iPosition];
+		}
+		int nEntries = 0;
+		for (int iRow=0;iRow<nRows;iRow++){
+			Arrays.sort(colsPerRow[iRow]);
+			int nUnique = 0;
+			for (int i=0;i<colsPerRow[iRow].length;i++){
+				if (i==0 || colsPerRow[iRow][i]!=colsPerRow[iRow][i-1]){
+					colsPerRow[iRow][nUnique++] = colsPerRow[iRow][i];
+				}
+			}
+			nColsPerRow[iRow] = nUnique;
+			nEntries = nEntries + nUnique;
+			rowPointers[iRow+1] = nEntries;
+		}
+		int[] columnIndices = new int[nEntries];
+		for (int iRow=0;iRow<nRows;iRow++){
+			System.arraycopy(colsPerRow[iRow], 0, columnIndices, rowPointers[iRow], nColsPerRow[iRow]);
+		}
+		return new CsrMatrix(nRows, nCols, rowPointers, columnIndices);
+	}
+	
+	/**
+	 * Returns the position in the values array of entry (iRow, iCol), or -1 if it is not in the pattern.
+	 */
+	public int indexOf(int iRow, int iCol){
+		int iLow = rowPointers[iRow];
+		int iHigh = rowPointers[iRow+1]-1;
+		while (iLow<=iHigh){
+			int iMid = (iLow+iHigh) >>> 1;
+			if (columnIndices[iMid]<iCol){
+				iLow = iMid+1;
+			}
+			else if (columnIndices[iMid]>iCol){
+				iHigh = iMid-1;
+			}
+			else {
+				return iMid;
+			}
+		}
+		return -1;
+	}
+	
+	public void setValue(int iEntry, double value){
+		values[iEntry] = value;
+	}
+	
+	public double getValue(int iEntry){
+		return values[iEntry];
+	}
+	
+	/**
+	 * Writes the product of this matrix and x into y.
+	 */
+	public void multiply(double[] x, double[] y){
+		for (int iRow=0;iRow<nRows;iRow++){
+			double sum = 0;
+			for (int iEntry=rowPointers[iRow];iEntry<rowPointers[iRow+1];iEntry++){
+				sum = sum + values[iEntry] * x[columnIndices[iEntry]];
+			}
+			y[iRow] = sum;
+		}
+	}
+	
+	public int getnRows(){
+		return nRows;
+	}
+	
+	public int getnCols(){
+		return nCols;
+	}
+	
+	public int getnEntries(){
+		return values.length;
+	}
+
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyrighted 2012-2013 Netherlands eScience Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").  
+ * You may not use this file except in compliance with the License. 
+ * For details, see the LICENCE.txt file location in the root directory of this 
+ * distribution or obtain the Apache License at the following location: 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ * 
+ * For the full license, see: LICENCE.txt (located in the root folder of this distribution). 
+ * ---
+ */
+
+package nl.esciencecenter.diffevo.statespacemodels;
+
+import nl.esciencecenter.diffevo.external.WorkerPool;
+
+/**
+ * A model that is simulated by an external executable, through one of the workers of a WorkerPool.
+ */
+public class ExternalProcessModel implements Model {
+
+	private final WorkerPool workerPool;
+	private final String name;
+	private final double[] initState;
+	private final double[] parameterVector;
+	private final double[] forcing;
+	private final double[] times;
+	
+	public ExternalProcessModel(WorkerPool workerPool, String name, double[] initState, double[] parameterVector, 
+			double[] forcing, double[] times){
+		this.workerPool = workerPool;
+		this.name = name;
+		this.initState = initState.clone();
+		this.parameterVector = parameterVector.clone();
+		this.forcing = forcing.clone();
+		this.times = times.clone();
+	}
+	
+	public String getName(){
+		return name;
+	}
+
+	@Override
+	public double[][] evaluate() {
+		
+		double[][] simulated = workerPool.evaluate(initState, parameterVector, forcing, times);
+		if (simulated.length!=initState.length || (simulated.length>0 && simulated[0].length!=times.length)){
+			throw new IllegalStateException("External model returned "+simulated.length+" states instead of "+
+					initState.length+", or the wrong number of times.");
+		}
+		return simulated;
+	}
+
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyrighted 2012-2013 Netherlands eScience Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").  
+ * You may not use this file except in compliance with the License. 
+ * For details, see the LICENCE.txt file location in the root directory of this 
+ * distribution or obtain the Apache License at the following location: 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ * 
+ * For the full license, see: LICENCE.txt (located in the root folder of this distribution). 
+ * ---
+ */
+
+package nl.esciencecenter.diffevo.statespacemodels;
+
+import nl.esciencecenter.diffevo.forcing.ForcingCursor;
+import nl.esciencecenter.diffevo.forcing.ForcingTable;
+import nl.esciencecenter.diffevo.forcing.ForcingTableCache;
+import nl.esciencecenter.diffevo.forcing.Interpolation;
+import nl.esciencecenter.diffevo.integrators.Integrator;
+import nl.esciencecenter.diffevo.integrators.OdeSystem;
+
+/**
+ * A linear reservoir that receives the forcing as inflow, dx/dt = u(t) - x/resistance. The integrator may 
+ * evaluate the inflow at any time, which is looked up in a ForcingTable.
+ */
+public class ForcedLinearReservoirModel implements TabulatingModel, OdeSystem {
+
+	private double[] initState;
+	private double[] parameterVector;
+	private double[] times;
+	private Integrator integrator;
+	private ForcingTableCache forcingTableCache;
+	private ForcingCursor forcingCursor;
+	private boolean isSeriesChanging;
+	private double[] state;
+	private int iTimeStart;
+	private int nTimes;
+	
+	public ForcedLinearReservoirModel(double[] initState, double[] parameterVector, double[] forcing, double[] times, 
+			Integrator integrator, Interpolation interpolation){
+		this(initState.length, parameterVector.length, integrator, new ForcingTableCache(interpolation));
+		reset(initState, parameterVector, forcing, times, 0, times.length);
+	}
+	
+	public ForcedLinearReservoirModel(int nStates, int nPars, Integrator integrator, ForcingTableCache forcingTableCache){
+		this.initState = new double[nStates];
+		this.parameterVector = new double[nPars];
+		this.times = new double[0];
+		this.integrator = integrator;
+		this.forcingTableCache = forcingTableCache;
+		this.forcingCursor = null;
+		this.isSeriesChanging = false;
+		this.state = new double[nStates];
+		this.iTimeStart = 0;
+		this.nTimes = 0;
+	}
+	
+	public String getName(){
+		return ForcedLinearReservoirModel.class.getSimpleName();
+	}
+
+	@Override
+	public double[][] evaluate() {
+		
+		int nTimes = times.length;
+		int nStates = initState.length;
+		
+		double[][] simulated = new double[nStates][nTimes];
+		evaluate(simulated);
+		
+		return simulated; 
+	}
+
+	@Override
+	public void reset(double[] initState, double[] parameterVector, double[] forcing, double[] times, int iTimeStart, int nTimes) {
+		System.arraycopy(initState, 0, this.initState, 0, this.initState.length);
+		System.arraycopy(parameterVector, 0, this.parameterVector, 0, this.parameterVector.length);
+		this.times = times;
+		this.iTimeStart = iTimeStart;
+		this.nTimes = nTimes;
+		
+		if (forcingCursor==null || !forcingCursor.getForcingTable().isFor(times, forcing)){
+			// arrays whose contents change can not be recognized in the shared cache
+			ForcingTable forcingTable = isSeriesChanging ? new ForcingTable(times, forcing, forcingTableCache.getInterpolation()) : 
+				forcingTableCache.get(times, forcing);
+			forcingCursor = forcingTable.createCursor();
+		}
+		forcingCursor.reset(iTimeStart);
+	}
+
+	@Override
+	public void seriesChanged() {
+		isSeriesChanging = true;
+		forcingCursor = null;
+	}
+
+	@Override
+	public void evaluate(double[][] simulated) {
+		
+		int nStates = initState.length;
+		
+		System.arraycopy(initState, 0, state, 0, nStates);
+		integrator.integrate(this, state, times, iTimeStart, nTimes, simulated);
+	}
+
+	@Override
+	public int getnStates() {
+		return initState.length;
+	}
+
+	@Override
+	public void calcDerivatives(double time, double[] state, double[] derivatives) {
+		
+		double resistance = parameterVector[0];
+		double inflow = forcingCursor.getValue(time);
+		
+		derivatives[0] = inflow - state[0]/resistance;
+	}
+
+}
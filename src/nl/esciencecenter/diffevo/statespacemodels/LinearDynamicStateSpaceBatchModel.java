@@ -0,0 +1,64 @@
+/*
+ * Copyrighted 2012-2013 Netherlands eScience Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").  
+ * You may not use this file except in compliance with the License. 
+ * For details, see the LICENCE.txt file location in the root directory of this 
+ * distribution or obtain the Apache License at the following location: 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ * 
+ * For the full license, see: LICENCE.txt (located in the root folder of this distribution). 
+ * ---
+ */
+
+package nl.esciencecenter.diffevo.statespacemodels;
+
+/**
+ * Batched version of LinearDynamicStateSpaceModel. It uses the same forward Euler steps, and gives 
+ * results that are identical to those of the scalar model.
+ */
+public class LinearDynamicStateSpaceBatchModel implements BatchModel {
+
+	public LinearDynamicStateSpaceBatchModel(){
+	}
+	
+	public String getName(){
+		return LinearDynamicStateSpaceBatchModel.class.getSimpleName();
+	}
+
+	@Override
+	public void evaluate(double[][] states, double[][] parameters, int nMembers, double[] forcing, double[] times, 
+			int iTimeStart, int nTimes, double[][][] simulated, int iSimStart) {
+		
+		double[] state = states[0];
+		double[] resistance = parameters[0];
+		
+		for (int iMember=0;iMember<nMembers;iMember++){
+			simulated[iMember][0][iSimStart] = state[iMember];
+		}
+		
+		int iSimShift = iSimStart - iTimeStart;
+		int iTimeEnd = iTimeStart + nTimes - 1;
+		for (int iTime=iTimeStart;iTime<iTimeEnd;iTime++){
+			
+			double timeStep = times[iTime+1]-times[iTime];
+			
+			// contiguous over members
+			for (int iMember=0;iMember<nMembers;iMember++){
+				double flow = -state[iMember]/resistance[iMember];
+				state[iMember] = state[iMember] + flow * timeStep;
+			}
+			
+			for (int iMember=0;iMember<nMembers;iMember++){
+				simulated[iMember][0][iSimShift+iTime+1] = state[iMember];
+			}
+		}
+	}
+
+}
@@ -19,16 +19,42 @@
 
 package nl.esciencecenter.diffevo.statespacemodels;
 
-public class LinearDynamicStateSpaceModel implements Model {
+import nl.esciencecenter.diffevo.integrators.ForwardEulerIntegrator;
+import nl.esciencecenter.diffevo.integrators.Integrator;
+import nl.esciencecenter.diffevo.integrators.OdeSystem;
+
+public class LinearDynamicStateSpaceModel implements ReusableModel, OdeSystem {
 
 	private double[] initState;
 	private double[] parameterVector;
 	private double[] times;
+	private Integrator integrator;
+	private double[] state;
+	private int iTimeStart;
+	private int nTimes;
 	
 	public LinearDynamicStateSpaceModel(double[] initState, double[] parameterVector, double[] forcing, double[] times){
+		this(initState, parameterVector, forcing, times, new ForwardEulerIntegrator());
+	}
+	
+	public LinearDynamicStateSpaceModel(double[] initState, double[] parameterVector, double[] forcing, double[] times, Integrator integrator){
 		this.initState = initState.clone();
 		this.parameterVector = parameterVector.clone();
 		this.times = times.clone();
+		this.integrator = integrator;
+		this.state = new double[initState.length];
+		this.iTimeStart = 0;
+		this.nTimes = times.length;
+	}
+	
+	public LinearDynamicStateSpaceModel(int nStates, int nPars, Integrator integrator){
+		this.initState = new double[nStates];
+		this.parameterVector = new double[nPars];
+		this.times = new double[0];
+		this.integrator = integrator;
+		this.state = new double[nStates];
+		this.iTimeStart = 0;
+		this.nTimes = 0;
 	}
 	
 	public String getName(){
@@ -42,26 +68,41 @@ public class LinearDynamicStateSpaceModel implements Model {
 		int nStates = initState.length;
 		
 		double[][] simulated = new double[nStates][nTimes];
-		double[] state = new double[nStates];
+		evaluate(simulated);
+		
+		return simulated; 
+	}
 
-		double resistance = parameterVector[0];
+	@Override
+	public void reset(double[] initState, double[] parameterVector, double[] forcing, double[] times, int iTimeStart, int nTimes) {
+		System.arraycopy(initState, 0, this.initState, 0, this.initState.length);
+		System.arraycopy(parameterVector, 0, this.parameterVector, 0, this.parameterVector.length);
+		this.times = times;
+		this.iTimeStart = iTimeStart;
+		this.nTimes = nTimes;
+	}
 
-		double timeStep;
-		double flow;
+	@Override
+	public void evaluate(double[][] simulated) {
 		
-		state[0] = initState[0];
-		simulated[0][0] = initState[0];
+		int nStates = initState.length;
 		
-		for (int iTime=0;iTime<nTimes-1;iTime++){
-			
-			timeStep = times[iTime+1]-times[iTime];
-			flow = -state[0]/resistance;
-			
-			state[0] = state[0] + flow * timeStep;
-			simulated[0][iTime+1] = state[0];
-			
-		}
-		return simulated; 
+		System.arraycopy(initState, 0, state, 0, nStates);
+		integrator.integrate(this, state, times, iTimeStart, nTimes, simulated);
+	}
+
+	@Override
+	public int getnStates() {
+		return initState.length;
+	}
+
+	@Override
+	public void calcDerivatives(double time, double[] state, double[] derivatives) {
+		
+		double resistance = parameterVector[0];
+		double flow = -state[0]/resistance;
+		
+		derivatives[0] = flow;
 	}
 
 	
@@ -0,0 +1,56 @@
+/*
+ * Copyrighted 2012-2013 Netherlands eScience Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").  
+ * You may not use this file except in compliance with the License. 
+ * For details, see the LICENCE.txt file location in the root directory of this 
+ * distribution or obtain the Apache License at the following location: 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ * 
+ * For the full license, see: LICENCE.txt (located in the root folder of this distribution). 
+ * ---
+ */
+
+package nl.esciencecenter.diffevo.statespacemodels;
+
+/**
+ * A cascade of linear reservoirs, each of which drains into the next. The forcing flows into the first 
+ * reservoir. The parameter vector holds the resistance of each reservoir, so that the outflow of 
+ * reservoir i is state[i]/parameterVector[i].
+ */
+public class LinearReservoirCascadeSystem implements LinearTimeInvariantSystem {
+	
+	private final int nReservoirs;
+	
+	public LinearReservoirCascadeSystem(int nReservoirs){
+		this.nReservoirs = nReservoirs;
+	}
+
+	@Override
+	public int getnStates() {
+		return nReservoirs;
+	}
+
+	@Override
+	public void calcMatrices(double[] parameterVector, double[][] a, double[] b) {
+		
+		for (int iState=0;iState<nReservoirs;iState++){
+			for (int jState=0;jState<nReservoirs;jState++){
+				a[iState][jState] = 0;
+			}
+			a[iState][iState] = -1.0/parameterVector[iState];
+			if (iState>0){
+				a[iState][iState-1] = 1.0/parameterVector[iState-1];
+			}
+			b[iState] = 0;
+		}
+		b[0] = 1;
+	}
+
+}
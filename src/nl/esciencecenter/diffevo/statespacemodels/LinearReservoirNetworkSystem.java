@@ -0,0 +1,83 @@
+/*
+ * Copyrighted 2012-2013 Netherlands eScience Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").  
+ * You may not use this file except in compliance with the License. 
+ * For details, see the LICENCE.txt file location in the root directory of this 
+ * distribution or obtain the Apache License at the following location: 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ * 
+ * For the full license, see: LICENCE.txt (located in the root folder of this distribution). 
+ * ---
+ */
+
+package nl.esciencecenter.diffevo.statespacemodels;
+
+/**
+ * A network of linear reservoirs, e.g. the cells of a distributed grid model, in which each reservoir 
+ * drains into its downstream neighbour. The forcing falls into every reservoir alike. All reservoirs 
+ * share one resistance, which is the only parameter.
+ */
+public class LinearReservoirNetworkSystem implements SparseLinearSystem {
+	
+	private final int[] downstream;
+	private final int nStates;
+	
+	/**
+	 * downstream[iState] is the index of the reservoir that iState drains into, or -1 if it drains out of 
+	 * the network.
+	 */
+	public LinearReservoirNetworkSystem(int[] downstream){
+		this.downstream = downstream.clone();
+		this.nStates = downstream.length;
+	}
+
+	@Override
+	public int getnStates() {
+		return nStates;
+	}
+
+	@Override
+	public CsrMatrix createMatrix() {
+		int nPositions = nStates;
+		for (int iState=0;iState<nStates;iState++){
+			if (downstream[iState]>=0){
+				nPositions++;
+			}
+		}
+		int[] rows = new int[nPositions];
+		int[] cols = new int[nPositions];
+		int iPosition = 0;
+		for (int iState=0;iState<nStates;iState++){
+			rows[iPosition] = iState;
+			cols[iPosition] = iState;
+			iPosition++;
+			if (downstream[iState]>=0){
+				rows[iPosition] = downstream[iState];
+				cols[iPosition] = iState;
+				iPosition++;
+			}
+		}
+		return CsrMatrix.fromPositions(nStates, nStates, rows, cols);
+	}
+
+	@Override
+	public void calcMatrices(double[] parameterVector, CsrMatrix a, double[] b) {
+		
+		double rate = 1.0/parameterVector[0];
+		for (int iState=0;iState<nStates;iState++){
+			a.setValue(a.indexOf(iState, iState), -rate);
+			if (downstream[iState]>=0){
+				a.setValue(a.indexOf(downstream[iState], iState), rate);
+			}
+			b[iState] = 1;
+		}
+	}
+
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyrighted 2012-2013 Netherlands eScience Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").  
+ * You may not use this file except in compliance with the License. 
+ * For details, see the LICENCE.txt file location in the root directory of this 
+ * distribution or obtain the Apache License at the following location: 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ * 
+ * For the full license, see: LICENCE.txt (located in the root folder of this distribution). 
+ * ---
+ */
+
+package nl.esciencecenter.diffevo.statespacemodels;
+
+import java.util.Arrays;
+
+import nl.esciencecenter.diffevo.integrators.MatrixExponential;
+
+/**
+ * Solves a LinearTimeInvariantSystem exactly, assuming that the forcing is constant over each interval,
+ * i.e. forcing[iTime] applies from times[iTime] to times[iTime+1] (zero-order hold). With the augmented 
+ * matrix M = [A B; 0 0], exp(M dt) = [Phi Gamma; 0 1], and each time step is the single matrix-vector 
+ * product x(t+dt) = Phi x(t) + Gamma u(t), however large dt is. 
+ * 
+ * Phi and Gamma are calculated once for each distinct time step of the time grid (see TimeStepTable), 
+ * when they are first needed, and are kept for as long as the parameter vector and the time grid stay the 
+ * same; the chunks of one population member therefore share them.
+ */
+public class LinearTimeInvariantModel implements TabulatingModel {
+
+	private final LinearTimeInvariantSystem system;
+	private final TimeStepTableCache timeStepTableCache;
+	private final MatrixExponential matrixExponential;
+	private final int nStates;
+	private final double[] initState;
+	private final double[] parameterVector;
+	private final double[] state;
+	private final double[] stateNext;
+	private final double[][] a;
+	private final double[] b;
+	private final double[][] augmented;
+	private double[] forcing;
+	private double[] times;
+	private int iTimeStart;
+	private int nTimes;
+	private TimeStepTable timeStepTable;
+	private boolean isSeriesChanging;
+	private double[] parameterVectorOfTransitions;
+	private double[][][] transitions;
+	private boolean[] isTransitionAvailable;
+	
+	public LinearTimeInvariantModel(double[] initState, double[] parameterVector, double[] forcing, double[] times, 
+			LinearTimeInvariantSystem system){
+		this(system, parameterVector.length, new TimeStepTableCache());
+		reset(initState, parameterVector, forcing, times, 0, times.length);
+	}
+	
+	public LinearTimeInvariantModel(LinearTimeInvariantSystem system, int nPars, TimeStepTableCache timeStepTableCache){
+		this.system = system;
+		this.timeStepTableCache = timeStepTableCache;
+		this.matrixExponential = new MatrixExponential();
+		this.nStates = system.getnStates();
+		this.initState = new double[nStates];
+		this.parameterVector = new double[nPars];
+		this.state = new double[nStates];
+		this.stateNext = new double[nStates];
+		this.a = new double[nStates][nStates];
+		this.b = new double[nStates];
+		this.augmented = new double[nStates+1][nStates+1];
+		this.forcing = null;
+		this.times = new double[0];
+		this.timeStepTable = null;
+		this.isSeriesChanging = false;
+		this.parameterVectorOfTransitions = null;
+		this.transitions = new double[0][][];
+		this.isTransitionAvailable = new boolean[0];
+	}
+	
+	public String getName(){
+		return LinearTimeInvariantModel.class.getSimpleName();
+	}
+
+	@Override
+	public double[][] evaluate() {
+		
+		double[][] simulated = new double[nStates][times.length];
+		evaluate(simulated);
+		
+		return simulated; 
+	}
+
+	@Override
+	public void reset(double[] initState, double[] parameterVector, double[] forcing, double[] times, int iTimeStart, int nTimes) {
+		System.arraycopy(initState, 0, this.initState, 0, nStates);
+		System.arraycopy(parameterVector, 0, this.parameterVector, 0, this.parameterVector.length);
+		this.forcing = forcing;
+		this.times = times;
+		this.iTimeStart = iTimeStart;
+		this.nTimes = nTimes;
+		
+		if (timeStepTable==null || !timeStepTable.isFor(times)){
+			// arrays whose contents change can not be recognized in the shared cache
+			timeStepTable = isSeriesChanging ? new TimeStepTable(times) : timeStepTableCache.get(times);
+			int nDistinctSteps = timeStepTable.getnDistinctSteps();
+			if (transitions.length<nDistinctSteps){
+				transitions = new double[nDistinctSteps][nStates+1][nStates+1];
+				isTransitionAvailable = new boolean[nDistinctSteps];
+			}
+			parameterVectorOfTransitions = null;
+		}
+		if (parameterVectorOfTransitions==null || !Arrays.equals(parameterVectorOfTransitions, this.parameterVector)){
+			system.calcMatrices(this.parameterVector, a, b);
+			Arrays.fill(isTransitionAvailable, false);
+			parameterVectorOfTransitions = this.parameterVector.clone();
+		}
+	}
+
+	@Override
+	public void seriesChanged() {
+		isSeriesChanging = true;
+		timeStepTable = null;
+	}
+
+	@Override
+	public void evaluate(double[][] simulated) {
+		
+		System.arraycopy(initState, 0, state, 0, nStates);
+		for (int iState=0;iState<nStates;iState++){
+			simulated[iState][iTimeStart] = state[iState];
+		}
+		
+		int iTimeEnd = iTimeStart + nTimes - 1;
+		for (int iTime=iTimeStart;iTime<iTimeEnd;iTime++){
+			
+			double[][] transition = getTransition(timeStepTable.getStepIndex(iTime));
+			double u = forcing==null || forcing.length==0 ? 0 : forcing[iTime];
+			
+			for (int iState=0;iState<nStates;iState++){
+				double[] row = transition[iState];
+				double sum = row[nStates] * u;
+				for (int jState=0;jState<nStates;jState++){
+					sum = sum + row[jState] * state[jState];
+				}
+				stateNext[iState] = sum;
+			}
+			for (int iState=0;iState<nStates;iState++){
+				state[iState] = stateNext[iState];
+				simulated[iState][iTime+1] = state[iState];
+			}
+		}
+	}
+	
+	/**
+	 * Returns [Phi Gamma] for the given distinct time step, calculating it if need be.
+	 */
+	private double[][] getTransition(int iDistinctStep){
+		
+		double[][] transition = transitions[iDistinctStep];
+		if (!isTransitionAvailable[iDistinctStep]){
+			for (int iState=0;iState<nStates;iState++){
+				System.arraycopy(a[iState], 0, augmented[iState], 0, nStates);
+				augmented[iState][nStates] = b[iState];
+			}
+			Arrays.fill(augmented[nStates], 0);
+			matrixExponential.calculate(augmented, timeStepTable.getDistinctStep(iDistinctStep), nStates+1, transition);
+			isTransitionAvailable[iDistinctStep] = true;
+		}
+		return transition;
+	}
+
+}
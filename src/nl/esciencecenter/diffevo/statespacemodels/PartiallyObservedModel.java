@@ -0,0 +1,39 @@
+/*
+ * Copyrighted 2012-2013 Netherlands eScience Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").  
+ * You may not use this file except in compliance with the License. 
+ * For details, see the LICENCE.txt file location in the root directory of this 
+ * distribution or obtain the Apache License at the following location: 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ * 
+ * For the full license, see: LICENCE.txt (located in the root folder of this distribution). 
+ * ---
+ */
+
+package nl.esciencecenter.diffevo.statespacemodels;
+
+/**
+ * A ReusableModel whose output can be limited to a subset of its states, so that models with many states 
+ * need not write out, nor be given room for, the trajectories of states that are never observed.
+ */
+public interface PartiallyObservedModel extends ReusableModel {
+	
+	/**
+	 * After this call, evaluate(simulated) writes state observedStates[iObserved] into simulated[iObserved]
+	 * instead of writing every state. Passing null restores the output of all states.
+	 */
+	void setObservedStates(int[] observedStates);
+	
+	/**
+	 * Copies the full state at the last time of the most recent evaluation into state.
+	 */
+	void getFinalState(double[] state);
+
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyrighted 2012-2013 Netherlands eScience Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").  
+ * You may not use this file except in compliance with the License. 
+ * For details, see the LICENCE.txt file location in the root directory of this 
+ * distribution or obtain the Apache License at the following location: 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ * 
+ * For the full license, see: LICENCE.txt (located in the root folder of this distribution). 
+ * ---
+ */
+
+package nl.esciencecenter.diffevo.statespacemodels;
+
+/**
+ * A Model that can be reset to a new initial state, parameter vector, forcing and times, instead of being 
+ * created anew for every chunk. Its output goes into a buffer supplied by the caller, so that a calibration 
+ * can run one instance per worker thread without allocating anything per chunk. 
+ */
+public interface ReusableModel extends Model {
+	
+	/**
+	 * Prepares the model for the next evaluation, which covers the nTimes elements of times and forcing 
+	 * starting at iTimeStart. The initial state and the parameter vector are copied; forcing and times are 
+	 * referenced rather than copied (they are typically the shared arrays of a TimeChunks and a ForcingChunks), 
+	 * and should not be modified until evaluate has returned. 
+	 */
+	void reset(double[] initState, double[] parameterVector, double[] forcing, double[] times, int iTimeStart, int nTimes);
+
+	/**
+	 * Writes the simulated state at times[iTime] into simulated[iState][iTime], for the nTimes values of iTime 
+	 * starting at iTimeStart. 
+	 */
+	void evaluate(double[][] simulated);
+
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyrighted 2012-2013 Netherlands eScience Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").  
+ * You may not use this file except in compliance with the License. 
+ * For details, see the LICENCE.txt file location in the root directory of this 
+ * distribution or obtain the Apache License at the following location: 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ * 
+ * For the full license, see: LICENCE.txt (located in the root folder of this distribution). 
+ * ---
+ */
+
+package nl.esciencecenter.diffevo.statespacemodels;
+
+import nl.esciencecenter.diffevo.integrators.BackwardEulerIntegrator;
+import nl.esciencecenter.diffevo.integrators.Integrator;
+import nl.esciencecenter.diffevo.integrators.OdeSystem;
+
+/**
+ * Integrates a SparseLinearSystem, with the forcing held constant over each interval (forcing[iTime] 
+ * applies from times[iTime] to times[iTime+1]). The integrator is run one interval at a time, on a 
+ * two-column work array, so that only the observed states need to be written out. The derivative costs 
+ * one sparse matrix-vector product. Implicit integrators are refused: BackwardEulerIntegrator works with a 
+ * dense nStates x nStates Jacobian and LU decomposition, which would take O(nStates^2) memory and 
+ * O(nStates^3) time per Newton iteration, whereas the point of this model is to be linear in the number of 
+ * non-zeros. Use an explicit integrator with a step size that is small enough for the fastest reservoir.
+ */
+public class SparseLinearModel implements PartiallyObservedModel, OdeSystem {
+
+	private final SparseLinearSystem system;
+	private final Integrator integrator;
+	private final int nStates;
+	private final CsrMatrix a;
+	private final double[] b;
+	private final double[] initState;
+	private final double[] parameterVector;
+	private final double[] state;
+	private final double[][] work;
+	private final double[] intervalTimes;
+	private double[] forcing;
+	private double[] times;
+	private int iTimeStart;
+	private int nTimes;
+	private double u;
+	private int[] observedStates;
+	
+	public SparseLinearModel(double[] initState, double[] parameterVector, double[] forcing, double[] times, 
+			SparseLinearSystem system, Integrator integrator){
+		this(system, parameterVector.length, integrator);
+		reset(initState, parameterVector, forcing, times, 0, times.length);
+	}
+	
+	public SparseLinearModel(SparseLinearSystem system, int nPars, Integrator integrator){
+		if (integrator instanceof BackwardEulerIntegrator){
+			throw new IllegalArgumentException(integrator.getName()+" needs a dense Jacobian, which a sparse model with "+
+					system.getnStates()+" states can not afford; use an explicit integrator.");
+		}
+		this.system = system;
+		this.integrator = integrator;
+		this.nStates = system.getnStates();
+		this.a = system.createMatrix();
+		this.b = new double[nStates];
+		this.initState = new double[nStates];
+		this.parameterVector = new double[nPars];
+		this.state = new double[nStates];
+		this.work = new double[nStates][2];
+		this.intervalTimes = new double[2];
+		this.times = new double[0];
+		this.observedStates = null;
+	}
+	
+	public String getName(){
+		return SparseLinearModel.class.getSimpleName();
+	}
+
+	@Override
+	public double[][] evaluate() {
+		
+		int nRows = observedStates==null ? nStates : observedStates.length;
+		double[][] simulated = new double[nRows][times.length];
+		evaluate(simulated);
+		
+		return simulated; 
+	}
+
+	@Override
+	public void reset(double[] initState, double[] parameterVector, double[] forcing, double[] times, int iTimeStart, int nTimes) {
+		System.arraycopy(initState, 0, this.initState, 0, nStates);
+		System.arraycopy(parameterVector, 0, this.parameterVector, 0, this.parameterVector.length);
+		this.forcing = forcing;
+		this.times = times;
+		this.iTimeStart = iTimeStart;
+		this.nTimes = nTimes;
+		system.calcMatrices(this.parameterVector, a, b);
+	}
+
+	@Override
+	public void evaluate(double[][] simulated) {
+		
+		System.arraycopy(initState, 0, state, 0, nStates);
+		write(simulated, iTimeStart);
+		
+		int iTimeEnd = iTimeStart + nTimes - 1;
+		for (int iTime=iTimeStart;iTime<iTimeEnd;iTime++){
+			u = forcing==null || forcing.length==0 ? 0 : forcing[iTime];
+			intervalTimes[0] = times[iTime];
+			intervalTimes[1] = times[iTime+1];
+			integrator.integrate(this, state, intervalTimes, 0, 2, work);
+			write(simulated, iTime+1);
+		}
+	}
+	
+	private void write(double[][] simulated, int iTime){
+		if (observedStates==null){
+			for (int iState=0;iState<nStates;iState++){
+				simulated[iState][iTime] = state[iState];
+			}
+		}
+		else {
+			for (int iObserved=0;iObserved<observedStates.length;iObserved++){
+				simulated[iObserved][iTime] = state[observedStates[iObserved]];
+			}
+		}
+	}
+
+	@Override
+	public void setObservedStates(int[] observedStates) {
+		this.observedStates = observedStates==null ? null : observedStates.clone();
+	}
+
+	@Override
+	public void getFinalState(double[] state) {
+		System.arraycopy(this.state, 0, state, 0, nStates);
+	}
+
+	@Override
+	public int getnStates() {
+		return nStates;
+	}
+
+	@Override
+	public void calcDerivatives(double time, double[] state, double[] derivatives) {
+		a.multiply(state, derivatives);
+		for (int iState=0;iState<nStates;iState++){
+			derivatives[iState] = derivatives[iState] + b[iState] * u;
+		}
+	}
+
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyrighted 2012-2013 Netherlands eScience Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").  
+ * You may not use this file except in compliance with the License. 
+ * For details, see the LICENCE.txt file location in the root directory of this 
+ * distribution or obtain the Apache License at the following location: 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ * 
+ * For the full license, see: LICENCE.txt (located in the root folder of this distribution). 
+ * ---
+ */
+
+package nl.esciencecenter.diffevo.statespacemodels;
+
+/**
+ * A linear system dx/dt = A x + B u with a sparse matrix A and a scalar forcing u, for models with many 
+ * states. The sparsity pattern of A is fixed; its values follow from the parameter vector.
+ */
+public interface SparseLinearSystem {
+	
+	int getnStates();
+	
+	/**
+	 * Returns a new matrix with the sparsity pattern of A.
+	 */
+	CsrMatrix createMatrix();
+	
+	/**
+	 * Writes the values of A into a, which was made by createMatrix, and the vector B into b[nStates].
+	 */
+	void calcMatrices(double[] parameterVector, CsrMatrix a, double[] b);
+
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyrighted 2012-2013 Netherlands eScience Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").  
+ * You may not use this file except in compliance with the License. 
+ * For details, see the LICENCE.txt file location in the root directory of this 
+ * distribution or obtain the Apache License at the following location: 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ * 
+ * For the full license, see: LICENCE.txt (located in the root folder of this distribution). 
+ * ---
+ */
+
+
+package nl.esciencecenter.diffevo.statespacemodels;
+
+/**
+ * A ReusableModel that builds tables from the times or forcing arrays it is reset to (see TimeStepTable and 
+ * ForcingTable), and keeps them for as long as it is reset to the same arrays. A caller that gives the arrays 
+ * new contents, rather than passing other arrays, has to call seriesChanged before the next reset; from then 
+ * on, the model builds its tables for itself instead of sharing them with the other models of its factory.
+ */
+public interface TabulatingModel extends ReusableModel {
+	
+	void seriesChanged();
+
+}
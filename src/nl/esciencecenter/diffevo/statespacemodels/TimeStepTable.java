@@ -0,0 +1,102 @@
+/*
+ * Copyrighted 2012-2013 Netherlands eScience Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").  
+ * You may not use this file except in compliance with the License. 
+ * For details, see the LICENCE.txt file location in the root directory of this 
+ * distribution or obtain the Apache License at the following location: 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ * 
+ * For the full license, see: LICENCE.txt (located in the root folder of this distribution). 
+ * ---
+ */
+
+package nl.esciencecenter.diffevo.statespacemodels;
+
+import java.util.Arrays;
+
+/**
+ * The distinct time steps of a time grid. Steps that differ by less than a relative tolerance of 1e-12 
+ * (e.g. due to round-off in the times) are treated as one and the same step. The table refers to the 
+ * times array it was made for, so it can be shared by all models that run on that array.
+ */
+public class TimeStepTable {
+	
+	private static final double RELATIVE_TOLERANCE = 1e-12;
+	private final double[] times;
+	private final double[] distinctSteps;
+	private final int[] stepIndices;
+	
+	public TimeStepTable(double[] times){
+		
+		this.times = times;
+		int nSteps = Math.max(0, times.length-1);
+		this.stepIndices = new int[nSteps];
+		
+		double[] steps = new double[nSteps];
+		for (int iTime=0;iTime<nSteps;iTime++){
+			steps[iTime] = times[iTime+1]-times[iTime];
+		}
+		
+		// sorted, the steps fall into groups: each group starts with its smallest step, and holds the steps 
+		// that are within the tolerance of that one 
+		double[] sortedSteps = steps.clone();
+		Arrays.sort(sortedSteps);
+		double[] groupStarts = new double[nSteps];
+		int nGroups = 0;
+		for (int iStep=0;iStep<nSteps;iStep++){
+			double step = sortedSteps[iStep];
+			if (nGroups==0 || step-groupStarts[nGroups-1]>RELATIVE_TOLERANCE*Math.abs(step)){
+				groupStarts[nGroups] = step;
+				nGroups++;
+			}
+		}
+		
+		// the groups are numbered in order of their first occurrence, and represented by that first step
+		int[] distinctIndices = new int[nGroups];
+		Arrays.fill(distinctIndices, -1);
+		double[] firstSteps = new double[nGroups];
+		int nDistinctSteps = 0;
+		for (int iTime=0;iTime<nSteps;iTime++){
+			int iGroup = Arrays.binarySearch(groupStarts, 0, nGroups, steps[iTime]);
+			if (iGroup<0){
+				// the group of the last start below the step
+				iGroup = -iGroup-2;
+			}
+			if (distinctIndices[iGroup]<0){
+				distinctIndices[iGroup] = nDistinctSteps;
+				firstSteps[nDistinctSteps] = steps[iTime];
+				nDistinctSteps++;
+			}
+			stepIndices[iTime] = distinctIndices[iGroup];
+		}
+		this.distinctSteps = new double[nDistinctSteps];
+		System.arraycopy(firstSteps, 0, distinctSteps, 0, nDistinctSteps);
+	}
+	
+	public boolean isFor(double[] times){
+		return this.times==times;
+	}
+	
+	public int getnDistinctSteps(){
+		return distinctSteps.length;
+	}
+	
+	public double getDistinctStep(int iDistinctStep){
+		return distinctSteps[iDistinctStep];
+	}
+	
+	/**
+	 * Returns the index of the distinct step that leads from times[iTime] to times[iTime+1].
+	 */
+	public int getStepIndex(int iTime){
+		return stepIndices[iTime];
+	}
+
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyrighted 2012-2013 Netherlands eScience Center.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").  
+ * You may not use this file except in compliance with the License. 
+ * For details, see the LICENCE.txt file location in the root directory of this 
+ * distribution or obtain the Apache License at the following location: 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ * 
+ * For the full license, see: LICENCE.txt (located in the root folder of this distribution). 
+ * ---
+ */
+
+package nl.esciencecenter.diffevo.statespacemodels;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Shares the TimeStepTable of a time grid between the models created by the same factory (typically one 
+ * per worker thread), so that the table of the shared times array is built once rather than once per model. 
+ * Tables are read-only, so the cache publishes them without locking; threads that miss at the same time may 
+ * each build a table, of which the last one is kept. A model holds on to the table it used last, and only 
+ * asks the cache when it is reset to a different times array.
+ */
+public class TimeStepTableCache {
+	
+	private final AtomicReference<TimeStepTable> timeStepTable;
+	
+	public TimeStepTableCache(){
+		this.timeStepTable = new AtomicReference<TimeStepTable>();
+	}
+	
+	public TimeStepTable get(double[] times){
+		TimeStepTable table = timeStepTable.get();
+		if (table==null || !table.isFor(times)){
+			table = new TimeStepTable(times);
+			timeStepTable.set(table);
+		}
+		return table;
+	}
+
+}
@@ -0,0 +1,70 @@
+package nl.esciencecenter.diffevo;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+
+import nl.esciencecenter.diffevo.likelihoodfunctionfactories.LikelihoodFunctionFactory;
+import nl.esciencecenter.diffevo.likelihoodfunctionfactories.LikelihoodFunctionSSRFactory;
+import nl.esciencecenter.diffevo.statespacemodelfactories.LinearDynamicStateSpaceBatchModelFactory;
+import nl.esciencecenter.diffevo.statespacemodelfactories.LinearDynamicStateSpaceModelFactory;
+import nl.esciencecenter.diffevo.statespacemodelfactories.ModelFactory;
+
+import org.junit.Test;
+
+public class BatchModelTest {
+	
+	private int nGens;
+	private int nPop;
+	private double[] initState;
+	private double[] times;
+	private double[] assimilate;
+	private double[][] obs;
+	private double[] forcing;
+	private ParSpace parSpace;
+	private StateSpace stateSpace;
+	
+	public BatchModelTest(){
+		
+		nGens = 20;
+		nPop = 10;
+		File file  = new File("test"+File.separator+"data"+File.separator+"lineartank.eas");
+		DataReader reader = new DataReader(file);
+		double[][] data = reader.getData();
+
+		initState = new double[] {30};
+		times = data[0];
+		assimilate = data[1];
+		obs = new double[][]{data[3]};
+		forcing = data[4];
+		parSpace = new ParSpace(new double[] {10}, new double[] {500}, new String[] {"resistance"});
+		stateSpace = new StateSpace(new double[] {0}, new double[] {100}, new String[] {"waterlevel"});
+	}
+	
+	private EvalResults runOptimization(ModelFactory modelFactory, int nThreads){
+		LikelihoodFunctionFactory likelihoodFunctionFactory = (LikelihoodFunctionFactory) new LikelihoodFunctionSSRFactory();
+		long randomSeed = 0;
+		DiffEvo diffEvo = new DiffEvo(nGens, nPop, parSpace, stateSpace, initState, forcing, times, assimilate, obs, 
+				modelFactory, likelihoodFunctionFactory, randomSeed);
+		diffEvo.setnThreads(nThreads);
+		return diffEvo.runOptimization();
+	}
+
+	@Test
+	public void testBatchModelGivesIdenticalResults() {
+		EvalResults expected = runOptimization(new LinearDynamicStateSpaceModelFactory(), 1);
+		for (int nThreads=1;nThreads<=3;nThreads++){
+			EvalResults actual = runOptimization(new LinearDynamicStateSpaceBatchModelFactory(), nThreads);
+			
+			int nResults = expected.size();
+			assertEquals(nResults, actual.size());
+			for (int iResult=0;iResult<nResults;iResult++){
+				assertArrayEquals(expected.getParameterCombination(iResult), actual.getParameterCombination(iResult), 0.0);
+				assertTrue(expected.getObjScore(iResult)==actual.getObjScore(iResult));
+				assertArrayEquals(expected.getEvalResult(iResult).getModelResult()[0], 
+						actual.getEvalResult(iResult).getModelResult()[0], 0.0);
+			}
+		}
+	}
+	
+}
@@ -0,0 +1,107 @@
+package nl.esciencecenter.diffevo;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import nl.esciencecenter.diffevo.likelihoodfunctionfactories.LikelihoodFunctionFactory;
+import nl.esciencecenter.diffevo.likelihoodfunctionfactories.LikelihoodFunctionRastriginModelFactory;
+
+import org.junit.Test;
+
+public class ChainDiagnosticsTest {
+	
+	private ParSpace parSpace = new ParSpace(new double[]{-5.12,-5.12}, new double[]{5.12,5.12}, new String[]{"p1","p2"});
+	private LikelihoodFunctionFactory likelihoodFunctionFactory = new LikelihoodFunctionRastriginModelFactory();
+	
+	private static double[] autoregressive(double phi, int n, Random generator){
+		double[] chain = new double[n];
+		for (int i=1;i<n;i++){
+			chain[i] = phi*chain[i-1]+generator.nextGaussian();
+		}
+		return chain;
+	}
+
+	@Test
+	public void testAutocorrelationAgainstDirectSum() {
+		
+		double[] chain = autoregressive(0.7, 1000, new Random(0));
+		int n = chain.length;
+		double mean = 0;
+		for (double value : chain){
+			mean += value/n;
+		}
+		double[] acf = ChainDiagnostics.autocorrelation(chain);
+		double c0 = 0;
+		for (int i=0;i<n;i++){
+			c0 += (chain[i]-mean)*(chain[i]-mean);
+		}
+		for (int lag=0;lag<n;lag++){
+			double c = 0;
+			for (int i=0;i+lag<n;i++){
+				c += (chain[i]-mean)*(chain[i+lag]-mean);
+			}
+			assertEquals(c/c0, acf[lag], 1e-10);
+		}
+	}
+	
+	@Test
+	public void testIntegratedAutocorrelationTime() {
+		Random generator = new Random(1);
+		// for an AR(1) process, tau = (1+phi)/(1-phi)
+		assertEquals(19.0, ChainDiagnostics.integratedAutocorrelationTime(autoregressive(0.9, 200000, generator)), 2.5);
+		assertEquals(1.0, ChainDiagnostics.integratedAutocorrelationTime(autoregressive(0.0, 200000, generator)), 0.05);
+		assertEquals(10.0, ChainDiagnostics.integratedAutocorrelationTime(new double[10]), 0.0);
+		assertTrue(Double.isNaN(ChainDiagnostics.integratedAutocorrelationTime(new double[3])));
+	}
+	
+	@Test
+	public void testChainsFromEvalResults() {
+		
+		// 5 generations of 3 members, then a reduction to 2 members for 4 generations, and a partial generation
+		int[] nPops = new int[]{3,3,3,3,3,2,2,2,2,2};
+		EvalResults evalResults = new EvalResults(nPops.length, 3, parSpace, likelihoodFunctionFactory, new Random(0));
+		int sampleIdentifier = 0;
+		for (int iGen=0;iGen<nPops.length;iGen++){
+			evalResults.setnPop(iGen, nPops[iGen]);
+			int nMembersAdded = iGen<nPops.length-1 ? nPops[iGen] : 1;
+			for (int iPop=0;iPop<nMembersAdded;iPop++){
+				double[] parameterCombination = new double[]{100*iPop+iGen, -iGen};
+				evalResults.add(new EvalResult(sampleIdentifier, sampleIdentifier, parameterCombination, 0));
+				sampleIdentifier++;
+			}
+		}
+		
+		ChainDiagnostics diagnostics = new ChainDiagnostics(evalResults);
+		assertEquals(5, diagnostics.getFirstGeneration());
+		assertEquals(2, diagnostics.getnChains());
+		assertEquals(4, diagnostics.getnSteps());
+		assertArrayEquals(new double[]{105,106,107,108}, diagnostics.getChain(1, 0), 0.0);
+		assertArrayEquals(new double[]{-5,-6,-7,-8}, diagnostics.getChain(0, 1), 0.0);
+		
+		// a burn-in that ends inside generation 6 leaves out that generation too
+		diagnostics = new ChainDiagnostics(evalResults, 3*5+2+1);
+		assertEquals(7, diagnostics.getFirstGeneration());
+		assertEquals(2, diagnostics.getnSteps());
+		assertTrue(Double.isNaN(diagnostics.getMinimumEffectiveSampleSize()));
+	}
+	
+	@Test
+	public void testStoppingCriterion() {
+		
+		int nGens = 2000;
+		int nPop = 10;
+		DiffEvo diffEvo = new DiffEvo(nGens, nPop, parSpace, likelihoodFunctionFactory, 0);
+		EffectiveSampleSizeCriterion criterion = new EffectiveSampleSizeCriterion(100, 10*nPop, 50);
+		diffEvo.setStoppingCriterion(criterion);
+		EvalResults evalResults = diffEvo.runOptimization();
+		
+		int nResults = evalResults.getNumberOfEvalResults();
+		assertTrue(nResults<nGens*nPop);
+		assertEquals(0, (nResults/nPop-1)%50);
+		assertTrue(criterion.getLastEffectiveSampleSize()>=100);
+		assertEquals(criterion.getLastEffectiveSampleSize(), 
+				new ChainDiagnostics(evalResults, 10*nPop).getMinimumEffectiveSampleSize(), 0.0);
+	}
+
+}
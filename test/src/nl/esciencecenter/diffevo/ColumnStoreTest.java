@@ -0,0 +1,79 @@
+package nl.esciencecenter.diffevo;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.DoubleBuffer;
+
+import org.junit.Test;
+
+public class ColumnStoreTest {
+	
+	private static File createTempFile() throws IOException {
+		File file = File.createTempFile("columnstore", ".ecs");
+		file.deleteOnExit();
+		return file;
+	}
+
+	@Test
+	public void testConvertedFileReadsTheSame() throws IOException {
+		
+		File easFile = new File("test"+File.separator+"data"+File.separator+"lineartank.eas");
+		File file = createTempFile();
+		String[] columnNames = new String[]{ColumnStore.TIMES, ColumnStore.ASSIMILATE, "truth", ColumnStore.OBS, ColumnStore.FORCING};
+		ColumnStore.convert(easFile, file, columnNames);
+		
+		assertTrue(ColumnStore.isColumnStore(file));
+		assertFalse(ColumnStore.isColumnStore(easFile));
+		
+		DataReader expected = new DataReader(easFile);
+		DataReader actual = new DataReader(file);
+		assertNotNull(actual.getColumnStore());
+		assertArrayEquals(columnNames, actual.getColumnStore().getColumnNames());
+		assertEquals(3, actual.getColumnStore().getColumnIndex(ColumnStore.OBS));
+		
+		double[][] dataExpected = expected.getData();
+		double[][] dataActual = actual.getData();
+		assertEquals(dataExpected.length, dataActual.length);
+		for (int iCol=0;iCol<dataExpected.length;iCol++){
+			assertArrayEquals(dataExpected[iCol], dataActual[iCol], 0.0);
+			assertArrayEquals(dataExpected[iCol], actual.getColumn(iCol), 0.0);
+		}
+		assertArrayEquals(expected.getRow(17), actual.getRow(17), 0.0);
+		
+		DoubleBuffer column = actual.getColumnBuffer(4);
+		assertTrue(column.isReadOnly());
+		assertTrue(column.isDirect());
+		assertEquals(dataExpected[4].length, column.remaining());
+		assertTrue(dataExpected[4][5]==column.get(5));
+	}
+	
+	@Test
+	public void testLargeStore() throws IOException {
+		
+		int nRows = 3000000;
+		double[] times = new double[nRows];
+		double[] forcing = new double[nRows];
+		for (int iRow=0;iRow<nRows;iRow++){
+			times[iRow] = iRow*60.0;
+			forcing[iRow] = Math.sin(iRow*1e-3);
+		}
+		File file = createTempFile();
+		ColumnStore.write(file, new String[]{ColumnStore.TIMES, ColumnStore.FORCING}, new double[][]{times, forcing});
+		
+		ColumnStore columnStore = ColumnStore.open(file);
+		assertEquals(nRows, columnStore.getnRows());
+		DoubleBuffer column = columnStore.getColumnBuffer(columnStore.getColumnIndex(ColumnStore.FORCING));
+		for (int iRow=0;iRow<nRows;iRow+=9973){
+			assertTrue(forcing[iRow]==column.get(iRow));
+		}
+		assertTrue(times[nRows-1]==columnStore.getColumnBuffer(0).get(nRows-1));
+	}
+	
+	@Test(expected=IOException.class)
+	public void testRejectsOtherFiles() throws IOException {
+		ColumnStore.open(new File("test"+File.separator+"data"+File.separator+"lineartank.eas"));
+	}
+
+}
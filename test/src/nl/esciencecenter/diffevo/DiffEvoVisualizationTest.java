@@ -0,0 +1,52 @@
+package nl.esciencecenter.diffevo;
+
+import static org.junit.Assert.*;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+import nl.esciencecenter.diffevo.likelihoodfunctionfactories.LikelihoodFunctionFactory;
+import nl.esciencecenter.diffevo.likelihoodfunctionfactories.LikelihoodFunctionRastriginModelFactory;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DiffEvoVisualizationTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	@Test
+	public void testWriteCharts() throws IOException {
+		
+		double[] lowerBounds = new double[]{-5.12,-5.12,-5.12};
+		double[] upperBounds = new double[]{5.12,5.12,5.12};
+		String[] parNames = new String[]{"p1","p2","p3"};
+		ParSpace parSpace = new ParSpace(lowerBounds,upperBounds,parNames);
+		parSpace.divideIntoIntervals(20);
+		LikelihoodFunctionFactory likelihoodFunctionFactory = new LikelihoodFunctionRastriginModelFactory();
+		DiffEvo diffEvo = new DiffEvo(20, 20, parSpace, likelihoodFunctionFactory, 0);
+		EvalResults evalResults = diffEvo.runOptimization();
+		
+		DiffEvoVisualization vis = new DiffEvoVisualization(evalResults);
+		File directory = new File(folder.getRoot(), "charts");
+		List<File> files = vis.writeCharts(directory, 320, 240, 3);
+		
+		// eval-obj, 3 times eval-par and margHist, 3 pairs of scatterParPar and heatmapParPar
+		assertEquals(1+3*2+3*2, files.size());
+		assertTrue(files.contains(new File(directory, "eval-obj.png")));
+		assertTrue(files.contains(new File(directory, "margHist-par2.png")));
+		assertTrue(files.contains(new File(directory, "heatmapParPar-par0-par2.png")));
+		for (File file : files){
+			BufferedImage image = ImageIO.read(file);
+			assertEquals(320, image.getWidth());
+			assertEquals(240, image.getHeight());
+		}
+	}
+
+}
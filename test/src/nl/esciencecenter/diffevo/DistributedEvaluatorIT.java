@@ -0,0 +1,285 @@
+package nl.esciencecenter.diffevo;
+
+import static org.junit.Assert.*;
+
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import nl.esciencecenter.diffevo.external.DistributedEvaluator;
+import nl.esciencecenter.diffevo.likelihoodfunctionfactories.LikelihoodFunctionFactory;
+import nl.esciencecenter.diffevo.likelihoodfunctionfactories.LikelihoodFunctionSSRFactory;
+import nl.esciencecenter.diffevo.statespacemodelfactories.LinearDynamicStateSpaceModelFactory;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Runs a DistributedEvaluator against worker JVMs on localhost (see DistributedLinearReservoirWorker).
+ */
+public class DistributedEvaluatorIT {
+	
+	private int nGens = 10;
+	private int nPop = 12;
+	private double[] initState;
+	private double[] times;
+	private double[] assimilate;
+	private double[][] obs;
+	private double[] forcing;
+	private ParSpace parSpace;
+	private StateSpace stateSpace;
+	private List<Process> workers = new ArrayList<Process>();
+	
+	public DistributedEvaluatorIT(){
+		File file  = new File("test"+File.separator+"data"+File.separator+"lineartank.eas");
+		DataReader reader = new DataReader(file);
+		double[][] data = reader.getData();
+		initState = new double[] {30};
+		times = data[0];
+		assimilate = data[1];
+		obs = new double[][]{data[3]};
+		forcing = data[4];
+		parSpace = new ParSpace(new double[] {10}, new double[] {500}, new String[] {"resistance"});
+		stateSpace = new StateSpace(new double[] {0}, new double[] {100}, new String[] {"waterlevel"});
+	}
+	
+	private InetSocketAddress startWorker(long delayMillis) throws IOException {
+		String java = System.getProperty("java.home")+File.separator+"bin"+File.separator+"java";
+		ProcessBuilder processBuilder = new ProcessBuilder(Arrays.asList(java, "-cp", System.getProperty("java.class.path"), 
+				DistributedLinearReservoirWorker.class.getName(), String.valueOf(delayMillis)));
+		processBuilder.redirectError(ProcessBuilder.Redirect.INHERIT);
+		Process process = processBuilder.start();
+		workers.add(process);
+		BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
+		String line = reader.readLine();
+		assertNotNull(line);
+		return new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(line.substring("PORT ".length())));
+	}
+	
+	@After
+	public void stopWorkers() throws IOException {
+		for (Process process : workers){
+			process.getOutputStream().close();
+			process.destroy();
+		}
+	}
+	
+	private DiffEvo createDiffEvo(ModelResultRetention modelResultRetention){
+		LikelihoodFunctionFactory likelihoodFunctionFactory = new LikelihoodFunctionSSRFactory();
+		DiffEvo diffEvo = new DiffEvo(nGens, nPop, parSpace, stateSpace, initState, forcing, times, assimilate, obs, 
+				new LinearDynamicStateSpaceModelFactory(), likelihoodFunctionFactory, 0);
+		diffEvo.setModelResultRetention(modelResultRetention);
+		return diffEvo;
+	}
+	
+	private ListOfParameterCombinations createPopulation(int nMembers){
+		ListOfParameterCombinations population = new ListOfParameterCombinations(nMembers, 1, new LikelihoodFunctionSSRFactory(), 
+				initState, new TimeChunks(times, assimilate.clone()), new ForcingChunks(forcing, assimilate.clone()), 
+				new LinearDynamicStateSpaceModelFactory());
+		for (int iMember=0;iMember<nMembers;iMember++){
+			population.setParameterCombination(iMember, new double[]{10+iMember*7.5});
+		}
+		return population;
+	}
+	
+	private void assertSameScores(ListOfParameterCombinations expected, ListOfParameterCombinations actual){
+		for (int iMember=0;iMember<expected.getPopulationSize();iMember++){
+			assertTrue(expected.getObjScore(iMember)==actual.getObjScore(iMember));
+			assertArrayEquals(expected.getModelResult(iMember)[0], actual.getModelResult(iMember)[0], 0.0);
+		}
+	}
+
+	@Test
+	public void testGivesIdenticalResults() throws IOException {
+		
+		List<InetSocketAddress> addresses = new ArrayList<InetSocketAddress>();
+		for (int iWorker=0;iWorker<3;iWorker++){
+			addresses.add(startWorker(0));
+		}
+		DistributedEvaluator distributedEvaluator = new DistributedEvaluator(addresses);
+		try {
+			for (ModelResultRetention modelResultRetention : new ModelResultRetention[]{ModelResultRetention.TRAJECTORY, 
+					ModelResultRetention.NONE}){
+				EvalResults expected = createDiffEvo(modelResultRetention).runOptimization();
+				DiffEvo diffEvo = createDiffEvo(modelResultRetention);
+				diffEvo.setDistributedEvaluator(distributedEvaluator);
+				EvalResults actual = diffEvo.runOptimization();
+				
+				assertEquals(expected.size(), actual.size());
+				for (int iResult=0;iResult<expected.size();iResult++){
+					assertArrayEquals(expected.getParameterCombination(iResult), actual.getParameterCombination(iResult), 0.0);
+					assertTrue(expected.getObjScore(iResult)==actual.getObjScore(iResult));
+					double[][] modelResult = expected.getEvalResult(iResult).getModelResult();
+					if (modelResult==null){
+						assertNull(actual.getEvalResult(iResult).getModelResult());
+					}
+					else {
+						assertArrayEquals(modelResult[0], actual.getEvalResult(iResult).getModelResult()[0], 0.0);
+					}
+				}
+			}
+			assertEquals(0, distributedEvaluator.getnWorkersLost());
+		}
+		finally {
+			distributedEvaluator.close();
+		}
+	}
+	
+	@Test
+	public void testRedispatchesWorkOfLostWorker() throws IOException, InterruptedException {
+		
+		List<InetSocketAddress> addresses = new ArrayList<InetSocketAddress>();
+		for (int iWorker=0;iWorker<3;iWorker++){
+			addresses.add(startWorker(100));
+		}
+		DistributedEvaluator distributedEvaluator = new DistributedEvaluator(addresses);
+		distributedEvaluator.setBatchSize(2);
+		distributedEvaluator.setPipelineDepth(1);
+		try {
+			ListOfParameterCombinations expected = createPopulation(24);
+			expected.calcModelResults();
+			expected.calcObjScores(obs);
+			
+			distributedEvaluator.setUp(1, initState, forcing, times, assimilate, obs, ModelResultRetention.TRAJECTORY, null);
+			ListOfParameterCombinations actual = createPopulation(24);
+			distributedEvaluator.evaluate(actual);
+			assertSameScores(expected, actual);
+			
+			// kill a worker while it is busy with one of the 12 batches
+			final Process lostWorker = workers.get(2);
+			Thread killer = new Thread(new Runnable(){
+				public void run(){
+					try {
+						Thread.sleep(300);
+					} catch (InterruptedException e) {
+						return;
+					}
+					lostWorker.destroy();
+				}
+			});
+			killer.start();
+			actual = createPopulation(24);
+			distributedEvaluator.evaluate(actual);
+			killer.join();
+			assertSameScores(expected, actual);
+			assertEquals(1, distributedEvaluator.getnWorkersLost());
+			assertEquals(2, distributedEvaluator.getnWorkersAlive());
+		}
+		finally {
+			distributedEvaluator.close();
+		}
+	}
+	
+	@Test
+	public void testStealsWorkFromSlowWorker() throws IOException {
+		
+		List<InetSocketAddress> addresses = new ArrayList<InetSocketAddress>();
+		addresses.add(startWorker(20000));
+		addresses.add(startWorker(0));
+		addresses.add(startWorker(0));
+		DistributedEvaluator distributedEvaluator = new DistributedEvaluator(addresses);
+		distributedEvaluator.setBatchSize(1);
+		try {
+			ListOfParameterCombinations expected = createPopulation(nPop);
+			expected.calcModelResults();
+			expected.calcObjScores(obs);
+			
+			distributedEvaluator.setUp(1, initState, forcing, times, assimilate, obs, ModelResultRetention.TRAJECTORY, null);
+			long start = System.currentTimeMillis();
+			ListOfParameterCombinations actual = createPopulation(nPop);
+			distributedEvaluator.evaluate(actual);
+			assertTrue(System.currentTimeMillis()-start<10000);
+			assertSameScores(expected, actual);
+			assertEquals(0, distributedEvaluator.getnWorkersLost());
+		}
+		finally {
+			distributedEvaluator.close();
+		}
+	}
+	
+	@Test(timeout=60000)
+	public void testMalformedSetupEndsTheSession() throws IOException {
+		
+		List<InetSocketAddress> addresses = new ArrayList<InetSocketAddress>();
+		addresses.add(startWorker(0));
+		// long enough that a session that is not ended would outlast the test
+		DistributedEvaluator distributedEvaluator = new DistributedEvaluator(addresses);
+		distributedEvaluator.setTimeoutMillis(600000);
+		try {
+			double[] shortAssimilate = Arrays.copyOf(assimilate, assimilate.length-1);
+			distributedEvaluator.setUp(1, initState, forcing, times, shortAssimilate, obs, ModelResultRetention.TRAJECTORY, null);
+			fail("The worker accepted a setup with too few assimilate flags.");
+		}
+		catch (IllegalStateException e) {
+			assertEquals(1, distributedEvaluator.getnWorkersLost());
+		}
+		finally {
+			distributedEvaluator.close();
+		}
+		
+		// the worker itself carries on
+		distributedEvaluator = new DistributedEvaluator(addresses);
+		try {
+			ListOfParameterCombinations expected = createPopulation(4);
+			expected.calcModelResults();
+			expected.calcObjScores(obs);
+			distributedEvaluator.setUp(1, initState, forcing, times, assimilate, obs, ModelResultRetention.TRAJECTORY, null);
+			ListOfParameterCombinations actual = createPopulation(4);
+			distributedEvaluator.evaluate(actual);
+			assertSameScores(expected, actual);
+		}
+		finally {
+			distributedEvaluator.close();
+		}
+	}
+	
+	@Test(timeout=60000)
+	public void testRefusesOtherProtocolVersionsAndOversizedRequests() throws IOException {
+		
+		InetSocketAddress address = startWorker(0);
+		// the message types of DistributedProtocol
+		final int setup = 11;
+		final int evaluate = 13;
+		final int error = 15;
+		
+		Socket socket = new Socket(address.getAddress(), address.getPort());
+		try {
+			DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+			DataInputStream in = new DataInputStream(socket.getInputStream());
+			out.writeInt(setup);
+			out.writeInt(0);
+			out.flush();
+			assertEquals(error, in.readInt());
+			int length = in.readInt();
+			in.readFully(new byte[length]);
+			assertEquals(-1, in.read());
+		}
+		finally {
+			socket.close();
+		}
+		
+		socket = new Socket(address.getAddress(), address.getPort());
+		try {
+			DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+			out.writeInt(evaluate);
+			out.writeInt(0);
+			out.writeInt(1<<20);
+			out.writeInt(1<<20);
+			out.flush();
+			assertEquals(-1, socket.getInputStream().read());
+		}
+		finally {
+			socket.close();
+		}
+	}
+	
+}
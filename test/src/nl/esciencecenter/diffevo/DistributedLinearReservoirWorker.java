@@ -0,0 +1,49 @@
+package nl.esciencecenter.diffevo;
+
+import java.io.IOException;
+
+import nl.esciencecenter.diffevo.external.DistributedWorker;
+import nl.esciencecenter.diffevo.likelihoodfunctionfactories.LikelihoodFunctionFactory;
+import nl.esciencecenter.diffevo.likelihoodfunctions.LikelihoodFunction;
+import nl.esciencecenter.diffevo.likelihoodfunctions.LikelihoodFunctionSSR;
+import nl.esciencecenter.diffevo.statespacemodelfactories.LinearDynamicStateSpaceModelFactory;
+
+/**
+ * Worker JVM used by DistributedEvaluatorIT. Prints the port it listens on, and exits when its standard 
+ * input is closed. The optional argument is a delay in milliseconds per scored member, to imitate a slow machine.
+ */
+public class DistributedLinearReservoirWorker {
+
+	public static void main(String[] args) throws IOException {
+		
+		final long delayMillis = args.length>0 ? Long.parseLong(args[0]) : 0;
+		LikelihoodFunctionFactory likelihoodFunctionFactory = new LikelihoodFunctionFactory(){
+			public LikelihoodFunction create(){
+				return new LikelihoodFunctionSSR(){
+					@Override
+					public double evaluate(double[][] obs, double[][] sim){
+						if (delayMillis>0){
+							try {
+								Thread.sleep(delayMillis);
+							} catch (InterruptedException e) {
+								Thread.currentThread().interrupt();
+							}
+						}
+						return super.evaluate(obs, sim);
+					}
+				};
+			}
+		};
+		
+		DistributedWorker worker = new DistributedWorker(new LinearDynamicStateSpaceModelFactory(), likelihoodFunctionFactory, 1);
+		int port = worker.start(0);
+		System.out.println("PORT "+port);
+		System.out.flush();
+		while (System.in.read()!=-1){
+			// wait for the test to close the pipe
+		}
+		worker.stop();
+		System.exit(0);
+	}
+
+}
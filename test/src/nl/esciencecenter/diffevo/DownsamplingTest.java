@@ -0,0 +1,88 @@
+package nl.esciencecenter.diffevo;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class DownsamplingTest {
+
+	@Test
+	public void testLargestTriangleThreeBuckets() {
+		
+		int nPoints = 10000;
+		double[] x = new double[nPoints];
+		double[] y = new double[nPoints];
+		Random generator = new Random(0);
+		for (int i=0;i<nPoints;i++){
+			x[i] = i;
+			y[i] = generator.nextGaussian();
+		}
+		// a spike that should survive
+		y[5003] = 100;
+		
+		int nSelected = 100;
+		int[] selected = Downsampling.largestTriangleThreeBuckets(x, y, nSelected);
+		assertEquals(nSelected, selected.length);
+		assertEquals(0, selected[0]);
+		assertEquals(nPoints-1, selected[nSelected-1]);
+		boolean spikeSelected = false;
+		for (int i=1;i<nSelected;i++){
+			assertTrue(selected[i]>selected[i-1]);
+			spikeSelected |= selected[i]==5003;
+		}
+		assertTrue(spikeSelected);
+		
+		// one point from every bucket
+		double bucketSize = (double) (nPoints-2)/(nSelected-2);
+		for (int iBucket=0;iBucket<nSelected-2;iBucket++){
+			assertTrue(selected[iBucket+1]>=1+(int) (iBucket*bucketSize));
+			assertTrue(selected[iBucket+1]<1+(int) ((iBucket+1)*bucketSize));
+		}
+	}
+	
+	@Test
+	public void testLargestTriangleThreeBucketsFewPoints() {
+		double[] x = new double[]{0,1,2,3};
+		double[] y = new double[]{Double.NaN,1,Double.NaN,3};
+		assertArrayEquals(new int[]{0,1,2,3}, Downsampling.largestTriangleThreeBuckets(x, y, 10));
+		assertEquals(3, Downsampling.largestTriangleThreeBuckets(x, y, 3).length);
+	}
+	
+	@Test
+	public void testGridBin() {
+		
+		int nPoints = 50000;
+		double[] x = new double[nPoints];
+		double[] y = new double[nPoints];
+		Random generator = new Random(1);
+		for (int i=0;i<nPoints;i++){
+			x[i] = generator.nextDouble()*2-1;
+			y[i] = generator.nextDouble()*0.5;
+		}
+		x[7] = 3.0;
+		y[8] = Double.NaN;
+		
+		int nCells = 20;
+		int[] selected = Downsampling.gridBin(x, y, -1, 1, 0, 0.5, nCells, nCells);
+		
+		// every cell is occupied, plus the two points that are outside the grid
+		assertEquals(nCells*nCells+2, selected.length);
+		boolean[][] occupied = new boolean[nCells][nCells];
+		for (int i=0;i<selected.length;i++){
+			if (i>0){
+				assertTrue(selected[i]>selected[i-1]);
+			}
+			int iPoint = selected[i];
+			if (iPoint==7 || iPoint==8){
+				continue;
+			}
+			int iCellX = Math.min((int) ((x[iPoint]+1)/2*nCells), nCells-1);
+			int iCellY = Math.min((int) (y[iPoint]/0.5*nCells), nCells-1);
+			assertFalse(occupied[iCellX][iCellY]);
+			occupied[iCellX][iCellY] = true;
+		}
+	}
+
+}
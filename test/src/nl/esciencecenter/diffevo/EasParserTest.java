@@ -0,0 +1,169 @@
+package nl.esciencecenter.diffevo;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Scanner;
+
+import org.junit.Test;
+
+public class EasParserTest {
+	
+	/**
+	 * The way DataReader used to read .eas files, as a reference.
+	 */
+	private static double[][] readWithScanner(File file) throws IOException {
+		List<double[]> rows = new ArrayList<double[]>();
+		Scanner fileScanner = new Scanner(file);
+		try {
+			int nSkipLines = fileScanner.nextInt();
+			for (int iSkipLine=0;iSkipLine<nSkipLines;iSkipLine++){
+				fileScanner.nextLine();
+			}
+			while (fileScanner.hasNextLine()){
+				String[] parts = fileScanner.nextLine().split(",");
+				double[] values = new double[parts.length];
+				for (int iPart=0;iPart<parts.length;iPart++){
+					values[iPart] = Double.valueOf(parts[iPart]);
+				}
+				rows.add(values);
+			}
+		}
+		finally {
+			fileScanner.close();
+		}
+		double[][] columns = new double[rows.get(0).length][rows.size()];
+		for (int iRow=0;iRow<rows.size();iRow++){
+			for (int iCol=0;iCol<columns.length;iCol++){
+				columns[iCol][iRow] = rows.get(iRow)[iCol];
+			}
+		}
+		return columns;
+	}
+	
+	private static void assertIdentical(double[][] expected, double[][] actual){
+		assertEquals(expected.length, actual.length);
+		for (int iCol=0;iCol<expected.length;iCol++){
+			assertEquals(expected[iCol].length, actual[iCol].length);
+			for (int iRow=0;iRow<expected[iCol].length;iRow++){
+				assertEquals(Double.doubleToRawLongBits(expected[iCol][iRow]), Double.doubleToRawLongBits(actual[iCol][iRow]));
+			}
+		}
+	}
+	
+	private static String formatRandomValue(Random random){
+		double value = (random.nextDouble()-0.5)*Math.pow(10, random.nextInt(40)-20);
+		switch (random.nextInt(6)){
+		case 0:
+			return Double.toString(value);
+		case 1:
+			return String.format(Locale.US, "%.17g", value);
+		case 2:
+			return String.format(Locale.US, "  %.3f ", value);
+		case 3:
+			return String.format(Locale.US, "%e", value);
+		case 4:
+			return String.valueOf(random.nextInt(2000)-1000);
+		default:
+			return String.format(Locale.US, "%.6E\t", value);
+		}
+	}
+	
+	private static File writeRandomFile(int nRows, String lineTerminator, boolean endWithTerminator) throws IOException {
+		Random random = new Random(7);
+		StringBuilder text = new StringBuilder();
+		text.append("3").append(lineTerminator).append("# a header").append(lineTerminator).append("# ").append(lineTerminator);
+		for (int iRow=0;iRow<nRows;iRow++){
+			for (int iCol=0;iCol<4;iCol++){
+				text.append(iCol==0 ? "" : ",").append(formatRandomValue(random));
+			}
+			if (iRow<nRows-1 || endWithTerminator){
+				text.append(lineTerminator);
+			}
+		}
+		File file = File.createTempFile("easparser", ".eas");
+		file.deleteOnExit();
+		OutputStream out = new FileOutputStream(file);
+		try {
+			out.write(text.toString().getBytes(Charset.forName("US-ASCII")));
+		}
+		finally {
+			out.close();
+		}
+		return file;
+	}
+
+	@Test
+	public void testLinearTank() throws IOException {
+		File file = new File("test"+File.separator+"data"+File.separator+"lineartank.eas");
+		assertIdentical(readWithScanner(file), EasParser.parse(file).toArray());
+		assertIdentical(readWithScanner(file), new DataReader(file).getData());
+	}
+	
+	@Test
+	public void testRandomValuesAndSegments() throws IOException {
+		// a lone '\r' as well, as in old Mac files, which the Scanner also reads as line terminator
+		for (String lineTerminator : new String[]{"\n", "\r\n", "\r"}){
+			for (boolean endWithTerminator : new boolean[]{true, false}){
+				File file = writeRandomFile(2000, lineTerminator, endWithTerminator);
+				double[][] expected = readWithScanner(file);
+				assertIdentical(expected, EasParser.parse(file).toArray());
+				// small segments, so that lines are cut at the segment boundaries
+				assertIdentical(expected, EasParser.parse(file, 257).toArray());
+			}
+		}
+	}
+	
+	@Test
+	public void testParallelGivesIdenticalColumns() throws IOException {
+		// a lone '\r' as well, as in old Mac files, which the Scanner also reads as line terminator
+		for (String lineTerminator : new String[]{"\n", "\r\n", "\r"}){
+			for (boolean endWithTerminator : new boolean[]{true, false}){
+				File file = writeRandomFile(3000, lineTerminator, endWithTerminator);
+				double[][] expected = readWithScanner(file);
+				for (int nThreads=1;nThreads<=5;nThreads++){
+					// ranges of a few kB, so that there are as many ranges as threads
+					assertIdentical(expected, EasParser.parseParallel(file, nThreads, 1000).toArray());
+				}
+				assertIdentical(expected, new DataReader(file, 4).getData());
+			}
+		}
+		File file = new File("test"+File.separator+"data"+File.separator+"lineartank.eas");
+		assertIdentical(readWithScanner(file), EasParser.parseParallel(file, 3, 100).toArray());
+	}
+	
+	@Test
+	public void testParseDouble() {
+		String[] texts = new String[]{"0", "-0", "+1.5", " 30.00457786485969 ", "29.903929907202752", ".5", "5.", "1e22", 
+				"1e23", "1E-22", "4.9e-324", "1.7976931348623157E308", "9007199254740993", "123456789012345678901234567890", 
+				"0.1", "0.30000000000000004", "NaN", "-Infinity", "1.0d", "0x1p3", "2.2250738585072014E-308"};
+		for (String text : texts){
+			ByteBuffer buffer = ByteBuffer.wrap(text.getBytes(Charset.forName("US-ASCII")));
+			assertEquals(text, Double.doubleToRawLongBits(Double.valueOf(text)), 
+					Double.doubleToRawLongBits(EasParser.parseDouble(buffer, 0, text.length())));
+		}
+		Random random = new Random(0);
+		for (int iValue=0;iValue<100000;iValue++){
+			String text = formatRandomValue(random);
+			ByteBuffer buffer = ByteBuffer.wrap(text.getBytes(Charset.forName("US-ASCII")));
+			assertEquals(text, Double.doubleToRawLongBits(Double.valueOf(text)), 
+					Double.doubleToRawLongBits(EasParser.parseDouble(buffer, 0, text.length())));
+		}
+	}
+	
+	@Test(expected=NumberFormatException.class)
+	public void testInvalidValue() {
+		String text = "1.2.3";
+		EasParser.parseDouble(ByteBuffer.wrap(text.getBytes(Charset.forName("US-ASCII"))), 0, text.length());
+	}
+
+}
@@ -0,0 +1,48 @@
+package nl.esciencecenter.diffevo;
+
+import java.io.IOException;
+
+import nl.esciencecenter.diffevo.external.ExternalModelWorker;
+import nl.esciencecenter.diffevo.statespacemodels.LinearDynamicStateSpaceModel;
+
+/**
+ * Stand-in for a legacy model executable, used by ExternalProcessModelTest. A negative resistance makes it
+ * misbehave: -1 crashes the process, -2 hangs it, -3 reports an error, and -4 reports an error with a message
+ * of over 64 KB.
+ */
+public class ExternalLinearReservoirWorker extends ExternalModelWorker {
+	
+	@Override
+	protected double[][] evaluate(double[] initState, double[] parameterVector, double[] forcing, double[] times) {
+		if (parameterVector[0]==-1){
+			System.exit(3);
+		}
+		if (parameterVector[0]==-2){
+			try {
+				Thread.sleep(60000);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		if (parameterVector[0]==-3){
+			throw new IllegalArgumentException("negative resistance");
+		}
+		if (parameterVector[0]==-4){
+			StringBuilder message = new StringBuilder("negative resistance, \u00e9 ");
+			while (message.length()<100000){
+				message.append("and more \u00e9 ");
+			}
+			throw new IllegalArgumentException(message.toString());
+		}
+		if (parameterVector[0]==42){
+			// anything printed here must not end up in the protocol stream
+			System.out.println("evaluating");
+		}
+		return new LinearDynamicStateSpaceModel(initState, parameterVector, forcing, times).evaluate();
+	}
+
+	public static void main(String[] args) throws IOException {
+		new ExternalLinearReservoirWorker().serve();
+	}
+
+}
@@ -0,0 +1,134 @@
+package nl.esciencecenter.diffevo;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+import nl.esciencecenter.diffevo.external.WorkerPool;
+import nl.esciencecenter.diffevo.likelihoodfunctionfactories.LikelihoodFunctionSSRFactory;
+import nl.esciencecenter.diffevo.statespacemodelfactories.ExternalProcessModelFactory;
+import nl.esciencecenter.diffevo.statespacemodelfactories.LinearDynamicStateSpaceModelFactory;
+import nl.esciencecenter.diffevo.statespacemodelfactories.ModelFactory;
+import nl.esciencecenter.diffevo.statespacemodels.LinearDynamicStateSpaceModel;
+
+import org.junit.Test;
+
+public class ExternalProcessModelTest {
+	
+	private double[] times = new double[]{0, 1, 2, 3, 5, 8};
+	private double[] forcing = new double[]{0, 0, 0, 0, 0, 0};
+	private double[] initState = new double[]{30};
+	
+	private List<String> createCommand(){
+		String java = System.getProperty("java.home")+File.separator+"bin"+File.separator+"java";
+		return Arrays.asList(java, "-cp", System.getProperty("java.class.path"), ExternalLinearReservoirWorker.class.getName());
+	}
+	
+	private void assertWorks(ModelFactory modelFactory, double resistance){
+		double[] parameterVector = new double[]{resistance};
+		double[][] expected = new LinearDynamicStateSpaceModel(initState, parameterVector, forcing, times).evaluate();
+		double[][] actual = modelFactory.create(initState, parameterVector, forcing, times).evaluate();
+		assertArrayEquals(expected[0], actual[0], 0.0);
+	}
+
+	@Test
+	public void testWorkersAreReused() {
+		ExternalProcessModelFactory modelFactory = new ExternalProcessModelFactory(createCommand(), 2, 10000);
+		try {
+			for (double resistance : new double[]{20, 150, 3, 42, 7}){
+				assertWorks(modelFactory, resistance);
+			}
+			assertEquals(1, modelFactory.getWorkerPool().getnStarted());
+			assertEquals(0, modelFactory.getWorkerPool().checkHealth());
+			assertEquals(0, modelFactory.getWorkerPool().getnRestarts());
+		}
+		finally {
+			modelFactory.close();
+		}
+	}
+	
+	@Test
+	public void testFailures() {
+		ExternalProcessModelFactory modelFactory = new ExternalProcessModelFactory(createCommand(), 1, 2000);
+		WorkerPool workerPool = modelFactory.getWorkerPool();
+		try {
+			// crash: the worker is restarted and the evaluation retried, which crashes again
+			try {
+				assertWorks(modelFactory, -1);
+				fail();
+			} catch (IllegalStateException e) {
+				assertTrue(e.getMessage().contains("crashed"));
+			}
+			assertEquals(2, workerPool.getnRestarts());
+			assertWorks(modelFactory, 20);
+			
+			// hang: the worker is killed after the timeout
+			long start = System.currentTimeMillis();
+			try {
+				assertWorks(modelFactory, -2);
+				fail();
+			} catch (IllegalStateException e) {
+				assertTrue(e.getMessage().contains("did not reply"));
+			}
+			assertTrue(System.currentTimeMillis()-start<30000);
+			assertEquals(3, workerPool.getnRestarts());
+			assertWorks(modelFactory, 20);
+			
+			// error reported by the model: the worker stays
+			try {
+				assertWorks(modelFactory, -3);
+				fail();
+			} catch (IllegalStateException e) {
+				assertTrue(e.getMessage().contains("negative resistance"));
+			}
+			assertEquals(3, workerPool.getnRestarts());
+			assertWorks(modelFactory, 20);
+			
+			// an error message too long for modified UTF-8 still reaches the caller, and the worker stays
+			try {
+				assertWorks(modelFactory, -4);
+				fail();
+			} catch (IllegalStateException e) {
+				assertTrue(e.getMessage().contains("negative resistance, \u00e9 and more \u00e9"));
+				assertTrue(e.getMessage().length()>100000);
+			}
+			assertEquals(3, workerPool.getnRestarts());
+			assertWorks(modelFactory, 20);
+		}
+		finally {
+			modelFactory.close();
+		}
+	}
+	
+	@Test
+	public void testCalibration() {
+		File file  = new File("test"+File.separator+"data"+File.separator+"lineartank.eas");
+		double[][] data = new DataReader(file).getData();
+		ParSpace parSpace = new ParSpace(new double[] {10}, new double[] {500}, new String[] {"resistance"});
+		StateSpace stateSpace = new StateSpace(new double[] {0}, new double[] {100}, new String[] {"waterlevel"});
+		
+		DiffEvo diffEvo = new DiffEvo(5, 10, parSpace, stateSpace, initState, data[4], data[0], data[1], new double[][]{data[3]}, 
+				new LinearDynamicStateSpaceModelFactory(), new LikelihoodFunctionSSRFactory(), 0);
+		EvalResults expected = diffEvo.runOptimization();
+		
+		ExternalProcessModelFactory modelFactory = new ExternalProcessModelFactory(createCommand(), 2, 10000);
+		try {
+			diffEvo = new DiffEvo(5, 10, parSpace, stateSpace, initState, data[4], data[0], data[1], new double[][]{data[3]}, 
+					modelFactory, new LikelihoodFunctionSSRFactory(), 0);
+			diffEvo.setnThreads(2);
+			EvalResults actual = diffEvo.runOptimization();
+			
+			assertEquals(expected.size(), actual.size());
+			for (int iResult=0;iResult<expected.size();iResult++){
+				assertTrue(expected.getObjScore(iResult)==actual.getObjScore(iResult));
+			}
+			assertTrue(modelFactory.getWorkerPool().getnStarted()<=2);
+		}
+		finally {
+			modelFactory.close();
+		}
+	}
+	
+}
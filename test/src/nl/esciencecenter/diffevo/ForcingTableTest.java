@@ -0,0 +1,102 @@
+package nl.esciencecenter.diffevo;
+
+import static org.junit.Assert.*;
+
+import nl.esciencecenter.diffevo.forcing.ForcingCursor;
+import nl.esciencecenter.diffevo.forcing.ForcingTable;
+import nl.esciencecenter.diffevo.forcing.ForcingTableCache;
+import nl.esciencecenter.diffevo.forcing.Interpolation;
+import nl.esciencecenter.diffevo.integrators.RungeKutta4Integrator;
+import nl.esciencecenter.diffevo.statespacemodels.ForcedLinearReservoirModel;
+
+import org.junit.Test;
+
+public class ForcingTableTest {
+	
+	private double[] times = new double[]{0, 1, 3, 4, 7, 8};
+	private double[] forcing = new double[]{2, 5, 1, 1, 4, 0};
+
+	@Test
+	public void testStep() {
+		ForcingCursor cursor = new ForcingTable(times, forcing, Interpolation.STEP).createCursor();
+		assertEquals(2, cursor.getValue(-1), 0.0);
+		assertEquals(2, cursor.getValue(0.999), 0.0);
+		assertEquals(5, cursor.getValue(1), 0.0);
+		assertEquals(5, cursor.getValue(2.5), 0.0);
+		assertEquals(4, cursor.getValue(7.5), 0.0);
+		assertEquals(0, cursor.getValue(8), 0.0);
+		assertEquals(0, cursor.getValue(100), 0.0);
+	}
+
+	@Test
+	public void testLinear() {
+		ForcingCursor cursor = new ForcingTable(times, forcing, Interpolation.LINEAR).createCursor();
+		for (int iTime=0;iTime<times.length;iTime++){
+			assertEquals(forcing[iTime], cursor.getValue(times[iTime]), 1e-15);
+		}
+		assertEquals(3.5, cursor.getValue(0.5), 1e-15);
+		assertEquals(3, cursor.getValue(2), 1e-15);
+		assertEquals(2.5, cursor.getValue(5.5), 1e-15);
+	}
+	
+	@Test
+	public void testSpline() {
+		ForcingTable forcingTable = new ForcingTable(times, forcing, Interpolation.SPLINE);
+		ForcingCursor cursor = forcingTable.createCursor();
+		for (int iTime=0;iTime<times.length;iTime++){
+			assertEquals(forcing[iTime], cursor.getValue(times[iTime]), 1e-12);
+		}
+		// the spline and its first derivative are continuous at the interior knots
+		double h = 1e-6;
+		for (int iTime=1;iTime<times.length-1;iTime++){
+			double t = times[iTime];
+			double slopeLeft = (cursor.getValue(t-h) - cursor.getValue(t-2*h))/h;
+			double slopeRight = (cursor.getValue(t+2*h) - cursor.getValue(t+h))/h;
+			assertEquals(slopeLeft, slopeRight, 1e-4);
+		}
+		// collinear data gives a straight line
+		ForcingCursor line = new ForcingTable(times, new double[]{1, 3, 7, 9, 15, 17}, Interpolation.SPLINE).createCursor();
+		assertEquals(12, line.getValue(5.5), 1e-12);
+	}
+	
+	@Test
+	public void testCursorGoesBackward() {
+		ForcingCursor cursor = new ForcingTable(times, forcing, Interpolation.LINEAR).createCursor();
+		assertEquals(2.5, cursor.getValue(5.5), 1e-15);
+		assertEquals(3.5, cursor.getValue(0.5), 1e-15);
+		cursor.reset(4);
+		assertEquals(3, cursor.getValue(2), 1e-15);
+	}
+	
+	@Test
+	public void testCacheSharesTable() {
+		ForcingTableCache forcingTableCache = new ForcingTableCache(Interpolation.LINEAR);
+		ForcingTable forcingTable = forcingTableCache.get(times, forcing);
+		assertSame(forcingTable, forcingTableCache.get(times, forcing));
+		assertNotSame(forcingTable, forcingTableCache.get(times, forcing.clone()));
+	}
+	
+	@Test
+	public void testForcedReservoirWithLinearInflow() {
+		// the inflow u = a + b t has the exact solution x = xp(t) + (x0 - xp(0)) exp(-t/R), with xp(t) = R (a + b t) - R^2 b 
+		double a = 2;
+		double b = 0.5;
+		double resistance = 3;
+		double x0 = 10;
+		double[] times = new double[]{0, 1, 2, 4, 7, 8};
+		double[] forcing = new double[times.length];
+		for (int iTime=0;iTime<times.length;iTime++){
+			forcing[iTime] = a + b * times[iTime];
+		}
+		double[][] simulated = new ForcedLinearReservoirModel(new double[]{x0}, new double[]{resistance}, forcing, times, 
+				new RungeKutta4Integrator(0.01), Interpolation.LINEAR).evaluate();
+		
+		for (int iTime=0;iTime<times.length;iTime++){
+			double t = times[iTime];
+			double particular = resistance * (a + b * t) - resistance * resistance * b;
+			double expected = particular + (x0 - (resistance * a - resistance * resistance * b)) * Math.exp(-t/resistance);
+			assertEquals(expected, simulated[0][iTime], 1e-9);
+		}
+	}
+	
+}
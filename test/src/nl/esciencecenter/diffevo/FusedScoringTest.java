@@ -0,0 +1,109 @@
+package nl.esciencecenter.diffevo;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+
+import nl.esciencecenter.diffevo.likelihoodfunctionfactories.LikelihoodFunctionFactory;
+import nl.esciencecenter.diffevo.likelihoodfunctionfactories.LikelihoodFunctionSSRFactory;
+import nl.esciencecenter.diffevo.likelihoodfunctions.LikelihoodFunction;
+import nl.esciencecenter.diffevo.likelihoodfunctions.LikelihoodFunctionCubicModel;
+import nl.esciencecenter.diffevo.statespacemodelfactories.LinearDynamicStateSpaceBatchModelFactory;
+import nl.esciencecenter.diffevo.statespacemodelfactories.LinearDynamicStateSpaceModelFactory;
+import nl.esciencecenter.diffevo.statespacemodelfactories.ModelFactory;
+import nl.esciencecenter.diffevo.statespacemodels.LinearDynamicStateSpaceModel;
+import nl.esciencecenter.diffevo.statespacemodels.Model;
+
+import org.junit.Test;
+
+public class FusedScoringTest {
+	
+	private int nGens;
+	private int nPop;
+	private double[] initState;
+	private double[] times;
+	private double[] assimilate;
+	private double[][] obs;
+	private double[] forcing;
+	private ParSpace parSpace;
+	private StateSpace stateSpace;
+	
+	public FusedScoringTest(){
+		
+		nGens = 20;
+		nPop = 10;
+		File file  = new File("test"+File.separator+"data"+File.separator+"lineartank.eas");
+		DataReader reader = new DataReader(file);
+		double[][] data = reader.getData();
+
+		initState = new double[] {30};
+		times = data[0];
+		assimilate = data[1];
+		obs = new double[][]{data[3]};
+		forcing = data[4];
+		parSpace = new ParSpace(new double[] {10}, new double[] {500}, new String[] {"resistance"});
+		stateSpace = new StateSpace(new double[] {0}, new double[] {100}, new String[] {"waterlevel"});
+	}
+	
+	private EvalResults runOptimization(ModelFactory modelFactory, ModelResultRetention modelResultRetention, int nThreads){
+		LikelihoodFunctionFactory likelihoodFunctionFactory = (LikelihoodFunctionFactory) new LikelihoodFunctionSSRFactory();
+		long randomSeed = 0;
+		DiffEvo diffEvo = new DiffEvo(nGens, nPop, parSpace, stateSpace, initState, forcing, times, assimilate, obs, 
+				modelFactory, likelihoodFunctionFactory, randomSeed);
+		diffEvo.setModelResultRetention(modelResultRetention);
+		diffEvo.setnThreads(nThreads);
+		return diffEvo.runOptimization();
+	}
+	
+	private void assertSameSamples(EvalResults expected, EvalResults actual){
+		int nResults = expected.size();
+		assertEquals(nResults, actual.size());
+		for (int iResult=0;iResult<nResults;iResult++){
+			assertArrayEquals(expected.getParameterCombination(iResult), actual.getParameterCombination(iResult), 0.0);
+			assertTrue(expected.getObjScore(iResult)==actual.getObjScore(iResult));
+		}
+	}
+
+	@Test
+	public void testFusedScoringGivesIdenticalResults() {
+		
+		// a model factory that does not create reusable models
+		ModelFactory plainModelFactory = new ModelFactory(){
+			public Model create(double[] initState, double[] parameterVector, double[] forcing, double[] times){
+				return new LinearDynamicStateSpaceModel(initState, parameterVector, forcing, times);
+			}
+		};
+		
+		EvalResults expected = runOptimization(new LinearDynamicStateSpaceModelFactory(), ModelResultRetention.TRAJECTORY, 1);
+		
+		for (ModelFactory modelFactory : new ModelFactory[]{new LinearDynamicStateSpaceModelFactory(), 
+				new LinearDynamicStateSpaceBatchModelFactory(), plainModelFactory}){
+			for (int nThreads=1;nThreads<=2;nThreads++){
+				EvalResults actual = runOptimization(modelFactory, ModelResultRetention.NONE, nThreads);
+				assertSameSamples(expected, actual);
+				assertNull(actual.getEvalResult(0).getModelResult());
+				
+				actual = runOptimization(modelFactory, ModelResultRetention.FINAL_STATE, nThreads);
+				assertSameSamples(expected, actual);
+				int nTimes = times.length;
+				for (int iResult=0;iResult<expected.size();iResult++){
+					double[][] modelResult = actual.getEvalResult(iResult).getModelResult();
+					assertEquals(1, modelResult[0].length);
+					assertTrue(expected.getEvalResult(iResult).getModelResult()[0][nTimes-1]==modelResult[0][0]);
+				}
+			}
+		}
+	}
+	
+	@Test(expected=IllegalArgumentException.class)
+	public void testRequiresIncrementalLikelihoodFunction() {
+		DiffEvo diffEvo = new DiffEvo(nGens, nPop, parSpace, stateSpace, initState, forcing, times, assimilate, obs, 
+				new LinearDynamicStateSpaceModelFactory(), new LikelihoodFunctionFactory(){
+					public LikelihoodFunction create(){
+						return new LikelihoodFunctionCubicModel();
+					}
+				});
+		diffEvo.setModelResultRetention(ModelResultRetention.NONE);
+	}
+	
+}
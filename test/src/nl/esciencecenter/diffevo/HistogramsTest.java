@@ -0,0 +1,135 @@
+package nl.esciencecenter.diffevo;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import nl.esciencecenter.diffevo.likelihoodfunctionfactories.LikelihoodFunctionFactory;
+import nl.esciencecenter.diffevo.likelihoodfunctionfactories.LikelihoodFunctionRastriginModelFactory;
+
+import org.junit.Test;
+
+public class HistogramsTest {
+
+	private ParSpace parSpace;
+	private EvalResults evalResults;
+	
+	public HistogramsTest(){
+		
+		double[] lowerBounds = new double[]{-5.12,0.0,0.1,-1.0};
+		double[] upperBounds = new double[]{5.12,1.0,0.7,3.0};
+		String[] parNames = new String[]{"p1","p2","p3","p4"};
+		this.parSpace = new ParSpace(lowerBounds,upperBounds,parNames);
+		this.parSpace.divideIntoIntervals(new int[]{7,10,3,13});
+		
+		LikelihoodFunctionFactory likelihoodFunctionFactory = new LikelihoodFunctionRastriginModelFactory();
+		Random generator = new Random(0);
+		this.evalResults = new EvalResults(1, 1, parSpace, likelihoodFunctionFactory, generator);
+		
+		int nPars = parSpace.getNumberOfPars();
+		for (int iResult=0;iResult<5000;iResult++){
+			double[] parameterCombination = new double[nPars];
+			for (int iPar=0;iPar<nPars;iPar++){
+				double[] binBounds = parSpace.getBinBounds(iPar);
+				if (iResult%10==0){
+					// exactly on a bin bound, including the upper bound:
+					parameterCombination[iPar] = binBounds[generator.nextInt(binBounds.length)];
+				}
+				else {
+					double lb = parSpace.getLowerBound(iPar);
+					double range = parSpace.getRange(iPar);
+					// mostly within the bounds, some just outside:
+					parameterCombination[iPar] = lb+(generator.nextDouble()*1.02-0.01)*range;
+				}
+			}
+			evalResults.add(new EvalResult(iResult, iResult, parameterCombination, 0));
+		}
+	}
+	
+	// the bin of a value by searching the bin bounds, -1 if there is none
+	private int searchBinIndex(int iPar, double value){
+		double[] binBounds = parSpace.getBinBounds(iPar);
+		if (value<binBounds[0]){
+			return -1;
+		}
+		for (int iBinBound=1;iBinBound<binBounds.length;iBinBound++){
+			if (binBounds[iBinBound]>value){
+				return iBinBound-1;
+			}
+		}
+		return -1;
+	}
+	
+	@Test
+	public void testBinIndex() {
+		int nPars = parSpace.getNumberOfPars();
+		for (int iResult=0;iResult<evalResults.getNumberOfEvalResults();iResult++){
+			double[] parameterCombination = evalResults.getParameterCombination(iResult);
+			for (int iPar=0;iPar<nPars;iPar++){
+				double value = parameterCombination[iPar];
+				assertEquals(searchBinIndex(iPar, value), parSpace.getBinIndex(iPar, value));
+				double below = Math.nextAfter(value, Double.NEGATIVE_INFINITY);
+				assertEquals(searchBinIndex(iPar, below), parSpace.getBinIndex(iPar, below));
+			}
+		}
+		assertEquals(-1, parSpace.getBinIndex(0, Double.NaN));
+	}
+	
+	@Test
+	public void testCalculate() {
+		
+		int nPars = parSpace.getNumberOfPars();
+		
+		for (int nThreads=1;nThreads<=3;nThreads++){
+			Histograms histograms = Histograms.calculate(evalResults, nThreads);
+			assertEquals(evalResults.getNumberOfEvalResults(), histograms.getnResults());
+			
+			for (int iParRow=0;iParRow<nPars;iParRow++){
+				int[] marginalExpected = new int[parSpace.getnBins(iParRow)];
+				for (int iResult=0;iResult<evalResults.getNumberOfEvalResults();iResult++){
+					int iBin = searchBinIndex(iParRow, evalResults.getParameterCombination(iResult)[iParRow]);
+					if (iBin>=0){
+						marginalExpected[iBin]++;
+					}
+				}
+				assertArrayEquals(marginalExpected, histograms.getMarginal(iParRow));
+				
+				for (int iParCol=0;iParCol<nPars;iParCol++){
+					if (iParCol==iParRow){
+						continue;
+					}
+					int[][] pairExpected = new int[parSpace.getnBins(iParRow)][parSpace.getnBins(iParCol)];
+					for (int iResult=0;iResult<evalResults.getNumberOfEvalResults();iResult++){
+						double[] parameterCombination = evalResults.getParameterCombination(iResult);
+						int iBinRow = searchBinIndex(iParRow, parameterCombination[iParRow]);
+						int iBinCol = searchBinIndex(iParCol, parameterCombination[iParCol]);
+						if (iBinRow>=0 && iBinCol>=0){
+							pairExpected[iBinRow][iBinCol]++;
+						}
+					}
+					int[][] pairActual = histograms.getPair(iParRow, iParCol);
+					for (int iBinRow=0;iBinRow<pairExpected.length;iBinRow++){
+						assertArrayEquals(pairExpected[iBinRow], pairActual[iBinRow]);
+					}
+				}
+			}
+		}
+	}
+	
+	@Test
+	public void testAdd() {
+		Histograms histograms = new Histograms(parSpace);
+		Histograms other = new Histograms(parSpace);
+		int nResults = evalResults.getNumberOfEvalResults();
+		for (int iResult=0;iResult<nResults;iResult++){
+			(iResult<nResults/3 ? histograms : other).add(evalResults.getEvalResult(iResult));
+		}
+		histograms.add(other);
+		
+		Histograms expected = Histograms.calculate(evalResults, 1);
+		assertEquals(expected.getnResults(), histograms.getnResults());
+		assertArrayEquals(expected.getMarginal(3), histograms.getMarginal(3));
+		assertArrayEquals(expected.getPair(1, 3)[4], histograms.getPair(1, 3)[4]);
+	}
+
+}
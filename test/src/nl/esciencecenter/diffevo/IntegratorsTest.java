@@ -0,0 +1,134 @@
+package nl.esciencecenter.diffevo;
+
+import static org.junit.Assert.*;
+
+import nl.esciencecenter.diffevo.integrators.BackwardEulerIntegrator;
+import nl.esciencecenter.diffevo.integrators.DormandPrinceIntegrator;
+import nl.esciencecenter.diffevo.integrators.ForwardEulerIntegrator;
+import nl.esciencecenter.diffevo.integrators.Integrator;
+import nl.esciencecenter.diffevo.integrators.OdeSystem;
+import nl.esciencecenter.diffevo.integrators.RungeKutta4Integrator;
+import nl.esciencecenter.diffevo.statespacemodels.LinearDynamicStateSpaceModel;
+
+import org.junit.Test;
+
+public class IntegratorsTest {
+
+	private static class Decay implements OdeSystem {
+		private final double rate;
+		Decay(double rate){
+			this.rate = rate;
+		}
+		public int getnStates() {
+			return 1;
+		}
+		public void calcDerivatives(double time, double[] state, double[] derivatives) {
+			derivatives[0] = -rate * state[0];
+		}
+	}
+
+	private static class Oscillator implements OdeSystem {
+		public int getnStates() {
+			return 2;
+		}
+		public void calcDerivatives(double time, double[] state, double[] derivatives) {
+			derivatives[0] = state[1];
+			derivatives[1] = -state[0];
+		}
+	}
+
+	private double[] createTimes(int nTimes, double timeStep){
+		double[] times = new double[nTimes];
+		for (int iTime=0;iTime<nTimes;iTime++){
+			times[iTime] = iTime*timeStep;
+		}
+		return times;
+	}
+	
+	private double maxDecayError(Integrator integrator, double rate, double[] times){
+		int nTimes = times.length;
+		double[] state = new double[]{1.0};
+		double[][] simulated = new double[1][nTimes];
+		integrator.integrate(new Decay(rate), state, times, 0, nTimes, simulated);
+		double maxError = 0;
+		for (int iTime=0;iTime<nTimes;iTime++){
+			maxError = Math.max(maxError, Math.abs(simulated[0][iTime]-Math.exp(-rate*times[iTime])));
+		}
+		assertTrue(state[0]==simulated[0][nTimes-1]);
+		return maxError;
+	}
+	
+	@Test
+	public void testRungeKutta4() {
+		double[] times = createTimes(21, 0.5);
+		double errorEuler = maxDecayError(new ForwardEulerIntegrator(), 0.5, times);
+		double errorRungeKutta4 = maxDecayError(new RungeKutta4Integrator(), 0.5, times);
+		assertTrue(errorRungeKutta4<1e-4);
+		assertTrue(errorRungeKutta4<errorEuler/100);
+	}
+
+	@Test
+	public void testDormandPrinceDecouplesStepsFromOutputTimes() {
+		// sparse output times: the internal steps are smaller than the output interval
+		double[] times = createTimes(3, 10.0);
+		DormandPrinceIntegrator integrator = new DormandPrinceIntegrator(1e-8, 1e-12);
+		assertTrue(maxDecayError(integrator, 0.5, times)<1e-7);
+		assertTrue(integrator.getnStepsAccepted()>2);
+		
+		// dense output times: the internal steps are not shrunk to the output interval
+		times = createTimes(1001, 0.01);
+		assertTrue(maxDecayError(integrator, 0.5, times)<1e-7);
+		assertTrue(integrator.getnStepsAccepted()<1500);
+	}
+
+	@Test
+	public void testDormandPrinceOscillator() {
+		double[] times = createTimes(11, Math.PI/5);
+		double[] state = new double[]{1.0, 0.0};
+		double[][] simulated = new double[2][11];
+		Integrator integrator = new DormandPrinceIntegrator(1e-9, 1e-12);
+		integrator.integrate(new Oscillator(), state, times, 0, 11, simulated);
+		for (int iTime=0;iTime<11;iTime++){
+			assertEquals(Math.cos(times[iTime]), simulated[0][iTime], 1e-7);
+			assertEquals(-Math.sin(times[iTime]), simulated[1][iTime], 1e-7);
+		}
+	}
+
+	@Test
+	public void testBackwardEulerIsStableOnStiffProblems() {
+		double[] times = createTimes(11, 0.1);
+		double rate = 1000;
+		// explicit Euler with rate*timeStep=100 blows up, backward Euler does not
+		assertTrue(maxDecayError(new ForwardEulerIntegrator(), rate, times)>1e10);
+		assertTrue(maxDecayError(new BackwardEulerIntegrator(), rate, times)<0.01);
+		assertTrue(maxDecayError(new BackwardEulerIntegrator(0.001), 0.5, createTimes(11, 1.0))<1e-3);
+	}
+
+	@Test
+	public void testOffsetIntoSharedArrays() {
+		double[] times = createTimes(10, 1.0);
+		double[][] simulated = new double[1][10];
+		double[] state = new double[]{1.0};
+		new RungeKutta4Integrator().integrate(new Decay(0.1), state, times, 4, 3, simulated);
+		assertTrue(simulated[0][3]==0.0);
+		assertTrue(simulated[0][4]==1.0);
+		assertEquals(Math.exp(-0.2), simulated[0][6], 1e-6);
+		assertTrue(simulated[0][7]==0.0);
+	}
+
+	@Test
+	public void testLinearDynamicStateSpaceModelWithIntegrator() {
+		double resistance = 150;
+		double[] times = createTimes(51, 2.0);
+		double[] initState = new double[]{30};
+		double[] parameterVector = new double[]{resistance};
+		double[] forcing = new double[times.length];
+		double[][] simEuler = new LinearDynamicStateSpaceModel(initState, parameterVector, forcing, times).evaluate();
+		double[][] simDormandPrince = new LinearDynamicStateSpaceModel(initState, parameterVector, forcing, times, 
+				new DormandPrinceIntegrator()).evaluate();
+		double exact = 30*Math.exp(-times[50]/resistance);
+		assertEquals(exact, simDormandPrince[0][50], 1e-5);
+		assertTrue(Math.abs(exact-simEuler[0][50])>1e-3);
+	}
+
+}
@@ -0,0 +1,139 @@
+package nl.esciencecenter.diffevo;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import nl.esciencecenter.diffevo.integrators.MatrixExponential;
+import nl.esciencecenter.diffevo.integrators.OdeSystem;
+import nl.esciencecenter.diffevo.integrators.RungeKutta4Integrator;
+import nl.esciencecenter.diffevo.statespacemodels.LinearReservoirCascadeSystem;
+import nl.esciencecenter.diffevo.statespacemodels.LinearTimeInvariantModel;
+import nl.esciencecenter.diffevo.statespacemodels.ReusableModel;
+import nl.esciencecenter.diffevo.statespacemodels.TimeStepTable;
+import nl.esciencecenter.diffevo.statespacemodels.TimeStepTableCache;
+
+import org.junit.Test;
+
+public class LinearTimeInvariantModelTest {
+	
+	private double[] times = new double[]{0, 0.5, 1, 1.5, 3, 4.5, 6, 6.5, 20, 20.5};
+
+	@Test
+	public void testMatrixExponential() {
+		// exp of a rotation generator is a rotation, also for a large angle that requires squaring
+		double angle = 7.3;
+		double[][] generator = new double[][]{{0, -1},{1, 0}};
+		double[][] result = new double[2][2];
+		new MatrixExponential().calculate(generator, angle, 2, result);
+		assertEquals(Math.cos(angle), result[0][0], 1e-13);
+		assertEquals(-Math.sin(angle), result[0][1], 1e-13);
+		assertEquals(Math.sin(angle), result[1][0], 1e-13);
+		assertEquals(Math.cos(angle), result[1][1], 1e-13);
+	}
+	
+	@Test
+	public void testTimeStepTable() {
+		TimeStepTable timeStepTable = new TimeStepTable(times);
+		assertEquals(3, timeStepTable.getnDistinctSteps());
+		assertTrue(timeStepTable.isFor(times));
+		assertFalse(timeStepTable.isFor(times.clone()));
+		assertEquals(timeStepTable.getStepIndex(0), timeStepTable.getStepIndex(8));
+		assertEquals(1.5, timeStepTable.getDistinctStep(timeStepTable.getStepIndex(4)), 0.0);
+	}
+
+	@Test
+	public void testTimeStepTableOfIrregularGrid() {
+		// every other step is a repeated one, the others all differ; the times are exact in binary
+		int nTimes = 200001;
+		double[] irregularTimes = new double[nTimes];
+		for (int iTime=1;iTime<nTimes;iTime++){
+			double step = iTime%2==0 ? 0.5 : 1 + iTime/1048576.0;
+			irregularTimes[iTime] = irregularTimes[iTime-1] + step;
+		}
+		TimeStepTable timeStepTable = new TimeStepTable(irregularTimes);
+		assertEquals(nTimes/2 + 1, timeStepTable.getnDistinctSteps());
+		for (int iTime=0;iTime<nTimes-1;iTime++){
+			double step = irregularTimes[iTime+1]-irregularTimes[iTime];
+			assertEquals(step, timeStepTable.getDistinctStep(timeStepTable.getStepIndex(iTime)), 0.0);
+		}
+		assertEquals(timeStepTable.getStepIndex(1), timeStepTable.getStepIndex(nTimes-2));
+		assertEquals(1, timeStepTable.getStepIndex(1));
+	}
+
+	@Test
+	public void testSingleReservoirIsExact() {
+		double x0 = 30;
+		double resistance = 2.5;
+		double inflow = 3;
+		double[] forcing = new double[times.length];
+		Arrays.fill(forcing, inflow);
+		
+		double[][] simulated = new LinearTimeInvariantModel(new double[]{x0}, new double[]{resistance}, forcing, times, 
+				new LinearReservoirCascadeSystem(1)).evaluate();
+		
+		double equilibrium = inflow * resistance;
+		for (int iTime=0;iTime<times.length;iTime++){
+			double expected = equilibrium + (x0-equilibrium) * Math.exp(-times[iTime]/resistance);
+			assertEquals(expected, simulated[0][iTime], 1e-12*x0);
+		}
+	}
+	
+	@Test
+	public void testCascadeAgreesWithRungeKutta() {
+		final double[] resistances = new double[]{2, 5, 0.7};
+		final double[] forcing = new double[]{1, 4, 0, 0, 2, 7, 1, 1, 0, 0};
+		double[] initState = new double[]{3, 1, 0};
+		
+		double[][] simulated = new LinearTimeInvariantModel(initState, resistances, forcing, times, 
+				new LinearReservoirCascadeSystem(3)).evaluate();
+		
+		// integrate the same system interval by interval, with the forcing held constant
+		final double[] inflow = new double[1];
+		OdeSystem cascade = new OdeSystem(){
+			public int getnStates(){
+				return 3;
+			}
+			public void calcDerivatives(double time, double[] state, double[] derivatives){
+				derivatives[0] = inflow[0] - state[0]/resistances[0];
+				derivatives[1] = state[0]/resistances[0] - state[1]/resistances[1];
+				derivatives[2] = state[1]/resistances[1] - state[2]/resistances[2];
+			}
+		};
+		RungeKutta4Integrator integrator = new RungeKutta4Integrator(0.001);
+		double[] state = initState.clone();
+		double[][] expected = new double[3][times.length];
+		for (int iTime=0;iTime<times.length-1;iTime++){
+			inflow[0] = forcing[iTime];
+			integrator.integrate(cascade, state, times, iTime, 2, expected);
+		}
+		for (int iState=0;iState<3;iState++){
+			assertArrayEquals(expected[iState], simulated[iState], 1e-9);
+		}
+	}
+	
+	@Test
+	public void testReuseAcrossMembersAndChunks() {
+		double[] forcing = new double[]{1, 4, 0, 0, 2, 7, 1, 1, 0, 0};
+		double[] initState = new double[]{3, 1};
+		ReusableModel reusableModel = new LinearTimeInvariantModel(new LinearReservoirCascadeSystem(2), 2, new TimeStepTableCache());
+		double[][] simulated = new double[2][times.length];
+		
+		for (double resistance : new double[]{20, 150, 3, 3}){
+			double[] parameterVector = new double[]{resistance, 2*resistance};
+			double[][] expected = new LinearTimeInvariantModel(initState, parameterVector, forcing, times, 
+					new LinearReservoirCascadeSystem(2)).evaluate();
+			
+			// two chunks that share the element at index 4
+			reusableModel.reset(initState, parameterVector, forcing, times, 0, 5);
+			reusableModel.evaluate(simulated);
+			reusableModel.reset(new double[]{simulated[0][4], simulated[1][4]}, parameterVector, forcing, times, 4, times.length-4);
+			reusableModel.evaluate(simulated);
+			
+			for (int iState=0;iState<2;iState++){
+				assertArrayEquals(expected[iState], simulated[iState], 0.0);
+			}
+		}
+	}
+	
+}
@@ -0,0 +1,75 @@
+package nl.esciencecenter.diffevo;
+
+import static org.junit.Assert.*;
+
+import nl.esciencecenter.diffevo.likelihoodfunctionfactories.LikelihoodFunctionFactory;
+import nl.esciencecenter.diffevo.likelihoodfunctionfactories.LikelihoodFunctionSingleNormalModelFactory;
+
+import org.junit.Test;
+
+public class MultipleTryTest {
+
+	private int nGens;
+	private int nPop;
+	private int nTries;
+	private ParSpace parSpace;
+	private LikelihoodFunctionFactory likelihoodFunctionFactory;
+
+	public MultipleTryTest(){
+		nGens = 1000;
+		nPop = 20;
+		nTries = 4;
+		double[] lowerBoundsParSpace = new double[]{-50};
+		double[] upperBoundsParSpace = new double[]{40};
+		String[] parNames = new String[]{"theta"};
+		parSpace = new ParSpace(lowerBoundsParSpace,upperBoundsParSpace,parNames);
+		parSpace.divideIntoIntervals(50);
+		likelihoodFunctionFactory = (LikelihoodFunctionFactory) new LikelihoodFunctionSingleNormalModelFactory();
+	}
+	
+	private EvalResults runOptimization(int nThreads){
+		long randomSeed = 0;
+		DiffEvo diffEvo = new DiffEvo(nGens, nPop, parSpace, likelihoodFunctionFactory, randomSeed);
+		diffEvo.setnTries(nTries);
+		diffEvo.setnThreads(nThreads);
+		return diffEvo.runOptimization();
+	}
+	
+	@Test
+	public void testNumberOfEvalResults() {
+		EvalResults evalResults = runOptimization(1);
+		assertEquals(nGens*nPop, evalResults.size());
+	}
+
+	@Test
+	public void testIfMeanIsNearTrueMean() {
+		double meanExpected = -10.0;
+		double tolerance = 0.75;
+		
+		EvalResults evalResults = runOptimization(2);
+		int nHistory = 10000;
+		int nResults = evalResults.size();
+		double sum = 0;
+		for (int iHistory=nResults-nHistory;iHistory<nResults;iHistory++){
+			sum = sum + evalResults.getParameterCombination(iHistory)[0];
+		}
+		double meanActual = sum/nHistory;
+		
+		assertTrue(Math.abs(meanExpected-meanActual)<tolerance);
+	}
+
+	@Test
+	public void testIfThreadsDoNotChangeTheResult() {
+		EvalResults evalResultsSequential = runOptimization(1);
+		EvalResults evalResultsParallel = runOptimization(3);
+		
+		int nResults = evalResultsSequential.size();
+		assertEquals(nResults, evalResultsParallel.size());
+		for (int iResult=0;iResult<nResults;iResult++){
+			assertArrayEquals(evalResultsSequential.getParameterCombination(iResult), 
+					evalResultsParallel.getParameterCombination(iResult), 0.0);
+			assertTrue(evalResultsSequential.getObjScore(iResult)==evalResultsParallel.getObjScore(iResult));
+		}
+	}
+
+}
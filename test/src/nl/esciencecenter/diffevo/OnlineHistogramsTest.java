@@ -0,0 +1,101 @@
+package nl.esciencecenter.diffevo;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import nl.esciencecenter.diffevo.likelihoodfunctionfactories.LikelihoodFunctionFactory;
+import nl.esciencecenter.diffevo.likelihoodfunctionfactories.LikelihoodFunctionRastriginModelFactory;
+
+import org.junit.Test;
+
+public class OnlineHistogramsTest {
+
+	private ParSpace parSpace;
+	private LikelihoodFunctionFactory likelihoodFunctionFactory;
+	
+	public OnlineHistogramsTest(){
+		double[] lowerBounds = new double[]{-5.12,-5.12,-5.12};
+		double[] upperBounds = new double[]{5.12,5.12,5.12};
+		String[] parNames = new String[]{"p1","p2","p3"};
+		this.parSpace = new ParSpace(lowerBounds,upperBounds,parNames);
+		this.parSpace.divideIntoIntervals(20);
+		this.likelihoodFunctionFactory = new LikelihoodFunctionRastriginModelFactory();
+	}
+	
+	private static void assertSameCounts(Histograms expected, Histograms actual, int nPars){
+		assertEquals(expected.getnResults(), actual.getnResults());
+		for (int iParRow=0;iParRow<nPars;iParRow++){
+			assertArrayEquals(expected.getMarginal(iParRow), actual.getMarginal(iParRow));
+			for (int iParCol=iParRow+1;iParCol<nPars;iParCol++){
+				int[][] pairExpected = expected.getPair(iParRow, iParCol);
+				int[][] pairActual = actual.getPair(iParRow, iParCol);
+				for (int iRow=0;iRow<pairExpected.length;iRow++){
+					assertArrayEquals(pairExpected[iRow], pairActual[iRow]);
+				}
+			}
+		}
+	}
+	
+	@Test
+	public void testSameAsAfterTheRun() {
+		DiffEvo diffEvo = new DiffEvo(40, 30, parSpace, likelihoodFunctionFactory, 0);
+		diffEvo.setOnlineHistograms(true);
+		EvalResults evalResults = diffEvo.runOptimization();
+		
+		Histograms online = diffEvo.getOnlineHistograms().getSnapshot();
+		assertSameCounts(Histograms.calculate(evalResults, 2), online, 3);
+	}
+	
+	@Test
+	public void testSnapshotsDuringTheRun() throws InterruptedException {
+		
+		DiffEvo diffEvo = new DiffEvo(200, 30, parSpace, likelihoodFunctionFactory, 0);
+		diffEvo.setOnlineHistograms(true);
+		final OnlineHistograms onlineHistograms = diffEvo.getOnlineHistograms();
+		final List<Histograms> snapshots = new ArrayList<Histograms>();
+		final boolean[] done = new boolean[1];
+		
+		Thread reader = new Thread(){
+			public void run(){
+				while (true){
+					synchronized (done){
+						if (done[0]){
+							return;
+						}
+					}
+					snapshots.add(onlineHistograms.getSnapshot());
+					try {
+						Thread.sleep(1);
+					} catch (InterruptedException e) {
+						return;
+					}
+				}
+			}
+		};
+		reader.start();
+		EvalResults evalResults = diffEvo.runOptimization();
+		synchronized (done){
+			done[0] = true;
+		}
+		reader.join();
+		
+		// every snapshot should equal the histograms of the results that had been added at the time
+		EvalResults prefix = new EvalResults(1, 1, parSpace, likelihoodFunctionFactory, new Random(0));
+		int nAdded = 0;
+		int nResultsPrevious = 0;
+		for (Histograms snapshot : snapshots){
+			assertTrue(snapshot.getnResults()>=nResultsPrevious);
+			nResultsPrevious = snapshot.getnResults();
+			while (nAdded<snapshot.getnResults()){
+				prefix.add(evalResults.getEvalResult(nAdded));
+				nAdded++;
+			}
+			assertSameCounts(Histograms.calculate(prefix, 1), snapshot, 3);
+		}
+		assertFalse(snapshots.isEmpty());
+	}
+
+}
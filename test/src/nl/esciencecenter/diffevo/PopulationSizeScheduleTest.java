@@ -0,0 +1,66 @@
+package nl.esciencecenter.diffevo;
+
+import static org.junit.Assert.*;
+
+import nl.esciencecenter.diffevo.likelihoodfunctionfactories.LikelihoodFunctionFactory;
+import nl.esciencecenter.diffevo.likelihoodfunctionfactories.LikelihoodFunctionRosenbrockModelFactory;
+
+import org.junit.Test;
+
+public class PopulationSizeScheduleTest {
+
+	private int nGens;
+	private int nPop;
+	private int nPopMin;
+	private ParSpace parSpace;
+	private EvalResults evalResults;
+
+	public PopulationSizeScheduleTest(){
+		nGens = 3000;
+		nPop = 50;
+		nPopMin = 8;
+		double[] lowerBoundsParSpace = new double[]{-50,-40};
+		double[] upperBoundsParSpace = new double[]{50,80};
+		String[] parNames = new String[]{"p1","p2"};
+		parSpace = new ParSpace(lowerBoundsParSpace,upperBoundsParSpace,parNames);
+		LikelihoodFunctionFactory likelihoodFunctionFactory = (LikelihoodFunctionFactory) new LikelihoodFunctionRosenbrockModelFactory();
+	
+		DiffEvo diffEvo = new DiffEvo(nGens, nPop, parSpace, likelihoodFunctionFactory);
+		diffEvo.setPopulationSizeSchedule(new LinearPopulationSizeSchedule(nPopMin));
+		evalResults = diffEvo.runOptimization();
+	}
+	
+	@Test
+	public void testLinearPopulationSizeSchedule() {
+		PopulationSizeSchedule schedule = new LinearPopulationSizeSchedule(10);
+		assertEquals(50, schedule.getPopulationSize(0, 11, 50));
+		assertEquals(30, schedule.getPopulationSize(5, 11, 50));
+		assertEquals(10, schedule.getPopulationSize(10, 11, 50));
+	}
+	
+	@Test
+	public void testPopulationSizes() {
+		int nResultsExpected = 0;
+		for (int iGen=0;iGen<nGens;iGen++){
+			int nPopExpected = (int) Math.round(nPop + (nPopMin - nPop) * ((double) iGen/(nGens-1)));
+			assertEquals(nPopExpected, evalResults.getnPop(iGen));
+			nResultsExpected = nResultsExpected + nPopExpected;
+		}
+		assertEquals(nResultsExpected, evalResults.size());
+		assertEquals(nPop, evalResults.getnPop());
+	}
+	
+	@Test
+	public void testIfResultIsNearOptimum() {
+		double[] optimumExpected = new double[]{1.0,1.0};
+		double tolerance = 0.1;
+		
+		int[] bestIndices = evalResults.sampleIdentifiersOfBest();
+		double[] optimumActual = evalResults.getParameterCombination(bestIndices[0]);
+		
+		for (int iPar=0;iPar<2;iPar++){
+			assertTrue(Math.abs(optimumExpected[iPar]-optimumActual[iPar])<tolerance);
+		}
+	}
+
+}
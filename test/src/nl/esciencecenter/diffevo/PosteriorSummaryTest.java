@@ -0,0 +1,104 @@
+package nl.esciencecenter.diffevo;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import nl.esciencecenter.diffevo.likelihoodfunctionfactories.LikelihoodFunctionFactory;
+import nl.esciencecenter.diffevo.likelihoodfunctionfactories.LikelihoodFunctionRastriginModelFactory;
+
+import org.junit.Test;
+
+public class PosteriorSummaryTest {
+
+	private DiffEvo createDiffEvo(){
+		double[] lowerBounds = new double[]{-5.12,-5.12,-5.12};
+		double[] upperBounds = new double[]{5.12,5.12,5.12};
+		String[] parNames = new String[]{"p1","p2","p3"};
+		ParSpace parSpace = new ParSpace(lowerBounds,upperBounds,parNames);
+		LikelihoodFunctionFactory likelihoodFunctionFactory = new LikelihoodFunctionRastriginModelFactory();
+		return new DiffEvo(100, 30, parSpace, likelihoodFunctionFactory, 0);
+	}
+	
+	@Test
+	public void testAgainstTwoPass() {
+		
+		int burnIn = 600;
+		DiffEvo diffEvo = createDiffEvo();
+		PosteriorSummary online = new PosteriorSummary(3, burnIn);
+		diffEvo.getEvalResults().addListener(online);
+		EvalResults evalResults = diffEvo.runOptimization();
+		
+		// means and covariances the textbook way, over the samples after the burn-in
+		int nPars = 3;
+		int nSamples = 0;
+		double[] means = new double[nPars];
+		for (EvalResult evalResult : evalResults.getEvalResults()){
+			if (evalResult.getSampleIdentifier()>=burnIn){
+				nSamples++;
+				for (int iPar=0;iPar<nPars;iPar++){
+					means[iPar] += evalResult.getParameterValue(iPar);
+				}
+			}
+		}
+		for (int iPar=0;iPar<nPars;iPar++){
+			means[iPar] /= nSamples;
+		}
+		double[][] covariance = new double[nPars][nPars];
+		for (EvalResult evalResult : evalResults.getEvalResults()){
+			if (evalResult.getSampleIdentifier()>=burnIn){
+				for (int iPar=0;iPar<nPars;iPar++){
+					for (int jPar=0;jPar<nPars;jPar++){
+						covariance[iPar][jPar] += (evalResult.getParameterValue(iPar)-means[iPar])*
+								(evalResult.getParameterValue(jPar)-means[jPar])/(nSamples-1);
+					}
+				}
+			}
+		}
+		
+		PosteriorSummary[] summaries = new PosteriorSummary[]{online, PosteriorSummary.calculate(evalResults, burnIn, 1),
+				PosteriorSummary.calculate(evalResults, burnIn, 4)};
+		for (PosteriorSummary summary : summaries){
+			assertEquals(nSamples, summary.getnSamples());
+			for (int iPar=0;iPar<nPars;iPar++){
+				assertEquals(means[iPar], summary.getMean(iPar), 1e-12);
+				for (int jPar=0;jPar<nPars;jPar++){
+					assertEquals(covariance[iPar][jPar], summary.getCovariance(iPar, jPar), 1e-10);
+				}
+			}
+		}
+		
+		// the medians of all summaries should be close to the median of the samples
+		double[] values = new double[nSamples];
+		int iSample = 0;
+		for (EvalResult evalResult : evalResults.getEvalResults()){
+			if (evalResult.getSampleIdentifier()>=burnIn){
+				values[iSample++] = evalResult.getParameterValue(1);
+			}
+		}
+		Arrays.sort(values);
+		for (PosteriorSummary summary : summaries){
+			double median = summary.getQuantile(1, 0.5);
+			int rank = Arrays.binarySearch(values, median);
+			rank = rank<0 ? -rank-1 : rank;
+			assertEquals(0.5, (double) rank/nSamples, 0.01);
+		}
+	}
+	
+	@Test
+	public void testEmpty() {
+		PosteriorSummary summary = new PosteriorSummary(2);
+		assertEquals(0, summary.getnSamples());
+		assertTrue(Double.isNaN(summary.getMean(0)));
+		assertTrue(Double.isNaN(summary.getVariance(1)));
+		assertTrue(Double.isNaN(summary.getQuantile(0, 0.5)));
+		summary.add(new PosteriorSummary(2));
+		assertEquals(0, summary.getnSamples());
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testDifferentBurnInsCanNotBeAdded() {
+		new PosteriorSummary(2, 100).add(new PosteriorSummary(2, 200));
+	}
+
+}
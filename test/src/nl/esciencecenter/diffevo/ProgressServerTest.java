@@ -0,0 +1,137 @@
+package nl.esciencecenter.diffevo;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.URL;
+import java.util.Random;
+
+import nl.esciencecenter.diffevo.likelihoodfunctionfactories.LikelihoodFunctionFactory;
+import nl.esciencecenter.diffevo.likelihoodfunctionfactories.LikelihoodFunctionRastriginModelFactory;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ProgressServerTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	private EvalResults evalResults;
+	private ProgressServer progressServer;
+	
+	@Before
+	public void setUp() throws IOException {
+		
+		ParSpace parSpace = new ParSpace(new double[]{-1,-1}, new double[]{1,1}, new String[]{"p1","p2"});
+		LikelihoodFunctionFactory likelihoodFunctionFactory = new LikelihoodFunctionRastriginModelFactory();
+		evalResults = new EvalResults(1, 1, parSpace, likelihoodFunctionFactory, new Random(0));
+		for (int iResult=0;iResult<3;iResult++){
+			evalResults.add(new EvalResult(iResult, iResult, new double[]{0.5*iResult,-0.25}, -iResult));
+		}
+		
+		File pages = folder.newFolder("pages");
+		FileOutputStream output = new FileOutputStream(new File(pages, "index.html"));
+		output.write("<html></html>".getBytes("UTF-8"));
+		output.close();
+		folder.newFile("outside.txt");
+		
+		progressServer = new ProgressServer(evalResults, pages);
+		progressServer.start(0);
+	}
+	
+	@After
+	public void tearDown(){
+		progressServer.stop();
+	}
+	
+	private byte[] get(String path, int statusExpected) throws IOException {
+		InetAddress loopback = InetAddress.getLoopbackAddress();
+		String host = loopback instanceof Inet6Address ? "["+loopback.getHostAddress()+"]" : loopback.getHostAddress();
+		URL url = new URL("http://"+host+":"+progressServer.getPort()+path);
+		HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+		assertEquals(statusExpected, connection.getResponseCode());
+		InputStream input = statusExpected==200 ? connection.getInputStream() : connection.getErrorStream();
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		int n;
+		while ((n = input.read(buffer))>0){
+			bytes.write(buffer, 0, n);
+		}
+		input.close();
+		return bytes.toByteArray();
+	}
+	
+	@Test
+	public void testAllResults() throws IOException {
+		String expected = "[\n{\"s\":0,\"p\":[0.0,-0.25],\"o\":0.0},\n{\"s\":1,\"p\":[0.5,-0.25],\"o\":-1.0},\n"+
+				"{\"s\":2,\"p\":[1.0,-0.25],\"o\":-2.0}\n]\n";
+		assertEquals(expected, new String(get("/evalresults.json", 200), "UTF-8"));
+		assertEquals(expected, new String(get("/evalresults", 200), "UTF-8"));
+	}
+	
+	@Test
+	public void testResultsSince() throws IOException {
+		
+		evalResults.add(new EvalResult(3, 3, new double[]{0.75,Double.NaN}, -3));
+		
+		assertEquals("[\n{\"s\":2,\"p\":[1.0,-0.25],\"o\":-2.0},\n{\"s\":3,\"p\":[0.75,null],\"o\":-3.0}\n]\n", 
+				new String(get("/evalresults?since=1", 200), "UTF-8"));
+		assertEquals("[\n\n]\n", new String(get("/evalresults?since=3", 200), "UTF-8"));
+		get("/evalresults?since=x", 400);
+		
+		DataInputStream input = new DataInputStream(new ByteArrayInputStream(get("/evalresults?since=2&format=binary", 200)));
+		assertEquals(1, input.readInt());
+		assertEquals(2, input.readInt());
+		assertEquals(3, input.readInt());
+		assertEquals(0.75, input.readDouble(), 0.0);
+		assertTrue(Double.isNaN(input.readDouble()));
+		assertEquals(-3.0, input.readDouble(), 0.0);
+		assertEquals(-1, input.read());
+	}
+	
+	@Test
+	public void testPages() throws IOException {
+		assertEquals("<html></html>", new String(get("/", 200), "UTF-8"));
+		assertEquals("<html></html>", new String(get("/index.html", 200), "UTF-8"));
+		get("/missing.html", 404);
+		get("/../outside.txt", 404);
+		get("/%2e%2e/outside.txt", 404);
+	}
+
+	@Test
+	public void testStopWhileResultsAreAdded() throws InterruptedException {
+		final Throwable[] failure = new Throwable[1];
+		Thread optimizer = new Thread(new Runnable(){
+			public void run(){
+				try {
+					for (int iResult=3;iResult<200000;iResult++){
+						evalResults.add(new EvalResult(iResult, iResult, new double[]{0.1,0.2}, -iResult));
+					}
+				}
+				catch (Throwable t){
+					failure[0] = t;
+				}
+			}
+		});
+		optimizer.start();
+		Thread.sleep(5);
+		progressServer.stop();
+		optimizer.join();
+		assertNull(failure[0]);
+		assertEquals(200000, evalResults.getNumberOfEvalResults());
+	}
+
+}
@@ -0,0 +1,96 @@
+package nl.esciencecenter.diffevo;
+
+import static org.junit.Assert.*;
+
+import nl.esciencecenter.diffevo.integrators.ForwardEulerIntegrator;
+import nl.esciencecenter.diffevo.likelihoodfunctionfactories.LikelihoodFunctionSSRFactory;
+import nl.esciencecenter.diffevo.statespacemodelfactories.LinearDynamicStateSpaceModelFactory;
+import nl.esciencecenter.diffevo.statespacemodelfactories.ModelFactory;
+import nl.esciencecenter.diffevo.statespacemodels.LinearDynamicStateSpaceModel;
+import nl.esciencecenter.diffevo.statespacemodels.Model;
+import nl.esciencecenter.diffevo.statespacemodels.ReusableModel;
+
+import org.junit.Test;
+
+public class ReusableModelTest {
+
+	private double[] times = new double[]{0,1,2,3,4,5,6,7,8};
+	private double[] forcing = new double[]{0,0,0,0,0,0,0,0,0};
+	private double[] assimilate = new double[]{0,0,0,1,0,0,1,0,1};
+	
+	@Test
+	public void testResetAndEvaluateIntoBuffer() {
+		ReusableModel reusableModel = new LinearDynamicStateSpaceModel(1, 1, new ForwardEulerIntegrator());
+		double[][] buffer = new double[1][12];
+		
+		for (double resistance : new double[]{20, 150, 3}){
+			double[] initState = new double[]{30};
+			double[] parameterVector = new double[]{resistance};
+			double[][] expected = new LinearDynamicStateSpaceModel(initState, parameterVector, forcing, times).evaluate();
+			
+			reusableModel.reset(initState, parameterVector, forcing, times, 0, times.length);
+			// changing the caller's arrays after reset does not affect the model
+			initState[0] = -1;
+			parameterVector[0] = -1;
+			reusableModel.evaluate(buffer);
+			
+			for (int iTime=0;iTime<times.length;iTime++){
+				assertTrue(expected[0][iTime]==buffer[0][iTime]);
+			}
+		}
+	}
+
+	@Test
+	public void testResetWithView() {
+		ReusableModel reusableModel = new LinearDynamicStateSpaceModel(1, 1, new ForwardEulerIntegrator());
+		double[][] simulated = new double[1][times.length];
+		double[] initState = new double[]{30};
+		double[] parameterVector = new double[]{20};
+		
+		// evaluate chunk [3,6] of the shared times array
+		reusableModel.reset(initState, parameterVector, forcing, times, 3, 4);
+		reusableModel.evaluate(simulated);
+		double[] timesChunk = new double[]{3,4,5,6};
+		double[][] expected = new LinearDynamicStateSpaceModel(initState, parameterVector, forcing, timesChunk).evaluate();
+		
+		for (int iTime=0;iTime<times.length;iTime++){
+			if (iTime<3 || iTime>6){
+				assertTrue(simulated[0][iTime]==0);
+			}
+			else {
+				assertTrue(simulated[0][iTime]==expected[0][iTime-3]);
+			}
+		}
+	}
+
+	@Test
+	public void testReusableModelsInListOfParameterCombinations() {
+		final ModelFactory reusableModelFactory = new LinearDynamicStateSpaceModelFactory();
+		// wraps the factory so that it only offers the create method
+		ModelFactory modelFactory = new ModelFactory(){
+			public Model create(double[] initState, double[] parameterVector, double[] forcing, double[] times) {
+				return reusableModelFactory.create(initState, parameterVector, forcing, times);
+			}
+		};
+		
+		int nPop = 4;
+		double[] initState = new double[]{30};
+		TimeChunks timeChunks = new TimeChunks(times.clone(), assimilate.clone());
+		ForcingChunks forcingChunks = new ForcingChunks(forcing.clone(), assimilate.clone());
+		ListOfParameterCombinations expected = new ListOfParameterCombinations(nPop, 1, new LikelihoodFunctionSSRFactory(), 
+				initState, timeChunks, forcingChunks, modelFactory);
+		ListOfParameterCombinations actual = new ListOfParameterCombinations(nPop, 1, new LikelihoodFunctionSSRFactory(), 
+				initState, timeChunks, forcingChunks, reusableModelFactory);
+		for (int iPop=0;iPop<nPop;iPop++){
+			expected.setParameterCombination(iPop, new double[]{10+50*iPop});
+			actual.setParameterCombination(iPop, new double[]{10+50*iPop});
+		}
+		expected.calcModelResults();
+		actual.calcModelResults();
+		
+		for (int iPop=0;iPop<nPop;iPop++){
+			assertArrayEquals(expected.getModelResult(iPop)[0], actual.getModelResult(iPop)[0], 0.0);
+		}
+	}
+
+}
@@ -0,0 +1,185 @@
+package nl.esciencecenter.diffevo;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.nio.DoubleBuffer;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+import nl.esciencecenter.diffevo.likelihoodfunctionfactories.LikelihoodFunctionSSRFactory;
+import nl.esciencecenter.diffevo.statespacemodelfactories.ForcedLinearReservoirModelFactory;
+import nl.esciencecenter.diffevo.statespacemodelfactories.LinearDynamicStateSpaceBatchModelFactory;
+import nl.esciencecenter.diffevo.statespacemodelfactories.LinearDynamicStateSpaceModelFactory;
+import nl.esciencecenter.diffevo.statespacemodelfactories.LinearTimeInvariantModelFactory;
+import nl.esciencecenter.diffevo.statespacemodelfactories.ModelFactory;
+import nl.esciencecenter.diffevo.statespacemodelfactories.SparseLinearModelFactory;
+import nl.esciencecenter.diffevo.statespacemodels.LinearDynamicStateSpaceModel;
+import nl.esciencecenter.diffevo.statespacemodels.LinearReservoirCascadeSystem;
+import nl.esciencecenter.diffevo.statespacemodels.LinearReservoirNetworkSystem;
+import nl.esciencecenter.diffevo.statespacemodels.Model;
+
+import org.junit.Test;
+
+public class SeriesSourceTest {
+	
+	private double[] times;
+	private double[] assimilate;
+	private double[][] obs;
+	private double[] forcing;
+	private ParSpace parSpace;
+	private StateSpace stateSpace;
+	
+	public SeriesSourceTest(){
+		File file  = new File("test"+File.separator+"data"+File.separator+"lineartank.eas");
+		double[][] data = new DataReader(file).getData();
+		times = data[0];
+		assimilate = data[1];
+		obs = new double[][]{data[3]};
+		forcing = data[4];
+		parSpace = new ParSpace(new double[] {10}, new double[] {500}, new String[] {"resistance"});
+		stateSpace = new StateSpace(new double[] {0}, new double[] {100}, new String[] {"waterlevel"});
+	}
+	
+	private static SeriesSource createBufferSource(double[] values){
+		// a buffer rather than an array, so that it is read through a window
+		return new BufferSeriesSource(DoubleBuffer.wrap(values.clone()));
+	}
+	
+	private EvalResults runOptimization(double[] initState, ModelFactory modelFactory, ModelResultRetention modelResultRetention, 
+			int[] observedStates, boolean isWindowed){
+		DiffEvo diffEvo;
+		if (isWindowed){
+			diffEvo = new DiffEvo(6, 8, parSpace, stateSpace, initState, createBufferSource(forcing), createBufferSource(times), 
+					assimilate, obs, modelFactory, new LikelihoodFunctionSSRFactory(), 0);
+			// shorter than the series, so that several windows are needed
+			diffEvo.setWindowLength(7);
+		}
+		else {
+			diffEvo = new DiffEvo(6, 8, parSpace, stateSpace, initState, forcing, times, 
+					assimilate, obs, modelFactory, new LikelihoodFunctionSSRFactory(), 0);
+		}
+		diffEvo.setModelResultRetention(modelResultRetention);
+		if (observedStates!=null){
+			diffEvo.setObservedStates(observedStates);
+		}
+		diffEvo.setnThreads(2);
+		return diffEvo.runOptimization();
+	}
+	
+	private void assertWindowedGivesIdenticalResults(double[] initState, ModelFactory modelFactory, int[] observedStates){
+		for (ModelResultRetention modelResultRetention : new ModelResultRetention[]{ModelResultRetention.TRAJECTORY, 
+				ModelResultRetention.FINAL_STATE, ModelResultRetention.NONE}){
+			EvalResults expected = runOptimization(initState, modelFactory, modelResultRetention, observedStates, false);
+			EvalResults actual = runOptimization(initState, modelFactory, modelResultRetention, observedStates, true);
+			assertEquals(expected.size(), actual.size());
+			for (int iResult=0;iResult<expected.size();iResult++){
+				assertArrayEquals(expected.getParameterCombination(iResult), actual.getParameterCombination(iResult), 0.0);
+				assertEquals(modelResultRetention+" "+iResult, expected.getObjScore(iResult), actual.getObjScore(iResult), 0.0);
+				double[][] modelResult = expected.getEvalResult(iResult).getModelResult();
+				if (modelResult!=null){
+					for (int iState=0;iState<modelResult.length;iState++){
+						assertArrayEquals(modelResult[iState], actual.getEvalResult(iResult).getModelResult()[iState], 0.0);
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testWindowedGivesIdenticalResults() {
+		ModelFactory plainModelFactory = new ModelFactory(){
+			public Model create(double[] initState, double[] parameterVector, double[] forcing, double[] times){
+				return new LinearDynamicStateSpaceModel(initState, parameterVector, forcing, times);
+			}
+		};
+		double[] initState = new double[]{30};
+		for (ModelFactory modelFactory : new ModelFactory[]{new LinearDynamicStateSpaceModelFactory(), plainModelFactory, 
+				new LinearDynamicStateSpaceBatchModelFactory(), new LinearTimeInvariantModelFactory(new LinearReservoirCascadeSystem(1)), 
+				new ForcedLinearReservoirModelFactory()}){
+			assertWindowedGivesIdenticalResults(initState, modelFactory, null);
+		}
+		// a partially observed model, which writes only the observed state
+		assertWindowedGivesIdenticalResults(new double[]{30, 0, 0}, 
+				new SparseLinearModelFactory(new LinearReservoirNetworkSystem(new int[]{1, 2, -1})), new int[]{2});
+	}
+	
+	private ListOfParameterCombinations createCascadePopulation(int nMembers, int[] observedStates){
+		ListOfParameterCombinations population = new ListOfParameterCombinations(nMembers, 3, new LikelihoodFunctionSSRFactory(), 
+				new double[]{30, 0, 0}, new TimeChunks(times, assimilate.clone()), new ForcingChunks(forcing, assimilate.clone()), 
+				new LinearTimeInvariantModelFactory(new LinearReservoirCascadeSystem(3)));
+		population.setObservedStates(observedStates);
+		// shorter than the series, so that the work arrays of the runners do not hold all times
+		population.setWindowLength(7);
+		for (int iMember=0;iMember<nMembers;iMember++){
+			population.setParameterCombination(iMember, new double[]{10+iMember*7.5, 20, 30+iMember});
+		}
+		return population;
+	}
+	
+	@Test
+	public void testObservedStatesOfFullyObservedModel() {
+		int nMembers = 4;
+		int[] observedStates = new int[]{2};
+		ListOfParameterCombinations full = createCascadePopulation(nMembers, null);
+		full.calcModelResults();
+		ListOfParameterCombinations observed = createCascadePopulation(nMembers, observedStates);
+		observed.calcModelResults();
+		observed.calcObjScores(obs);
+		ListOfParameterCombinations scored = createCascadePopulation(nMembers, observedStates);
+		scored.setModelResultRetention(ModelResultRetention.NONE);
+		scored.calcModelResultsAndObjScores(obs);
+		for (int iMember=0;iMember<nMembers;iMember++){
+			assertEquals(1, observed.getModelResult(iMember).length);
+			assertArrayEquals(full.getModelResult(iMember)[2], observed.getModelResult(iMember)[0], 0.0);
+			assertEquals(observed.getObjScore(iMember), scored.getObjScore(iMember), 0.0);
+		}
+	}
+	
+	@Test
+	public void testEvalResultsKeepsTheSource() {
+		SeriesSource forcingSource = createBufferSource(forcing);
+		SeriesSource timesSource = createBufferSource(times);
+		DiffEvo diffEvo = new DiffEvo(2, 4, parSpace, stateSpace, new double[]{30}, forcingSource, timesSource, 
+				assimilate, obs, new LinearDynamicStateSpaceModelFactory(), new LikelihoodFunctionSSRFactory(), 0);
+		EvalResults evalResults = diffEvo.runOptimization();
+		assertSame(forcingSource, evalResults.getForcingSource());
+		assertSame(timesSource, evalResults.getTimesSource());
+		assertArrayEquals(times, evalResults.getTimes(), 0.0);
+	}
+	
+	@Test
+	public void testWindowMovesThroughTheChunks() {
+		double[] assimilate = new double[]{0, 0, 1, 0, 1, 1, 0, 0, 0, 1, 0, 1};
+		double[] values = new double[assimilate.length];
+		for (int iValue=0;iValue<values.length;iValue++){
+			values[iValue] = iValue;
+		}
+		TimeChunks timeChunks = new TimeChunks(createBufferSource(values), assimilate.clone());
+		ForcingChunks forcingChunks = new ForcingChunks(createBufferSource(values), assimilate.clone());
+		SeriesWindow window = new SeriesWindow(timeChunks, forcingChunks, 3);
+		assertFalse(window.isInMemory());
+		// the longest chunk has 5 values
+		assertEquals(5, window.getCapacity());
+		Set<double[]> buffers = Collections.newSetFromMap(new IdentityHashMap<double[], Boolean>());
+		double[] timesBefore = null;
+		for (int iRepeat=0;iRepeat<2;iRepeat++){
+			for (int iChunk=0;iChunk<timeChunks.getnChunks();iChunk++){
+				int iWindowStart = window.moveTo(iChunk);
+				for (int k=0;k<timeChunks.getChunkLength(iChunk);k++){
+					assertTrue(window.getTimes()[iWindowStart+k]==timeChunks.getChunkOffset(iChunk)+k);
+					assertTrue(window.getForcing()[iWindowStart+k]==timeChunks.getChunkOffset(iChunk)+k);
+				}
+				if (timesBefore!=null && window.getTimes()!=timesBefore){
+					assertTrue(window.isNewStretch());
+				}
+				timesBefore = window.getTimes();
+				buffers.add(window.getTimes());
+			}
+		}
+		// two buffers used in turn, and one for the shorter last stretch
+		assertTrue(buffers.size()<=3);
+	}
+
+}
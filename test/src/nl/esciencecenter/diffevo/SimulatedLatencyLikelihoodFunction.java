@@ -0,0 +1,80 @@
+package nl.esciencecenter.diffevo;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import nl.esciencecenter.diffevo.likelihoodfunctionfactories.LikelihoodFunctionFactory;
+import nl.esciencecenter.diffevo.likelihoodfunctions.LikelihoodFunction;
+import nl.esciencecenter.diffevo.likelihoodfunctions.LikelihoodFunctionRosenbrockModel;
+
+/**
+ * The Rosenbrock function behind a fixed delay, standing in for a model that spends most of its time 
+ * waiting on something else. Keeps track of the largest number of evaluations that were in progress at 
+ * the same time. If a rendezvous is given, each evaluation counts it down and then waits for it (for at 
+ * most 10 s), so that the first evaluations only go ahead once that many are in progress at the same time.
+ */
+public class SimulatedLatencyLikelihoodFunction implements LikelihoodFunction {
+	
+	private final long latencyMillis;
+	private final AtomicInteger nRunning;
+	private final AtomicInteger nRunningMax;
+	private final CountDownLatch rendezvous;
+	private final LikelihoodFunction likelihoodFunction;
+	
+	// constructor
+	public SimulatedLatencyLikelihoodFunction(long latencyMillis, AtomicInteger nRunning, AtomicInteger nRunningMax, 
+			CountDownLatch rendezvous){
+		this.latencyMillis = latencyMillis;
+		this.nRunning = nRunning;
+		this.nRunningMax = nRunningMax;
+		this.rendezvous = rendezvous;
+		this.likelihoodFunction = new LikelihoodFunctionRosenbrockModel();
+	}
+	
+	public static LikelihoodFunctionFactory createFactory(long latencyMillis, AtomicInteger nRunningMax){
+		return createFactory(latencyMillis, nRunningMax, null);
+	}
+	
+	public static LikelihoodFunctionFactory createFactory(final long latencyMillis, final AtomicInteger nRunningMax, 
+			final CountDownLatch rendezvous){
+		final AtomicInteger nRunning = new AtomicInteger();
+		return new LikelihoodFunctionFactory(){
+			public LikelihoodFunction create(){
+				return new SimulatedLatencyLikelihoodFunction(latencyMillis, nRunning, nRunningMax, rendezvous);
+			}
+		};
+	}
+	
+	public String getName(){
+		return SimulatedLatencyLikelihoodFunction.class.getSimpleName();
+	}
+
+	@Override
+	public double evaluate(double[][] obs, double[][] sim) {
+		return likelihoodFunction.evaluate(obs, sim);
+	}
+
+	@Override
+	public double evaluate(double[] parameterVector) {
+		int nRunningNow = nRunning.incrementAndGet();
+		int nRunningMaxNow = nRunningMax.get();
+		while (nRunningNow>nRunningMaxNow && !nRunningMax.compareAndSet(nRunningMaxNow, nRunningNow)){
+			nRunningMaxNow = nRunningMax.get();
+		}
+		try {
+			if (rendezvous!=null){
+				rendezvous.countDown();
+				rendezvous.await(10, TimeUnit.SECONDS);
+			}
+			Thread.sleep(latencyMillis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		finally {
+			nRunning.decrementAndGet();
+		}
+		return likelihoodFunction.evaluate(parameterVector);
+	}
+
+}
@@ -0,0 +1,149 @@
+package nl.esciencecenter.diffevo;
+
+import static org.junit.Assert.*;
+
+import nl.esciencecenter.diffevo.integratorfactories.BackwardEulerIntegratorFactory;
+import nl.esciencecenter.diffevo.integrators.BackwardEulerIntegrator;
+import nl.esciencecenter.diffevo.integrators.ForwardEulerIntegrator;
+import nl.esciencecenter.diffevo.likelihoodfunctionfactories.LikelihoodFunctionSSRFactory;
+import nl.esciencecenter.diffevo.likelihoodfunctions.LikelihoodFunctionSSR;
+import nl.esciencecenter.diffevo.statespacemodelfactories.SparseLinearModelFactory;
+import nl.esciencecenter.diffevo.statespacemodels.CsrMatrix;
+import nl.esciencecenter.diffevo.statespacemodels.LinearReservoirNetworkSystem;
+import nl.esciencecenter.diffevo.statespacemodels.SparseLinearModel;
+
+import org.junit.Test;
+
+public class SparseModelTest {
+	
+	private int nStates = 2000;
+	private int[] observedStates = new int[]{1999, 1000};
+	
+	private int[] createDownstream(){
+		// a binary tree that drains into reservoir nStates-1, which drains out of the network
+		int[] downstream = new int[nStates];
+		for (int iState=0;iState<nStates-1;iState++){
+			downstream[iState] = nStates-1 - (nStates-1-iState-1)/2;
+		}
+		downstream[nStates-1] = -1;
+		return downstream;
+	}
+	
+	private double[] createTimes(){
+		double[] times = new double[30];
+		for (int iTime=0;iTime<times.length;iTime++){
+			times[iTime] = 0.5*iTime;
+		}
+		return times;
+	}
+	
+	private double[] createForcing(){
+		double[] forcing = new double[30];
+		for (int iTime=0;iTime<forcing.length;iTime++){
+			forcing[iTime] = iTime%7==0 ? 2 : 0;
+		}
+		return forcing;
+	}
+
+	@Test
+	public void testCsrMatrix() {
+		CsrMatrix matrix = CsrMatrix.fromPositions(3, 4, new int[]{2, 0, 0, 2, 1, 0}, new int[]{3, 2, 0, 0, 1, 2});
+		assertEquals(5, matrix.getnEntries());
+		assertEquals(-1, matrix.indexOf(1, 0));
+		double[][] dense = new double[][]{{1, 0, 2, 0},{0, 3, 0, 0},{4, 0, 0, 5}};
+		for (int iRow=0;iRow<3;iRow++){
+			for (int iCol=0;iCol<4;iCol++){
+				if (dense[iRow][iCol]!=0){
+					matrix.setValue(matrix.indexOf(iRow, iCol), dense[iRow][iCol]);
+				}
+			}
+		}
+		double[] x = new double[]{1, -2, 0.5, 3};
+		double[] y = new double[3];
+		matrix.multiply(x, y);
+		assertArrayEquals(new double[]{2, -6, 19}, y, 0.0);
+	}
+	
+	@Test
+	public void testObservedStatesOnly() {
+		LinearReservoirNetworkSystem system = new LinearReservoirNetworkSystem(createDownstream());
+		double[] initState = new double[nStates];
+		double[] times = createTimes();
+		double[] forcing = createForcing();
+		
+		double[][] full = new SparseLinearModel(initState, new double[]{3}, forcing, times, system, new ForwardEulerIntegrator()).evaluate();
+		
+		SparseLinearModel model = new SparseLinearModel(initState, new double[]{3}, forcing, times, system, new ForwardEulerIntegrator());
+		model.setObservedStates(observedStates);
+		double[][] observed = model.evaluate();
+		
+		assertEquals(observedStates.length, observed.length);
+		for (int iObserved=0;iObserved<observedStates.length;iObserved++){
+			assertArrayEquals(full[observedStates[iObserved]], observed[iObserved], 0.0);
+		}
+		// water has reached the outlet
+		assertTrue(observed[0][times.length-1]>0);
+	}
+	
+	@Test
+	public void testCalibrationRetainsObservedStatesOnly() {
+		LinearReservoirNetworkSystem system = new LinearReservoirNetworkSystem(createDownstream());
+		double[] initState = new double[nStates];
+		double[] times = createTimes();
+		double[] forcing = createForcing();
+		double[] assimilate = new double[times.length];
+		assimilate[10] = 1;
+		assimilate[times.length-1] = 1;
+		
+		double[][] truth = new SparseLinearModel(initState, new double[]{4}, forcing, times, system, new ForwardEulerIntegrator()).evaluate();
+		double[][] obs = new double[][]{truth[observedStates[0]], truth[observedStates[1]]};
+		
+		ParSpace parSpace = new ParSpace(new double[] {1}, new double[] {10}, new String[] {"resistance"});
+		StateSpace stateSpace = new StateSpace(new double[] {0}, new double[] {100}, new String[] {"storage"});
+		
+		for (ModelResultRetention modelResultRetention : new ModelResultRetention[]{ModelResultRetention.TRAJECTORY, ModelResultRetention.NONE}){
+			DiffEvo diffEvo = new DiffEvo(4, 6, parSpace, stateSpace, initState, forcing, times, assimilate, obs, 
+					new SparseLinearModelFactory(system), new LikelihoodFunctionSSRFactory(), 0);
+			diffEvo.setObservedStates(observedStates);
+			diffEvo.setModelResultRetention(modelResultRetention);
+			diffEvo.setnThreads(2);
+			EvalResults evalResults = diffEvo.runOptimization();
+			
+			for (int iResult=0;iResult<evalResults.size();iResult++){
+				EvalResult evalResult = evalResults.getEvalResult(iResult);
+				double[][] sim = new SparseLinearModel(initState, evalResult.getParameterCombination(), forcing, times, system, 
+						new ForwardEulerIntegrator()).evaluate();
+				double expected = new LikelihoodFunctionSSR().evaluate(obs, new double[][]{sim[observedStates[0]], sim[observedStates[1]]});
+				assertEquals(expected, evalResult.getObjScore(), 1e-9*Math.abs(expected));
+				if (modelResultRetention==ModelResultRetention.TRAJECTORY){
+					double[][] modelResult = evalResult.getModelResult();
+					assertEquals(observedStates.length, modelResult.length);
+					assertEquals(sim[observedStates[0]][times.length-1], modelResult[0][times.length-1], 0.0);
+				}
+			}
+		}
+	}
+	
+	@Test(expected=IllegalArgumentException.class)
+	public void testObservedStatesMustMatchObs() {
+		double[] times = createTimes();
+		DiffEvo diffEvo = new DiffEvo(4, 6, new ParSpace(new double[] {1}, new double[] {10}, new String[] {"resistance"}), 
+				new StateSpace(new double[] {0}, new double[] {100}, new String[] {"storage"}), new double[nStates], createForcing(), 
+				times, new double[times.length], new double[][]{times}, new SparseLinearModelFactory(new LinearReservoirNetworkSystem(createDownstream())), 
+				new LikelihoodFunctionSSRFactory(), 0);
+		diffEvo.setObservedStates(observedStates);
+	}
+	
+	@Test(expected=IllegalArgumentException.class)
+	public void testImplicitIntegratorIsRefused() {
+		LinearReservoirNetworkSystem system = new LinearReservoirNetworkSystem(createDownstream());
+		new SparseLinearModel(system, 1, new BackwardEulerIntegrator());
+	}
+	
+	@Test(expected=IllegalArgumentException.class)
+	public void testImplicitIntegratorFactoryIsRefused() {
+		LinearReservoirNetworkSystem system = new LinearReservoirNetworkSystem(createDownstream());
+		new SparseLinearModelFactory(system, new BackwardEulerIntegratorFactory());
+	}
+	
+}
@@ -0,0 +1,100 @@
+package nl.esciencecenter.diffevo;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TDigestTest {
+	
+	private static final double[] QUANTILES = new double[]{0.0,0.001,0.01,0.1,0.25,0.5,0.75,0.9,0.99,0.999,1.0};
+	
+	// the fraction of values below the estimate should be close to q, closer still in the tails
+	private static void assertRankError(double[] sorted, TDigest digest){
+		int n = sorted.length;
+		for (double q : QUANTILES){
+			double estimate = digest.getQuantile(q);
+			int rank = Arrays.binarySearch(sorted, estimate);
+			if (rank<0){
+				rank = -rank-1;
+			}
+			double tolerance = 0.002+0.02*q*(1-q);
+			assertEquals("q="+q, q, (double) rank/n, tolerance);
+		}
+		assertEquals(sorted[0], digest.getQuantile(0), 0.0);
+		assertEquals(sorted[n-1], digest.getQuantile(1), 0.0);
+	}
+
+	@Test
+	public void testQuantiles() {
+		
+		int n = 100000;
+		double[] values = new double[n];
+		Random generator = new Random(0);
+		TDigest digest = new TDigest();
+		for (int i=0;i<n;i++){
+			// skewed, so that the mean and the median differ
+			values[i] = Math.exp(generator.nextGaussian());
+			digest.add(values[i]);
+		}
+		assertEquals(n, digest.getTotalWeight(), 0.0);
+		assertTrue(digest.getnCentroids()<=TDigest.DEFAULT_COMPRESSION);
+		
+		Arrays.sort(values);
+		assertRankError(values, digest);
+	}
+	
+	@Test
+	public void testAddDigests() {
+		
+		int n = 60000;
+		double[] values = new double[n];
+		Random generator = new Random(1);
+		TDigest[] parts = new TDigest[]{new TDigest(), new TDigest(), new TDigest()};
+		for (int i=0;i<n;i++){
+			// every part has a different range of values
+			values[i] = (i%3)*2+generator.nextDouble();
+			parts[i%3].add(values[i]);
+		}
+		TDigest digest = new TDigest();
+		for (TDigest part : parts){
+			digest.add(part);
+		}
+		assertEquals(n, digest.getTotalWeight(), 0.0);
+		
+		Arrays.sort(values);
+		assertRankError(values, digest);
+	}
+	
+	@Test
+	public void testWeightsStayWithTheirValues() {
+		
+		// descending, with many ties, and the lower half weighted double: a weighted median of 2500
+		int n = 100000;
+		TDigest digest = new TDigest();
+		for (int i=n-1;i>=0;i--){
+			double value = i/10;
+			digest.add(value, value<5000 ? 2 : 1);
+		}
+		assertEquals(1.5*n, digest.getTotalWeight(), 0.0);
+		assertEquals(0.0, digest.getQuantile(0), 0.0);
+		assertEquals(3750.0, digest.getQuantile(0.5), 50.0);
+		assertEquals(5000.0, digest.getQuantile(2.0/3), 50.0);
+		assertEquals(9999.0, digest.getQuantile(1), 0.0);
+	}
+	
+	@Test
+	public void testFewValues() {
+		TDigest digest = new TDigest();
+		assertTrue(Double.isNaN(digest.getQuantile(0.5)));
+		digest.add(3.0);
+		assertEquals(3.0, digest.getQuantile(0.1), 0.0);
+		digest.add(5.0);
+		assertEquals(3.0, digest.getQuantile(0.0), 0.0);
+		assertEquals(4.0, digest.getQuantile(0.5), 0.0);
+		assertEquals(5.0, digest.getQuantile(1.0), 0.0);
+	}
+
+}
@@ -33,6 +33,27 @@ public class TimeChunksTest {
 		
 	}
 	
+	@Test
+	public void testChunkViews() {
+		double[] times = new double[]{0,1,2,3,4,5,6,7,8};
+		double[] assimilate = new double[]{1, 0, 0, 1, 0, 0, 1, 0, 1}; 
+		TimeChunks timeChunks = new TimeChunks(times,assimilate);
+		
+		int[] offsetsExpected = new int[]{0,3,6};
+		int[] lengthsExpected = new int[]{4,4,3};
+		double[] sharedTimes = timeChunks.getSharedValues();
+		for (int iChunk=0;iChunk<timeChunks.getnChunks();iChunk++){
+			assertEquals(offsetsExpected[iChunk], timeChunks.getChunkOffset(iChunk));
+			assertEquals(lengthsExpected[iChunk], timeChunks.getChunkLength(iChunk));
+			double[] chunk = timeChunks.getChunk(iChunk);
+			for (int k=0;k<chunk.length;k++){
+				assertTrue(chunk[k]==sharedTimes[offsetsExpected[iChunk]+k]);
+			}
+		}
+		assertEquals(4, timeChunks.getMaxChunkLength());
+		assertTrue(sharedTimes==timeChunks.getSharedValues());
+	}
+	
 	
 	
 	
@@ -0,0 +1,70 @@
+package nl.esciencecenter.diffevo;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import nl.esciencecenter.diffevo.likelihoodfunctionfactories.LikelihoodFunctionFactory;
+import nl.esciencecenter.diffevo.likelihoodfunctionfactories.LikelihoodFunctionRosenbrockModelFactory;
+
+import org.junit.Test;
+
+public class VirtualThreadsTest {
+	
+	private ParSpace parSpace = new ParSpace(new double[] {-5, -5}, new double[] {5, 5}, new String[] {"x", "y"});
+	
+	private EvalResults runOptimization(LikelihoodFunctionFactory likelihoodFunctionFactory, int maxConcurrency){
+		DiffEvo diffEvo = new DiffEvo(8, 16, parSpace, likelihoodFunctionFactory, 0);
+		if (maxConcurrency>0){
+			diffEvo.setVirtualThreads(maxConcurrency);
+		}
+		return diffEvo.runOptimization();
+	}
+
+	@Test
+	public void testGivesIdenticalResults() {
+		EvalResults expected = runOptimization(new LikelihoodFunctionRosenbrockModelFactory(), 0);
+		EvalResults actual = runOptimization(new LikelihoodFunctionRosenbrockModelFactory(), 5);
+		assertEquals(expected.size(), actual.size());
+		for (int iResult=0;iResult<expected.size();iResult++){
+			assertArrayEquals(expected.getParameterCombination(iResult), actual.getParameterCombination(iResult), 0.0);
+			assertTrue(expected.getObjScore(iResult)==actual.getObjScore(iResult));
+		}
+	}
+	
+	@Test
+	public void testConcurrencyIsLimited() {
+		
+		int nMembers = 40;
+		int maxConcurrency = 8;
+		AtomicInteger nRunningMax = new AtomicInteger();
+		// the first evaluations wait for each other until maxConcurrency of them are running
+		CountDownLatch rendezvous = new CountDownLatch(maxConcurrency);
+		ListOfParameterCombinations population = new ListOfParameterCombinations(nMembers, 2, 
+				SimulatedLatencyLikelihoodFunction.createFactory(1, nRunningMax, rendezvous));
+		for (int iMember=0;iMember<nMembers;iMember++){
+			population.setParameterCombination(iMember, new double[]{iMember*0.1, 1});
+		}
+		
+		ExecutorService executorService = VirtualThreads.newExecutorService();
+		try {
+			population.setExecutorService(executorService, maxConcurrency);
+			population.setTaskPerMember(true);
+			population.calcObjScores();
+			
+			// all maxConcurrency evaluations ran at the same time, and never more
+			assertEquals(0, rendezvous.getCount());
+			assertEquals(maxConcurrency, nRunningMax.get());
+			for (int iMember=0;iMember<nMembers;iMember++){
+				double x = iMember*0.1;
+				assertEquals(-(Math.pow(1-x, 2)+100*Math.pow(1-x*x, 2)), population.getObjScore(iMember), 1e-12);
+			}
+		}
+		finally {
+			executorService.shutdown();
+		}
+	}
+
+}